@@ -2,9 +2,11 @@ package com.plotline.backend;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 //import org.springframework.context.annotation.ComponentScan;
 
 @SpringBootApplication
+@EnableScheduling
 //@ComponentScan(basePackages = {"com.plotline.backend"})
 public class BackendApplication {
 
@@ -1,16 +1,46 @@
 package com.plotline.backend.categorize;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.plaid.client.model.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Maps a transaction to a spending bucket: the user's override for the
+ * merchant, then Plaid's primary category, then the merchant rules. The
+ * rules come from categorize.merchant-rules (a JSON object of merchant
+ * substring -> bucket) and are compiled into a MerchantMatcher, so a rule
+ * file with thousands of entries costs one pass over the merchant name.
+ * Normalized names and their rule result are cached per raw name, since a
+ * feed repeats the same few hundred merchants.
+ */
 @Component
 public class Categorizer {
   private final UserCategoryStore userStore;
+  private final MerchantMatcher merchantRules;
+  private final int cacheMaxEntries;
 
-  public Categorizer(UserCategoryStore store) { this.userStore = store; }
+  // raw merchant -> normalized name and rule bucket; cleared when full, it refills from the hot merchants
+  private final ConcurrentHashMap<String, Merchant> merchants = new ConcurrentHashMap<>();
+
+  private record Merchant(String normalized, String rule) {}
+
+  public Categorizer(UserCategoryStore store,
+                     @Value("${categorize.merchant-rules:classpath:merchant_rules.json}") Resource rulesFile,
+                     @Value("${categorize.merchant-cache.max-entries:10000}") int cacheMaxEntries) throws IOException {
+    this.userStore = store;
+    this.merchantRules = new MerchantMatcher(loadRules(rulesFile));
+    this.cacheMaxEntries = Math.max(1, cacheMaxEntries);
+  }
 
   private static final Map<String,String> PFC_PRIMARY_TO_BUCKET = Map.ofEntries(
       Map.entry("FOOD_AND_DRINK", "Eating Out"),
@@ -21,23 +51,10 @@ public class Categorizer {
       Map.entry("ENTERTAINMENT", "Entertainment")
   );
 
-  private static final Map<String,String> MERCHANT_RULES = Map.ofEntries(
-      Map.entry("STARBUCKS", "Eating Out"),
-      Map.entry("MCDONALD'S", "Eating Out"),
-      Map.entry("UBER", "Transportation"),
-      Map.entry("LYFT", "Transportation"),
-      Map.entry("SPOTIFY", "Subscriptions"),
-      Map.entry("NETFLIX", "Subscriptions"),
-      Map.entry("WHOLE FOODS", "Groceries"),
-      Map.entry("TRADER JOE'S", "Groceries"),
-      Map.entry("SAFEWAY", "Groceries")
-  );
-
   public String map(String username, Transaction t) {
-    String merchant = (t.getMerchantName() != null ? t.getMerchantName() : t.getName());
-    String m = merchant == null ? "" : merchant.toUpperCase().trim();
+    Merchant m = merchant(t.getMerchantName() != null ? t.getMerchantName() : t.getName());
 
-    String userOverride = userStore.lookup(username, m);
+    String userOverride = userStore.lookup(username, m.normalized());
     if (userOverride != null) return userOverride;
 
     if (t.getPersonalFinanceCategory() != null && t.getPersonalFinanceCategory().getPrimary() != null) {
@@ -45,10 +62,42 @@ public class Categorizer {
       if (PFC_PRIMARY_TO_BUCKET.containsKey(p)) return PFC_PRIMARY_TO_BUCKET.get(p);
     }
 
-    for (var e : MERCHANT_RULES.entrySet()) {
-      if (m.contains(e.getKey())) return e.getValue();
+    return m.rule() != null ? m.rule() : "Uncategorized";
+  }
+
+  /** Bucket for a merchant name from the user's overrides or the merchant rules, null if neither knows it. */
+  public String mapMerchant(String username, String merchant) {
+    Merchant m = merchant(merchant);
+    String userOverride = userStore.lookup(username, m.normalized());
+    if (userOverride != null) return userOverride;
+    return m.rule();
+  }
+
+  /** The form overrides are keyed by and rules are matched against. */
+  static String normalizeMerchant(String merchant) {
+    return merchant == null ? "" : merchant.toUpperCase().trim();
+  }
+
+  private Merchant merchant(String raw) {
+    if (raw == null) raw = "";
+    Merchant cached = merchants.get(raw);
+    if (cached != null) return cached;
+
+    String normalized = normalizeMerchant(raw);
+    Merchant m = new Merchant(normalized, merchantRules.match(normalized));
+    if (merchants.size() >= cacheMaxEntries) merchants.clear();
+    merchants.put(raw, m);
+    return m;
+  }
+
+  private static Map<String, String> loadRules(Resource rulesFile) throws IOException {
+    Map<String, String> raw;
+    try (InputStream in = rulesFile.getInputStream()) {
+      raw = new ObjectMapper().readValue(in, new TypeReference<LinkedHashMap<String, String>>() {});
     }
-    return "Uncategorized";
+    Map<String, String> rules = new LinkedHashMap<>();
+    raw.forEach((merchant, bucket) -> rules.put(normalizeMerchant(merchant), bucket));
+    return rules;
   }
 
   // Minimal override controller colocated for brevity
@@ -61,7 +110,7 @@ public class Categorizer {
     @PostMapping("/override")
     public Map<String,Object> override(@RequestBody Map<String,String> body) {
       String username = body.get("username");
-      String merchant = body.get("merchant") == null ? "" : body.get("merchant").toUpperCase().trim();
+      String merchant = normalizeMerchant(body.get("merchant"));
       String category = body.get("category");
       store.saveOverride(username, merchant, category);
       return Map.of("ok", true);
@@ -0,0 +1,106 @@
+package com.plotline.backend.categorize;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Merchant rules compiled into an Aho-Corasick automaton, so finding every
+ * rule contained in a merchant name is one pass over the name however many
+ * rules there are. Failure links are folded into a dense transition table
+ * over the characters the rules actually use; any other character goes
+ * back to the root.
+ *
+ * When several rules occur in a name the longest wins, then the leftmost.
+ * Immutable once built, so safe to share between threads.
+ */
+final class MerchantMatcher {
+
+  // char -> column in the transition table; 0 is every character no rule uses
+  private final short[] charClass = new short[Character.MAX_VALUE + 1];
+  private final int classes;
+  private final int[] next;
+  // the longest rule ending at each state, inherited along failure links
+  private final int[] outLength;
+  private final String[] outBucket;
+
+  /** rules maps an already-normalized pattern to its bucket; blank patterns are ignored. */
+  MerchantMatcher(Map<String, String> rules) {
+    int classCount = 1;
+    int maxStates = 1;
+    for (String pattern : rules.keySet()) {
+      if (pattern == null || pattern.isBlank()) continue;
+      maxStates += pattern.length();
+      for (int i = 0; i < pattern.length(); i++) {
+        char ch = pattern.charAt(i);
+        if (charClass[ch] == 0) {
+          if (classCount == Short.MAX_VALUE) throw new IllegalArgumentException("too many distinct characters in merchant rules");
+          charClass[ch] = (short) classCount++;
+        }
+      }
+    }
+    this.classes = classCount;
+
+    // trie first; 0 doubles as "no child" since no edge leads back to the root
+    int[] table = new int[maxStates * classes];
+    int[] length = new int[maxStates];
+    String[] bucket = new String[maxStates];
+    int states = 1;
+    for (var rule : rules.entrySet()) {
+      String pattern = rule.getKey();
+      if (pattern == null || pattern.isBlank()) continue;
+      int state = 0;
+      for (int i = 0; i < pattern.length(); i++) {
+        int slot = state * classes + charClass[pattern.charAt(i)];
+        if (table[slot] == 0) table[slot] = states++;
+        state = table[slot];
+      }
+      length[state] = pattern.length();
+      bucket[state] = rule.getValue();
+    }
+
+    // breadth-first, so a state's failure target is complete before the state itself
+    int[] fail = new int[states];
+    ArrayDeque<Integer> queue = new ArrayDeque<>();
+    for (int c = 1; c < classes; c++) {
+      int child = table[c];
+      if (child != 0) queue.add(child);
+    }
+    while (!queue.isEmpty()) {
+      int state = queue.poll();
+      if (length[state] == 0) {
+        length[state] = length[fail[state]];
+        bucket[state] = bucket[fail[state]];
+      }
+      for (int c = 1; c < classes; c++) {
+        int slot = state * classes + c;
+        int fallback = table[fail[state] * classes + c];
+        if (table[slot] != 0) {
+          fail[table[slot]] = fallback;
+          queue.add(table[slot]);
+        } else {
+          table[slot] = fallback;
+        }
+      }
+    }
+
+    this.next = Arrays.copyOf(table, states * classes);
+    this.outLength = Arrays.copyOf(length, states);
+    this.outBucket = Arrays.copyOf(bucket, states);
+  }
+
+  /** Bucket of the best rule found in the normalized merchant name, null if none occurs. */
+  String match(String merchant) {
+    int state = 0;
+    int bestLength = 0;
+    String best = null;
+    for (int i = 0; i < merchant.length(); i++) {
+      state = next[state * classes + charClass[merchant.charAt(i)]];
+      if (outLength[state] > bestLength) {
+        bestLength = outLength[state];
+        best = outBucket[state];
+      }
+    }
+    return best;
+  }
+}
@@ -1,12 +1,19 @@
 package com.plotline.backend.config;
 
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
 import io.github.cdimascio.dotenv.Dotenv;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 
 @Configuration
@@ -22,16 +29,49 @@ public class AWSConfig {
     return null;
   }
 
-  @Bean
-  public S3Client s3Client() {
+  private Region region() {
+    String region = resolve("AWS_REGION");
+    return region != null ? Region.of(region) : Region.US_EAST_1;
+  }
+
+  private StaticCredentialsProvider credentials() {
     String accessKey = resolve("AWS_ACCESS_KEY_ID");
     String secretKey = resolve("AWS_SECRET_ACCESS_KEY");
-    String region = resolve("AWS_REGION");
-    Region awsRegion = region != null ? Region.of(region) : Region.US_EAST_1;
+    return StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+  }
 
+  // only the profile picture upload still needs the blocking client (ACL on a public object);
+  // lazy so a local storage backend can start without AWS credentials
+  @Bean
+  @Lazy
+  public S3Client s3Client() {
     return S3Client.builder()
-        .region(awsRegion)
-        .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
+        .region(region())
+        .credentialsProvider(credentials())
+        .build();
+  }
+
+  /**
+   * The one client all document traffic goes through. Requests are multiplexed
+   * over a pooled set of keep-alive connections on Netty's event loop, so
+   * waiting on S3 doesn't hold a request thread.
+   */
+  @Bean(destroyMethod = "close")
+  @ConditionalOnProperty(name = "storage.backend", havingValue = "s3", matchIfMissing = true)
+  public S3AsyncClient s3AsyncClient(@Value("${aws.s3.async.max-concurrency:200}") int maxConcurrency,
+                                     @Value("${aws.s3.async.max-pending-acquires:10000}") int maxPendingAcquires,
+                                     @Value("${aws.s3.async.acquire-timeout-ms:10000}") long acquireTimeoutMs,
+                                     @Value("${aws.s3.async.max-idle-seconds:60}") long maxIdleSeconds) {
+    return S3AsyncClient.builder()
+        .region(region())
+        .credentialsProvider(credentials())
+        .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+            .maxConcurrency(maxConcurrency)
+            .maxPendingConnectionAcquires(maxPendingAcquires)
+            .connectionAcquisitionTimeout(Duration.ofMillis(acquireTimeoutMs))
+            .connectionMaxIdleTime(Duration.ofSeconds(maxIdleSeconds))
+            .tcpKeepAlive(true)
+            .useIdleConnectionReaper(true))
         .build();
   }
 }
@@ -2,6 +2,7 @@ package com.plotline.backend.config;
 
 import com.plaid.client.ApiClient;
 import com.plaid.client.request.PlaidApi;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import io.github.cdimascio.dotenv.Dotenv;
@@ -12,7 +13,7 @@ import java.util.HashMap;
 public class PlaidConfig {
 
   @Bean
-  public PlaidApi plaidApi() {
+  public PlaidApi plaidApi(@Value("${plaid.base-url:}") String baseUrl) {
     Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
     String clientId = dotenv.get("PLAID_CLIENT_ID");
     String secret   = dotenv.get("PLAID_SECRET");
@@ -26,7 +27,8 @@ public class PlaidConfig {
 
     // Choose environment (Sandbox shown here). If this method ever changes,
     // you can replace it with client.setBasePath("https://sandbox.plaid.com");
-    client.setPlaidAdapter(ApiClient.Sandbox);
+    // plaid.base-url points the client at a stub server instead (tests, local runs)
+    client.setPlaidAdapter(baseUrl != null && !baseUrl.isBlank() ? baseUrl : ApiClient.Sandbox);
 
     return client.createService(PlaidApi.class);
   }
@@ -3,6 +3,7 @@ package com.plotline.backend.controller;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plotline.backend.costs.Money;
 import com.plotline.backend.dto.BudgetQuizRequest;
 import com.plotline.backend.dto.BudgetRequest;
 import com.plotline.backend.service.OpenAIService;
@@ -140,30 +141,37 @@ public class BudgetQuizController {
 
 
 
+            // Tax math runs in cents, each tax is rounded once
+            long grossCents = Money.toCents(grossYearlyIncome);
+
             // Account for 401(k) before calcuating taxes
-            double k401Defferal = Math.min(grossYearlyIncome * (retirment / 100.0), K401_EMPLOYEE_LIMIT_2024);
-            double taxableIncome = Math.max(0.0, grossYearlyIncome - k401Defferal);
+            long k401Cents = Math.min(Math.round(grossCents * (retirment / 100.0)), Money.toCents(K401_EMPLOYEE_LIMIT_2024));
+            long taxableCents = Math.max(0L, grossCents - k401Cents);
+            double k401Defferal = Money.toDollars(k401Cents);
+            double taxableIncome = Money.toDollars(taxableCents);
 
             // Get the taxes
 
-            double federalTax = calcTax(
+            long federalTax = calcTax(
                     (List<Map<String,Object>>) TAX_TABLE.get("FEDERAL_2024_SINGLE"),
-                    taxableIncome);
+                    taxableCents);
 
             Map<String,Object> stateSpec =
                     (Map<String,Object>) TAX_TABLE.get(state.toUpperCase());
-            double stateTax   = calcTax(stateSpec, taxableIncome);
-            double fica = calcFica(grossYearlyIncome);
-            double localTax = calcLocalTax(city, state, taxableIncome);
+            long stateTax   = calcTax(stateSpec, taxableCents);
+            long fica = calcFica(grossCents);
+            long localTax = Money.toCents(calcLocalTax(city, state, taxableIncome));
 
-            double afterTaxYearly = taxableIncome - federalTax - stateTax - fica - localTax;
-            double monthlyNet = afterTaxYearly / 12.0;
+            long afterTaxCents = taxableCents - federalTax - stateTax - fica - localTax;
+            double afterTaxYearly = Money.toDollars(afterTaxCents);
+            double monthlyNet = Money.toDollars(Math.round(afterTaxCents / 12.0));
 
             System.out.println("Taxable Income (After 401k): " + taxableIncome);
             System.out.println("Monthly Net: " + monthlyNet);
 
             System.out.printf("[TAX] %s - Fed: %.2f  State(%s): %.2f  Local: %.2f fica %.2f, Net: %.2f%n",
-                    username, federalTax, state, stateTax, localTax, fica, afterTaxYearly);
+                    username, Money.toDollars(federalTax), state, Money.toDollars(stateTax),
+                    Money.toDollars(localTax), Money.toDollars(fica), afterTaxYearly);
 
             double monthlyIncome = grossYearlyIncome / 12;
             double budgetCap;
@@ -286,8 +294,8 @@ public class BudgetQuizController {
             saveToS3(username, "weekly-budget.json", weekly);
 
             // Add net monthly to quiz data for live tracker
-            quizData.put("afterTaxYearly", round2(afterTaxYearly));
-            quizData.put("monthlyNet",     round2(monthlyNet));
+            quizData.put("afterTaxYearly", afterTaxYearly);
+            quizData.put("monthlyNet",     monthlyNet);
             quizData.put("k401Monthly", k401Monthly);
 
             saveQuizInput(username, quizData);
@@ -406,9 +414,10 @@ public class BudgetQuizController {
 
     // Tax Helper Functions
 
+    // Income and tax in cents
     @SuppressWarnings("unchecked")
-    private double calcTax(Object spec, double income) {
-        if (spec == null) return 0.0;
+    private long calcTax(Object spec, long income) {
+        if (spec == null) return 0L;
 
         if (spec instanceof List<?> brackets) {        // FEDERAL table case
             return taxFromBrackets((List<Map<String,Object>>) brackets, income);
@@ -417,20 +426,20 @@ public class BudgetQuizController {
         String type = ((String) obj.get("type")).toLowerCase(Locale.ROOT);
 
         return switch (type) {
-            case "none" -> 0.0;
-            case "flat" -> income * ((Number) obj.get("rate")).doubleValue();
+            case "none" -> 0L;
+            case "flat" -> Math.round(income * ((Number) obj.get("rate")).doubleValue());
             case "progressive" ->
                     taxFromBrackets((List<Map<String,Object>>) obj.get("brackets"), income);
-            default -> 0.0;
+            default -> 0L;
         };
     }
 
-    private double taxFromBrackets(List<Map<String,Object>> brackets, double income) {
+    private long taxFromBrackets(List<Map<String,Object>> brackets, long income) {
         double tax = 0.0;
-        double prevCap = 0.0;
+        long prevCap = 0L;
         for (Map<String,Object> b : brackets) {
             Number capNum = (Number) b.get("up_to");
-            double cap = capNum == null ? Double.MAX_VALUE : capNum.doubleValue();
+            long cap = capNum == null ? Long.MAX_VALUE : Money.toCents(capNum);
             double rate = ((Number) b.get("rate")).doubleValue();
             if (income <= cap) {
                 tax += (income - prevCap) * rate;
@@ -440,15 +449,15 @@ public class BudgetQuizController {
                 prevCap = cap;
             }
         }
-        return tax;
+        return Math.round(tax);
     }
 
-    // FICA - Social Security + Medicare (+ Additional Medicare over threshold)
-    private double calcFica(double wages) {
-        double ssTax = Math.min(wages, SS_WAGE_BASE_2024) * SS_RATE;
+    // FICA - Social Security + Medicare (+ Additional Medicare over threshold), in cents
+    private long calcFica(long wages) {
+        double ssTax = Math.min(wages, Money.toCents(SS_WAGE_BASE_2024)) * SS_RATE;
         double medicare = wages * MEDICARE_RATE;
-        double addlMedicare = Math.max(0.0, wages - ADDL_MEDICARE_THRESHOLD_SINGLE) * ADDL_MEDICARE_RATE;
-        return ssTax + medicare + addlMedicare;
+        double addlMedicare = Math.max(0L, wages - Money.toCents(ADDL_MEDICARE_THRESHOLD_SINGLE)) * ADDL_MEDICARE_RATE;
+        return Math.round(ssTax + medicare + addlMedicare);
     }
 
     // Calculate local/muniicipal taxes if the state has any
@@ -1,6 +1,7 @@
 package com.plotline.backend.controller;
 
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -21,13 +22,14 @@ public class CalendarController {
     }
 
     @GetMapping("/get-events")
-    public ResponseEntity<EventsResponse> getEvents(@RequestParam String username) {
-        try {
-            List<EventDto> eventList = calendarService.getEvents(username);
-            return ResponseEntity.ok(new EventsResponse(true, null, eventList));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(new EventsResponse(false, e.getMessage(), null));
-        }
+    public CompletableFuture<ResponseEntity<EventsResponse>> getEvents(@RequestParam String username) {
+        return calendarService.getEventsAsync(username)
+            .thenApply(eventList -> ResponseEntity.ok(new EventsResponse(true, null, eventList)))
+            .exceptionally(e -> {
+                // a storage failure, not a bad request: the calendar couldn't be read
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                return ResponseEntity.status(500).body(new EventsResponse(false, cause.getMessage(), null));
+            });
     }
 
     @PostMapping("/create-event")
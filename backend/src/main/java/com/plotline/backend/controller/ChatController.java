@@ -16,6 +16,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.plotline.backend.dto.ChatFeedPage;
 import com.plotline.backend.dto.ChatMessage;
 import com.plotline.backend.service.ChatMessageService;
 import com.plotline.backend.service.FriendsService;
@@ -42,6 +43,17 @@ public class ChatController {
 
     }
 
+    // one page of the feed, newest first; pass nextCursor back to get older messages
+    @GetMapping("/get-feed-page")
+    public ChatFeedPage getFeedPage(@RequestParam String userId,
+                                    @RequestParam(required = false) String cursor,
+                                    @RequestParam(defaultValue = "50") int limit) throws Exception {
+
+        List<String> friendIds = friendsService.getFriendList(userId).getFriends();
+        return chatService.getFeedPage(userId, friendIds, cursor, Math.min(limit, 200));
+
+    }
+
     // creates a new message
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
     public ChatMessage postMessage(@RequestParam String userId,
@@ -1,6 +1,8 @@
 package com.plotline.backend.controller;
 
+import com.plotline.backend.costs.CategoryCents;
 import com.plotline.backend.costs.CostsWriter;
+import com.plotline.backend.costs.Money;
 import com.plotline.backend.plaid.TokenStore;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -25,18 +27,15 @@ public class CostsAssignController {
   public ResponseEntity<?> assign(@RequestBody AssignBody body) {
     try {
       // aggregate by day -> category -> sum(amount)
-      Map<String, Map<String, Double>> dayMap = new LinkedHashMap<>();
+      Map<String, CategoryCents> dayMap = new LinkedHashMap<>();
       for (Assignment a : body.assignments()) {
-        if (a.amount() == null || a.amount() == 0.0) continue;
-        var cats = dayMap.computeIfAbsent(a.date(), d -> new LinkedHashMap<>());
-        cats.put(a.category(), round2(cats.getOrDefault(a.category(), 0.0) + a.amount()));
+        long cents = Money.toCents(a.amount());
+        if (cents == 0) continue;
+        dayMap.computeIfAbsent(a.date(), d -> new CategoryCents()).add(a.category(), cents);
       }
 
-      // write to weekly & monthly per day
-      for (var e : dayMap.entrySet()) {
-        costsWriter.mergeDated(body.username(), "weekly",  e.getKey(), e.getValue());
-        costsWriter.mergeDated(body.username(), "monthly", e.getKey(), e.getValue());
-      }
+      // write to weekly & monthly for every day in one pass
+      costsWriter.mergeDays(body.username(), dayMap);
 
       return ResponseEntity.ok(Map.of("ok", true, "days", dayMap.keySet()));
     } catch (Exception ex) {
@@ -44,6 +43,4 @@ public class CostsAssignController {
       return ResponseEntity.status(500).body(Map.of("error", ex.getMessage()));
     }
   }
-
-  private static double round2(double v) { return Math.round(v * 100.0) / 100.0; }
 }
@@ -1,5 +1,7 @@
 package com.plotline.backend.controller;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -37,14 +39,13 @@ public class FriendsController {
     }
 
     @GetMapping("/get-friends")
-    public ResponseEntity<FriendList> getFriendList(@RequestParam String username) {
-        try {
-            FriendList friendList = friendsService.getFriendList(username);
-            return ResponseEntity.ok(friendList);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(500).body(null);
-        }
+    public CompletableFuture<ResponseEntity<FriendList>> getFriendList(@RequestParam String username) {
+        return friendsService.getFriendListAsync(username)
+            .thenApply(ResponseEntity::ok)
+            .exceptionally(e -> {
+                e.printStackTrace();
+                return ResponseEntity.status(500).body(null);
+            });
     }
 
     @GetMapping("/get-friend-requests")
@@ -1,10 +1,12 @@
 package com.plotline.backend.controller;
 
+import com.plotline.backend.service.LlmHttpClient;
 import com.plotline.backend.service.OpenAIService;
 
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -18,6 +20,9 @@ public class OpenAIController {
   @Autowired
   private OpenAIService openAIService;
 
+  @Autowired
+  private LlmHttpClient llmHttpClient;
+
   // @Arty5654 @ay-chang @ymehtaa example of post to return json response of string
   @PostMapping("/string-response")
     public Map<String, String> chatWithOpenAI(@RequestBody Map<String, String> request) {
@@ -26,6 +31,12 @@ public class OpenAIController {
       return Map.of("response", response);
   }
 
+  // request counts, failures and latency of raw model calls since startup
+  @GetMapping("/stats")
+  public LlmHttpClient.Stats stats() {
+    return llmHttpClient.stats();
+  }
+
 
 
   
@@ -27,6 +27,7 @@ import java.util.Map;
 
     Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
     String redirectUri = dotenv.get("PLAID_REDIRECT_URI");
+    String webhookUrl = dotenv.get("PLAID_WEBHOOK_URL");
 
     var req = new LinkTokenCreateRequest()
         .user(user)
@@ -39,6 +40,10 @@ import java.util.Map;
     if (redirectUri != null && !redirectUri.isBlank()) {
       req.redirectUri(redirectUri);
     }
+    // Plaid posts SYNC_UPDATES_AVAILABLE here (PlaidSyncController#webhook) when the item has new transactions
+    if (webhookUrl != null && !webhookUrl.isBlank()) {
+      req.webhook(webhookUrl);
+    }
 
     var res = plaid.linkTokenCreate(req).execute().body();
     return Map.of("link_token", res.getLinkToken());
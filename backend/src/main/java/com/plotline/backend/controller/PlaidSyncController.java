@@ -1,195 +1,94 @@
 package com.plotline.backend.controller;
 
-import com.plaid.client.request.PlaidApi;
-import com.plaid.client.model.*;
-import com.plaid.client.model.TransactionsSyncRequestOptions;
-import com.plotline.backend.categorize.Categorizer;
-import com.plotline.backend.costs.CostsWriter;
-import com.plotline.backend.plaid.PlaidCursorStore;
-import com.plotline.backend.plaid.TokenStore;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plotline.backend.plaid.PlaidSyncScheduler;
+import com.plotline.backend.plaid.PlaidSyncService;
+import com.plotline.backend.plaid.PlaidWebhookVerifier;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/plaid")
 public class PlaidSyncController {
-  private final PlaidApi plaid;
-  private final TokenStore tokenStore;
-  private final PlaidCursorStore cursorStore;
-  private final Categorizer categorizer;
-  private final CostsWriter costsWriter;
-
-  public PlaidSyncController(
-      PlaidApi plaid,
-      TokenStore tokenStore,
-      PlaidCursorStore cursorStore,
-      Categorizer categorizer,
-      CostsWriter costsWriter
-  ) {
-    this.plaid = plaid;
-    this.tokenStore = tokenStore;
-    this.cursorStore = cursorStore;
-    this.categorizer = categorizer;
-    this.costsWriter = costsWriter;
+  private final PlaidSyncService plaidSyncService;
+  private final ObjectProvider<PlaidSyncScheduler> scheduler;
+  private final PlaidWebhookVerifier webhookVerifier;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final long freshMs;
+
+  public PlaidSyncController(PlaidSyncService plaidSyncService,
+                             ObjectProvider<PlaidSyncScheduler> scheduler,
+                             PlaidWebhookVerifier webhookVerifier,
+                             @Value("${plaid.sync.fresh-seconds:300}") long freshSeconds) {
+    this.plaidSyncService = plaidSyncService;
+    this.scheduler = scheduler;
+    this.webhookVerifier = webhookVerifier;
+    this.freshMs = freshSeconds * 1000;
   }
 
-@PostMapping("/sync")
-public ResponseEntity<?> sync(@RequestBody Map<String, Object> body) {
-  try {
-    String username = (String) body.get("username");
-    @SuppressWarnings("unchecked")
-    List<String> accountIdsFilter = (List<String>) body.get("account_ids");
-
-    Map<String, String> tokens = tokenStore.listAccessTokens(username);
-    if (tokens.isEmpty()) {
-      return ResponseEntity.badRequest().body(Map.of("error", "no linked items"));
-    }
-
-    int totalAdded = 0, totalModified = 0, totalRemoved = 0, daysUpdated = 0;
-    List<Map<String,Object>> uncategorized = new ArrayList<>();
-
-    for (Map.Entry<String, String> entry : tokens.entrySet()) {
-      final String itemId = entry.getKey();
-      final String accessToken = entry.getValue();
-
-      // decide which account IDs we care about
-      List<String> targetAccountIds =
-          (accountIdsFilter != null && !accountIdsFilter.isEmpty())
-              ? accountIdsFilter
-              : tokenStore.getSelectedAccounts(username, itemId);
-
-      String cursor = cursorStore.getCursor(username, itemId);
-      boolean hasMore = true;
-
-      List<Transaction> added = new ArrayList<>();
-      List<Transaction> modified = new ArrayList<>();
-      List<RemovedTransaction> removed = new ArrayList<>();
-
-      while (hasMore) {
-        TransactionsSyncRequest req = new TransactionsSyncRequest()
-            .accessToken(accessToken)
-            .cursor(cursor);
-        // NOTE: no accountId/accountIds on the request – filter client-side below
-
-        // Ask Plaid to include Personal Finance Categories in the response
-        TransactionsSyncRequestOptions opts = new TransactionsSyncRequestOptions();
-        opts.setIncludePersonalFinanceCategory(Boolean.TRUE);  // or opts.includePersonalFinanceCategory(true) on some versions
-        req.setOptions(opts);
-
-        TransactionsSyncResponse res = plaid.transactionsSync(req).execute().body();
-        if (res == null) break;
-
-        added.addAll(res.getAdded());
-        modified.addAll(res.getModified());
-        removed.addAll(res.getRemoved());
-
-        cursor = res.getNextCursor();
-        hasMore = Boolean.TRUE.equals(res.getHasMore());
-      }
-
-      // Save per-item cursor here (it's in scope)
-      cursorStore.saveCursor(username, itemId, cursor);
-
-      // If caller selected accounts, filter results here
-      if (targetAccountIds != null && !targetAccountIds.isEmpty()) {
-        added.removeIf(t -> !targetAccountIds.contains(t.getAccountId()));
-        modified.removeIf(t -> !targetAccountIds.contains(t.getAccountId()));
-        removed.removeIf(t -> !targetAccountIds.contains(t.getAccountId()));
-      }
-
-      // Aggregate only categorized; collect uncategorized to return to client
-      Map<String, Map<String, Double>> dayMap = new LinkedHashMap<>();
-
-      for (Transaction t : added) {
-        if (Boolean.TRUE.equals(t.getPending())) continue;
-        if (cursorStore.hasSeenTxn(username, itemId, t.getTransactionId())) continue;
-        double amount = t.getAmount().doubleValue();
-        if (amount == 0.0) continue;
-
-        String bucket = categorizer.map(username, t);
-        if (bucket == null || bucket.isBlank() || "UNCATEGORIZED".equalsIgnoreCase(bucket)) {
-          uncategorized.add(Map.of(
-              "id", t.getTransactionId(),
-              "date", t.getDate().toString(),
-              "name", t.getName(),
-              "amount", amount,
-              "accountId", t.getAccountId()
-          ));
-        } else {
-          String date = t.getDate().toString();
-          Map<String, Double> cats = dayMap.computeIfAbsent(date, k -> new LinkedHashMap<>());
-          cats.put(bucket, round2(cats.getOrDefault(bucket, 0.0) + amount));
-          cursorStore.markSeenTxn(username, itemId, t.getTransactionId());
-          totalAdded++;
-        }
-      }
-
-      for (Transaction t : modified) {
-        if (Boolean.TRUE.equals(t.getPending())) continue;
-        double amount = t.getAmount().doubleValue();
-        if (amount == 0.0) continue;
-
-        String bucket = bucketFromPlaidOrFallback(username, t);
-        if (bucket == null || bucket.isBlank() || "UNCATEGORIZED".equalsIgnoreCase(bucket)) {
-          uncategorized.add(Map.of(
-              "id", t.getTransactionId(),
-              "date", t.getDate().toString(),
-              "name", t.getName(),
-              "amount", amount,
-              "accountId", t.getAccountId()
-          ));
-        } else {
-          String date = t.getDate().toString();
-          Map<String, Double> cats = dayMap.computeIfAbsent(date, k -> new LinkedHashMap<>());
-          cats.put(bucket, round2(cats.getOrDefault(bucket, 0.0) + amount));
-          totalModified++;
-        }
+  @PostMapping("/sync")
+  public ResponseEntity<?> sync(@RequestBody Map<String, Object> body) {
+    try {
+      String username = (String) body.get("username");
+      @SuppressWarnings("unchecked")
+      List<String> accountIdsFilter = (List<String>) body.get("account_ids");
+
+      // with background sync on, items synced in the last fresh-seconds answer from their last run
+      // instead of calling Plaid again; an account filter always asks Plaid
+      long fresh = accountIdsFilter == null && scheduler.getIfAvailable() != null ? freshMs : 0;
+
+      // items sync in parallel; a slow or failing bank shows up in "items" without holding back the rest
+      PlaidSyncService.SyncResult result = plaidSyncService.sync(username, accountIdsFilter, fresh);
+      if (result == null) {
+        return ResponseEntity.badRequest().body(Map.of("error", "no linked items"));
       }
 
-      for (var e : dayMap.entrySet()) {
-        if (e.getValue().isEmpty()) continue;
-        String dayIso = e.getKey();
-        Map<String, Double> costs = e.getValue();
-        costsWriter.mergeDated(username, "weekly",  dayIso, costs);
-        costsWriter.mergeDated(username, "monthly", dayIso, costs);
-        daysUpdated++;
-      }
-
-      totalRemoved += removed.size();
+      return ResponseEntity.ok(Map.of(
+          "added", result.added(),
+          "modified", result.modified(),
+          "removed", result.removed(),
+          "daysUpdated", result.daysUpdated(),
+          "uncategorized", result.uncategorized(),
+          "items", result.items()
+      ));
+    } catch (Exception e) {
+      e.printStackTrace();
+      return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
     }
-
-    return ResponseEntity.ok(Map.of(
-        "added", totalAdded,
-        "modified", totalModified,
-        "removed", totalRemoved,
-        "daysUpdated", daysUpdated,
-        "uncategorized", uncategorized
-    ));
-  } catch (Exception e) {
-    e.printStackTrace();
-    return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
   }
-}
-
 
+  // Plaid retries anything that isn't a quick 2xx, so this only queues the sync and answers.
+  // The body stays raw bytes until verified: the signature covers exactly what was sent.
+  @PostMapping("/webhook")
+  public ResponseEntity<?> webhook(@RequestHeader(value = "Plaid-Verification", required = false) String verification,
+                                   @RequestBody byte[] raw) {
+    if (!webhookVerifier.verify(verification, raw)) {
+      return ResponseEntity.status(401).body(Map.of("error", "invalid webhook signature"));
+    }
+    Map<String, Object> body;
+    try {
+      body = objectMapper.readValue(raw, new TypeReference<Map<String, Object>>() {});
+    } catch (IOException e) {
+      return ResponseEntity.badRequest().body(Map.of("error", "invalid webhook body"));
+    }
 
-  private static double round2(double v) { return Math.round(v * 100.0) / 100.0; }
+    String type = (String) body.get("webhook_type");
+    String code = (String) body.get("webhook_code");
+    String itemId = (String) body.get("item_id");
 
-  private String bucketFromPlaidOrFallback(String username, Transaction t) {
-    PersonalFinanceCategory pfc = t.getPersonalFinanceCategory();
-    if (pfc != null) {
-      String detailed = pfc.getDetailed();
-      String primary  = pfc.getPrimary();
-      if (detailed != null && !detailed.isBlank()) return detailed;  // e.g., "COFFEE_SHOP"
-      if (primary  != null && !primary.isBlank())  return primary;   // e.g., "FOOD_AND_DRINK"
+    boolean queued = false;
+    PlaidSyncScheduler s = scheduler.getIfAvailable();
+    if (s != null && itemId != null && "TRANSACTIONS".equals(type) && "SYNC_UPDATES_AVAILABLE".equals(code)) {
+      queued = s.requestSync(itemId);
     }
-    // Fallback to your existing heuristic
-    return categorizer.map(username, t);
+    return ResponseEntity.ok(Map.of("queued", queued));
   }
 }
@@ -4,6 +4,7 @@ package com.plotline.backend.controller;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -41,15 +42,14 @@ public class ProfileController {
     }
 
     @GetMapping("/get-user")
-    public ResponseEntity<UserProfile> getProfile(@RequestParam String username) {
-        UserProfile profile = userProfileService.getProfile(username);
-
-        if (profile == null) {
-            System.out.println("Profile not found");
-            return ResponseEntity.badRequest().body(null);
-        }
-
-        return ResponseEntity.ok(profile);
+    public CompletableFuture<ResponseEntity<UserProfile>> getProfile(@RequestParam String username) {
+        return userProfileService.getProfileAsync(username).thenApply(profile -> {
+            if (profile == null) {
+                System.out.println("Profile not found");
+                return ResponseEntity.badRequest().body(null);
+            }
+            return ResponseEntity.ok(profile);
+        });
     }
 
     @GetMapping("/get-phone")
@@ -97,7 +97,8 @@ public class ProfileController {
         @RequestParam String trophyId,
         @RequestParam int amount
     ) throws Exception {
-        return userProfileService.incrementTrophy(username, trophyId, amount);
+        userProfileService.incrementTrophy(username, trophyId, amount);
+        return userProfileService.getTrophies(username);
     }
 
     @PostMapping("/create-default-trophies")
@@ -7,6 +7,7 @@ import com.plaid.client.model.TransactionsGetRequest;
 import com.plaid.client.model.TransactionsGetRequestOptions;
 import com.plaid.client.model.TransactionsGetResponse;
 import com.plaid.client.request.PlaidApi;
+import com.plotline.backend.costs.Money;
 import com.plotline.backend.dto.RecurringChargePrompt;
 import com.plotline.backend.dto.RecurringChargeRequest;
 import com.plotline.backend.dto.RecurringSnoozeRequest;
@@ -87,8 +88,8 @@ public class RecurringChargeController {
                 YearMonth prevMonth = months.get(months.size() - 2);
                 if (!prevMonth.plusMonths(1).equals(lastMonth)) continue;
 
-                double avgLast = avgAmount(byMonth.get(lastMonth));
-                double avgPrev = avgAmount(byMonth.get(prevMonth));
+                long avgLast = avgCents(byMonth.get(lastMonth));
+                long avgPrev = avgCents(byMonth.get(prevMonth));
                 if (!withinDrift(avgPrev, avgLast, 0.05)) continue;
 
                 LocalDate lastSeen = list.stream()
@@ -104,13 +105,7 @@ public class RecurringChargeController {
                     } catch (Exception ignored) { }
                 }
 
-                double avg = byMonth.values().stream()
-                        .flatMap(List::stream)
-                        .map(RecurringChargeRequest.ChargeEvent::getAmount)
-                        .filter(Objects::nonNull)
-                        .mapToDouble(Double::doubleValue)
-                        .average()
-                        .orElse(0.0);
+                long avg = avgCents(list);
 
                 String prettyName = entry.getValue().get(0).getName();
                 int day = lastSeen.getDayOfMonth();
@@ -119,7 +114,7 @@ public class RecurringChargeController {
                 prompts.add(new RecurringChargePrompt(
                         key,
                         prettyName,
-                        round2(avg),
+                        Money.toDollars(avg),
                         day,
                         chain,
                         lastSeen.format(ISO),
@@ -207,23 +202,24 @@ public class RecurringChargeController {
         return name == null ? "" : name.trim().toLowerCase();
     }
 
-    private static double round2(double v) { return Math.round(v * 100.0) / 100.0; }
-
-    private double avgAmount(List<RecurringChargeRequest.ChargeEvent> list) {
-        if (list == null || list.isEmpty()) return 0.0;
-        return list.stream()
-                .map(RecurringChargeRequest.ChargeEvent::getAmount)
-                .filter(Objects::nonNull)
-                .mapToDouble(Double::doubleValue)
-                .average()
-                .orElse(0.0);
+    // summed as cents and rounded once, so the average doesn't depend on double summation order
+    private long avgCents(List<RecurringChargeRequest.ChargeEvent> list) {
+        if (list == null || list.isEmpty()) return 0L;
+        long sum = 0;
+        int count = 0;
+        for (RecurringChargeRequest.ChargeEvent ev : list) {
+            if (ev.getAmount() == null) continue;
+            sum += Money.toCents(ev.getAmount());
+            count++;
+        }
+        return count == 0 ? 0L : Math.round((double) sum / count);
     }
 
-    private boolean withinDrift(double a, double b, double pct) {
+    private boolean withinDrift(long a, long b, double pct) {
         if (a == 0 || b == 0) return false;
-        double diff = Math.abs(a - b);
-        double base = Math.max(Math.abs(a), Math.abs(b));
-        return (diff / base) <= pct;
+        long diff = Math.abs(a - b);
+        long base = Math.max(Math.abs(a), Math.abs(b));
+        return ((double) diff / base) <= pct;
     }
 
     private int trailingChain(List<YearMonth> months) {
@@ -174,8 +174,11 @@ public class WeeklyGoalsController {
   }
 
   @GetMapping("/friends-feed/{username}")
-  public ResponseEntity<List<FriendPost>> getFriendsFeed(@PathVariable String username) {
-    List<FriendPost> feed = friendsFeedService.getFriendsFeed(username);
+  public ResponseEntity<List<FriendPost>> getFriendsFeed(
+      @PathVariable String username,
+      @RequestParam(required = false) Long before,
+      @RequestParam(required = false) Integer limit) {
+    List<FriendPost> feed = friendsFeedService.getFriendsFeed(username, before, limit);
     return ResponseEntity.ok(feed);
   }
 
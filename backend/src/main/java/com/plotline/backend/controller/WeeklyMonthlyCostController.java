@@ -2,17 +2,25 @@ package com.plotline.backend.controller;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plotline.backend.costs.Money;
+import com.plotline.backend.costs.MonthlyFeedbackService;
+import com.plotline.backend.costs.ReceiptJobService;
+import com.plotline.backend.costs.SpendingImporter;
+import com.plotline.backend.costs.SpendingLedger;
 import com.plotline.backend.dto.WeeklyMonthlyCostRequest;
 import com.plotline.backend.service.S3Service;
-import com.plotline.backend.service.OpenAIService;
 import static com.plotline.backend.util.UsernameUtils.normalize;
 
 import io.jsonwebtoken.io.IOException;
+import jakarta.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.http.MediaType;
 
@@ -23,11 +31,11 @@ import java.time.LocalDate;
 import java.time.temporal.ChronoField;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import java.util.Objects;
 import java.util.LinkedHashMap;
 import java.util.Iterator;
+import java.util.concurrent.RejectedExecutionException;
 
 import java.time.DayOfWeek;
 import java.time.YearMonth;
@@ -44,10 +52,19 @@ public class WeeklyMonthlyCostController {
     private S3Service s3Service;
 
     @Autowired
-    private OpenAIService openAIService;
+    private MonthlyFeedbackService monthlyFeedbackService;
 
     @Autowired
-    private com.plotline.backend.service.UserProfileService userProfileService;
+    private SpendingLedger spendingLedger;
+
+    @Autowired
+    private SpendingImporter spendingImporter;
+
+    @Autowired
+    private ReceiptJobService receiptJobService;
+
+    // upload-receipt waits this long for its job before answering 202 with the job id
+    private static final long RECEIPT_WAIT_MS = 60_000;
 
     @PostMapping
     public ResponseEntity<String> saveWeeklyMonthlyCosts(@RequestBody WeeklyMonthlyCostRequest request) {
@@ -115,66 +132,96 @@ public class WeeklyMonthlyCostController {
         }
     }
 
+    /**
+     * Queues the receipt and answers with the analyzed costs once its job
+     * finishes. The request thread is released while the job waits and runs;
+     * if it takes longer than the async timeout the job id comes back with a
+     * 202 and the client polls GET /receipts/{username}/{jobId}.
+     */
     @PostMapping("/upload-receipt")
-    public ResponseEntity<Map<String, Object>> handleReceiptUpload(
+    public DeferredResult<ResponseEntity<Map<String, Object>>> handleReceiptUpload(
             @RequestParam("image") MultipartFile image,
             @RequestParam("username") String username,
             @RequestParam(value = "date", required = false) String dateStr) {
+        DeferredResult<ResponseEntity<Map<String, Object>>> deferred = new DeferredResult<>(RECEIPT_WAIT_MS);
+        ReceiptJobService.ReceiptJob job;
         try {
-            String normUser = normalize(username);
-
-            // Convert image to base64 for GPT-4o Vision
-            byte[] imageBytes = image.getBytes();
-            String base64Image = java.util.Base64.getEncoder().encodeToString(imageBytes);
-
-            System.out.println("Sending receipt image to GPT-4o Vision (size: " + imageBytes.length + " bytes)");
-
-            // Use GPT-4o Vision to analyze the receipt directly (much more accurate than OCR)
-            String response = openAIService.analyzeReceiptFromImage(base64Image);
-            System.out.println("GPT-4o Vision Response:\n" + response);
-
-            // Clean up response to parse (remove markdown code blocks if present)
-            String cleanedJson = response
-                .replaceAll("(?s)```json\\s*", "")  // remove ```json
-                .replaceAll("(?s)```", "")          // remove closing ```
-                .trim();
-
-            // Parse the JSON result
-            Map<String, Object> result = new ObjectMapper().readValue(cleanedJson, new TypeReference<>() {});
+            job = receiptJobService.submit(username, image.getBytes(), receiptDate(dateStr));
+        } catch (Exception e) {
+            deferred.setResult(receiptSubmitError(e));
+            return deferred;
+        }
 
-            // Check for error in response
-            if (result.containsKey("error")) {
-                return ResponseEntity.status(500).body(result);
+        deferred.onTimeout(() -> deferred.setResult(ResponseEntity.accepted().body(jobView(job))));
+        receiptJobService.whenFinished(job.id()).thenAccept(done -> {
+            ReceiptJobService.ReceiptJob finished = done != null ? done : receiptJobService.get(username, job.id());
+            if (finished != null && finished.status() == ReceiptJobService.Status.DONE) {
+                // _jobId lets the client undo from the stored result
+                Map<String, Object> body = new HashMap<>(finished.result());
+                body.put("_jobId", finished.id());
+                deferred.setResult(ResponseEntity.ok(body));
+            } else {
+                Map<String, Object> error = new HashMap<>();
+                error.put("error", finished != null ? finished.error() : "receipt job not found");
+                deferred.setResult(ResponseEntity.status(500).body(error));
             }
+        });
+        return deferred;
+    }
 
-            // Extract numeric values for updating costs
-            Map<String, Double> parsed = result.entrySet().stream()
-                    .filter(e -> e.getValue() instanceof Number)
-                    .map(e -> Map.entry(e.getKey(), ((Number) e.getValue()).doubleValue()))
-                    .filter(e -> e.getValue() > 0) // prevent 0 values from being passed into updates
-                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-            // Update both weekly and monthly dated costs (use client date if provided)
-            LocalDate today = (dateStr != null && !dateStr.isBlank())
-                ? LocalDate.parse(dateStr)
-                : LocalDate.now();
-            updateDatedCosts(normUser, "weekly", today, parsed);
-            updateDatedCosts(normUser, "monthly", today, parsed);
+    /** POST /api/costs/receipts, same form as upload-receipt, answers 202 with the job id straight away */
+    @PostMapping("/receipts")
+    public ResponseEntity<Map<String, Object>> submitReceipt(
+            @RequestParam("image") MultipartFile image,
+            @RequestParam("username") String username,
+            @RequestParam(value = "date", required = false) String dateStr) {
+        try {
+            ReceiptJobService.ReceiptJob job = receiptJobService.submit(username, image.getBytes(), receiptDate(dateStr));
+            return ResponseEntity.accepted().body(jobView(job));
+        } catch (Exception e) {
+            return receiptSubmitError(e);
+        }
+    }
 
-            System.out.println("Receipt processed successfully: " + result);
+    /** GET /api/costs/receipts/{username}/{jobId}, the job's status and, once DONE, its result */
+    @GetMapping("/receipts/{username}/{jobId}")
+    public ResponseEntity<Map<String, Object>> getReceiptJob(@PathVariable String username, @PathVariable String jobId) {
+        try {
+            ReceiptJobService.ReceiptJob job = receiptJobService.get(username, jobId);
+            if (job == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "No such receipt job"));
+            }
+            return ResponseEntity.ok(jobView(job));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
 
-            // Return the parsed costs so iOS can use them for undo/edit
-            Map<String, Object> responseWithMeta = new HashMap<>(result);
-            responseWithMeta.put("_addedCosts", parsed);
-            responseWithMeta.put("_date", today.toString());
-            return ResponseEntity.ok(responseWithMeta);
+    private static LocalDate receiptDate(String dateStr) {
+        // use client date if provided
+        return (dateStr != null && !dateStr.isBlank()) ? LocalDate.parse(dateStr) : LocalDate.now();
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            Map<String, Object> error = new HashMap<>();
-            error.put("error", e.getMessage());
-            return ResponseEntity.status(500).body(error);
+    private static ResponseEntity<Map<String, Object>> receiptSubmitError(Exception e) {
+        Map<String, Object> error = new HashMap<>();
+        if (e instanceof RejectedExecutionException) {
+            error.put("error", "Too many receipts are being processed, try again shortly");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "5").body(error);
         }
+        e.printStackTrace();
+        error.put("error", e.getMessage());
+        return ResponseEntity.status(500).body(error);
+    }
+
+    private static Map<String, Object> jobView(ReceiptJobService.ReceiptJob job) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("jobId", job.id());
+        view.put("status", job.status());
+        view.put("attempts", job.attempts());
+        view.put("undone", job.undone());
+        if (job.error() != null) view.put("error", job.error());
+        if (job.result() != null) view.put("result", job.result());
+        return view;
     }
 
     private void overwriteCosts(String username, String type,
@@ -240,89 +287,6 @@ public class WeeklyMonthlyCostController {
         }
     }
 
-    /**
-     * Update dated costs (weekly or monthly) by adding delta values.
-     * This creates the category if it doesn't exist.
-     */
-    private void updateDatedCosts(String username, String type, LocalDate date, Map<String, Double> delta) {
-        try {
-            String periodKey = "weekly".equalsIgnoreCase(type) ? weekKey(date) : monthKey(date);
-            String key = "users/%s/costs/%s/%s.json".formatted(username, type.toLowerCase(), periodKey);
-
-            System.out.println("[DEBUG] updateDatedCosts: Loading from S3 key: " + key);
-            Map<String, Object> period = loadJsonOrEmpty(key);
-            System.out.println("[DEBUG] Loaded period: " + period);
-
-            // Initialize fields if new
-            period.putIfAbsent("periodKey", periodKey);
-            period.putIfAbsent("days", new LinkedHashMap<String, Object>());
-            period.putIfAbsent("totals", new LinkedHashMap<String, Object>());
-
-            @SuppressWarnings("unchecked")
-            Map<String, Object> days = (Map<String, Object>) period.get("days");
-            @SuppressWarnings("unchecked")
-            Map<String, Object> totals = (Map<String, Object>) period.get("totals");
-
-            System.out.println("[DEBUG] Current totals before update: " + totals);
-
-            String dayKey = date.toString();
-            @SuppressWarnings("unchecked")
-            Map<String, Object> dayCostsRaw = (Map<String, Object>) days.getOrDefault(dayKey, new LinkedHashMap<>());
-
-            System.out.println("[DEBUG] Current day costs for " + dayKey + ": " + dayCostsRaw);
-            System.out.println("[DEBUG] Delta to add: " + delta);
-
-            // Add delta to existing values (or create new categories)
-            for (var entry : delta.entrySet()) {
-                String cat = entry.getKey();
-                double addAmount = round2(entry.getValue());
-
-                // Add to day's costs (handle Integer or Double from Jackson)
-                double currentDay = 0.0;
-                Object dayVal = dayCostsRaw.get(cat);
-                if (dayVal instanceof Number) {
-                    currentDay = round2(((Number) dayVal).doubleValue());
-                }
-                double newDayVal = round2(currentDay + addAmount);
-                System.out.println("[DEBUG] " + cat + ": currentDay=" + currentDay + " + addAmount=" + addAmount + " = " + newDayVal);
-                dayCostsRaw.put(cat, newDayVal);
-
-                // Add to totals (handle Integer or Double from Jackson)
-                double currentTotal = 0.0;
-                Object totalVal = totals.get(cat);
-                if (totalVal instanceof Number) {
-                    currentTotal = round2(((Number) totalVal).doubleValue());
-                }
-                double newTotalVal = round2(currentTotal + addAmount);
-                System.out.println("[DEBUG] " + cat + " totals: current=" + currentTotal + " + add=" + addAmount + " = " + newTotalVal);
-                totals.put(cat, newTotalVal);
-            }
-
-            days.put(dayKey, dayCostsRaw);
-
-            System.out.println("[DEBUG] Final totals after update: " + totals);
-            System.out.println("[DEBUG] Final day costs: " + dayCostsRaw);
-
-            // Store start/end for weekly/monthly
-            if ("weekly".equalsIgnoreCase(type)) {
-                LocalDate start = date.minusDays((date.getDayOfWeek().getValue() % 7));
-                LocalDate end = start.plusDays(6);
-                period.put("start", start.toString());
-                period.put("end", end.toString());
-            } else {
-                YearMonth ym = YearMonth.from(date);
-                period.put("start", ym.atDay(1).toString());
-                period.put("end", ym.atEndOfMonth().toString());
-            }
-
-            saveJson(key, period);
-            System.out.println("Updated " + type + " costs for " + username + ": " + delta);
-        } catch (Exception e) {
-            System.err.println("updateDatedCosts error: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
     @PostMapping("/merge")
         public ResponseEntity<String> merge(@RequestBody WeeklyMonthlyCostRequest req){
         try {
@@ -357,8 +321,8 @@ public class WeeklyMonthlyCostController {
                 }
             }
 
-            // Use updateDatedCosts which ADDS to existing values
-            updateDatedCosts(username, type, date, delta);
+            // Appended to the ledger, so it ADDS to existing values
+            spendingLedger.add(username, date, Money.toCents(delta), SpendingLedger.viewOf(type));
 
             return ResponseEntity.ok(Map.of("success", true, "added", delta));
         } catch (Exception e) {
@@ -369,28 +333,33 @@ public class WeeklyMonthlyCostController {
 
     /**
      * Undo/subtract costs from dated weekly AND monthly costs.
-     * Used by receipt undo functionality.
+     * Used by receipt undo functionality, either with the costs or a receipt jobId.
      */
     @PostMapping("/undo-receipt")
     public ResponseEntity<?> undoReceiptCosts(@RequestBody Map<String, Object> body) {
         try {
             String username = normalize(String.valueOf(body.get("username")));
+
+            // with a jobId the costs come from the stored job result, and a repeated undo is a no-op
+            if (body.get("jobId") != null) {
+                ReceiptJobService.ReceiptJob job = receiptJobService.undo(username, String.valueOf(body.get("jobId")));
+                if (job == null) {
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "No such receipt job"));
+                }
+                if (!job.undone()) {
+                    return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "Receipt job is " + job.status()));
+                }
+                return ResponseEntity.ok(Map.of("success", true, "message", "Receipt costs undone"));
+            }
+
             String dateStr = String.valueOf(body.getOrDefault("date", LocalDate.now().toString()));
             @SuppressWarnings("unchecked")
             Map<String, Number> costs = (Map<String, Number>) body.get("costs");
 
             LocalDate date = LocalDate.parse(dateStr);
 
-            // Convert to double map with negative values for subtraction
-            Map<String, Double> negativeDelta = new HashMap<>();
-            for (var e : costs.entrySet()) {
-                double val = e.getValue() == null ? 0.0 : e.getValue().doubleValue();
-                negativeDelta.put(e.getKey(), -val);
-            }
-
-            // Subtract from both weekly and monthly
-            subtractDatedCosts(username, "weekly", date, negativeDelta);
-            subtractDatedCosts(username, "monthly", date, negativeDelta);
+            // Subtract from both weekly and monthly (never below 0)
+            spendingLedger.subtract(username, date, Money.toCents(costs), SpendingLedger.ALL_VIEWS);
 
             return ResponseEntity.ok(Map.of("success", true, "message", "Receipt costs undone"));
         } catch (Exception e) {
@@ -399,67 +368,6 @@ public class WeeklyMonthlyCostController {
         }
     }
 
-    /**
-     * Subtract costs from dated file (for undo). Prevents negative values.
-     */
-    private void subtractDatedCosts(String username, String type, LocalDate date, Map<String, Double> negativeDelta) {
-        try {
-            String periodKey = "weekly".equalsIgnoreCase(type) ? weekKey(date) : monthKey(date);
-            String key = "users/%s/costs/%s/%s.json".formatted(username, type.toLowerCase(), periodKey);
-
-            Map<String, Object> period = loadJsonOrEmpty(key);
-            if (period.isEmpty()) return; // Nothing to subtract from
-
-            @SuppressWarnings("unchecked")
-            Map<String, Object> days = (Map<String, Object>) period.get("days");
-            @SuppressWarnings("unchecked")
-            Map<String, Object> totals = (Map<String, Object>) period.get("totals");
-
-            if (days == null || totals == null) return;
-
-            String dayKey = date.toString();
-            @SuppressWarnings("unchecked")
-            Map<String, Object> dayCosts = (Map<String, Object>) days.getOrDefault(dayKey, new LinkedHashMap<>());
-
-            for (var entry : negativeDelta.entrySet()) {
-                String cat = entry.getKey();
-                double subtractAmount = Math.abs(entry.getValue()); // Make positive for subtraction
-
-                // Subtract from day's costs (don't go below 0) - handle Integer or Double
-                double currentDay = 0.0;
-                Object dayVal = dayCosts.get(cat);
-                if (dayVal instanceof Number) {
-                    currentDay = ((Number) dayVal).doubleValue();
-                }
-                double newDay = Math.max(0, round2(currentDay - subtractAmount));
-                if (newDay == 0) {
-                    dayCosts.remove(cat);
-                } else {
-                    dayCosts.put(cat, newDay);
-                }
-
-                // Subtract from totals (don't go below 0) - handle Integer or Double
-                double currentTotal = 0.0;
-                Object totalVal = totals.get(cat);
-                if (totalVal instanceof Number) {
-                    currentTotal = ((Number) totalVal).doubleValue();
-                }
-                double newTotal = Math.max(0, round2(currentTotal - subtractAmount));
-                if (newTotal == 0) {
-                    totals.remove(cat);
-                } else {
-                    totals.put(cat, newTotal);
-                }
-            }
-
-            days.put(dayKey, dayCosts);
-            saveJson(key, period);
-            System.out.println("Subtracted " + type + " costs for " + username + ": " + negativeDelta);
-        } catch (Exception e) {
-            System.err.println("subtractDatedCosts error: " + e.getMessage());
-        }
-    }
-
     // Calander format for weekly costs
     private static String weekKey(LocalDate date) {
         // Sunday-based week example
@@ -483,20 +391,7 @@ public class WeeklyMonthlyCostController {
         try {
             String normUser = normalize(username);
             LocalDate start = LocalDate.parse(weekStart);
-            // normalize to the server’s concept of week, then build the key
-            WeekFields wf = WeekFields.SUNDAY_START;
-            String keyPart = weekKey(start);
-            String s3Key = "users/%s/costs/weekly/%s.json".formatted(normUser, keyPart);
-
-            Map<String,Object> period = loadJsonOrEmpty(s3Key);
-            // If empty, seed a minimal object so the client can render
-            period.putIfAbsent("periodKey", keyPart);
-            period.putIfAbsent("start", start.toString());
-            period.putIfAbsent("end", start.plusDays(6).toString());
-            period.putIfAbsent("days", new LinkedHashMap<String, Map<String, Double>>());
-            period.putIfAbsent("totals", new LinkedHashMap<String, Double>());
-
-            return ResponseEntity.ok(period);
+            return ResponseEntity.ok(periodView(normUser, "weekly", start));
         } catch (Exception e) {
             return ResponseEntity.status(500).body("weekly fetch failed: " + e.getMessage());
         }
@@ -511,17 +406,7 @@ public class WeeklyMonthlyCostController {
         try {
             String normUser = normalize(username);
             YearMonth ym = YearMonth.parse(month);
-            String keyPart = String.format("%04d-%02d", ym.getYear(), ym.getMonthValue());
-            String s3Key = "users/%s/costs/monthly/%s.json".formatted(normUser, keyPart);
-
-            Map<String,Object> period = loadJsonOrEmpty(s3Key);
-            period.putIfAbsent("periodKey", keyPart);
-            period.putIfAbsent("start", ym.atDay(1).toString());
-            period.putIfAbsent("end", ym.atEndOfMonth().toString());
-            period.putIfAbsent("days", new LinkedHashMap<String, Map<String, Double>>());
-            period.putIfAbsent("totals", new LinkedHashMap<String, Double>());
-
-            return ResponseEntity.ok(period);
+            return ResponseEntity.ok(periodView(normUser, "monthly", ym.atDay(1)));
         } catch (Exception e) {
             return ResponseEntity.status(500).body("monthly fetch failed: " + e.getMessage());
         }
@@ -541,71 +426,11 @@ public class WeeklyMonthlyCostController {
             Map<String, Number> costs = (Map<String, Number>) body.get("costs");
 
             LocalDate date = LocalDate.parse(dateStr);
-            String periodKey = "weekly".equalsIgnoreCase(type) ? weekKey(date) : monthKey(date);
-
-            String key = "users/%s/costs/%s/%s.json".formatted(username, type.toLowerCase(), periodKey);
-            Map<String, Object> period = loadJsonOrEmpty(key);
-
-            // init fields if new
-            period.putIfAbsent("periodKey", periodKey);
-            period.putIfAbsent("days", new LinkedHashMap<String, Object>());
-            period.putIfAbsent("totals", new LinkedHashMap<String, Object>());
-
-            @SuppressWarnings("unchecked")
-            Map<String, Object> days = (Map<String, Object>) period.get("days");
-            @SuppressWarnings("unchecked")
-            Map<String, Object> totals = (Map<String, Object>) period.get("totals");
-
-            String dayKey = date.toString();
-            @SuppressWarnings("unchecked")
-            Map<String, Object> dayCosts = (Map<String, Object>) days.getOrDefault(dayKey, new LinkedHashMap<>());
-
-            // merge
-            for (var e : costs.entrySet()) {
-                String cat = e.getKey();
-                double incoming = e.getValue() == null ? 0.0 : round2(e.getValue().doubleValue());
-
-                // Handle Integer or Double from Jackson
-                double prev = 0.0;
-                Object prevVal = dayCosts.get(cat);
-                if (prevVal instanceof Number) {
-                    prev = round2(((Number) prevVal).doubleValue());
-                }
-                double delta = round2(incoming - prev);
-
-                if (incoming == 0.0) {
-                    // treat zero as "clear this category for the day"
-                    if (prev != 0.0) {
-                        dayCosts.remove(cat);
-                        Object totalVal = totals.get(cat);
-                        double currentTotal = (totalVal instanceof Number) ? ((Number) totalVal).doubleValue() : 0.0;
-                        totals.put(cat, round2(currentTotal - prev));
-                    }
-                } else {
-                    dayCosts.put(cat, incoming);
-                    Object totalVal = totals.get(cat);
-                    double currentTotal = (totalVal instanceof Number) ? ((Number) totalVal).doubleValue() : 0.0;
-                    totals.put(cat, round2(currentTotal + delta));
-                }
-            }
 
-            days.put(dayKey, dayCosts);
+            // merge: incoming replaces the day's value, zero clears the category for the day
+            spendingLedger.set(username, date, Money.toCents(costs), SpendingLedger.viewOf(type));
 
-            // Store start/end for weekly/monthly
-            if ("weekly".equalsIgnoreCase(type)) {
-                // compute Sunday-start week
-                LocalDate start = date.minusDays((date.getDayOfWeek().getValue() % 7));
-                LocalDate end = start.plusDays(6);
-                period.put("start", start.toString());
-                period.put("end", end.toString());
-            } else {
-                YearMonth ym = YearMonth.from(date);
-                period.put("start", ym.atDay(1).toString());
-                period.put("end", ym.atEndOfMonth().toString());
-            }
-
-            saveJson(key, period);
-            return ResponseEntity.ok(period);
+            return ResponseEntity.ok(periodView(username, type, date));
 
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -613,156 +438,87 @@ public class WeeklyMonthlyCostController {
         }
     }
 
-    private Map<String, Object> loadJsonOrEmpty(String key) throws Exception {
+    /**
+     * POST /api/costs/import/{username}?mode=add|replace with an NDJSON or CSV body of
+     * date, category, amount rows. The body is streamed, never buffered whole.
+     */
+    @PostMapping(
+    value = "/import/{username}",
+    consumes = {"application/x-ndjson", "text/csv"},
+    produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<?> importCosts(
+            @PathVariable String username,
+            @RequestParam(name = "mode", defaultValue = "add") String mode,
+            HttpServletRequest request
+    ) {
         try {
-            byte[] raw = s3Service.downloadFile(key);
-            return new ObjectMapper().readValue(raw, new TypeReference<Map<String,Object>>() {});
+            SpendingImporter.Format format = String.valueOf(request.getContentType()).startsWith("text/csv")
+                    ? SpendingImporter.Format.CSV
+                    : SpendingImporter.Format.NDJSON;
+            SpendingImporter.Summary summary = spendingImporter.importRows(
+                    normalize(username), request.getInputStream(), format, "replace".equalsIgnoreCase(mode));
+            if (summary.aborted() != null) {
+                // rows/days in the body are what was written; an add-mode retry must leave those out
+                return ResponseEntity.status(500).body(summary);
+            }
+            return ResponseEntity.ok(summary);
         } catch (Exception e) {
-            return new LinkedHashMap<>();
-        }
-    }
-
-    private void saveJson(String key, Map<String, Object> payload) throws Exception {
-        String json = new ObjectMapper().writeValueAsString(payload);
-        try (var in = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))) {
-            s3Service.uploadFile(key, in, json.length());
+            e.printStackTrace();
+            return ResponseEntity.status(500).body(Map.of("error", "import failed: " + e.getMessage()));
         }
     }
 
-    private static double round2(double v) {
-        return Math.round(v * 100.0) / 100.0;
+    /** The weekly (Sunday start) or monthly period containing the date, materialized from the ledger. */
+    private Map<String, Object> periodView(String username, String type, LocalDate date) {
+        boolean weekly = "weekly".equalsIgnoreCase(type);
+        LocalDate start = weekly ? date.minusDays(date.getDayOfWeek().getValue() % 7) : date.withDayOfMonth(1);
+        LocalDate end = weekly ? start.plusDays(6) : YearMonth.from(date).atEndOfMonth();
+
+        Map<String, Map<String, Double>> days = new LinkedHashMap<>();
+        Map<String, Long> totalCents = new LinkedHashMap<>();
+        spendingLedger.days(username, start, end, SpendingLedger.viewOf(type)).forEach((day, cents) -> {
+            days.put(day.toString(), Money.toDollars(cents));
+            cents.forEach((cat, c) -> totalCents.merge(cat, c, Long::sum));
+        });
+
+        Map<String, Object> period = new LinkedHashMap<>();
+        period.put("periodKey", weekly ? weekKey(date) : monthKey(date));
+        period.put("start", start.toString());
+        period.put("end", end.toString());
+        period.put("days", days);
+        period.put("totals", Money.toDollars(totalCents));
+        return period;
     }
 
-    // Feedback
-    static record CatDelta(
-        String category,
-        double current,
-        double previous,
-        double delta,      // current - previous
-        Double pct         // null if previous==0
-    ) {}
-
-    static record MonthlyFeedback(
-        String month,              // "YYYY-MM"
-        String previousMonth,      // "YYYY-MM"
-        double totalCurrent,
-        double totalPrevious,
-        double totalDelta,         // current - previous
-        java.util.List<CatDelta> deltas,
-        boolean overBudget,
-        Double monthlyBudget,
-        java.util.List<CatDelta> cutbacks
-    ) {}
-
-    /** Helper: parse "YYYY-MM" and return previous month as "YYYY-MM" */
-    private static String prevMonthKey(String month) {
-        YearMonth ym = YearMonth.parse(month);
-        YearMonth pm = ym.minusMonths(1);
-        return String.format("%04d-%02d", pm.getYear(), pm.getMonthValue());
-    }
-
-    /** Helper: sum the "totals" map from a monthly period file (if missing, returns empty map). */
-    @SuppressWarnings("unchecked")
-    private Map<String, Double> readMonthlyTotalsOrEmpty(String username, String monthKey) throws Exception {
-        String s3Key = "users/%s/costs/monthly/%s.json".formatted(normalize(username), monthKey);
-        Map<String,Object> period = loadJsonOrEmpty(s3Key);
-        Object totalsObj = period.get("totals");
-        if (totalsObj instanceof Map<?,?> raw) {
-            Map<String, Double> out = new LinkedHashMap<>();
-            for (var e : raw.entrySet()) {
-                String k = String.valueOf(e.getKey());
-                Object v = e.getValue();
-                if (v instanceof Number n) out.put(k, round2(n.doubleValue()));
-            }
-            return out;
-        }
-        return new LinkedHashMap<>();
-    }
-
-    /** GET /api/costs/feedback/{username}?month=YYYY-MM  */
+    /** GET /api/costs/feedback/{username}?month=YYYY-MM, answers 304 when If-None-Match still matches */
     @GetMapping("/feedback/{username}")
     public ResponseEntity<?> getMonthlyFeedback(
             @PathVariable String username,
-            @RequestParam(name = "month") String month // "YYYY-MM"
+            @RequestParam(name = "month") String month, // "YYYY-MM"
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
         try {
-            String prev = prevMonthKey(month);
-
-            String normUser = normalize(username);
-            Map<String, Double> curTotals  = readMonthlyTotalsOrEmpty(normUser, month);
-            Map<String, Double> prevTotals = readMonthlyTotalsOrEmpty(normUser, prev);
-
-            // Union of categories
-            java.util.Set<String> cats = new java.util.TreeSet<>();
-            cats.addAll(curTotals.keySet());
-            cats.addAll(prevTotals.keySet());
-
-            java.util.List<CatDelta> deltas = new java.util.ArrayList<>();
-            double totalCur = 0.0, totalPrev = 0.0;
-
-            for (String c : cats) {
-                double cur  = round2(curTotals.getOrDefault(c, 0.0));
-                double pre  = round2(prevTotals.getOrDefault(c, 0.0));
-                double d    = round2(cur - pre);
-                Double pct  = (pre == 0.0) ? null : round2(d / pre);
-                deltas.add(new CatDelta(c, cur, pre, d, pct));
-                totalCur  += cur;
-                totalPrev += pre;
+            MonthlyFeedbackService.Snapshot snapshot = monthlyFeedbackService.feedback(username, YearMonth.parse(month));
+            if (matchesETag(ifNoneMatch, snapshot.eTag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(snapshot.eTag()).build();
             }
-            totalCur  = round2(totalCur);
-            totalPrev = round2(totalPrev);
-
-            double monthlyBudget = totalPrev; // fallback: last month spend as soft budget
-            boolean overBudget = totalCur > monthlyBudget && monthlyBudget > 0;
-
-            // Build cutback suggestions: top overspenders until we cover overage
-            double overAmount = overBudget ? round2(totalCur - monthlyBudget) : 0.0;
-            java.util.List<CatDelta> cutbacks = new java.util.ArrayList<>();
-            if (overBudget && overAmount > 0) {
-                java.util.List<CatDelta> overs = deltas.stream()
-                        .filter(d -> d.delta > 0)
-                        .sorted((a, b) -> Double.compare(b.delta, a.delta))
-                        .toList();
-                double remaining = overAmount;
-                for (CatDelta d : overs) {
-                    double take = Math.min(d.delta, remaining);
-                    cutbacks.add(new CatDelta(d.category, d.current, d.previous, round2(take), d.pct));
-                    remaining = round2(remaining - take);
-                    if (remaining <= 0) break;
-                }
-            }
-
-            MonthlyFeedback payload = new MonthlyFeedback(
-                month,
-                prev,
-                totalCur,
-                totalPrev,
-                round2(totalCur - totalPrev),
-                deltas,
-                overBudget,
-                monthlyBudget > 0 ? monthlyBudget : null,
-                cutbacks
-            );
-
-            // Trophy hooks: under-budget streak + budget pacing + healthy eating shift
-            try {
-                if (!overBudget && monthlyBudget > 0) {
-                    userProfileService.incrementTrophy(username, "monthly-budget-met", 1);
-                    if (totalCur <= monthlyBudget * 0.95) {
-                        userProfileService.incrementTrophy(username, "budget-pacer", 1);
-                    }
-                }
-                // Healthy eating: eating out down and groceries up versus last month
-                CatDelta eatOut = deltas.stream().filter(d -> d.category.toLowerCase().contains("eat")).findFirst().orElse(null);
-                CatDelta groceries = deltas.stream().filter(d -> d.category.toLowerCase().contains("groc")).findFirst().orElse(null);
-                if (eatOut != null && eatOut.delta < 0 && (groceries == null || groceries.delta >= 0)) {
-                    userProfileService.incrementTrophy(username, "healthy-eater", 1);
-                }
-            } catch (Exception ignore) { /* non-fatal */ }
-
-            return ResponseEntity.ok(payload);
+            return ResponseEntity.ok()
+                    .eTag(snapshot.eTag())
+                    .cacheControl(CacheControl.noCache())
+                    .body(snapshot.payload());
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
     }
+
+    private static boolean matchesETag(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(eTag)) return true;
+        }
+        return false;
+    }
 }
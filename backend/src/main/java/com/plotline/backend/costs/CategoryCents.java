@@ -0,0 +1,69 @@
+package com.plotline.backend.costs;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Running cent totals per category. Each category gets a slot the first time
+ * it is seen and is summed into a long[] from then on, so adding to a known
+ * category doesn't allocate. Categories keep first-seen order.
+ */
+public final class CategoryCents {
+
+  private final Map<String, Integer> slots = new HashMap<>();
+  private String[] names = new String[8];
+  private long[] sums = new long[8];
+  private int size;
+
+  public int slot(String category) {
+    Integer slot = slots.get(category);
+    if (slot != null) return slot;
+
+    if (size == names.length) {
+      names = Arrays.copyOf(names, size * 2);
+      sums = Arrays.copyOf(sums, size * 2);
+    }
+    names[size] = category;
+    slots.put(category, size);
+    return size++;
+  }
+
+  public void add(int slot, long cents) {
+    sums[slot] += cents;
+  }
+
+  public void add(String category, long cents) {
+    // slot() may grow sums, so it has to run before the array is read
+    int slot = slot(category);
+    sums[slot] += cents;
+  }
+
+  public long get(String category) {
+    Integer slot = slots.get(category);
+    return slot == null ? 0L : sums[slot];
+  }
+
+  public long total() {
+    long total = 0;
+    for (int i = 0; i < size; i++) total += sums[i];
+    return total;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public Map<String, Long> toMap() {
+    Map<String, Long> out = new LinkedHashMap<>();
+    for (int i = 0; i < size; i++) out.put(names[i], sums[i]);
+    return out;
+  }
+
+  public Map<String, Double> toDollars() {
+    Map<String, Double> out = new LinkedHashMap<>();
+    for (int i = 0; i < size; i++) out.put(names[i], Money.toDollars(sums[i]));
+    return out;
+  }
+}
@@ -1,49 +1,53 @@
 package com.plotline.backend.costs;
 
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.MediaType;
-import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Writes synced or assigned spending straight into the ledger. This used to
+ * POST every day back to /api/costs/merge-dated on this same server.
+ */
 @Component
 public class CostsWriter {
 
-  @Value("${app.baseUrl:http://localhost:8080}")
-  private String baseUrl;
+  private final SpendingLedger spendingLedger;
 
-  private final RestTemplate rest = new RestTemplate();
+  public CostsWriter(SpendingLedger spendingLedger) {
+    this.spendingLedger = spendingLedger;
+  }
 
-  /** Merge a single day into weekly/monthly files via your /api/costs/merge-dated endpoint. */
+  /** Merge a single day into the weekly or monthly view, same semantics as /api/costs/merge-dated. */
   public void mergeDated(String username, String type, String yyyyMmDd, Map<String, Double> costs) {
-    var url = baseUrl + "/api/costs/merge-dated";
-     Map<String, Object> payload = Map.of(
-        "username", username,
-        "type", type,
-        "date", yyyyMmDd,             // "YYYY-MM-DD"
-        "costs", costs
-    );
-
-    HttpHeaders headers = new HttpHeaders();
-    headers.setContentType(MediaType.APPLICATION_JSON);
-    headers.setAccept(java.util.List.of(MediaType.APPLICATION_JSON));
-
-    HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
-
-    try {
-      ResponseEntity<String> resp = rest.postForEntity(url, entity, String.class);
-      if (!resp.getStatusCode().is2xxSuccessful()) {
-        System.err.println("merge-dated non-200: " + resp.getStatusCode() +
-            " body=" + resp.getBody());
-      }
-    } catch (Exception ex) {
-      ex.printStackTrace();
-      // Log the full response if available
-      throw ex;
+    spendingLedger.set(username, LocalDate.parse(yyyyMmDd), Money.toCents(costs), SpendingLedger.viewOf(type));
+  }
+
+  /**
+   * Merge a whole "YYYY-MM-DD" -> category totals map into both the weekly
+   * and monthly views as one appended segment of set rows. Nothing is read
+   * first; readers replay the sets over whatever each day held.
+   */
+  public void mergeDays(String username, Map<String, CategoryCents> dayMap) {
+    spendingLedger.setDays(username, byDay(dayMap), SpendingLedger.ALL_VIEWS);
+  }
+
+  /**
+   * Takes a "YYYY-MM-DD" -> category totals map back out of both views, then
+   * adds another on top, in one append. For synced transactions: what a
+   * changed or removed one put in before goes out, new amounts go in.
+   */
+  public void adjustDays(String username, Map<String, CategoryCents> takenBack, Map<String, CategoryCents> added) {
+    spendingLedger.adjustDays(username, byDay(takenBack), byDay(added), SpendingLedger.ALL_VIEWS);
+  }
+
+  private static Map<LocalDate, Map<String, Long>> byDay(Map<String, CategoryCents> dayMap) {
+    Map<LocalDate, Map<String, Long>> byDay = new LinkedHashMap<>();
+    for (var e : dayMap.entrySet()) {
+      if (e.getValue().isEmpty()) continue;
+      byDay.put(LocalDate.parse(e.getKey()), e.getValue().toMap());
     }
+    return byDay;
   }
 }
@@ -0,0 +1,65 @@
+package com.plotline.backend.costs;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Money as a primitive long of cents. Amounts are converted from dollars once
+ * at the edge (request bodies, Plaid, receipts) and summed as longs from
+ * there on, so totals never pick up drift from rounding doubles at every step.
+ * CentsSerializer keeps the JSON wire format in plain dollars.
+ */
+public final class Money {
+
+  private Money() {}
+
+  public static long toCents(double dollars) {
+    return Math.round(dollars * 100.0);
+  }
+
+  public static long toCents(Number dollars) {
+    if (dollars == null) return 0L;
+    if (dollars instanceof BigDecimal exact) {
+      return exact.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+    return toCents(dollars.doubleValue());
+  }
+
+  public static double toDollars(long cents) {
+    return cents / 100.0;
+  }
+
+  /** Null amounts count as zero. */
+  public static Map<String, Long> toCents(Map<String, ? extends Number> dollars) {
+    Map<String, Long> out = new LinkedHashMap<>();
+    if (dollars != null) {
+      dollars.forEach((cat, amount) -> out.put(cat, toCents(amount)));
+    }
+    return out;
+  }
+
+  public static Map<String, Double> toDollars(Map<String, Long> cents) {
+    Map<String, Double> out = new LinkedHashMap<>();
+    cents.forEach((cat, c) -> out.put(cat, toDollars(c)));
+    return out;
+  }
+
+  /** Writes cents as the dollar number the API has always sent, e.g. 1234 -> 12.34. */
+  public static final class CentsSerializer extends StdSerializer<Long> {
+    public CentsSerializer() {
+      super(Long.class);
+    }
+
+    @Override
+    public void serialize(Long cents, JsonGenerator gen, SerializerProvider provider) throws IOException {
+      gen.writeNumber(toDollars(cents));
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package com.plotline.backend.costs;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.plotline.backend.service.UserProfileService;
+import com.plotline.backend.storage.DocumentStore;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.plotline.backend.util.UsernameUtils.normalize;
+
+/**
+ * Month-over-month spending feedback served from a materialized snapshot per
+ * user-month. A snapshot is rebuilt only when the ledger's totals for the
+ * month or the month before it change, and carries a content ETag so polling
+ * clients can revalidate without a body. Budget trophies are awarded once per
+ * closed month, recorded in users/{u}/ledger/feedback-awards.json, rather than
+ * on every view.
+ */
+@Service
+public class MonthlyFeedbackService {
+
+  private static final TypeReference<Set<String>> MONTHS_TYPE = new TypeReference<>() {};
+
+  // amounts are cents, written to JSON as dollars
+  public record CatDelta(
+      String category,
+      @JsonSerialize(using = Money.CentsSerializer.class) long current,
+      @JsonSerialize(using = Money.CentsSerializer.class) long previous,
+      @JsonSerialize(using = Money.CentsSerializer.class) long delta,      // current - previous
+      Double pct         // null if previous==0
+  ) {}
+
+  public record MonthlyFeedback(
+      String month,              // "YYYY-MM"
+      String previousMonth,      // "YYYY-MM"
+      @JsonSerialize(using = Money.CentsSerializer.class) long totalCurrent,
+      @JsonSerialize(using = Money.CentsSerializer.class) long totalPrevious,
+      @JsonSerialize(using = Money.CentsSerializer.class) long totalDelta,         // current - previous
+      List<CatDelta> deltas,
+      boolean overBudget,
+      @JsonSerialize(using = Money.CentsSerializer.class) Long monthlyBudget,
+      List<CatDelta> cutbacks
+  ) {}
+
+  /** A built payload, its quoted ETag and the month-total versions it was built from. */
+  public record Snapshot(MonthlyFeedback payload, String eTag, long currentVersion, long previousVersion) {}
+
+  private final SpendingLedger spendingLedger;
+  private final DocumentStore documentStore;
+  private final UserProfileService userProfileService;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final Map<String, Snapshot> snapshots;
+  // user|YYYY-MM already awarded, so polls skip the awards document
+  private final Set<String> awarded;
+
+  public MonthlyFeedbackService(SpendingLedger spendingLedger,
+                                DocumentStore documentStore,
+                                UserProfileService userProfileService,
+                                @Value("${ledger.month-cache.max-entries:10000}") int maxEntries) {
+    this.spendingLedger = spendingLedger;
+    this.documentStore = documentStore;
+    this.userProfileService = userProfileService;
+    this.snapshots = Collections.synchronizedMap(lru(maxEntries));
+    this.awarded = Collections.newSetFromMap(Collections.synchronizedMap(lru(maxEntries)));
+  }
+
+  public Snapshot feedback(String username, YearMonth month) {
+    String user = normalize(username);
+    Snapshot snapshot = snapshotFor(user, month);
+
+    // the dashboard asks for the current month, so settle the one that just closed from here too;
+    // never a month that hasn't ended, whatever month was asked for
+    YearMonth last = YearMonth.now().minusMonths(1);
+    YearMonth closed = month.isAfter(last) ? last : month;
+    if (!awarded.contains(user + "|" + closed)) {
+      awardClosedMonth(user, closed, closed.equals(month) ? snapshot : snapshotFor(user, closed));
+    }
+    return snapshot;
+  }
+
+  private Snapshot snapshotFor(String user, YearMonth month) {
+    SpendingLedger.MonthTotals current = spendingLedger.monthTotals(user, month);
+    SpendingLedger.MonthTotals previous = spendingLedger.monthTotals(user, month.minusMonths(1));
+
+    String key = user + "|" + month;
+    Snapshot cached = snapshots.get(key);
+    if (cached != null && cached.currentVersion() == current.version() && cached.previousVersion() == previous.version()) {
+      return cached;
+    }
+    MonthlyFeedback payload = build(month, current.cents(), previous.cents());
+    Snapshot built = new Snapshot(payload, eTagOf(payload), current.version(), previous.version());
+    snapshots.put(key, built);
+    return built;
+  }
+
+  private static MonthlyFeedback build(YearMonth month, Map<String, Long> curTotals, Map<String, Long> prevTotals) {
+    // Union of categories
+    Set<String> cats = new TreeSet<>();
+    cats.addAll(curTotals.keySet());
+    cats.addAll(prevTotals.keySet());
+
+    List<CatDelta> deltas = new ArrayList<>();
+    long totalCur = 0, totalPrev = 0;
+
+    for (String c : cats) {
+      long cur = curTotals.getOrDefault(c, 0L);
+      long pre = prevTotals.getOrDefault(c, 0L);
+      long d = cur - pre;
+      Double pct = (pre == 0) ? null : Math.round(d * 100.0 / pre) / 100.0;
+      deltas.add(new CatDelta(c, cur, pre, d, pct));
+      totalCur += cur;
+      totalPrev += pre;
+    }
+
+    long monthlyBudget = totalPrev; // fallback: last month spend as soft budget
+    boolean overBudget = totalCur > monthlyBudget && monthlyBudget > 0;
+
+    // Build cutback suggestions: top overspenders until we cover overage
+    long overAmount = overBudget ? totalCur - monthlyBudget : 0;
+    List<CatDelta> cutbacks = new ArrayList<>();
+    if (overBudget && overAmount > 0) {
+      List<CatDelta> overs = deltas.stream()
+          .filter(d -> d.delta() > 0)
+          .sorted((a, b) -> Long.compare(b.delta(), a.delta()))
+          .toList();
+      long remaining = overAmount;
+      for (CatDelta d : overs) {
+        long take = Math.min(d.delta(), remaining);
+        cutbacks.add(new CatDelta(d.category(), d.current(), d.previous(), take, d.pct()));
+        remaining -= take;
+        if (remaining <= 0) break;
+      }
+    }
+
+    return new MonthlyFeedback(
+        month.toString(),
+        month.minusMonths(1).toString(),
+        totalCur,
+        totalPrev,
+        totalCur - totalPrev,
+        deltas,
+        overBudget,
+        monthlyBudget > 0 ? monthlyBudget : null,
+        cutbacks
+    );
+  }
+
+  // Trophy hooks: under-budget streak + budget pacing + healthy eating shift, once per closed month
+  private void awardClosedMonth(String user, YearMonth closed, Snapshot snapshot) {
+    try {
+      String month = closed.toString();
+      Set<String> recorded = documentStore.update(awardsKey(user), MONTHS_TYPE, current -> {
+        if (current != null && current.contains(month)) return null;
+        Set<String> next = current != null ? new TreeSet<>(current) : new TreeSet<>();
+        next.add(month);
+        return next;
+      });
+      awarded.add(user + "|" + month);
+      if (recorded == null) return; // awarded earlier, possibly by another instance
+
+      MonthlyFeedback feedback = snapshot.payload();
+      Long budget = feedback.monthlyBudget();
+      if (!feedback.overBudget() && budget != null) {
+        userProfileService.incrementTrophy(user, "monthly-budget-met", 1);
+        if (feedback.totalCurrent() * 100 <= budget * 95) {
+          userProfileService.incrementTrophy(user, "budget-pacer", 1);
+        }
+      }
+      // Healthy eating: eating out down and groceries up versus last month
+      CatDelta eatOut = feedback.deltas().stream().filter(d -> d.category().toLowerCase().contains("eat")).findFirst().orElse(null);
+      CatDelta groceries = feedback.deltas().stream().filter(d -> d.category().toLowerCase().contains("groc")).findFirst().orElse(null);
+      if (eatOut != null && eatOut.delta() < 0 && (groceries == null || groceries.delta() >= 0)) {
+        userProfileService.incrementTrophy(user, "healthy-eater", 1);
+      }
+    } catch (Exception e) {
+      // non-fatal, feedback is still served and the award is retried on a later view
+      e.printStackTrace();
+    }
+  }
+
+  private String eTagOf(MonthlyFeedback payload) {
+    try {
+      return "\"" + DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(payload)) + "\"";
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Could not serialize feedback", e);
+    }
+  }
+
+  private static String awardsKey(String user) {
+    return "users/" + user + "/ledger/feedback-awards.json";
+  }
+
+  private static <V> Map<String, V> lru(int maxEntries) {
+    return new LinkedHashMap<>(256, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+}
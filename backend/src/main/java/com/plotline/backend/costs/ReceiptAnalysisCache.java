@@ -0,0 +1,72 @@
+package com.plotline.backend.costs;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.plotline.backend.storage.DocumentStore;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Categorized receipt analyses keyed by the SHA-256 of the image bytes, kept
+ * per user in users/{u}/receipts/analysis-cache.json. A re-upload of the same
+ * photo, after an undo or a retry on a bad connection, is answered from here
+ * without another vision call. Entries expire after the TTL and only the most
+ * recent max-entries are kept, oldest first out.
+ */
+@Component
+public class ReceiptAnalysisCache {
+
+  record CachedAnalysis(Map<String, Object> result, long analyzedAt) {}
+
+  private static final TypeReference<LinkedHashMap<String, CachedAnalysis>> CACHE_TYPE = new TypeReference<>() {};
+
+  private final DocumentStore documentStore;
+  private final int maxEntries;
+  private final long ttlMs;
+
+  public ReceiptAnalysisCache(DocumentStore documentStore,
+                              @Value("${receipts.analysis-cache.max-entries:200}") int maxEntries,
+                              @Value("${receipts.analysis-cache.ttl-days:30}") long ttlDays) {
+    this.documentStore = documentStore;
+    this.maxEntries = Math.max(1, maxEntries);
+    this.ttlMs = TimeUnit.DAYS.toMillis(Math.max(1, ttlDays));
+  }
+
+  /** The model's categorized JSON for this image, or null if it has not been analyzed recently. */
+  public Map<String, Object> get(String user, String imageHash) {
+    LinkedHashMap<String, CachedAnalysis> cache = documentStore.get(cacheKey(user), CACHE_TYPE);
+    CachedAnalysis hit = cache != null ? cache.get(imageHash) : null;
+    if (hit == null || expired(hit, System.currentTimeMillis())) return null;
+    return hit.result();
+  }
+
+  public void put(String user, String imageHash, Map<String, Object> result) {
+    long now = System.currentTimeMillis();
+    documentStore.update(cacheKey(user), CACHE_TYPE, current -> {
+      LinkedHashMap<String, CachedAnalysis> next = current != null ? new LinkedHashMap<>(current) : new LinkedHashMap<>();
+      next.values().removeIf(e -> expired(e, now));
+      // re-insert so the newest analysis is last in line for eviction
+      next.remove(imageHash);
+      next.put(imageHash, new CachedAnalysis(result, now));
+      Iterator<String> oldest = next.keySet().iterator();
+      while (next.size() > maxEntries && oldest.hasNext()) {
+        oldest.next();
+        oldest.remove();
+      }
+      return next;
+    });
+  }
+
+  private boolean expired(CachedAnalysis entry, long now) {
+    return now - entry.analyzedAt() > ttlMs;
+  }
+
+  private static String cacheKey(String user) {
+    return "users/" + user + "/receipts/analysis-cache.json";
+  }
+}
@@ -0,0 +1,211 @@
+package com.plotline.backend.costs;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Shrinks receipt photos to what the vision model actually looks at before
+ * they are sent. At high detail the model fits the image into 2048x2048 and
+ * then scales the short side down to 768, so anything larger only costs
+ * upload time and heap. Receipts read fine in grayscale, which also makes the
+ * JPEG a fraction of the size.
+ *
+ * The photo is decoded with source subsampling, so a 12MP upload never exists
+ * as a full-resolution bitmap. Phones store portrait photos sideways with an
+ * EXIF Orientation tag, which the re-encoded JPEG would not carry, so the
+ * bitmap is turned upright before it goes to the model or to OCR.
+ */
+public final class ReceiptImages {
+
+  private static final int MAX_LONG_SIDE = 2048;
+  private static final int MAX_SHORT_SIDE = 768;
+  private static final float JPEG_QUALITY = 0.85f;
+
+  private ReceiptImages() {}
+
+  /** A grayscale JPEG ready for the model, or the upload itself when it could not be decoded. */
+  public static byte[] prepare(byte[] upload) {
+    try {
+      BufferedImage gray = decodeGray(upload, MAX_LONG_SIDE, MAX_SHORT_SIDE);
+      if (gray == null) return upload;
+      byte[] jpeg = encodeJpeg(gray);
+      // an already small JPEG can come out bigger, keep whichever is smaller
+      return jpeg.length < upload.length ? jpeg : upload;
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Receipt image preprocessing failed, sending it as uploaded: " + e.getMessage());
+      return upload;
+    }
+  }
+
+  /**
+   * The upload as an 8-bit grayscale bitmap at most maxLongSide by
+   * maxShortSide, for local OCR; null when it cannot be decoded.
+   */
+  static BufferedImage grayscale(byte[] upload, int maxLongSide, int maxShortSide) {
+    try {
+      return decodeGray(upload, maxLongSide, maxShortSide);
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static double scaleFor(int width, int height, int maxLongSide, int maxShortSide) {
+    int longSide = Math.max(width, height);
+    int shortSide = Math.min(width, height);
+    return Math.min(1.0, Math.min((double) maxLongSide / longSide, (double) maxShortSide / shortSide));
+  }
+
+  // null when no ImageIO reader understands the format (e.g. HEIC)
+  private static BufferedImage decodeGray(byte[] upload, int maxLongSide, int maxShortSide) throws IOException {
+    try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(upload))) {
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+      if (!readers.hasNext()) return null;
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(in, true, true);
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        double scale = scaleFor(width, height, maxLongSide, maxShortSide);
+
+        // decode every n-th pixel first (never below the target), then scale the rest smoothly
+        ImageReadParam param = reader.getDefaultReadParam();
+        int step = Math.max(1, (int) Math.floor(1.0 / scale));
+        param.setSourceSubsampling(step, step, 0, 0);
+        BufferedImage decoded = reader.read(0, param);
+
+        int targetW = Math.max(1, (int) Math.round(width * scale));
+        int targetH = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage gray = new BufferedImage(targetW, targetH, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = gray.createGraphics();
+        try {
+          g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+          g.drawImage(decoded, 0, 0, targetW, targetH, null);
+        } finally {
+          g.dispose();
+        }
+        // the size limits don't care which side is long, so turning the small bitmap is enough
+        return orient(gray, exifOrientation(upload));
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  // the EXIF transform (2-8) applied to a TYPE_BYTE_GRAY bitmap; 5-8 swap width and height
+  private static BufferedImage orient(BufferedImage src, int orientation) {
+    if (orientation < 2 || orientation > 8) return src;
+    int w = src.getWidth();
+    int h = src.getHeight();
+    boolean swap = orientation >= 5;
+    BufferedImage dst = new BufferedImage(swap ? h : w, swap ? w : h, BufferedImage.TYPE_BYTE_GRAY);
+    byte[] in = ((DataBufferByte) src.getRaster().getDataBuffer()).getData();
+    byte[] out = ((DataBufferByte) dst.getRaster().getDataBuffer()).getData();
+    int dw = dst.getWidth();
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        int dx, dy;
+        switch (orientation) {
+          case 2 -> { dx = w - 1 - x; dy = y; }
+          case 3 -> { dx = w - 1 - x; dy = h - 1 - y; }
+          case 4 -> { dx = x; dy = h - 1 - y; }
+          case 5 -> { dx = y; dy = x; }
+          case 6 -> { dx = h - 1 - y; dy = x; }
+          case 7 -> { dx = h - 1 - y; dy = w - 1 - x; }
+          default -> { dx = y; dy = w - 1 - x; } // 8
+        }
+        out[dy * dw + dx] = in[y * w + x];
+      }
+    }
+    return dst;
+  }
+
+  /**
+   * The EXIF Orientation (1-8) of a JPEG, 1 when there is none. Only walks
+   * the marker segments before the image data and IFD0 of the APP1 block.
+   */
+  static int exifOrientation(byte[] jpeg) {
+    if (jpeg.length < 4 || (jpeg[0] & 0xff) != 0xFF || (jpeg[1] & 0xff) != 0xD8) return 1;
+    int pos = 2;
+    while (pos + 4 <= jpeg.length) {
+      if ((jpeg[pos] & 0xff) != 0xFF) return 1;
+      int marker = jpeg[pos + 1] & 0xff;
+      if (marker == 0xFF) {
+        pos++; // fill byte
+        continue;
+      }
+      if (marker == 0xDA || marker == 0xD9) return 1; // scan data, EXIF would have come before it
+      int length = u16(jpeg, pos + 2, true);
+      if (length < 2) return 1;
+      int start = pos + 4;
+      int end = Math.min(jpeg.length, pos + 2 + length);
+      if (marker == 0xE1 && end - start >= 14 && jpeg[start] == 'E' && jpeg[start + 1] == 'x'
+          && jpeg[start + 2] == 'i' && jpeg[start + 3] == 'f' && jpeg[start + 4] == 0 && jpeg[start + 5] == 0) {
+        return tiffOrientation(jpeg, start + 6, end);
+      }
+      pos += 2 + length;
+    }
+    return 1;
+  }
+
+  private static int tiffOrientation(byte[] b, int tiff, int end) {
+    boolean bigEndian;
+    if (b[tiff] == 'M' && b[tiff + 1] == 'M') bigEndian = true;
+    else if (b[tiff] == 'I' && b[tiff + 1] == 'I') bigEndian = false;
+    else return 1;
+
+    long ifd0 = tiff + u32(b, tiff + 4, bigEndian);
+    if (ifd0 + 2 > end) return 1;
+    int dir = (int) ifd0;
+    int entries = u16(b, dir, bigEndian);
+    for (int i = 0; i < entries; i++) {
+      int entry = dir + 2 + 12 * i;
+      if (entry + 12 > end) return 1;
+      if (u16(b, entry, bigEndian) == 0x0112) {
+        int value = u16(b, entry + 8, bigEndian); // SHORT, left-justified in the value field
+        return value >= 1 && value <= 8 ? value : 1;
+      }
+    }
+    return 1;
+  }
+
+  private static int u16(byte[] b, int at, boolean bigEndian) {
+    int hi = b[bigEndian ? at : at + 1] & 0xff;
+    int lo = b[bigEndian ? at + 1 : at] & 0xff;
+    return (hi << 8) | lo;
+  }
+
+  private static long u32(byte[] b, int at, boolean bigEndian) {
+    long hi = u16(b, bigEndian ? at : at + 2, bigEndian);
+    long lo = u16(b, bigEndian ? at + 2 : at, bigEndian);
+    return (hi << 16) | lo;
+  }
+
+  private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+    try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+      writer.setOutput(ios);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(JPEG_QUALITY);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+    return out.toByteArray();
+  }
+}
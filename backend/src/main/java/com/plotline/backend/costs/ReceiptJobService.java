@@ -0,0 +1,412 @@
+package com.plotline.backend.costs;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plotline.backend.service.OCRService;
+import com.plotline.backend.service.OpenAIService;
+import com.plotline.backend.storage.DocumentStore;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+import java.awt.image.BufferedImage;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.plotline.backend.util.UsernameUtils.normalize;
+
+/**
+ * Receipt analysis off the request thread. An upload becomes a job that a
+ * bounded pool of workers runs: local OCR, the vision call when the OCR
+ * parse isn't trustworthy (or a ReceiptAnalysisCache hit for an image seen
+ * before), then one ledger append of the parsed category totals. When the queue is full new uploads are refused
+ * instead of piling up, failed attempts are retried with backoff, and the
+ * same image uploaded again while its job is live gets that job back rather
+ * than being counted twice.
+ *
+ * Finished jobs are written to users/{u}/receipts/{jobId}.json, so status
+ * polls and undo keep working once the in-memory entry has expired.
+ */
+@Service
+public class ReceiptJobService {
+
+  public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+  /**
+   * A job as reported to clients. The result is the analyzed receipt plus
+   * _addedCosts and _date, the same body upload-receipt has always returned.
+   */
+  public record ReceiptJob(
+      String id,
+      String username,
+      String date,
+      String imageHash,
+      Status status,
+      int attempts,
+      Map<String, Object> result,
+      String error,
+      boolean undone,
+      long updatedAt
+  ) {
+    ReceiptJob with(Status status, int attempts, Map<String, Object> result, String error) {
+      return new ReceiptJob(id, username, date, imageHash, status, attempts, result, error, undone, System.currentTimeMillis());
+    }
+
+    ReceiptJob withUndone(boolean undone) {
+      return new ReceiptJob(id, username, date, imageHash, status, attempts, result, error, undone, System.currentTimeMillis());
+    }
+  }
+
+  private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+  // Tesseract wants roughly 300 DPI; a receipt photo at this size keeps small print legible
+  private static final int OCR_MAX_LONG_SIDE = 3000;
+  private static final int OCR_MAX_SHORT_SIDE = 1600;
+
+  // a job while this instance owns it; the image is dropped as soon as the job finishes
+  private static final class Live {
+    final CompletableFuture<ReceiptJob> finished = new CompletableFuture<>();
+    volatile ReceiptJob job;
+    volatile byte[] image;
+
+    Live(ReceiptJob job, byte[] image) {
+      this.job = job;
+      this.image = image;
+    }
+  }
+
+  private final OpenAIService openAIService;
+  private final SpendingLedger spendingLedger;
+  private final DocumentStore documentStore;
+  private final ReceiptAnalysisCache analysisCache;
+  private final OCRService ocrService;
+  private final ReceiptParser receiptParser;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final ConcurrentHashMap<String, Live> jobs = new ConcurrentHashMap<>();
+  // user|sha256 of the image -> job id, for as long as that job stays in memory
+  private final ConcurrentHashMap<String, String> byImage = new ConcurrentHashMap<>();
+
+  private final ThreadPoolExecutor workers;
+  private final ScheduledExecutorService retries;
+  private final int maxAttempts;
+  private final long retryBackoffMs;
+  private final long jobTtlMs;
+  // auto: local OCR with the model as fallback, local: never call the model, llm: always the model
+  private final String analysisMode;
+
+  public ReceiptJobService(OpenAIService openAIService,
+                           SpendingLedger spendingLedger,
+                           DocumentStore documentStore,
+                           ReceiptAnalysisCache analysisCache,
+                           OCRService ocrService,
+                           ReceiptParser receiptParser,
+                           @Value("${receipts.workers:4}") int workerCount,
+                           @Value("${receipts.queue-capacity:50}") int queueCapacity,
+                           @Value("${receipts.max-attempts:3}") int maxAttempts,
+                           @Value("${receipts.retry-backoff-ms:1000}") long retryBackoffMs,
+                           @Value("${receipts.job-ttl-minutes:60}") long jobTtlMinutes,
+                           @Value("${receipts.analysis-mode:auto}") String analysisMode) {
+    this.openAIService = openAIService;
+    this.spendingLedger = spendingLedger;
+    this.documentStore = documentStore;
+    this.analysisCache = analysisCache;
+    this.ocrService = ocrService;
+    this.receiptParser = receiptParser;
+    this.analysisMode = analysisMode;
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.retryBackoffMs = Math.max(0, retryBackoffMs);
+    this.jobTtlMs = TimeUnit.MINUTES.toMillis(Math.max(1, jobTtlMinutes));
+
+    int threads = Math.max(1, workerCount);
+    AtomicInteger n = new AtomicInteger();
+    this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+        r -> {
+          Thread t = new Thread(r, "receipt-worker-" + n.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        },
+        new ThreadPoolExecutor.AbortPolicy());
+    this.retries = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "receipt-retry");
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /**
+   * Queues the image for analysis and returns its job straight away. An
+   * image this user already has a live, not undone job for returns that job.
+   *
+   * @throws RejectedExecutionException when the queue is full
+   */
+  public ReceiptJob submit(String username, byte[] image, LocalDate date) {
+    String user = normalize(username);
+    String hash = sha256(image);
+    String imageKey = user + "|" + hash;
+
+    Live[] out = new Live[1];
+    boolean[] created = new boolean[1];
+    byImage.compute(imageKey, (k, priorId) -> {
+      Live prior = priorId != null ? jobs.get(priorId) : null;
+      if (prior != null && prior.job.status() != Status.FAILED && !prior.job.undone()) {
+        out[0] = prior;
+        return priorId;
+      }
+      ReceiptJob job = new ReceiptJob(UUID.randomUUID().toString(), user, date.toString(), hash,
+          Status.QUEUED, 0, null, null, false, System.currentTimeMillis());
+      out[0] = new Live(job, image);
+      created[0] = true;
+      jobs.put(job.id(), out[0]);
+      return job.id();
+    });
+
+    Live live = out[0];
+    if (created[0]) {
+      try {
+        workers.execute(() -> run(live));
+      } catch (RejectedExecutionException e) {
+        jobs.remove(live.job.id());
+        byImage.remove(imageKey, live.job.id());
+        throw e;
+      }
+    }
+    return live.job;
+  }
+
+  /** Completes when the job is DONE or FAILED; already complete for jobs no longer in memory. */
+  public CompletableFuture<ReceiptJob> whenFinished(String jobId) {
+    Live live = jobs.get(jobId);
+    return live != null ? live.finished : CompletableFuture.completedFuture(null);
+  }
+
+  /** The job's current state, or null if this user has no such job. */
+  public ReceiptJob get(String username, String jobId) {
+    if (!isJobId(jobId)) return null;
+    String user = normalize(username);
+    Live live = jobs.get(jobId);
+    if (live != null) {
+      return live.job.username().equals(user) ? live.job : null;
+    }
+    return documentStore.get(jobKey(user, jobId), ReceiptJob.class);
+  }
+
+  /**
+   * Takes a finished job's costs back out of the ledger. Returns the job as
+   * it now stands, or null if there is no finished job to undo; undoing twice
+   * subtracts only once.
+   */
+  public ReceiptJob undo(String username, String jobId) {
+    if (!isJobId(jobId)) return null;
+    String user = normalize(username);
+    String key = jobKey(user, jobId);
+    ReceiptJob marked = documentStore.update(key, ReceiptJob.class,
+        current -> current != null && current.status() == Status.DONE && !current.undone() ? current.withUndone(true) : null);
+    if (marked == null) {
+      return documentStore.get(key, ReceiptJob.class);
+    }
+
+    try {
+      Map<String, Object> result = marked.result();
+      Map<String, Number> added = new LinkedHashMap<>();
+      if (result.get("_addedCosts") instanceof Map<?, ?> costs) {
+        costs.forEach((cat, amount) -> {
+          if (amount instanceof Number num) added.put(String.valueOf(cat), num);
+        });
+      }
+      spendingLedger.subtract(user, LocalDate.parse(String.valueOf(result.get("_date"))), Money.toCents(added), SpendingLedger.ALL_VIEWS);
+    } catch (RuntimeException e) {
+      // leave it undoable rather than marked undone with the costs still counted
+      documentStore.update(key, ReceiptJob.class, current -> current != null && current.undone() ? current.withUndone(false) : null);
+      throw e;
+    }
+
+    Live live = jobs.get(jobId);
+    if (live != null) {
+      live.job = marked;
+      byImage.remove(user + "|" + marked.imageHash(), jobId);
+    }
+    return marked;
+  }
+
+  private void run(Live live) {
+    ReceiptJob job = live.job;
+    int attempt = job.attempts() + 1;
+    live.job = job.with(Status.RUNNING, attempt, null, job.error());
+    try {
+      Map<String, Object> result = analyze(job.username(), job.imageHash(), live.image, LocalDate.parse(job.date()));
+      finish(live, live.job.with(Status.DONE, attempt, result, null));
+    } catch (Exception e) {
+      String error = e.getMessage() != null ? e.getMessage() : e.toString();
+      if (attempt >= maxAttempts) {
+        finish(live, live.job.with(Status.FAILED, attempt, null, error));
+        return;
+      }
+      live.job = live.job.with(Status.QUEUED, attempt, null, error);
+      try {
+        retries.schedule(() -> retry(live), retryBackoffMs << (attempt - 1), TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException shuttingDown) {
+        finish(live, live.job.with(Status.FAILED, attempt, null, error));
+      }
+    }
+  }
+
+  private void retry(Live live) {
+    try {
+      workers.execute(() -> run(live));
+    } catch (RejectedExecutionException e) {
+      finish(live, live.job.with(Status.FAILED, live.job.attempts(), null, "receipt queue is full"));
+    }
+  }
+
+  // vision call (skipped when this image was analyzed recently), then the positive category totals go to the ledger for both views
+  private Map<String, Object> analyze(String user, String imageHash, byte[] image, LocalDate date) throws Exception {
+    Map<String, Object> result = cachedAnalysis(user, imageHash);
+    if (result == null) {
+      result = analyzeImage(user, image);
+      try {
+        analysisCache.put(user, imageHash, result);
+      } catch (Exception e) {
+        // only costs a repeat call next time
+        e.printStackTrace();
+      }
+    }
+
+    Map<String, Double> parsed = result.entrySet().stream()
+        .filter(e -> e.getValue() instanceof Number)
+        .map(e -> Map.entry(e.getKey(), ((Number) e.getValue()).doubleValue()))
+        .filter(e -> e.getValue() > 0) // prevent 0 values from being passed into updates
+        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    spendingLedger.add(user, date, Money.toCents(parsed), SpendingLedger.ALL_VIEWS);
+
+    // the parsed costs go back with the result so the client can undo/edit
+    Map<String, Object> out = new HashMap<>(result);
+    out.put("_addedCosts", parsed);
+    out.put("_date", date.toString());
+    return out;
+  }
+
+  private Map<String, Object> cachedAnalysis(String user, String imageHash) {
+    try {
+      return analysisCache.get(user, imageHash);
+    } catch (Exception e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  // local OCR first unless the mode is llm; the model only sees receipts the parser couldn't vouch for
+  private Map<String, Object> analyzeImage(String user, byte[] image) throws Exception {
+    if (!"llm".equalsIgnoreCase(analysisMode)) {
+      Map<String, Object> local = localAnalysis(user, image);
+      if (local != null) return local;
+      if ("local".equalsIgnoreCase(analysisMode)) {
+        throw new IllegalStateException("Receipt could not be read locally");
+      }
+    }
+    return callVision(image);
+  }
+
+  private Map<String, Object> localAnalysis(String user, byte[] image) {
+    if (!ocrService.isAvailable()) return null;
+    BufferedImage gray = ReceiptImages.grayscale(image, OCR_MAX_LONG_SIDE, OCR_MAX_SHORT_SIDE);
+    if (gray == null) return null;
+    long started = System.nanoTime();
+    OCRService.OcrText text = ocrService.recognize(gray);
+    Map<String, Object> result = receiptParser.parse(user, text);
+    System.out.println("Local receipt OCR " + (result != null ? "accepted" : "deferred to the model")
+        + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+    return result;
+  }
+
+  private Map<String, Object> callVision(byte[] image) throws Exception {
+    byte[] jpeg = ReceiptImages.prepare(image);
+    System.out.println("Sending receipt image to GPT-4o Vision (size: " + jpeg.length + " bytes, uploaded " + image.length + ")");
+    String response = openAIService.analyzeReceiptFromImage(jpeg);
+
+    // Clean up response to parse (remove markdown code blocks if present)
+    String cleanedJson = response
+        .replaceAll("(?s)```json\\s*", "")
+        .replaceAll("(?s)```", "")
+        .trim();
+    Map<String, Object> result = objectMapper.readValue(cleanedJson, MAP_TYPE);
+    if (result.containsKey("error")) {
+      throw new IllegalStateException(String.valueOf(result.get("error")));
+    }
+    return result;
+  }
+
+  private void finish(Live live, ReceiptJob done) {
+    live.image = null;
+    live.job = done;
+    try {
+      documentStore.put(jobKey(done.username(), done.id()), done);
+    } catch (Exception e) {
+      // still served from memory until it expires
+      e.printStackTrace();
+    }
+    live.finished.complete(done);
+  }
+
+  @Scheduled(fixedDelayString = "${receipts.evict-interval-ms:60000}")
+  public void evictFinishedJobs() {
+    long cutoff = System.currentTimeMillis() - jobTtlMs;
+    jobs.values().removeIf(live -> {
+      ReceiptJob job = live.job;
+      boolean expired = live.finished.isDone() && job.updatedAt() < cutoff;
+      if (expired) byImage.remove(job.username() + "|" + job.imageHash(), job.id());
+      return expired;
+    });
+  }
+
+  @PreDestroy
+  void shutdown() {
+    retries.shutdownNow();
+    workers.shutdown();
+    try {
+      workers.awaitTermination(30, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static String jobKey(String user, String jobId) {
+    return "users/" + user + "/receipts/" + jobId + ".json";
+  }
+
+  // ids become part of a storage key, so only accept what submit hands out
+  private static boolean isJobId(String jobId) {
+    try {
+      return jobId != null && UUID.fromString(jobId).toString().equals(jobId);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  private static String sha256(byte[] bytes) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
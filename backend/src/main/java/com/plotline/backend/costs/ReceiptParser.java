@@ -0,0 +1,145 @@
+package com.plotline.backend.costs;
+
+import com.plotline.backend.categorize.Categorizer;
+import com.plotline.backend.service.OCRService;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rules-based reading of OCR'd receipt text. The merchant comes from the
+ * header lines and is bucketed with the Categorizer's merchant rules and the
+ * user's overrides. Each line item is bucketed the same way by its own text,
+ * falling back to the merchant's bucket, and tax and tip are spread over the
+ * buckets in proportion to their items.
+ *
+ * A parse is only trusted when every check passes: Tesseract was confident
+ * enough, a total was found, the line items add up to the subtotal and the
+ * merchant is known. Anything else returns null and the caller asks the
+ * model instead.
+ */
+@Component
+public class ReceiptParser {
+
+  // "BANANAS 1.29", "2 @ 3.49  6.98 F", "COUPON $-1.00", "COUPON 1.00-"
+  private static final Pattern AMOUNT_AT_END = Pattern.compile("^(.*?)\\s+\\$?\\s?(-?\\d{1,5}[.,]\\d{2})\\s*(-?)\\s*[A-Z*]{0,2}$");
+  private static final Pattern PAYMENT = Pattern.compile("\\b(CHANGE|CASH|VISA|MASTERCARD|AMEX|DEBIT|CREDIT|CARD|TEND(ER|ERED)?|PAID|PAYMENT)\\b");
+  private static final int HEADER_LINES = 5;
+  // per-line rounding on weighed or multi-buy items can leave the sum a cent or two off
+  private static final long SUM_TOLERANCE_CENTS = 2;
+
+  private final Categorizer categorizer;
+  private final int minConfidence;
+
+  public ReceiptParser(Categorizer categorizer,
+                       @Value("${receipts.ocr.min-confidence:70}") int minConfidence) {
+    this.categorizer = categorizer;
+    this.minConfidence = minConfidence;
+  }
+
+  /** The categorized receipt, shaped like the model's answer, or null when the parse isn't trustworthy. */
+  public Map<String, Object> parse(String user, OCRService.OcrText ocr) {
+    if (ocr == null || ocr.confidence() < minConfidence) return null;
+
+    List<String> header = new ArrayList<>();
+    List<String> itemLabels = new ArrayList<>();
+    List<Long> itemCents = new ArrayList<>();
+    long itemsSum = 0, subtotal = -1, tax = 0, tip = 0, total = -1;
+    int lineNo = 0;
+
+    for (String raw : ocr.text().split("\\R")) {
+      String line = raw.trim().replaceAll("\\s+", " ");
+      if (line.isEmpty()) continue;
+      lineNo++;
+      String upper = line.toUpperCase(Locale.ROOT);
+
+      Matcher m = AMOUNT_AT_END.matcher(upper);
+      if (!m.matches()) {
+        if (lineNo <= HEADER_LINES && upper.chars().filter(Character::isLetter).count() >= 3) header.add(upper);
+        continue;
+      }
+      if (total >= 0) continue; // payment and change lines after the total
+
+      String label = m.group(1);
+      long cents = Money.toCents(new BigDecimal(m.group(2).replace(',', '.')));
+      if (!m.group(3).isEmpty()) cents = -Math.abs(cents);
+      if (label.contains("SUBTOTAL") || label.contains("SUB TOTAL") || label.contains("SUB-TOTAL")) {
+        subtotal = cents;
+      } else if (label.contains("TAX")) {
+        tax += cents;
+      } else if (label.contains("TIP") || label.contains("GRATUITY")) {
+        tip += cents;
+      } else if (label.contains("TOTAL") || label.contains("BALANCE DUE") || label.contains("AMOUNT DUE")) {
+        total = cents;
+      } else if (!PAYMENT.matcher(label).find()) {
+        itemsSum += cents;
+        itemLabels.add(label);
+        itemCents.add(cents);
+      }
+    }
+
+    if (total <= 0 || itemLabels.isEmpty()) return null;
+    long expected = subtotal >= 0 ? subtotal : total - tax - tip;
+    if (Math.abs(itemsSum - expected) > SUM_TOLERANCE_CENTS) return null;
+    if (subtotal >= 0 && Math.abs(subtotal + tax + tip - total) > SUM_TOLERANCE_CENTS) return null;
+
+    String bucket = null;
+    for (String line : header) {
+      bucket = categorizer.mapMerchant(user, line);
+      if (bucket != null) break;
+    }
+    if (bucket == null) return null;
+
+    // an item the rules or the user's overrides recognize goes to its own bucket, anything else is the merchant's
+    CategoryCents byBucket = new CategoryCents();
+    for (int i = 0; i < itemLabels.size(); i++) {
+      String itemBucket = categorizer.mapMerchant(user, itemLabels.get(i));
+      byBucket.add(itemBucket != null ? itemBucket : bucket, itemCents.get(i));
+    }
+
+    Map<String, Object> result = new LinkedHashMap<>();
+    // tax, tip and whatever rounding the checks above let through, so the buckets add up to the total
+    spread(byBucket.toMap(), total - itemsSum).forEach((b, cents) -> result.put(b, Money.toDollars(cents)));
+    result.put("_source", "ocr");
+    return result;
+  }
+
+  // splits extra over the buckets with positive items in proportion to them, to the cent (largest remainder)
+  private static Map<String, Long> spread(Map<String, Long> buckets, long extra) {
+    long base = 0;
+    for (long cents : buckets.values()) {
+      if (cents > 0) base += cents;
+    }
+    Map<String, Long> out = new LinkedHashMap<>(buckets);
+    if (extra == 0 || base == 0) return out;
+
+    List<String> names = new ArrayList<>();
+    List<Long> remainders = new ArrayList<>();
+    long given = 0;
+    for (var e : buckets.entrySet()) {
+      if (e.getValue() <= 0) continue;
+      long share = Math.floorDiv(extra * e.getValue(), base);
+      out.put(e.getKey(), e.getValue() + share);
+      names.add(e.getKey());
+      remainders.add(Math.floorMod(extra * e.getValue(), base));
+      given += share;
+    }
+    // floor shares leave 0..n-1 cents, handed out to the largest remainders
+    List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < names.size(); i++) order.add(i);
+    order.sort((a, b) -> Long.compare(remainders.get(b), remainders.get(a)));
+    for (int i = 0; given < extra; i++, given++) {
+      out.merge(names.get(order.get(i)), 1L, Long::sum);
+    }
+    return out;
+  }
+}
@@ -0,0 +1,247 @@
+package com.plotline.backend.costs;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Bulk import of dated category amounts into the spending ledger.
+ *
+ * The body is read as a stream, NDJSON through Jackson's streaming parser
+ * and CSV line by line, and summed per day into CategoryCents. Every
+ * flush-days distinct days the buffered totals are written as one ledger
+ * append, so only a chunk of per-day totals is held in memory, never the
+ * rows themselves.
+ *
+ * Earlier chunks are already in the ledger when a later row turns out bad,
+ * so a bad row is rejected on its own (each NDJSON line is parsed
+ * separately) and never fails the import. If the body itself breaks off,
+ * the summary says so and counts only what was written, so the client knows
+ * what a retry in add mode would count twice.
+ */
+@Component
+public class SpendingImporter {
+
+  public enum Format { NDJSON, CSV }
+
+  /**
+   * What an import did: rows and days written, errors holds the first few
+   * rejected rows. aborted is null unless reading the body failed part way.
+   */
+  public record Summary(int rows, int days, int rejected, List<String> errors, String aborted) {}
+
+  private static final int MAX_ERRORS = 20;
+
+  private final SpendingLedger spendingLedger;
+  private final JsonFactory jsonFactory = new JsonFactory();
+  private final int flushDays;
+
+  public SpendingImporter(SpendingLedger spendingLedger,
+                          @Value("${ledger.import.flush-days:366}") int flushDays) {
+    this.spendingLedger = spendingLedger;
+    this.flushDays = Math.max(1, flushDays);
+  }
+
+  /**
+   * Reads every row from the stream. With replace, each imported day's
+   * category totals replace what is stored, so re-importing the same file
+   * changes nothing; otherwise they are added on top.
+   */
+  public Summary importRows(String username, InputStream body, Format format, boolean replace) {
+    Batch batch = new Batch(username, replace);
+    BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+    try {
+      if (format == Format.NDJSON) {
+        readNdjson(reader, batch);
+      } else {
+        readCsv(reader, batch);
+      }
+      batch.flush();
+    } catch (IOException e) {
+      // the rows still buffered are dropped rather than written, so the summary is exactly what landed
+      return new Summary(batch.rows, batch.days, batch.rejected, batch.errors,
+          "body ended early after row " + batch.lastRecord + ": " + e.getMessage());
+    } catch (RuntimeException e) {
+      return new Summary(batch.rows, batch.days, batch.rejected, batch.errors,
+          "ledger write failed after row " + batch.lastRecord + ", the chunk being written may be partly applied: "
+              + e.getMessage());
+    }
+    return new Summary(batch.rows, batch.days, batch.rejected, batch.errors, null);
+  }
+
+  // {"date":"2024-01-31","category":"Food","amount":12.34} per line
+  private void readNdjson(BufferedReader reader, Batch batch) throws IOException {
+    String line;
+    int record = 0;
+    while ((line = reader.readLine()) != null) {
+      record++;
+      if (line.isBlank()) continue;
+      // a parser per line, so malformed JSON only costs that row
+      try (JsonParser p = jsonFactory.createParser(line)) {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+          batch.reject(record, "not a JSON object");
+          continue;
+        }
+        String date = null, category = null, amount = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+          String field = p.currentName();
+          p.nextToken();
+          switch (field) {
+            case "date" -> date = p.getValueAsString();
+            case "category" -> category = p.getValueAsString();
+            case "amount" -> amount = p.getValueAsString();
+            default -> p.skipChildren();
+          }
+        }
+        if (p.nextToken() != null) {
+          batch.reject(record, "more than one JSON value on the line");
+          continue;
+        }
+        batch.accept(record, date, category, amount);
+      } catch (JsonProcessingException e) {
+        batch.reject(record, "malformed JSON");
+      }
+    }
+  }
+
+  // header "date,category,amount" in any order; without one those columns are assumed in that order
+  private void readCsv(BufferedReader reader, Batch batch) throws IOException {
+    int dateCol = 0, categoryCol = 1, amountCol = 2;
+    String line;
+    int lineNo = 0;
+    while ((line = reader.readLine()) != null) {
+      lineNo++;
+      if (line.isBlank()) continue;
+      List<String> cols = splitCsv(line);
+      if (lineNo == 1) {
+        List<String> header = cols.stream().map(c -> c.toLowerCase(Locale.ROOT)).toList();
+        if (header.contains("date")) {
+          dateCol = header.indexOf("date");
+          categoryCol = header.indexOf("category");
+          amountCol = header.indexOf("amount");
+          continue;
+        }
+      }
+      batch.accept(lineNo, column(cols, dateCol), column(cols, categoryCol), column(cols, amountCol));
+    }
+  }
+
+  private final class Batch {
+    private final String username;
+    private final boolean replace;
+    private final TreeMap<LocalDate, CategoryCents> pending = new TreeMap<>();
+    // days already written, so a replace that spans chunks adds the later rows instead of replacing the earlier ones
+    private final Set<LocalDate> written = new HashSet<>();
+    private final List<String> errors = new ArrayList<>();
+    // rows and days count what has been written; pendingRows waits for the next flush
+    private int rows, days, rejected, pendingRows, lastRecord;
+
+    Batch(String username, boolean replace) {
+      this.username = username;
+      this.replace = replace;
+    }
+
+    void accept(int record, String date, String category, String amount) {
+      lastRecord = record;
+      LocalDate day;
+      long cents;
+      try {
+        day = LocalDate.parse(date.trim());
+        cents = Money.toCents(new BigDecimal(amount.trim()));
+      } catch (Exception e) {
+        reject(record, "bad date or amount");
+        return;
+      }
+      if (category == null || category.isBlank()) {
+        reject(record, "missing category");
+        return;
+      }
+
+      CategoryCents totals = pending.get(day);
+      if (totals == null) {
+        if (pending.size() >= flushDays) flush();
+        totals = new CategoryCents();
+        pending.put(day, totals);
+      }
+      totals.add(category.trim(), cents);
+      pendingRows++;
+    }
+
+    void reject(int record, String reason) {
+      lastRecord = record;
+      rejected++;
+      if (errors.size() < MAX_ERRORS) errors.add("row " + record + ": " + reason);
+    }
+
+    void flush() {
+      if (pending.isEmpty()) return;
+      Map<LocalDate, Map<String, Long>> replaced = new LinkedHashMap<>();
+      Map<LocalDate, Map<String, Long>> added = new LinkedHashMap<>();
+      int freshDays = 0;
+      for (var e : pending.entrySet()) {
+        boolean fresh = written.add(e.getKey());
+        (replace && fresh ? replaced : added).put(e.getKey(), e.getValue().toMap());
+        if (fresh) freshDays++;
+      }
+      if (!replaced.isEmpty()) spendingLedger.setDays(username, replaced, SpendingLedger.ALL_VIEWS);
+      if (!added.isEmpty()) spendingLedger.addDays(username, added, SpendingLedger.ALL_VIEWS);
+      pending.clear();
+      days += freshDays;
+      rows += pendingRows;
+      pendingRows = 0;
+    }
+  }
+
+  private static String column(List<String> cols, int index) {
+    return index >= 0 && index < cols.size() ? cols.get(index) : null;
+  }
+
+  // one line of RFC 4180 CSV: quoted fields may contain commas and "" escapes
+  private static List<String> splitCsv(String line) {
+    List<String> out = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          field.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        out.add(field.toString().trim());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    out.add(field.toString().trim());
+    return out;
+  }
+}
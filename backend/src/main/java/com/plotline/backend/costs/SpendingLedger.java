@@ -0,0 +1,660 @@
+package com.plotline.backend.costs;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.plotline.backend.storage.BulkReader;
+import com.plotline.backend.storage.DocumentStore;
+import com.plotline.backend.storage.KeyLockManager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.plotline.backend.util.UsernameUtils.normalize;
+
+/**
+ * Per-user spending ledger replacing the users/{u}/costs/{weekly|monthly}/{period}.json rollups.
+ *
+ * Every write appends one small segment under users/{u}/ledger/log/ holding
+ * parallel primitive columns: epoch day, category id, amount in cents and the
+ * views (weekly tracker, monthly tracker) the row counts toward. Category ids
+ * index into users/{u}/ledger/categories.json, which only ever grows. Settled
+ * log segments are folded into users/{u}/ledger/base.json, summed per
+ * (day, category, views) and sorted by day, the same snapshot-plus-log layout
+ * the friends feed uses. Weekly, monthly and arbitrary-range totals are all
+ * computed from these rows, so they no longer depend on which files exist.
+ *
+ * Most rows add to a day. Set and subtract rows instead say what to do with
+ * whatever the day holds at that point of the log, and readers replay them in
+ * key order. So neither needs a read before its append, and two instances
+ * writing the same set converge instead of both applying a delta computed
+ * from the same read.
+ */
+@Service
+public class SpendingLedger {
+
+  /** Views a row counts toward; the weekly and monthly trackers can be edited separately. */
+  public static final int WEEKLY = 1;
+  public static final int MONTHLY = 2;
+  public static final int ALL_VIEWS = WEEKLY | MONTHLY;
+
+  // the views column carries the row's operation above the view bits; 0 (every older row) adds
+  private static final int SET = 4;
+  private static final int SUBTRACT = 8;
+  private static final int OPS = SET | SUBTRACT;
+
+  private static final TypeReference<List<String>> CATEGORIES_TYPE = new TypeReference<>() {};
+  private static final TypeReference<Map<String, Object>> LEGACY_PERIOD_TYPE = new TypeReference<>() {};
+
+  // segments younger than this stay in the log so a writer with a slightly slow clock can't land behind the base
+  private static final long SETTLE_MILLIS = 60_000;
+
+  /**
+   * Row i is (epochDay[i], category[i], cents[i], views[i]), views also holding
+   * the SET / SUBTRACT flag. Log segments leave through null; the base records
+   * the last log key folded into it and only has plain rows.
+   */
+  record Segment(int[] epochDay, int[] category, long[] cents, int[] views, String through) {}
+
+  /** Monthly-view totals in cents for one month; the version changes whenever the totals do. */
+  public record MonthTotals(Map<String, Long> cents, long version) {}
+
+  private record CachedMonth(MonthTotals totals, long loadedAt) {}
+
+  private final DocumentStore documentStore;
+  private final BulkReader bulkReader;
+  private final KeyLockManager keyLocks;
+  private final int compactAfter;
+  private final long logRetentionMillis;
+
+  // user|YYYY-MM -> materialized monthly totals, LRU bounded and kept current by this instance's appends
+  private final Map<String, CachedMonth> months;
+  private final long monthTtlNanos;
+  private final AtomicLong monthVersions = new AtomicLong();
+  // log keys from this instance must sort in the order they were written, set rows depend on it
+  private final AtomicLong lastAppendMillis = new AtomicLong();
+
+  public SpendingLedger(DocumentStore documentStore,
+                        BulkReader bulkReader,
+                        KeyLockManager keyLocks,
+                        @Value("${ledger.compact-after:64}") int compactAfter,
+                        @Value("${ledger.log-retention-minutes:15}") long logRetentionMinutes,
+                        @Value("${ledger.month-cache.max-entries:10000}") int monthCacheEntries,
+                        @Value("${ledger.month-cache.ttl-seconds:60}") long monthCacheTtlSeconds) {
+    this.documentStore = documentStore;
+    this.bulkReader = bulkReader;
+    this.keyLocks = keyLocks;
+    this.compactAfter = compactAfter;
+    // longer than the document cache TTL, so a reader holding an older base still finds the segments
+    this.logRetentionMillis = logRetentionMinutes * 60_000;
+    this.months = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedMonth> eldest) {
+        return size() > monthCacheEntries;
+      }
+    });
+    // the TTL only matters for writes made by other instances
+    this.monthTtlNanos = TimeUnit.SECONDS.toNanos(monthCacheTtlSeconds);
+  }
+
+  public static int viewOf(String type) {
+    return "weekly".equalsIgnoreCase(type) ? WEEKLY : MONTHLY;
+  }
+
+  // ---------- writes ----------
+
+  /** Adds the cents to the day in the given views. */
+  public void add(String username, LocalDate date, Map<String, Long> cents, int views) {
+    addDays(username, Map.of(date, cents), views);
+  }
+
+  /** Same as {@link #add} for many days at once, written as a single appended segment. */
+  public void addDays(String username, Map<LocalDate, Map<String, Long>> centsByDay, int views) {
+    String user = normalize(username);
+    Map<LocalDate, Map<String, long[]>> deltasByDay = new LinkedHashMap<>();
+    for (var day : centsByDay.entrySet()) {
+      Map<String, long[]> deltas = new LinkedHashMap<>();
+      for (var e : day.getValue().entrySet()) {
+        if (e.getValue() != 0) deltas.put(e.getKey(), perView(views, e.getValue()));
+      }
+      deltasByDay.put(day.getKey(), deltas);
+    }
+    // held so a month being materialized can't miss this append
+    try (KeyLockManager.Lease lease = keyLocks.lock(logPrefix(user))) {
+      append(user, deltasByDay);
+    }
+  }
+
+  /** Takes the cents off the day in the given views, never below zero. */
+  public void subtract(String username, LocalDate date, Map<String, Long> cents, int views) {
+    String user = normalize(username);
+    Map<String, Long> amounts = new LinkedHashMap<>();
+    for (var e : cents.entrySet()) {
+      if (e.getValue() != 0) amounts.put(e.getKey(), Math.abs(e.getValue()));
+    }
+    try (KeyLockManager.Lease lease = keyLocks.lock(logPrefix(user))) {
+      appendOps(user, Map.of(date, amounts), views | SUBTRACT);
+    }
+  }
+
+  /**
+   * Takes subtracted off, never below zero, then adds added, all in one
+   * appended segment: an amount being replaced is taken back and put in again
+   * together or not at all.
+   */
+  public void adjustDays(String username, Map<LocalDate, Map<String, Long>> subtracted,
+                         Map<LocalDate, Map<String, Long>> added, int views) {
+    String user = normalize(username);
+    List<String> names = new ArrayList<>();
+    for (Map<LocalDate, Map<String, Long>> days : List.of(subtracted, added)) {
+      for (Map<String, Long> day : days.values()) {
+        day.forEach((name, cents) -> {
+          if (cents != 0 && !names.contains(name)) names.add(name);
+        });
+      }
+    }
+    if (names.isEmpty()) return;
+
+    Map<LocalDate, Map<String, long[]>> deltasByDay = new LinkedHashMap<>();
+    try (KeyLockManager.Lease lease = keyLocks.lock(logPrefix(user))) {
+      int[] ids = categoryIds(user, names);
+      Columns rows = new Columns();
+      // rows replay in order, so the subtractions see the day as it was before the additions
+      for (var day : subtracted.entrySet()) {
+        int epochDay = (int) day.getKey().toEpochDay();
+        day.getValue().forEach((name, cents) -> {
+          if (cents != 0) rows.add(epochDay, ids[names.indexOf(name)], Math.abs(cents), views | SUBTRACT);
+        });
+      }
+      for (var day : added.entrySet()) {
+        int epochDay = (int) day.getKey().toEpochDay();
+        Map<String, long[]> deltas = deltasByDay.computeIfAbsent(day.getKey(), d -> new LinkedHashMap<>());
+        day.getValue().forEach((name, cents) -> {
+          if (cents == 0) return;
+          rows.add(epochDay, ids[names.indexOf(name)], cents, views);
+          deltas.put(name, perView(views, cents));
+        });
+      }
+      writeSegment(user, rows);
+
+      // as in appendOps, a month with a subtraction is rebuilt on its next read; the others take the additions
+      for (LocalDate day : subtracted.keySet()) {
+        months.remove(monthKey(user, YearMonth.from(day)));
+      }
+      applyToMonths(user, deltasByDay);
+    }
+  }
+
+  /** Sets the day's amount per category in the given views; zero clears the category for that day. */
+  public void set(String username, LocalDate date, Map<String, Long> cents, int views) {
+    setDays(username, Map.of(date, cents), views);
+  }
+
+  /** Same as {@link #set} for many days at once, written as a single appended segment. */
+  public void setDays(String username, Map<LocalDate, Map<String, Long>> centsByDay, int views) {
+    if (centsByDay.isEmpty()) return;
+    String user = normalize(username);
+    Map<LocalDate, Map<String, Long>> targets = new LinkedHashMap<>();
+    for (var day : centsByDay.entrySet()) {
+      Map<String, Long> target = new LinkedHashMap<>();
+      day.getValue().forEach((category, cents) -> target.put(category, Math.max(0, cents)));
+      targets.put(day.getKey(), target);
+    }
+    try (KeyLockManager.Lease lease = keyLocks.lock(logPrefix(user))) {
+      appendOps(user, targets, views | SET);
+    }
+  }
+
+  // ---------- reads ----------
+
+  /**
+   * Cents per category for every day in [from, to] that counts toward the view.
+   * Categories that net to zero or below are left out, as are empty days.
+   */
+  public SortedMap<LocalDate, Map<String, Long>> days(String username, LocalDate from, LocalDate to, int view) {
+    String user = normalize(username);
+    Segment[] segments = load(user);
+    return days(user, segments, categoriesFor(user, segments), from, to, view);
+  }
+
+  /**
+   * Monthly-view totals for the month, served from memory once materialized.
+   * Appends made through this instance update them in place.
+   */
+  public MonthTotals monthTotals(String username, YearMonth month) {
+    String user = normalize(username);
+    String key = monthKey(user, month);
+    CachedMonth cached = months.get(key);
+    if (cached != null && System.nanoTime() - cached.loadedAt() <= monthTtlNanos) {
+      return cached.totals();
+    }
+    try (KeyLockManager.Lease lease = keyLocks.lock(logPrefix(user))) {
+      cached = months.get(key);
+      if (cached != null && System.nanoTime() - cached.loadedAt() <= monthTtlNanos) {
+        return cached.totals();
+      }
+      Map<String, Long> cents = totals(user, month.atDay(1), month.atEndOfMonth(), MONTHLY);
+      MonthTotals loaded = new MonthTotals(Collections.unmodifiableMap(cents), monthVersions.incrementAndGet());
+      months.put(key, new CachedMonth(loaded, System.nanoTime()));
+      return loaded;
+    }
+  }
+
+  /** Cents per category over [from, to] for the view. */
+  public Map<String, Long> totals(String username, LocalDate from, LocalDate to, int view) {
+    Map<String, Long> totals = new TreeMap<>();
+    for (Map<String, Long> day : days(username, from, to, view).values()) {
+      day.forEach((cat, cents) -> totals.merge(cat, cents, Long::sum));
+    }
+    return totals;
+  }
+
+  private static SortedMap<LocalDate, Map<String, Long>> days(String user, Segment[] segments, List<String> categories,
+                                                              LocalDate from, LocalDate to, int view) {
+    int lo = (int) from.toEpochDay();
+    int hi = (int) to.toEpochDay();
+
+    // day -> cents indexed by category id
+    TreeMap<Integer, long[]> byDay = new TreeMap<>();
+    for (int k = 0; k < segments.length; k++) {
+      Segment s = segments[k];
+      // the base is sorted by day, so it only scans the rows in range
+      boolean sorted = k == 0;
+      for (int i = sorted ? lowerBound(s.epochDay(), lo) : 0; i < s.epochDay().length; i++) {
+        int day = s.epochDay()[i];
+        if (day > hi && sorted) break;
+        if (day < lo || day > hi || (s.views()[i] & view) == 0) continue;
+        int category = s.category()[i];
+        if (category >= categories.size()) {
+          // not even in a fresh read of the dictionary (categoriesFor), so the ledger itself is inconsistent
+          throw new IllegalStateException("Ledger category " + category + " unknown for " + user);
+        }
+        long[] totals = byDay.computeIfAbsent(day, d -> new long[categories.size()]);
+        totals[category] = applyRow(s.views()[i] & OPS, totals[category], s.cents()[i]);
+      }
+    }
+
+    SortedMap<LocalDate, Map<String, Long>> out = new TreeMap<>();
+    for (var e : byDay.entrySet()) {
+      Map<String, Long> day = new LinkedHashMap<>();
+      long[] cents = e.getValue();
+      for (int c = 0; c < cents.length; c++) {
+        if (cents[c] > 0) day.put(categories.get(c), cents[c]);
+      }
+      if (!day.isEmpty()) out.put(LocalDate.ofEpochDay(e.getKey()), day);
+    }
+    return out;
+  }
+
+  // ---------- segment helpers ----------
+
+  // deltas are {weekly, monthly} cents per category and day; equal halves share one row
+  private void append(String user, Map<LocalDate, Map<String, long[]>> deltasByDay) {
+    List<String> names = new ArrayList<>();
+    for (Map<String, long[]> deltas : deltasByDay.values()) {
+      for (var e : deltas.entrySet()) {
+        long[] d = e.getValue();
+        if ((d[0] != 0 || d[1] != 0) && !names.contains(e.getKey())) names.add(e.getKey());
+      }
+    }
+    if (names.isEmpty()) return;
+
+    int[] ids = categoryIds(user, names);
+    Columns rows = new Columns();
+    for (var day : deltasByDay.entrySet()) {
+      int epochDay = (int) day.getKey().toEpochDay();
+      for (var e : day.getValue().entrySet()) {
+        long[] d = e.getValue();
+        if (d[0] == 0 && d[1] == 0) continue;
+        int id = ids[names.indexOf(e.getKey())];
+        if (d[0] == d[1]) {
+          rows.add(epochDay, id, d[0], ALL_VIEWS);
+        } else {
+          if (d[0] != 0) rows.add(epochDay, id, d[0], WEEKLY);
+          if (d[1] != 0) rows.add(epochDay, id, d[1], MONTHLY);
+        }
+      }
+    }
+
+    writeSegment(user, rows);
+    applyToMonths(user, deltasByDay);
+  }
+
+  // set or subtract rows, one per day and category; flags is the views plus SET or SUBTRACT
+  private void appendOps(String user, Map<LocalDate, Map<String, Long>> centsByDay, int flags) {
+    List<String> names = new ArrayList<>();
+    for (Map<String, Long> day : centsByDay.values()) {
+      for (String name : day.keySet()) {
+        if (!names.contains(name)) names.add(name);
+      }
+    }
+    if (names.isEmpty()) return;
+
+    int[] ids = categoryIds(user, names);
+    Columns rows = new Columns();
+    for (var day : centsByDay.entrySet()) {
+      int epochDay = (int) day.getKey().toEpochDay();
+      for (var e : day.getValue().entrySet()) {
+        rows.add(epochDay, ids[names.indexOf(e.getKey())], e.getValue(), flags);
+      }
+    }
+    writeSegment(user, rows);
+
+    // what these rows do depends on what the day held, so drop the months they touch; the next read rebuilds them
+    for (LocalDate day : centsByDay.keySet()) {
+      months.remove(monthKey(user, YearMonth.from(day)));
+    }
+  }
+
+  private void writeSegment(String user, Columns rows) {
+    // unique, time-ordered key: appends never overwrite each other so no read is needed. Within this
+    // instance the millis only move forward, so a set and an add in the same millisecond keep their order
+    long now = System.currentTimeMillis();
+    long millis = lastAppendMillis.updateAndGet(last -> Math.max(last + 1, now));
+    String key = String.format("%s%013d-%s.json", logPrefix(user), millis, UUID.randomUUID());
+    documentStore.put(key, rows.toSegment(null));
+  }
+
+  // what a row does to the amount a day and category held before it
+  private static long applyRow(int op, long current, long cents) {
+    return switch (op) {
+      case SET -> cents;
+      // takes off at most what is there; a day already at or below zero is left alone
+      case SUBTRACT -> current - Math.min(cents, Math.max(current, 0));
+      default -> current + cents;
+    };
+  }
+
+  // fold monthly-view deltas into months that are already materialized; callers hold the user's lock
+  private void applyToMonths(String user, Map<LocalDate, Map<String, long[]>> deltasByDay) {
+    for (var day : deltasByDay.entrySet()) {
+      months.computeIfPresent(monthKey(user, YearMonth.from(day.getKey())), (key, cached) -> {
+        Map<String, Long> cents = new TreeMap<>(cached.totals().cents());
+        boolean changed = false;
+        for (var e : day.getValue().entrySet()) {
+          long delta = e.getValue()[1];
+          if (delta == 0) continue;
+          long next = cents.getOrDefault(e.getKey(), 0L) + delta;
+          if (next > 0) cents.put(e.getKey(), next); else cents.remove(e.getKey());
+          changed = true;
+        }
+        if (!changed) return cached;
+        MonthTotals updated = new MonthTotals(Collections.unmodifiableMap(cents), monthVersions.incrementAndGet());
+        return new CachedMonth(updated, cached.loadedAt());
+      });
+    }
+  }
+
+  // base first, then every log segment not folded into it yet
+  private Segment[] load(String user) {
+    List<String> logKeys = documentStore.list(logPrefix(user));
+    Segment base = documentStore.get(baseKey(user), Segment.class);
+    if (base == null) {
+      base = seedFromLegacy(user);
+    }
+
+    List<String> pending = new ArrayList<>();
+    for (String key : logKeys) {
+      if (!isFolded(key, base.through())) pending.add(key);
+    }
+    BulkReader.Results<Segment> results = bulkReader.getAll(pending, Segment.class);
+    if (!results.failures().isEmpty()) {
+      // a missing segment would silently under-report spending
+      throw new IllegalStateException("Could not read ledger segments for " + user + ": " + results.failures().keySet());
+    }
+
+    List<Segment> segments = new ArrayList<>();
+    segments.add(base);
+    segments.addAll(results.found()); // a null value was removed by a compaction that finished after we listed
+
+    long settledBefore = System.currentTimeMillis() - SETTLE_MILLIS;
+    int foldable = 0;
+    for (String key : pending) {
+      if (timestampOf(user, key) <= settledBefore) foldable++;
+    }
+    if (foldable >= compactAfter) {
+      compact(user, logKeys);
+    }
+    return segments.toArray(new Segment[0]);
+  }
+
+  // fold settled segments into the base, then drop the ones every reader has had time to see
+  private void compact(String user, List<String> logKeys) {
+    try {
+      long now = System.currentTimeMillis();
+      Segment compacted = documentStore.update(baseKey(user), Segment.class, current -> {
+        Segment base = current != null ? current : legacySegment(user);
+        String through = base.through();
+        List<String> folding = new ArrayList<>();
+        for (String key : logKeys) {
+          if (isFolded(key, through)) continue;
+          if (timestampOf(user, key) > now - SETTLE_MILLIS) break;
+          folding.add(key);
+          through = key;
+        }
+        List<Segment> parts = new ArrayList<>();
+        parts.add(base);
+        // a segment that can't be read must not be folded past, or the deletes below would lose it;
+        // throwing aborts the whole compaction (a null value is one another compaction already folded)
+        parts.addAll(bulkReader.getAll(folding, Segment.class).foundOrThrow());
+        return fold(parts, through);
+      });
+
+      for (String key : logKeys) {
+        if (isFolded(key, compacted.through()) && timestampOf(user, key) < now - logRetentionMillis) {
+          documentStore.delete(key);
+        }
+      }
+    } catch (Exception e) {
+      // compaction is an optimization, the log is still complete without it
+      e.printStackTrace();
+    }
+  }
+
+  // replays rows per (day, category) and view in order, drops what ends at zero and sorts by day;
+  // the result only has plain rows, one per view unless both views agree
+  private static Segment fold(List<Segment> parts, String through) {
+    TreeMap<Long, long[]> sums = new TreeMap<>();
+    for (Segment s : parts) {
+      for (int i = 0; i < s.epochDay().length; i++) {
+        long packed = ((long) s.epochDay()[i] << 32) | s.category()[i];
+        long[] byView = sums.computeIfAbsent(packed, k -> new long[2]);
+        int flags = s.views()[i];
+        if ((flags & WEEKLY) != 0) byView[0] = applyRow(flags & OPS, byView[0], s.cents()[i]);
+        if ((flags & MONTHLY) != 0) byView[1] = applyRow(flags & OPS, byView[1], s.cents()[i]);
+      }
+    }
+    Columns rows = new Columns();
+    for (var e : sums.entrySet()) {
+      int day = (int) (e.getKey() >> 32);
+      int category = (int) (e.getKey() & 0xFFFFFFFFL);
+      long[] v = e.getValue();
+      if (v[0] == v[1]) {
+        if (v[0] != 0) rows.add(day, category, v[0], ALL_VIEWS);
+      } else {
+        if (v[0] != 0) rows.add(day, category, v[0], WEEKLY);
+        if (v[1] != 0) rows.add(day, category, v[1], MONTHLY);
+      }
+    }
+    return rows.toSegment(through);
+  }
+
+  private Segment seedFromLegacy(String user) {
+    Segment legacy = legacySegment(user);
+    Segment seeded = documentStore.update(baseKey(user), Segment.class,
+        current -> current == null ? legacy : null);
+    return seeded != null ? seeded : documentStore.get(baseKey(user), Segment.class);
+  }
+
+  // day-level amounts from the old weekly/monthly period files, so history carries over
+  private Segment legacySegment(String user) {
+    Map<String, Map<String, long[]>> byDay = new TreeMap<>();
+    readLegacy(user, "weekly", 0, byDay);
+    readLegacy(user, "monthly", 1, byDay);
+
+    Map<String, long[]> flat = new LinkedHashMap<>();
+    List<String> names = new ArrayList<>();
+    for (var day : byDay.entrySet()) {
+      for (var cat : day.getValue().entrySet()) {
+        flat.put(day.getKey() + "|" + cat.getKey(), cat.getValue());
+        if (!names.contains(cat.getKey())) names.add(cat.getKey());
+      }
+    }
+    int[] ids = categoryIds(user, names);
+
+    Columns rows = new Columns();
+    for (var e : flat.entrySet()) {
+      int sep = e.getKey().indexOf('|');
+      int day = (int) LocalDate.parse(e.getKey().substring(0, sep)).toEpochDay();
+      int id = ids[names.indexOf(e.getKey().substring(sep + 1))];
+      long[] d = e.getValue();
+      if (d[0] == d[1]) {
+        rows.add(day, id, d[0], ALL_VIEWS);
+      } else {
+        if (d[0] != 0) rows.add(day, id, d[0], WEEKLY);
+        if (d[1] != 0) rows.add(day, id, d[1], MONTHLY);
+      }
+    }
+    return fold(List.of(rows.toSegment(null)), null);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readLegacy(String user, String type, int slot, Map<String, Map<String, long[]>> byDay) {
+    List<String> keys = documentStore.list("users/%s/costs/%s/".formatted(user, type));
+    // the base is only seeded once, so a period that fails to read fails the seed instead of being left out
+    for (Map<String, Object> period : bulkReader.getAll(keys, LEGACY_PERIOD_TYPE).foundOrThrow()) {
+      if (!(period.get("days") instanceof Map<?, ?> days)) continue;
+      for (var day : days.entrySet()) {
+        if (!(day.getValue() instanceof Map<?, ?> costs)) continue;
+        for (var cost : costs.entrySet()) {
+          if (!(cost.getValue() instanceof Number n)) continue;
+          long cents = Money.toCents(n);
+          if (cents <= 0) continue;
+          byDay.computeIfAbsent(String.valueOf(day.getKey()), k -> new TreeMap<>())
+              .computeIfAbsent(String.valueOf(cost.getKey()), k -> new long[2])[slot] = cents;
+        }
+      }
+    }
+  }
+
+  private List<String> categories(String user) {
+    List<String> categories = documentStore.get(categoriesKey(user), CATEGORIES_TYPE);
+    return categories != null ? categories : List.of();
+  }
+
+  // another instance may have appended a category after our cached copy of the dictionary was read;
+  // if the segments use an id past its end, read it again from the store before days() gives up
+  private List<String> categoriesFor(String user, Segment[] segments) {
+    List<String> categories = categories(user);
+    int maxId = -1;
+    for (Segment s : segments) {
+      for (int id : s.category()) maxId = Math.max(maxId, id);
+    }
+    if (maxId < categories.size()) return categories;
+    List<String> fresh = documentStore.getFresh(categoriesKey(user), CATEGORIES_TYPE);
+    return fresh != null ? fresh : categories;
+  }
+
+  // ids are positions in the dictionary, which is only ever appended to
+  private int[] categoryIds(String user, List<String> names) {
+    List<String> categories = categories(user);
+    if (!categories.containsAll(names)) {
+      List<String> updated = documentStore.update(categoriesKey(user), CATEGORIES_TYPE, current -> {
+        List<String> next = current != null ? new ArrayList<>(current) : new ArrayList<>();
+        boolean changed = false;
+        for (String name : names) {
+          if (!next.contains(name)) {
+            next.add(name);
+            changed = true;
+          }
+        }
+        return changed ? next : null;
+      });
+      categories = updated != null ? updated : categories(user);
+    }
+    int[] ids = new int[names.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = categories.indexOf(names.get(i));
+    }
+    return ids;
+  }
+
+  private static int lowerBound(int[] sorted, int value) {
+    int lo = 0, hi = sorted.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (sorted[mid] < value) lo = mid + 1; else hi = mid;
+    }
+    return lo;
+  }
+
+  private static boolean isFolded(String key, String through) {
+    return through != null && key.compareTo(through) <= 0;
+  }
+
+  private static long timestampOf(String user, String key) {
+    String name = key.substring(logPrefix(user).length());
+    return Long.parseLong(name.substring(0, 13));
+  }
+
+  private static long[] perView(int views, long cents) {
+    return new long[] { (views & WEEKLY) != 0 ? cents : 0, (views & MONTHLY) != 0 ? cents : 0 };
+  }
+
+  private static String monthKey(String user, YearMonth month) {
+    return user + "|" + month;
+  }
+
+  private static String logPrefix(String user) {
+    return "users/" + user + "/ledger/log/";
+  }
+
+  private static String baseKey(String user) {
+    return "users/" + user + "/ledger/base.json";
+  }
+
+  private static String categoriesKey(String user) {
+    return "users/" + user + "/ledger/categories.json";
+  }
+
+  /** Growable primitive columns for building a segment. */
+  private static final class Columns {
+    private int size;
+    private int[] epochDay = new int[16];
+    private int[] category = new int[16];
+    private long[] cents = new long[16];
+    private int[] views = new int[16];
+
+    void add(int day, int categoryId, long amount, int viewMask) {
+      if (size == epochDay.length) {
+        int capacity = size * 2;
+        epochDay = Arrays.copyOf(epochDay, capacity);
+        category = Arrays.copyOf(category, capacity);
+        cents = Arrays.copyOf(cents, capacity);
+        views = Arrays.copyOf(views, capacity);
+      }
+      epochDay[size] = day;
+      category[size] = categoryId;
+      cents[size] = amount;
+      views[size] = viewMask;
+      size++;
+    }
+
+    Segment toSegment(String through) {
+      return new Segment(Arrays.copyOf(epochDay, size), Arrays.copyOf(category, size),
+          Arrays.copyOf(cents, size), Arrays.copyOf(views, size), through);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.plotline.backend.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChatFeedPage {
+    private List<ChatMessage> messages;
+    private String nextCursor; // null when there is nothing older
+
+    public ChatFeedPage() {
+        this.messages = new ArrayList<>();
+    }
+
+    public ChatFeedPage(List<ChatMessage> messages, String nextCursor) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ChatMessage> getMessages() {
+        return messages;
+    }
+    public void setMessages(List<ChatMessage> messages) {
+        this.messages = messages;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -14,6 +14,7 @@ public class FriendPost {
   private String comment;
   private Set<String> likedBy = new HashSet<>(); // usernames of those who liked
   private List<String> comments = new ArrayList<>();
+  private Long createdAt; // epoch millis, null for posts shared before this was tracked
 
   // Getters and Setters
 
@@ -65,4 +66,12 @@ public class FriendPost {
     this.comments = comments;
   }
 
+  public Long getCreatedAt() {
+    return createdAt;
+  }
+
+  public void setCreatedAt(Long createdAt) {
+    this.createdAt = createdAt;
+  }
+
 }
@@ -0,0 +1,284 @@
+package com.plotline.backend.plaid;
+
+import com.plotline.backend.storage.DocumentStore;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.plotline.backend.util.UsernameUtils.normalize;
+
+/**
+ * Sync cursors and what each applied transaction holds in the ledger, kept in
+ * the document store under users/{u}/plaid/items/{itemId}/, so a restart
+ * resumes incremental sync instead of pulling every item's history again, and
+ * can still take back a transaction that is later modified or removed.
+ *
+ * sync.json only holds the cursor. The marks are a snapshot,
+ * applied/{generation}.bin, plus append-only chunks applied/{generation}-{n}.bin,
+ * one per markApplied call, so a page costs a write the size of that page
+ * rather than of the item's whole history. Every
+ * plaid.cursor-store.snapshot-every chunks the marks are written out as the
+ * next generation; the old files are dropped once sync.json points past them.
+ *
+ * markApplied writes its chunk before returning, ahead of the ledger write,
+ * and loading also picks up chunks and snapshots written after the last
+ * sync.json: a page whose marks landed counts as applied even if its cursor
+ * didn't, so it is never applied twice. A write that fails is retried with
+ * the next one, and saveCursor writes any such leftovers before sync.json, so
+ * a saved cursor never gets ahead of the marks. Recently used items stay
+ * loaded, up to plaid.cursor-store.max-items.
+ *
+ * Items saved before amounts were kept, with the hashes in seen/ files or
+ * inline in sync.json, load as applied with nothing known to take back and
+ * move to a snapshot under applied/ on their first write.
+ */
+@Component
+@ConditionalOnProperty(name = "plaid.cursor-store", havingValue = "document", matchIfMissing = true)
+public class DocumentPlaidCursorStore implements PlaidCursorStore {
+
+  // chunks counts applied/{generation}-{n}.bin as of this save. Format 0 is the hash-only layout: seen/ files,
+  // or before those the whole set inline as base64 in seen
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  record SyncState(String cursor, long generation, int chunks, byte[] seen, int format) {}
+
+  static final int FORMAT = 1;
+
+  private static final String OCTET_STREAM = "application/octet-stream";
+
+  private static final class Item {
+    String cursor;
+    final SeenTransactions applied;
+    // marked but not written yet, after a failed write: goes out with the next one
+    SeenTransactions unsaved = SeenTransactions.empty();
+    long generation;
+    int chunks;
+    // the generation sync.json names; files of older ones are dropped once it moves on
+    long savedGeneration;
+    // loaded from the hash-only layout, which has to move to a snapshot before anything else is written
+    boolean legacy;
+    // one writer at a time, without holding the item lock across writes
+    final Object saving = new Object();
+
+    Item(String cursor, SeenTransactions applied, long generation, int chunks) {
+      this.cursor = cursor;
+      this.applied = applied;
+      this.generation = generation;
+      this.chunks = chunks;
+    }
+  }
+
+  private final DocumentStore documentStore;
+  private final int snapshotEvery;
+  private final Map<String, Item> items;
+
+  public DocumentPlaidCursorStore(DocumentStore documentStore,
+                                  @Value("${plaid.cursor-store.max-items:1000}") int maxItems,
+                                  @Value("${plaid.cursor-store.snapshot-every:64}") int snapshotEvery) {
+    this.documentStore = documentStore;
+    this.snapshotEvery = Math.max(1, snapshotEvery);
+    this.items = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Item> eldest) {
+        return size() > maxItems;
+      }
+    });
+  }
+
+  @Override
+  public String getCursor(String username, String itemId) {
+    Item item = item(username, itemId);
+    synchronized (item) {
+      return item.cursor;
+    }
+  }
+
+  @Override
+  public void saveCursor(String username, String itemId, String cursor) {
+    Item item = item(username, itemId);
+    synchronized (item.saving) {
+      writeUnsaved(username, itemId, item);
+      long generation;
+      int chunks;
+      synchronized (item) {
+        generation = item.generation;
+        chunks = item.chunks;
+      }
+      documentStore.put(stateKey(username, itemId), new SyncState(cursor, generation, chunks, null, FORMAT));
+
+      boolean moved;
+      synchronized (item) {
+        item.cursor = cursor;
+        moved = item.savedGeneration != generation;
+        item.savedGeneration = generation;
+      }
+      if (moved) dropOtherGenerations(username, itemId, generation);
+    }
+  }
+
+  @Override
+  public Applied getApplied(String username, String itemId, String transactionId) {
+    Item item = item(username, itemId);
+    synchronized (item) {
+      return item.applied.get(transactionId);
+    }
+  }
+
+  @Override
+  public void markApplied(String username, String itemId, Map<String, Applied> marks) {
+    if (marks.isEmpty()) return;
+    Item item = item(username, itemId);
+    synchronized (item.saving) {
+      synchronized (item) {
+        marks.forEach((transactionId, applied) -> {
+          item.applied.put(transactionId, applied);
+          item.unsaved.put(transactionId, applied);
+        });
+      }
+      writeUnsaved(username, itemId, item);
+    }
+  }
+
+  // the unsaved marks as the next chunk, or every mark as the next generation's snapshot; callers hold item.saving
+  private void writeUnsaved(String username, String itemId, Item item) {
+    SeenTransactions delta;
+    byte[] bytes;
+    boolean snapshot;
+    long generation;
+    int chunks;
+    synchronized (item) {
+      delta = item.unsaved;
+      snapshot = item.legacy || (delta.size() > 0 && item.chunks >= snapshotEvery);
+      if (!snapshot && delta.size() == 0) return;
+      bytes = snapshot ? item.applied.toBytes() : delta.toBytes();
+      item.unsaved = SeenTransactions.empty();
+      generation = item.generation;
+      chunks = item.chunks;
+    }
+
+    try {
+      if (snapshot) {
+        documentStore.putBytes(appliedKey(username, itemId, generation + 1), bytes, OCTET_STREAM);
+      } else {
+        documentStore.putBytes(chunkKey(username, itemId, generation, chunks), bytes, OCTET_STREAM);
+      }
+    } catch (RuntimeException e) {
+      // nothing else marks while item.saving is held, so these are still the latest; the next write retries
+      // them, into the same chunk if this one got that far
+      synchronized (item) {
+        item.unsaved = delta;
+      }
+      throw e;
+    }
+
+    synchronized (item) {
+      if (snapshot) {
+        item.generation = generation + 1;
+        item.chunks = 0;
+        item.legacy = false;
+      } else {
+        item.chunks = chunks + 1;
+      }
+    }
+  }
+
+  private Item item(String username, String itemId) {
+    String key = stateKey(username, itemId);
+    Item item = items.get(key);
+    if (item != null) return item;
+
+    // read outside the map lock; if two callers race, the first one in wins
+    SyncState state = documentStore.get(key, SyncState.class);
+    Item loaded = load(username, itemId, state != null ? state : new SyncState(null, 0, 0, null, FORMAT));
+    Item existing = items.putIfAbsent(key, loaded);
+    return existing != null ? existing : loaded;
+  }
+
+  private Item load(String username, String itemId, SyncState state) {
+    long generation = state.generation();
+    boolean legacy = state.format() < FORMAT;
+    SeenTransactions applied;
+    int chunks;
+    if (legacy) {
+      applied = SeenTransactions.fromHashes(
+          generation > 0 ? documentStore.getBytes(legacySeenKey(username, itemId, generation)) : state.seen());
+      chunks = readChunks(applied, username, itemId, generation, state.chunks(), true);
+    } else {
+      applied = SeenTransactions.fromBytes(documentStore.getBytes(appliedKey(username, itemId, generation)));
+      chunks = readChunks(applied, username, itemId, generation, state.chunks(), false);
+    }
+
+    // a snapshot past the saved generation was written after this sync.json, and holds everything before it
+    byte[] newer;
+    while ((newer = documentStore.getBytes(appliedKey(username, itemId, generation + 1))) != null) {
+      generation++;
+      applied = SeenTransactions.fromBytes(newer);
+      chunks = readChunks(applied, username, itemId, generation, 0, false);
+      legacy = false;
+    }
+
+    Item item = new Item(state.cursor(), applied, generation, chunks);
+    item.savedGeneration = state.generation();
+    item.legacy = legacy;
+    return item;
+  }
+
+  // past the saved count, keeps going while chunks exist: written after the last sync.json. Returns the count read
+  private int readChunks(SeenTransactions into, String username, String itemId, long generation, int saved,
+                         boolean hashes) {
+    for (int n = 0; ; n++) {
+      byte[] chunk = documentStore.getBytes(hashes
+          ? legacyChunkKey(username, itemId, generation, n)
+          : chunkKey(username, itemId, generation, n));
+      if (chunk == null && n >= saved) return n;
+      if (hashes) into.addAllHashes(chunk); else into.addAll(chunk);
+    }
+  }
+
+  // best effort: leftovers are never read again, since generations only go up and seen/ only before the first
+  // applied/ snapshot
+  private void dropOtherGenerations(String username, String itemId, long generation) {
+    String prefix = itemPrefix(username, itemId);
+    try {
+      for (String key : documentStore.list(prefix + "seen/")) documentStore.delete(key);
+      String applied = prefix + "applied/";
+      for (String key : documentStore.list(applied)) {
+        String name = key.substring(applied.length());
+        if (!name.startsWith(generation + ".") && !name.startsWith(generation + "-")) documentStore.delete(key);
+      }
+    } catch (RuntimeException e) {
+      System.err.println("Could not drop old applied files under " + prefix + ": " + e.getMessage());
+    }
+  }
+
+  private static String itemPrefix(String username, String itemId) {
+    return "users/" + normalize(username) + "/plaid/items/" + itemId + "/";
+  }
+
+  private static String stateKey(String username, String itemId) {
+    return itemPrefix(username, itemId) + "sync.json";
+  }
+
+  private static String appliedKey(String username, String itemId, long generation) {
+    return itemPrefix(username, itemId) + "applied/" + generation + ".bin";
+  }
+
+  private static String chunkKey(String username, String itemId, long generation, int n) {
+    return itemPrefix(username, itemId) + "applied/" + generation + "-" + n + ".bin";
+  }
+
+  private static String legacySeenKey(String username, String itemId, long generation) {
+    return itemPrefix(username, itemId) + "seen/" + generation + ".bin";
+  }
+
+  private static String legacyChunkKey(String username, String itemId, long generation, int n) {
+    return itemPrefix(username, itemId) + "seen/" + generation + "-" + n + ".bin";
+  }
+}
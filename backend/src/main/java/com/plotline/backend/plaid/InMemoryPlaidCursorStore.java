@@ -1,12 +1,15 @@
 package com.plotline.backend.plaid;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import java.util.*;
 
+// plaid.cursor-store=memory: nothing survives a restart, every item resyncs from the start
 @Component
+@ConditionalOnProperty(name = "plaid.cursor-store", havingValue = "memory")
 public class InMemoryPlaidCursorStore implements PlaidCursorStore {
   private final Map<String, String> cursorByUserItem = new HashMap<>();
-  private final Set<String> seen = new HashSet<>(); // key: user|item|txn
+  private final Map<String, Applied> applied = new HashMap<>(); // key: user|item|txn
 
   private static String key(String u, String i){ return u + "|" + i; }
   private static String tkey(String u, String i, String t){ return u + "|" + i + "|" + t; }
@@ -22,12 +25,15 @@ public class InMemoryPlaidCursorStore implements PlaidCursorStore {
   }
 
   @Override
-  public synchronized boolean hasSeenTxn(String username, String itemId, String transactionId) {
-    return seen.contains(tkey(username, itemId, transactionId));
+  public synchronized Applied getApplied(String username, String itemId, String transactionId) {
+    return applied.get(tkey(username, itemId, transactionId));
   }
 
   @Override
-  public synchronized void markSeenTxn(String username, String itemId, String transactionId) {
-    seen.add(tkey(username, itemId, transactionId));
+  public synchronized void markApplied(String username, String itemId, Map<String, Applied> marks) {
+    marks.forEach((transactionId, a) -> {
+      if (a != null) applied.put(tkey(username, itemId, transactionId), a);
+      else applied.remove(tkey(username, itemId, transactionId));
+    });
   }
 }
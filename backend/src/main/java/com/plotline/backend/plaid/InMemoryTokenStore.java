@@ -30,7 +30,13 @@ public class InMemoryTokenStore implements TokenStore {
 
   @Override
   public synchronized Map<String, String> listAccessTokens(String username) {
-    return byUser.getOrDefault(username, Map.of());
+    // a copy: background sync iterates it while links are being added
+    return new HashMap<>(byUser.getOrDefault(username, Map.of()));
+  }
+
+  @Override
+  public synchronized Set<String> linkedUsernames() {
+    return new HashSet<>(byUser.keySet());
   }
 
   @Override
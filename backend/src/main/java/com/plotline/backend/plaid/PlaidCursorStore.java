@@ -1,8 +1,31 @@
 package com.plotline.backend.plaid;
 
+import java.util.Map;
+
 public interface PlaidCursorStore {
+
+  /**
+   * What an applied transaction holds in the ledger: cents under category on
+   * date (YYYY-MM-DD). Transactions marked before amounts were kept have a
+   * null date and category, so there is nothing known to take back.
+   */
+  record Applied(String date, String category, long cents) {
+    public boolean known() {
+      return date != null;
+    }
+  }
+
   String getCursor(String username, String itemId);
   void saveCursor(String username, String itemId, String cursor);
-  boolean hasSeenTxn(String username, String itemId, String transactionId);
-  void markSeenTxn(String username, String itemId, String transactionId);
+
+  /** What the transaction holds in the ledger, or null if it holds nothing. */
+  Applied getApplied(String username, String itemId, String transactionId);
+
+  /**
+   * Records what each transaction holds in the ledger from now on, null for
+   * nothing, and persists it before returning, ahead of the ledger write it
+   * describes. If persisting fails the marks still hold here and go out with
+   * the next write.
+   */
+  void markApplied(String username, String itemId, Map<String, Applied> marks);
 }
@@ -0,0 +1,35 @@
+package com.plotline.backend.plaid;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide pacing for Plaid API calls, shared by every sync running at
+ * once. Calls are spaced evenly at plaid.rate-limit.per-second; a caller
+ * reserves the next free slot and sleeps until it comes, so bursts queue up
+ * instead of tripping Plaid's own rate limit errors.
+ */
+@Component
+public class PlaidRateLimiter {
+
+  private final long intervalNanos;
+  private long nextFreeNanos = System.nanoTime();
+
+  public PlaidRateLimiter(@Value("${plaid.rate-limit.per-second:20}") double perSecond) {
+    this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(0.01, perSecond));
+  }
+
+  /** Blocks until this caller's slot; interruptible, so a timed-out sync stops waiting. */
+  public void acquire() throws InterruptedException {
+    long waitNanos;
+    synchronized (this) {
+      long now = System.nanoTime();
+      long slot = Math.max(nextFreeNanos, now);
+      nextFreeNanos = slot + intervalNanos;
+      waitNanos = slot - now;
+    }
+    if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+  }
+}
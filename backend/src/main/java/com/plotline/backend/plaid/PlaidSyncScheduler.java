@@ -0,0 +1,123 @@
+package com.plotline.backend.plaid;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.plotline.backend.util.UsernameUtils.normalize;
+
+/**
+ * Keeps linked items synced without waiting for the app to ask. Every item
+ * is due again interval-minutes after its last run, give or take a random
+ * jitter, and an item seen for the first time gets a random slot within the
+ * first interval, so users linked at the same moment don't all sync on the
+ * same tick. A SYNC_UPDATES_AVAILABLE webhook makes its item due at once.
+ * At most max-concurrent items sync in the background at a time.
+ */
+@Component
+@ConditionalOnProperty(name = "plaid.background-sync.enabled", havingValue = "true", matchIfMissing = true)
+public class PlaidSyncScheduler {
+
+  private final PlaidSyncService plaidSyncService;
+  private final TokenStore tokenStore;
+  private final long intervalMs;
+  private final double jitter;
+  private final Semaphore permits;
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  // user|item -> epoch millis it is next due
+  private final ConcurrentHashMap<String, Long> nextDue = new ConcurrentHashMap<>();
+  private final Set<String> running = ConcurrentHashMap.newKeySet();
+  // a webhook that arrived mid-run, so the item runs again on the next tick
+  private final Set<String> rerun = ConcurrentHashMap.newKeySet();
+
+  public PlaidSyncScheduler(PlaidSyncService plaidSyncService,
+                            TokenStore tokenStore,
+                            @Value("${plaid.background-sync.interval-minutes:60}") long intervalMinutes,
+                            @Value("${plaid.background-sync.jitter:0.2}") double jitter,
+                            @Value("${plaid.background-sync.max-concurrent:4}") int maxConcurrent) {
+    this.plaidSyncService = plaidSyncService;
+    this.tokenStore = tokenStore;
+    this.intervalMs = TimeUnit.MINUTES.toMillis(Math.max(1, intervalMinutes));
+    this.jitter = Math.max(0, Math.min(1, jitter));
+    this.permits = new Semaphore(Math.max(1, maxConcurrent));
+  }
+
+  @Scheduled(fixedDelayString = "${plaid.background-sync.tick-ms:30000}")
+  public void syncDueItems() {
+    long now = System.currentTimeMillis();
+    for (String username : tokenStore.linkedUsernames()) {
+      for (String itemId : tokenStore.listAccessTokens(username).keySet()) {
+        long due = nextDue.computeIfAbsent(key(username, itemId),
+            k -> now + ThreadLocalRandom.current().nextLong(intervalMs));
+        if (due <= now) start(username, itemId);
+      }
+    }
+  }
+
+  /** Webhook entry: syncs the item now instead of at its next slot. False if the item isn't linked here. */
+  public boolean requestSync(String itemId) {
+    String username = tokenStore.usernameForItem(itemId);
+    if (username == null) return false;
+    String key = key(username, itemId);
+    nextDue.put(key, 0L);
+    if (running.contains(key)) rerun.add(key);
+    start(username, itemId);
+    return true;
+  }
+
+  private void start(String username, String itemId) {
+    String key = key(username, itemId);
+    if (!running.add(key)) return;
+    try {
+      executor.execute(() -> {
+        try {
+          permits.acquire();
+          try {
+            PlaidSyncService.ItemResult result = plaidSyncService.syncInBackground(username, itemId);
+            if (result != null && !"ok".equals(result.status())) {
+              System.err.println("Background Plaid sync of " + itemId + " for " + username + ": " + result.status() + " " + result.error());
+            }
+          } finally {
+            permits.release();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (Exception e) {
+          e.printStackTrace();
+        } finally {
+          nextDue.put(key, rerun.remove(key) ? 0L : System.currentTimeMillis() + jittered());
+          running.remove(key);
+        }
+      });
+    } catch (RuntimeException e) {
+      // shutting down
+      running.remove(key);
+    }
+  }
+
+  private long jittered() {
+    double spread = jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+    return (long) (intervalMs * (1 + spread));
+  }
+
+  private static String key(String username, String itemId) {
+    return normalize(username) + "|" + itemId;
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,456 @@
+package com.plotline.backend.plaid;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.plaid.client.model.PersonalFinanceCategory;
+import com.plaid.client.model.RemovedTransaction;
+import com.plaid.client.model.Transaction;
+import com.plaid.client.model.TransactionsSyncRequest;
+import com.plaid.client.model.TransactionsSyncRequestOptions;
+import com.plaid.client.model.TransactionsSyncResponse;
+import com.plaid.client.request.PlaidApi;
+import com.plotline.backend.categorize.Categorizer;
+import com.plotline.backend.costs.CategoryCents;
+import com.plotline.backend.costs.CostsWriter;
+import com.plotline.backend.costs.Money;
+import com.plotline.backend.storage.DocumentStore;
+import com.plotline.backend.storage.KeyLockManager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.plotline.backend.util.UsernameUtils.normalize;
+
+/**
+ * Pulls new transactions for every item a user has linked and writes the
+ * categorized ones to the spending ledger. Items sync concurrently on
+ * virtual threads, each paging transactionsSync through the shared
+ * PlaidRateLimiter, so a user with several banks waits about as long as the
+ * slowest one. Each page is applied as it arrives, with the cursor saved
+ * after it. An item that runs past plaid.sync.item-timeout-seconds is
+ * reported as timed out and the others still land. If it is waiting on Plaid
+ * it is interrupted there; if a page has started writing, that page finishes,
+ * cursor included, and the item stops after it. Either way it keeps the pages
+ * it finished and resumes from there.
+ *
+ * PlaidSyncScheduler drives the same per-item sync in the background, so by
+ * the time the app asks most items are already current.
+ */
+@Service
+public class PlaidSyncService {
+
+  /** How one item's sync went; status is ok, timeout or error, finishedAt is epoch millis. */
+  public record ItemResult(String itemId, String status, int added, int modified, int removed,
+                           int daysUpdated, int pages, long millis, long finishedAt, String error) {}
+
+  /** Totals over all items, the uncategorized transactions for the client to assign, and per-item results. */
+  public record SyncResult(int added, int modified, int removed, int daysUpdated,
+                           List<Map<String, Object>> uncategorized, List<ItemResult> items) {}
+
+  // one item's outcome before it is folded into the SyncResult
+  private record ItemSync(ItemResult result, List<Map<String, Object>> uncategorized) {}
+
+  // lets a timed-out item be interrupted while it fetches, but never between a page's ledger write and its cursor
+  private static final class Run {
+    private static final int FETCHING = 0, WRITING = 1, CANCELLED = 2;
+    private final AtomicInteger state = new AtomicInteger(FETCHING);
+
+    /** False if the run was cancelled; otherwise nothing interrupts it until endPage. */
+    boolean startPage() {
+      return state.compareAndSet(FETCHING, WRITING);
+    }
+
+    /** False if the run was cancelled while the page was written. */
+    boolean endPage() {
+      return state.compareAndSet(WRITING, FETCHING);
+    }
+
+    void cancel(Future<?> future) {
+      // mid-page, the run is left to finish the page and stops at endPage
+      future.cancel(state.getAndSet(CANCELLED) == FETCHING);
+    }
+  }
+
+  private static final TypeReference<List<Map<String, Object>>> PENDING_TYPE = new TypeReference<>() {};
+  private static final int MAX_PENDING = 500;
+
+  private final PlaidApi plaid;
+  private final TokenStore tokenStore;
+  private final PlaidCursorStore cursorStore;
+  private final Categorizer categorizer;
+  private final CostsWriter costsWriter;
+  private final PlaidRateLimiter rateLimiter;
+  private final KeyLockManager keyLocks;
+  private final DocumentStore documentStore;
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final long itemTimeoutMs;
+  private final int pageSize;
+
+  // latest outcome per user|item, whether the request path or the background ran it
+  private final ConcurrentHashMap<String, ItemResult> lastResults = new ConcurrentHashMap<>();
+
+  public PlaidSyncService(PlaidApi plaid,
+                          TokenStore tokenStore,
+                          PlaidCursorStore cursorStore,
+                          Categorizer categorizer,
+                          CostsWriter costsWriter,
+                          PlaidRateLimiter rateLimiter,
+                          KeyLockManager keyLocks,
+                          DocumentStore documentStore,
+                          @Value("${plaid.sync.item-timeout-seconds:20}") long itemTimeoutSeconds,
+                          @Value("${plaid.sync.page-size:500}") int pageSize) {
+    this.plaid = plaid;
+    this.tokenStore = tokenStore;
+    this.cursorStore = cursorStore;
+    this.categorizer = categorizer;
+    this.costsWriter = costsWriter;
+    this.rateLimiter = rateLimiter;
+    this.keyLocks = keyLocks;
+    this.documentStore = documentStore;
+    this.itemTimeoutMs = TimeUnit.SECONDS.toMillis(itemTimeoutSeconds);
+    this.pageSize = Math.max(1, Math.min(500, pageSize));
+  }
+
+  /**
+   * Syncs all of the user's items, or null if they have none linked. An
+   * accountIdsFilter replaces each item's saved account selection. Items
+   * that last synced fine within freshMs are not fetched again; their last
+   * result is reported instead. Uncategorized transactions that background
+   * syncs found since the previous call are handed over here too.
+   */
+  public SyncResult sync(String username, List<String> accountIdsFilter, long freshMs) {
+    Map<String, String> tokens = tokenStore.listAccessTokens(username);
+    if (tokens.isEmpty()) return null;
+
+    long now = System.currentTimeMillis();
+    Map<String, String> due = new LinkedHashMap<>();
+    List<ItemResult> items = new ArrayList<>();
+    for (Map.Entry<String, String> entry : tokens.entrySet()) {
+      ItemResult last = lastResults.get(resultKey(username, entry.getKey()));
+      if (freshMs > 0 && last != null && "ok".equals(last.status()) && now - last.finishedAt() < freshMs) {
+        items.add(last);
+      } else {
+        due.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    int added = 0, modified = 0, removed = 0, daysUpdated = 0;
+    List<Map<String, Object>> uncategorized = new ArrayList<>(drainPending(username));
+    for (ItemSync done : syncItems(username, due, accountIdsFilter)) {
+      ItemResult r = done.result();
+      added += r.added();
+      modified += r.modified();
+      removed += r.removed();
+      daysUpdated += r.daysUpdated();
+      uncategorized.addAll(done.uncategorized());
+      items.add(r);
+    }
+    return new SyncResult(added, modified, removed, daysUpdated, uncategorized, items);
+  }
+
+  /**
+   * One item, for the background scheduler. Its uncategorized transactions
+   * are kept in users/{u}/plaid/uncategorized.json until the user's next
+   * sync call picks them up. Null if the item is no longer linked.
+   */
+  public ItemResult syncInBackground(String username, String itemId) {
+    String accessToken = tokenStore.getAccessToken(username, itemId);
+    if (accessToken == null) return null;
+    ItemSync done = syncItems(username, Map.of(itemId, accessToken), null).get(0);
+    if (!done.uncategorized().isEmpty()) keepPending(username, done.uncategorized());
+    return done.result();
+  }
+
+  // every item on its own virtual thread, each with the full timeout from when it started
+  private List<ItemSync> syncItems(String username, Map<String, String> tokens, List<String> accountIdsFilter) {
+    Map<String, Future<ItemSync>> futures = new LinkedHashMap<>();
+    Map<String, Run> runs = new LinkedHashMap<>();
+    Map<String, Long> started = new LinkedHashMap<>();
+    for (Map.Entry<String, String> entry : tokens.entrySet()) {
+      String itemId = entry.getKey();
+      String accessToken = entry.getValue();
+      Run run = new Run();
+      runs.put(itemId, run);
+      started.put(itemId, System.nanoTime());
+      futures.put(itemId, executor.submit(() -> syncItem(username, itemId, accessToken, accountIdsFilter, run)));
+    }
+
+    List<ItemSync> results = new ArrayList<>();
+    boolean interrupted = false;
+    for (Map.Entry<String, Future<ItemSync>> e : futures.entrySet()) {
+      String itemId = e.getKey();
+      Future<ItemSync> future = e.getValue();
+      long deadline = started.get(itemId) + TimeUnit.MILLISECONDS.toNanos(itemTimeoutMs);
+      ItemSync done;
+      try {
+        if (interrupted) throw new InterruptedException();
+        done = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException ex) {
+        runs.get(itemId).cancel(future);
+        done = failed(itemId, "timeout", started.get(itemId), "no answer within " + itemTimeoutMs + " ms");
+      } catch (ExecutionException ex) {
+        ex.getCause().printStackTrace();
+        done = failed(itemId, "error", started.get(itemId), String.valueOf(ex.getCause().getMessage()));
+      } catch (InterruptedException ex) {
+        interrupted = true;
+        runs.get(itemId).cancel(future);
+        done = failed(itemId, "error", started.get(itemId), "interrupted");
+      }
+      lastResults.put(resultKey(username, itemId), done.result());
+      results.add(done);
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+    return results;
+  }
+
+  private ItemSync syncItem(String username, String itemId, String accessToken, List<String> accountIdsFilter,
+                            Run run) throws Exception {
+    long started = System.nanoTime();
+    // one sync per item at a time, or two runs could both apply the page after the same cursor
+    try (KeyLockManager.Lease lease = keyLocks.lock("users/" + normalize(username) + "/plaid/items/" + itemId + "/sync.json")) {
+      // decide which account IDs we care about; null means all of them
+      List<String> selected =
+          (accountIdsFilter != null && !accountIdsFilter.isEmpty())
+              ? accountIdsFilter
+              : tokenStore.getSelectedAccounts(username, itemId);
+      Set<String> targetAccountIds = (selected != null && !selected.isEmpty()) ? new HashSet<>(selected) : null;
+
+      String cursor = cursorStore.getCursor(username, itemId);
+      boolean hasMore = true;
+      int pages = 0, addedCount = 0, modifiedCount = 0, removedCount = 0;
+
+      // each page adds its new transactions on top of the ledger and swaps out what changed ones held, so a day
+      // spread over pages, or also written by receipts and manual entries, sums up instead of being overwritten
+      Set<String> daysUpdated = new HashSet<>();
+      List<Map<String, Object>> uncategorized = new ArrayList<>();
+
+      while (hasMore) {
+        TransactionsSyncRequest req = new TransactionsSyncRequest()
+            .accessToken(accessToken)
+            .cursor(cursor)
+            .count(pageSize);
+        // NOTE: no accountId/accountIds on the request – filter client-side below
+
+        // Ask Plaid to include Personal Finance Categories in the response
+        TransactionsSyncRequestOptions opts = new TransactionsSyncRequestOptions();
+        opts.setIncludePersonalFinanceCategory(Boolean.TRUE);
+        req.setOptions(opts);
+
+        rateLimiter.acquire();
+        TransactionsSyncResponse res = plaid.transactionsSync(req).execute().body();
+        pages++;
+        if (res == null) break;
+
+        // timed out while paging: this page is dropped and the cursor stays after the last applied one
+        if (Thread.currentThread().isInterrupted() || !run.startPage()) throw new InterruptedException();
+
+        // Aggregate only categorized; collect uncategorized to return to client
+        Map<String, CategoryCents> pageDays = new LinkedHashMap<>();
+        // what modified and removed transactions put in before, to come out in the same append
+        Map<String, CategoryCents> takenBack = new LinkedHashMap<>();
+        // what each transaction the page touches holds in the ledger after it, null for nothing; also guards
+        // against the same id twice in one page
+        Map<String, PlaidCursorStore.Applied> marks = new LinkedHashMap<>();
+        Map<String, PlaidCursorStore.Applied> before = new LinkedHashMap<>();
+
+        for (Transaction t : res.getAdded()) {
+          if (!inScope(targetAccountIds, t.getAccountId()) || !counts(t)) continue;
+          if (applied(username, itemId, t.getTransactionId(), marks, before) != null) continue;
+          PlaidCursorStore.Applied now = addToDay(pageDays, uncategorized, t, categorizer.map(username, t));
+          if (now != null) {
+            marks.put(t.getTransactionId(), now);
+            addedCount++;
+          }
+        }
+        // the old amount comes out and the new one goes in; one that never made it in (say it was uncategorized)
+        // goes in like an added one, and one that stopped counting (pending again, or zero) only comes out
+        for (Transaction t : res.getModified()) {
+          if (!inScope(targetAccountIds, t.getAccountId())) continue;
+          PlaidCursorStore.Applied was = applied(username, itemId, t.getTransactionId(), marks, before);
+          if (was != null && !was.known()) {
+            // applied before amounts were kept: nothing to take back, so it stays as it was
+            modifiedCount++;
+            continue;
+          }
+          PlaidCursorStore.Applied now =
+              counts(t) ? addToDay(pageDays, uncategorized, t, bucketFromPlaidOrFallback(username, t)) : null;
+          if (was == null && now == null) continue;
+          if (was != null) takeBack(takenBack, pageDays, marks.containsKey(t.getTransactionId()), was);
+          marks.put(t.getTransactionId(), now);
+          modifiedCount++;
+        }
+        for (RemovedTransaction t : res.getRemoved()) {
+          if (!inScope(targetAccountIds, t.getAccountId())) continue;
+          removedCount++;
+          PlaidCursorStore.Applied was = applied(username, itemId, t.getTransactionId(), marks, before);
+          if (was == null || !was.known()) continue;
+          takeBack(takenBack, pageDays, marks.containsKey(t.getTransactionId()), was);
+          marks.put(t.getTransactionId(), null);
+        }
+
+        if (!marks.isEmpty()) {
+          // marked before the append: a page replayed after a crash in between skips what it marked, so it is
+          // applied at most once. If the append throws, the marks go back and the next sync applies the page
+          try {
+            cursorStore.markApplied(username, itemId, marks);
+            costsWriter.adjustDays(username, takenBack, pageDays);
+          } catch (RuntimeException e) {
+            Map<String, PlaidCursorStore.Applied> previous = new LinkedHashMap<>();
+            marks.keySet().forEach(id -> previous.put(id, before.get(id)));
+            try {
+              cursorStore.markApplied(username, itemId, previous);
+            } catch (RuntimeException again) {
+              e.addSuppressed(again);
+            }
+            throw e;
+          }
+          for (Map<String, CategoryCents> days : List.of(takenBack, pageDays)) {
+            days.forEach((day, costs) -> {
+              if (!costs.isEmpty()) daysUpdated.add(day);
+            });
+          }
+        }
+
+        cursor = res.getNextCursor();
+        cursorStore.saveCursor(username, itemId, cursor);
+        hasMore = Boolean.TRUE.equals(res.getHasMore());
+        // timed out while this page was written: it is complete, and the run stops here
+        if (!run.endPage()) throw new InterruptedException();
+      }
+
+      ItemResult result = new ItemResult(itemId, "ok", addedCount, modifiedCount, removedCount, daysUpdated.size(), pages,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), System.currentTimeMillis(), null);
+      return new ItemSync(result, uncategorized);
+    }
+  }
+
+  private static boolean inScope(Set<String> targetAccountIds, String accountId) {
+    return targetAccountIds == null || targetAccountIds.contains(accountId);
+  }
+
+  // pending and zero-amount transactions never reach the ledger
+  private static boolean counts(Transaction t) {
+    return !Boolean.TRUE.equals(t.getPending()) && t.getAmount().doubleValue() != 0.0;
+  }
+
+  // what the transaction holds in the ledger as of this point of the page; the first lookup of each id is kept in
+  // before, to put back if the page's append fails
+  private PlaidCursorStore.Applied applied(String username, String itemId, String transactionId,
+                                           Map<String, PlaidCursorStore.Applied> marks,
+                                           Map<String, PlaidCursorStore.Applied> before) {
+    if (marks.containsKey(transactionId)) return marks.get(transactionId);
+    if (before.containsKey(transactionId)) return before.get(transactionId);
+    PlaidCursorStore.Applied applied = cursorStore.getApplied(username, itemId, transactionId);
+    before.put(transactionId, applied);
+    return applied;
+  }
+
+  /**
+   * Adds t to its day under bucket, or to uncategorized when there is no usable bucket. What it added, or null if
+   * it went to uncategorized.
+   */
+  private static PlaidCursorStore.Applied addToDay(Map<String, CategoryCents> dayTotals,
+                                                   List<Map<String, Object>> uncategorized, Transaction t, String bucket) {
+    if (bucket == null || bucket.isBlank() || "UNCATEGORIZED".equalsIgnoreCase(bucket)) {
+      uncategorized.add(uncategorizedView(t, t.getAmount().doubleValue()));
+      return null;
+    }
+    String date = t.getDate().toString();
+    long cents = Money.toCents(t.getAmount());
+    dayTotals.computeIfAbsent(date, k -> new CategoryCents()).add(bucket, cents);
+    return new PlaidCursorStore.Applied(date, bucket, cents);
+  }
+
+  // what an earlier page put in is subtracted; what this one did comes off its own additions, since the
+  // subtractions replay before them
+  private static void takeBack(Map<String, CategoryCents> takenBack, Map<String, CategoryCents> pageDays,
+                               boolean thisPage, PlaidCursorStore.Applied applied) {
+    if (thisPage) {
+      pageDays.get(applied.date()).add(applied.category(), -applied.cents());
+    } else {
+      takenBack.computeIfAbsent(applied.date(), k -> new CategoryCents()).add(applied.category(), applied.cents());
+    }
+  }
+
+  private static Map<String, Object> uncategorizedView(Transaction t, double amount) {
+    return Map.of(
+        "id", t.getTransactionId(),
+        "date", t.getDate().toString(),
+        "name", t.getName(),
+        "amount", amount,
+        "accountId", t.getAccountId()
+    );
+  }
+
+  private static ItemSync failed(String itemId, String status, long startedNanos, String error) {
+    ItemResult result = new ItemResult(itemId, status, 0, 0, 0, 0, 0,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos), System.currentTimeMillis(), error);
+    return new ItemSync(result, List.of());
+  }
+
+  private void keepPending(String username, List<Map<String, Object>> found) {
+    documentStore.update(pendingKey(username), PENDING_TYPE, current -> {
+      Map<Object, Map<String, Object>> byId = new LinkedHashMap<>();
+      if (current != null) current.forEach(t -> byId.put(t.get("id"), t));
+      found.forEach(t -> byId.put(t.get("id"), t));
+      List<Map<String, Object>> next = new ArrayList<>(byId.values());
+      // a user who never opens the app shouldn't grow this forever; keep the newest
+      return next.size() > MAX_PENDING ? new ArrayList<>(next.subList(next.size() - MAX_PENDING, next.size())) : next;
+    });
+  }
+
+  private List<Map<String, Object>> drainPending(String username) {
+    List<Map<String, Object>> pending = documentStore.get(pendingKey(username), PENDING_TYPE);
+    if (pending == null || pending.isEmpty()) return List.of();
+    Set<Object> taken = new HashSet<>();
+    pending.forEach(t -> taken.add(t.get("id")));
+    documentStore.update(pendingKey(username), PENDING_TYPE, current -> {
+      if (current == null) return null;
+      List<Map<String, Object>> rest = new ArrayList<>(current);
+      rest.removeIf(t -> taken.contains(t.get("id")));
+      return rest;
+    });
+    return pending;
+  }
+
+  private static String pendingKey(String username) {
+    return "users/" + normalize(username) + "/plaid/uncategorized.json";
+  }
+
+  private static String resultKey(String username, String itemId) {
+    return normalize(username) + "|" + itemId;
+  }
+
+  private String bucketFromPlaidOrFallback(String username, Transaction t) {
+    PersonalFinanceCategory pfc = t.getPersonalFinanceCategory();
+    if (pfc != null) {
+      String detailed = pfc.getDetailed();
+      String primary  = pfc.getPrimary();
+      if (detailed != null && !detailed.isBlank()) return detailed;  // e.g., "COFFEE_SHOP"
+      if (primary  != null && !primary.isBlank())  return primary;   // e.g., "FOOD_AND_DRINK"
+    }
+    // Fallback to your existing heuristic
+    return categorizer.map(username, t);
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,259 @@
+package com.plotline.backend.plaid;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What each transaction an item has applied holds in the ledger, keyed by a
+ * 64-bit hash of its id instead of the String: the day, category and cents,
+ * so a modified or removed transaction can be taken back. Rows are parallel
+ * primitive columns sorted by hash and searched by binary search, plus a
+ * small sorted tail of recent additions that is merged in once it fills.
+ * That is 24 bytes per transaction, about 24MB per million, and serializes
+ * to the same rows behind a table of the category names.
+ *
+ * At 64 bits a false match inside one item is vanishingly unlikely (around
+ * one in 10^7 at a million transactions). Not thread-safe; callers lock.
+ */
+final class SeenTransactions {
+
+  private static final int MERGE_AT = 1024;
+
+  // category column values that aren't an index into names: applied by a version that only kept the hash,
+  // and applied but holding nothing any more (removed, or put back after a failed write)
+  private static final int UNKNOWN = -1;
+  private static final int NONE = -2;
+
+  private Rows sorted;
+  private final Rows recent = new Rows(MERGE_AT);
+  private final List<String> names = new ArrayList<>();
+  private final Map<String, Integer> nameIds = new HashMap<>();
+
+  private SeenTransactions(Rows sorted) {
+    this.sorted = sorted;
+  }
+
+  static SeenTransactions empty() {
+    return new SeenTransactions(new Rows(0));
+  }
+
+  /** Reads what toBytes wrote: the category names, then rows sorted by hash and unique. */
+  static SeenTransactions fromBytes(byte[] bytes) {
+    if (bytes == null || bytes.length == 0) return empty();
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      SeenTransactions seen = empty();
+      for (String name : readNames(in)) seen.categoryId(name);
+      int count = in.readInt();
+      Rows rows = new Rows(count);
+      for (int i = 0; i < count; i++) rows.set(i, in.readLong(), in.readInt(), in.readInt(), in.readLong());
+      rows.size = count;
+      seen.sorted = rows;
+      return seen;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Reads a set written before amounts were kept, big-endian hashes sorted and unique; none can be taken back. */
+  static SeenTransactions fromHashes(byte[] bytes) {
+    if (bytes == null || bytes.length == 0) return empty();
+    int count = bytes.length / Long.BYTES;
+    ByteBuffer in = ByteBuffer.wrap(bytes);
+    Rows rows = new Rows(count);
+    for (int i = 0; i < count; i++) rows.set(i, in.getLong(), 0, UNKNOWN, 0);
+    rows.size = count;
+    return new SeenTransactions(rows);
+  }
+
+  /** Applies every row in bytes (toBytes format, any order) over what is here. */
+  void addAll(byte[] bytes) {
+    if (bytes == null || bytes.length == 0) return;
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      List<String> theirs = readNames(in);
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        long h = in.readLong();
+        int day = in.readInt();
+        int category = in.readInt();
+        put(h, day, category < 0 ? category : categoryId(theirs.get(category)), in.readLong());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Adds the hashes in bytes (fromHashes format) that aren't here yet. */
+  void addAllHashes(byte[] bytes) {
+    if (bytes == null) return;
+    ByteBuffer in = ByteBuffer.wrap(bytes);
+    while (in.remaining() >= Long.BYTES) {
+      long h = in.getLong();
+      if (sorted.find(h) < 0 && recent.find(h) < 0) put(h, 0, UNKNOWN, 0);
+    }
+  }
+
+  /** What the transaction holds in the ledger, or null if nothing. */
+  PlaidCursorStore.Applied get(String transactionId) {
+    long h = hash(transactionId);
+    Rows rows = sorted;
+    int i = rows.find(h);
+    if (i < 0) {
+      rows = recent;
+      i = rows.find(h);
+    }
+    if (i < 0 || rows.category[i] == NONE) return null;
+    if (rows.category[i] == UNKNOWN) return new PlaidCursorStore.Applied(null, null, 0);
+    return new PlaidCursorStore.Applied(LocalDate.ofEpochDay(rows.day[i]).toString(),
+        names.get(rows.category[i]), rows.cents[i]);
+  }
+
+  /** Records what the transaction holds from now on; null for nothing. */
+  void put(String transactionId, PlaidCursorStore.Applied applied) {
+    long h = hash(transactionId);
+    if (applied == null) {
+      put(h, 0, NONE, 0);
+    } else if (!applied.known()) {
+      put(h, 0, UNKNOWN, 0);
+    } else {
+      put(h, (int) LocalDate.parse(applied.date()).toEpochDay(), categoryId(applied.category()), applied.cents());
+    }
+  }
+
+  /** Rows held, including the ones that hold nothing any more. */
+  int size() {
+    return sorted.size + recent.size;
+  }
+
+  byte[] toBytes() {
+    merge();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + sorted.size * 24);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(names.size());
+      for (String name : names) out.writeUTF(name);
+      out.writeInt(sorted.size);
+      for (int i = 0; i < sorted.size; i++) {
+        out.writeLong(sorted.hash[i]);
+        out.writeInt(sorted.day[i]);
+        out.writeInt(sorted.category[i]);
+        out.writeLong(sorted.cents[i]);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private void put(long h, int day, int category, long cents) {
+    int i = sorted.find(h);
+    if (i >= 0) {
+      sorted.set(i, h, day, category, cents);
+      return;
+    }
+    i = recent.find(h);
+    if (i >= 0) {
+      recent.set(i, h, day, category, cents);
+      return;
+    }
+    recent.insert(-i - 1, h, day, category, cents);
+    if (recent.size == MERGE_AT) merge();
+  }
+
+  private int categoryId(String name) {
+    return nameIds.computeIfAbsent(name, n -> {
+      names.add(n);
+      return names.size() - 1;
+    });
+  }
+
+  // the tail is disjoint from sorted (put checks), so a plain two-way merge keeps both sorted and unique
+  private void merge() {
+    if (recent.size == 0) return;
+    Rows next = new Rows(sorted.size + recent.size);
+    int a = 0, b = 0, n = 0;
+    while (a < sorted.size && b < recent.size) {
+      if (sorted.hash[a] < recent.hash[b]) sorted.copyTo(a++, next, n++);
+      else recent.copyTo(b++, next, n++);
+    }
+    while (a < sorted.size) sorted.copyTo(a++, next, n++);
+    while (b < recent.size) recent.copyTo(b++, next, n++);
+    next.size = n;
+    sorted = next;
+    recent.size = 0;
+  }
+
+  private static List<String> readNames(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    List<String> names = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) names.add(in.readUTF());
+    return names;
+  }
+
+  // FNV-1a over the UTF-8 bytes, then a splitmix64 finalizer to spread the bits
+  static long hash(String transactionId) {
+    long h = 0xcbf29ce484222325L;
+    for (byte b : transactionId.getBytes(StandardCharsets.UTF_8)) {
+      h ^= b & 0xff;
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 30;
+    h *= 0xbf58476d1ce4e5b9L;
+    h ^= h >>> 27;
+    h *= 0x94d049bb133111ebL;
+    h ^= h >>> 31;
+    return h;
+  }
+
+  // row i is (hash[i], day[i], category[i], cents[i]), sorted by hash
+  private static final class Rows {
+    final long[] hash;
+    final int[] day;
+    final int[] category;
+    final long[] cents;
+    int size;
+
+    Rows(int capacity) {
+      hash = new long[capacity];
+      day = new int[capacity];
+      category = new int[capacity];
+      cents = new long[capacity];
+    }
+
+    int find(long h) {
+      return Arrays.binarySearch(hash, 0, size, h);
+    }
+
+    void set(int i, long h, int d, int c, long v) {
+      hash[i] = h;
+      day[i] = d;
+      category[i] = c;
+      cents[i] = v;
+    }
+
+    // callers keep size below capacity
+    void insert(int at, long h, int d, int c, long v) {
+      int tail = size - at;
+      System.arraycopy(hash, at, hash, at + 1, tail);
+      System.arraycopy(day, at, day, at + 1, tail);
+      System.arraycopy(category, at, category, at + 1, tail);
+      System.arraycopy(cents, at, cents, at + 1, tail);
+      set(at, h, d, c, v);
+      size++;
+    }
+
+    void copyTo(int i, Rows to, int at) {
+      to.set(at, hash[i], day[i], category[i], cents[i]);
+    }
+  }
+}
@@ -9,6 +9,7 @@ public interface TokenStore {
   String getAccessToken(String username, String itemId);
   java.util.Map<String,String> listAccessTokens(String username); // itemId -> token
   String usernameForItem(String itemId);
+  java.util.Set<String> linkedUsernames(); // everyone with at least one item, for background sync
 
   void saveSelectedAccounts(String username, String itemId, List<String> accountIds);
   List<String> getSelectedAccounts(String username, String itemId);
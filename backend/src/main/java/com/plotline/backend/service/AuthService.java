@@ -1,36 +1,22 @@
 package com.plotline.backend.service;
 
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.bcrypt.BCrypt;
 import org.springframework.stereotype.Service;
 
 import com.auth0.jwt.JWT;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.plotline.backend.dto.S3UserRecord;
-import com.twilio.twiml.voice.Sms;
+import com.plotline.backend.storage.DocumentStore;
 import io.github.cdimascio.dotenv.Dotenv;
 
-import software.amazon.awssdk.core.ResponseBytes;
-import software.amazon.awssdk.core.ResponseInputStream;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.model.S3Exception;
 @Service
 public class AuthService {
 
-    private final S3Client s3Client;
-    private final String bucketName = "plotline-database-bucket";
-    private final ObjectMapper objectMapper;
+    private final DocumentStore documentStore;
     private final String jwt_secret;
     private static final String EMAIL_INDEX_KEY = "email-index.json";
 
@@ -39,9 +25,8 @@ public class AuthService {
     private static final long jwt_expiry = 1000 * 60 * 60 * 24 * 30; // 1 month for new login
 
     private final SmsService smsService;
-    public AuthService(S3Client s3Client, SmsService smsService) {
-        this.s3Client = s3Client;
-        this.objectMapper = new ObjectMapper();
+    public AuthService(DocumentStore documentStore, SmsService smsService) {
+        this.documentStore = documentStore;
         this.smsService = smsService;
         Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
         this.jwt_secret = resolveEnv(dotenv, "JWT_SECRET_KEY");
@@ -70,8 +55,7 @@ public class AuthService {
     private boolean userExistsStrict(String username) {
         String key = userAccKey(username);
         try {
-            s3Client.getObject(GetObjectRequest.builder().bucket(bucketName).key(key).build());
-            return true;
+            return documentStore.getBytes(key) != null;
         } catch (Exception e) {
             return false;
         }
@@ -91,16 +75,7 @@ public class AuthService {
         try {
 
             // Fetch user record from S3
-            GetObjectRequest getRequest = GetObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(key)
-                    .build();
-
-            ResponseBytes<GetObjectResponse> objectBytes = s3Client.getObjectAsBytes(getRequest);
-            String userJson = new String(objectBytes.asByteArray(), StandardCharsets.UTF_8);
-
-            // Convert JSON to User Record
-            S3UserRecord userRecord = objectMapper.readValue(userJson, S3UserRecord.class);
+            S3UserRecord userRecord = documentStore.get(key, S3UserRecord.class);
 
             return userRecord.getIsGoogle();
 
@@ -108,13 +83,7 @@ public class AuthService {
 
         if (!norm.equals(username)) {
             try {
-                GetObjectRequest getRequest = GetObjectRequest.builder()
-                        .bucket(bucketName)
-                        .key(userAccKey(username))
-                        .build();
-                ResponseBytes<GetObjectResponse> objectBytes = s3Client.getObjectAsBytes(getRequest);
-                String userJson = new String(objectBytes.asByteArray(), StandardCharsets.UTF_8);
-                S3UserRecord userRecord = objectMapper.readValue(userJson, S3UserRecord.class);
+                S3UserRecord userRecord = documentStore.get(userAccKey(username), S3UserRecord.class);
                 return userRecord.getIsGoogle();
             } catch (Exception ignored) { }
         }
@@ -134,15 +103,7 @@ public class AuthService {
             String hashedPassword = BCrypt.hashpw(rawPassword, BCrypt.gensalt());
 
             S3UserRecord userRecord = new S3UserRecord(norm, phone, normEmail, hashedPassword, isGoogle, false);
-            String userJson = objectMapper.writeValueAsString(userRecord);
-
-            PutObjectRequest putRequest = PutObjectRequest.builder().
-                                        bucket(bucketName).
-                                        key(userAccKey(norm)).
-                                        contentType("application/json").
-                                        build();
-
-            s3Client.putObject(putRequest, RequestBody.fromString(userJson));
+            documentStore.put(userAccKey(norm), userRecord);
 
             updateAllUsersList(displayUsername);
             updateEmailIndex(normEmail, norm);
@@ -169,16 +130,7 @@ public class AuthService {
 
         try {
             // Fetch user record from S3
-            GetObjectRequest getRequest = GetObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(userAccKey(keyToUse))
-                    .build();
-
-            ResponseBytes<GetObjectResponse> objectBytes = s3Client.getObjectAsBytes(getRequest);
-            String userJson = new String(objectBytes.asByteArray(), StandardCharsets.UTF_8);
-
-            // Convert JSON to User Record
-            S3UserRecord userRecord = objectMapper.readValue(userJson, S3UserRecord.class);
+            S3UserRecord userRecord = documentStore.get(userAccKey(keyToUse), S3UserRecord.class);
 
             // Verify Password
             if (BCrypt.checkpw(rawPassword, userRecord.getPassword())) {
@@ -218,15 +170,7 @@ public class AuthService {
     
         try {
 
-            GetObjectRequest getRequest = GetObjectRequest.builder()
-                .bucket(bucketName)
-                .key(userAccKey(keyToUse))
-                .build();
-    
-            ResponseBytes<GetObjectResponse> objectBytes = s3Client.getObjectAsBytes(getRequest);
-            String userJson = new String(objectBytes.asByteArray(), StandardCharsets.UTF_8);
-
-            S3UserRecord userRecord = objectMapper.readValue(userJson, S3UserRecord.class);
+            S3UserRecord userRecord = documentStore.get(userAccKey(keyToUse), S3UserRecord.class);
     
             // if there is a otp code, verify it
             if (code != null && !code.isEmpty()) {
@@ -243,16 +187,16 @@ public class AuthService {
             }
     
             String hashedNewPassword = BCrypt.hashpw(newPassword, BCrypt.gensalt());
-            userRecord.setPassword(hashedNewPassword);
-    
-            String updatedUserJson = objectMapper.writeValueAsString(userRecord);
-    
-            PutObjectRequest putRequest = PutObjectRequest.builder()
-                .bucket(bucketName)
-                .key(userAccKey(username))
-                .build();
-    
-            s3Client.putObject(putRequest, RequestBody.fromString(updatedUserJson));
+
+            // only the password changes, on top of whatever else (e.g. a phone verification) landed meanwhile
+            S3UserRecord saved = documentStore.update(userAccKey(keyToUse), S3UserRecord.class, current -> {
+                if (current == null) return null;
+                current.setPassword(hashedNewPassword);
+                return current;
+            });
+            if (saved == null) {
+                return "User does not exist";
+            }
     
             return "success";
     
@@ -282,76 +226,25 @@ public class AuthService {
         return "users/" + username + "/account.json";
     }
 
+    // every signup appends here, so it goes through update: a plain read and put would drop concurrent signups
     private void updateAllUsersList(String username) throws Exception {
         final String allUsersKey = "all-users.json";
-        List<String> allUsers;
+        documentStore.update(allUsersKey, new TypeReference<List<String>>() {}, current -> {
+            // if it doesn't exist yet, start fresh
+            List<String> allUsers = current != null ? current : new ArrayList<>();
 
-        // try to read the existing list
-        try {
-            GetObjectRequest getListReq = GetObjectRequest.builder()
-                .bucket(bucketName)
-                .key(allUsersKey)
-                .build();
-
-            ResponseInputStream<GetObjectResponse> resp =
-                s3Client.getObject(getListReq);
-
-            allUsers = objectMapper.readValue(
-                resp,
-                new TypeReference<List<String>>() {}
-            );
-
-        } catch (S3Exception e) {
-            // if it doesn't exist yet (404), start fresh
-            if (e.statusCode() == 404) {
-                allUsers = new ArrayList<>(Arrays.asList());
-            } else {
-                throw e;
-            }
-        }
-
-        // append (with dedupe)
-        boolean exists = allUsers.stream().anyMatch(u -> u.equalsIgnoreCase(username));
-        if (!exists) {
+            // append (with dedupe); null leaves the list alone
+            boolean exists = allUsers.stream().anyMatch(u -> u.equalsIgnoreCase(username));
+            if (exists) return null;
             allUsers.add(username);
-        }
-
-        // write it back
-        String allUsersJson = objectMapper.writeValueAsString(allUsers);
-        PutObjectRequest putListReq = PutObjectRequest.builder()
-            .bucket(bucketName)
-            .key(allUsersKey)
-            .contentType("application/json")
-            .build();
-
-        s3Client.putObject(
-            putListReq,
-            RequestBody.fromString(allUsersJson)
-        );
+            return allUsers;
+        });
     }
 
     public List<String> getAllUsernames() throws Exception {
-        try {
-            GetObjectRequest getReq = GetObjectRequest.builder()
-                .bucket(bucketName)
-                .key("all-users.json")
-                .build();
-
-            ResponseInputStream<GetObjectResponse> resp =
-                s3Client.getObject(getReq);
-
-            return objectMapper.readValue(
-                resp,
-                new TypeReference<List<String>>() {}
-            );
-
-        } catch (S3Exception e) {
-            if (e.statusCode() == 404) {
-                // no list yet => return empty
-                return List.of();
-            }
-            throw e;
-        }
+        List<String> allUsers = documentStore.get("all-users.json", new TypeReference<List<String>>() {});
+        // no list yet => return empty
+        return allUsers != null ? allUsers : List.of();
     }
 
     public String normalizeUsername(String username) {
@@ -363,35 +256,8 @@ public class AuthService {
     }
 
     private Map<String, String> loadEmailIndex() throws Exception {
-        try {
-            GetObjectRequest getReq = GetObjectRequest.builder()
-                .bucket(bucketName)
-                .key(EMAIL_INDEX_KEY)
-                .build();
-
-            ResponseInputStream<GetObjectResponse> resp =
-                s3Client.getObject(getReq);
-
-            return objectMapper.readValue(
-                resp,
-                new TypeReference<Map<String, String>>() {}
-            );
-        } catch (S3Exception e) {
-            if (e.statusCode() == 404) {
-                return new java.util.HashMap<>();
-            }
-            throw e;
-        }
-    }
-
-    private void saveEmailIndex(Map<String, String> map) throws Exception {
-        String json = objectMapper.writeValueAsString(map);
-        PutObjectRequest putReq = PutObjectRequest.builder()
-            .bucket(bucketName)
-            .key(EMAIL_INDEX_KEY)
-            .contentType("application/json")
-            .build();
-        s3Client.putObject(putReq, RequestBody.fromString(json));
+        Map<String, String> index = documentStore.get(EMAIL_INDEX_KEY, new TypeReference<Map<String, String>>() {});
+        return index != null ? index : new java.util.HashMap<>();
     }
 
     private boolean emailExistsAnyCase(String email) {
@@ -405,11 +271,15 @@ public class AuthService {
         }
     }
 
+    // same as the users list: one shared document, so a lost write would leave an account that can't log in by email
     private void updateEmailIndex(String email, String username) throws Exception {
         String normEmail = normalizeEmail(email);
-        Map<String, String> index = loadEmailIndex();
-        index.put(normEmail, username);
-        saveEmailIndex(index);
+        documentStore.update(EMAIL_INDEX_KEY, new TypeReference<Map<String, String>>() {}, current -> {
+            Map<String, String> index = current != null ? current : new java.util.HashMap<>();
+            if (username.equals(index.get(normEmail))) return null;
+            index.put(normEmail, username);
+            return index;
+        });
     }
 
     public String usernameForEmail(String email) {
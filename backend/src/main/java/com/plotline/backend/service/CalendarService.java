@@ -1,68 +1,78 @@
 package com.plotline.backend.service;
 
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.plotline.backend.dto.EventDto;
-import com.plotline.backend.dto.EventRequest;
-
-import software.amazon.awssdk.core.ResponseBytes;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import com.plotline.backend.storage.BulkReader;
+import com.plotline.backend.storage.DocumentStore;
+import com.plotline.backend.storage.KeyLockManager;
 
 import static com.plotline.backend.util.UsernameUtils.normalize;
 
 @Service
 public class CalendarService {
 
-    private final S3Client s3Client;
-    private final ObjectMapper objectMapper;
-    private final String bucketName = "plotline-database-bucket";
-    private final ReentrantLock lock = new ReentrantLock();
+    private final DocumentStore documentStore;
+    private final KeyLockManager keyLocks;
+    private final BulkReader bulkReader;
     private final UserProfileService userProfileService;
 
-    public CalendarService(S3Client s3Client, UserProfileService userProfileService) {
-        this.s3Client = s3Client;
-        this.objectMapper = new ObjectMapper();
+    public CalendarService(DocumentStore documentStore,
+                           KeyLockManager keyLocks,
+                           BulkReader bulkReader,
+                           UserProfileService userProfileService) {
+        this.documentStore = documentStore;
+        this.keyLocks = keyLocks;
+        this.bulkReader = bulkReader;
         this.userProfileService = userProfileService;
     }
 
-    // get all events for the user
-    public List<EventDto> getEvents(String username) {
-        try {
-            String key = "users/" + normalize(username) + "/calendar.json";
-
-            GetObjectRequest getRequest = GetObjectRequest.builder()
-                .bucket(bucketName)
-                .key(key)
-                .build();
+    private static String calendarKey(String username) {
+        return "users/" + normalize(username) + "/calendar.json";
+    }
 
-            ResponseBytes<GetObjectResponse> objectBytes = s3Client.getObjectAsBytes(getRequest);
-            String eventsJson = new String(objectBytes.asByteArray(), StandardCharsets.UTF_8);
+    // lock the user's calendar plus every friend calendar the operation touches
+    private KeyLockManager.Lease lockCalendars(String username, List<String> friends) {
+        List<String> keys = new ArrayList<>();
+        keys.add(calendarKey(username));
+        if (friends != null) {
+            for (String friend : friends) {
+                keys.add(calendarKey(friend));
+            }
+        }
+        return keyLocks.lockAll(keys);
+    }
 
-            // parse json into eventDto
-            List<EventDto> eventList = objectMapper.readValue(eventsJson, new TypeReference<List<EventDto>>() {});
-            return eventList;
-        } catch (Exception e) {
-            // return empty if error
-            return new ArrayList<>();
+    // get all events for the user; only a missing calendar is empty, a failed read throws,
+    // since every writer below saves back the list it read
+    public List<EventDto> getEvents(String username) {
+        try {
+            return getEventsAsync(username).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
         }
     }
 
+    public CompletableFuture<List<EventDto>> getEventsAsync(String username) {
+        // parse json into eventDto
+        return documentStore.getAsync(calendarKey(username), new TypeReference<List<EventDto>>() {})
+            .thenApply(eventList -> eventList != null ? eventList : new ArrayList<>());
+    }
+
     // add new event
 
     public EventDto createEvent(EventDto newEvent, String username) throws Exception {
-        lock.lock(); // Ensure no race conditions
-        try {
+        // only the creator and the invited friends are serialized, other users proceed in parallel
+        try (KeyLockManager.Lease lease = lockCalendars(username, newEvent.getInvitedFriends())) {
             String normUser = normalize(username);
             List<EventDto> existingEvents = getEvents(normUser);
 
@@ -81,22 +91,23 @@ public class CalendarService {
 
             // add to each friend's calendar
             if (newEvent.getInvitedFriends() != null && !newEvent.getInvitedFriends().isEmpty()) {
-                for (String friend : newEvent.getInvitedFriends()) {
+                EventDto created = newEvent;
+                updateFriendCalendars(newEvent.getInvitedFriends(), friend -> {
                     List<EventDto> friendEvents = getEvents(normalize(friend));
 
                     EventDto friendEvent = new EventDto(
-                        newEvent.getId(),
-                        newEvent.getTitle(),
-                        newEvent.getDescription(),
-                        newEvent.getStartDate(),
-                        newEvent.getEndDate(),
-                        newEvent.getEventType(),
-                        newEvent.getRecurrence(),
+                        created.getId(),
+                        created.getTitle(),
+                        created.getDescription(),
+                        created.getStartDate(),
+                        created.getEndDate(),
+                        created.getEventType(),
+                        created.getRecurrence(),
                         List.of(username)  // event creator is the only invited friend for invited users
                     );
                     friendEvents.add(friendEvent);
-                    saveEventsToS3(normalize(friend), friendEvents);                  
-                }
+                    saveEventsToS3(normalize(friend), friendEvents);
+                });
 
                 newEvent.getInvitedFriends().add("c-123-creator-user-c-987"); // add a unique 'creator' friend so it deletes correctly
                 // Trophy for inviting friends to calendar events
@@ -108,12 +119,16 @@ public class CalendarService {
             saveEventsToS3(normUser, existingEvents);
 
             return newEvent;
-        } finally {
-            lock.unlock(); // Ensure lock is released
         }
     }
 
     public EventDto updateEvent(EventDto updated, String username) throws Exception {
+        try (KeyLockManager.Lease lease = lockCalendars(username, updated.getInvitedFriends())) {
+            return applyUpdate(updated, username);
+        }
+    }
+
+    private EventDto applyUpdate(EventDto updated, String username) throws Exception {
         List<EventDto> existingEvents = getEvents(username);
         boolean found = false;
     
@@ -134,7 +149,7 @@ public class CalendarService {
     
         // update or create the event copy for each invited friend
         if (updated.getInvitedFriends() != null) {
-            for (String friend : updated.getInvitedFriends()) {
+            updateFriendCalendars(updated.getInvitedFriends(), friend -> {
                 List<EventDto> friendEvents = getEvents(friend);
                 boolean eventExistsForFriend = false;
     
@@ -173,7 +188,7 @@ public class CalendarService {
                 }
     
                 saveEventsToS3(friend, friendEvents);
-            }
+            });
         }
     
         return updated;
@@ -183,6 +198,32 @@ public class CalendarService {
 
 
     public void deleteEvent(String eventId, String username) throws Exception {
+        // the friends to clean up are only known from the stored event, so look them up first;
+        // an update can add invitees before the locks are held, so check again under them
+        Set<String> friends = invitees(eventId, username);
+        while (true) {
+            try (KeyLockManager.Lease lease = lockCalendars(username, new ArrayList<>(friends))) {
+                Set<String> current = invitees(eventId, username);
+                if (friends.containsAll(current)) {
+                    applyDelete(eventId, username);
+                    return;
+                }
+                friends = current;
+            }
+        }
+    }
+
+    private Set<String> invitees(String eventId, String username) {
+        Set<String> friends = new LinkedHashSet<>();
+        for (EventDto event : getEvents(username)) {
+            if (event.getId().equals(eventId) && event.getInvitedFriends() != null) {
+                friends.addAll(event.getInvitedFriends());
+            }
+        }
+        return friends;
+    }
+
+    private void applyDelete(String eventId, String username) throws Exception {
         List<EventDto> existing = getEvents(username);
 
         // get event to delete by id
@@ -198,11 +239,11 @@ public class CalendarService {
             throw new Exception("Event not found for ID: " + eventId);
         } else if (eventToDelete.getInvitedFriends().contains("c-123-creator-user-c-987")) {
             // remove the event from each invited friend
-            for (String friend : eventToDelete.getInvitedFriends()) {
+            updateFriendCalendars(eventToDelete.getInvitedFriends(), friend -> {
                 List<EventDto> friendEvents = getEvents(friend);
                 friendEvents.removeIf(event -> event.getId().equals(eventId));
                 saveEventsToS3(friend, friendEvents);
-            }
+            });
         }
 
         existing.removeIf(event -> event.getId().equals(eventId));
@@ -211,21 +252,21 @@ public class CalendarService {
 
     }
 
+    // friend calendars are separate documents, so update them concurrently
+    private void updateFriendCalendars(List<String> friends, Consumer<String> update) {
+        BulkReader.Results<Void> results = bulkReader.fetch(friends, friend -> {
+            update.accept(friend);
+            return null;
+        });
+        results.failures().forEach((friend, e) ->
+            System.err.println("Error updating calendar for " + friend + ": " + e.getMessage()));
+    }
+
     // write to s3 func
-    private void saveEventsToS3(String username, List<EventDto> events) throws Exception {
+    private void saveEventsToS3(String username, List<EventDto> events) {
         try {
             String key = "users/" + username + "/calendar.json";
-            String eventsJson = objectMapper.writeValueAsString(events);
-    
-            //System.out.println("Preparing to save to S3: " + eventsJson);
-    
-            PutObjectRequest putRequest = PutObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(key)
-                    .contentType("application/json")
-                    .build();
-    
-            s3Client.putObject(putRequest, RequestBody.fromString(eventsJson));
+            documentStore.put(key, events);
             System.out.println("Successfully saved to S3 for user: " + username);
         } catch (Exception e) {
             System.err.println("Error saving to S3: " + e.getMessage());
@@ -234,8 +275,8 @@ public class CalendarService {
     }
     
 
+    // caller holds the lock on the user's calendar
     private EventDto avoidDupe(EventDto newEvent, List<EventDto> existingEvents, String username, String type) {
-        lock.lock(); // Ensure no race conditions
         try {
             EventDto existing = null;
     
@@ -271,8 +312,6 @@ public class CalendarService {
             saveEventsToS3(username, existingEvents);
         } catch (Exception e) {
             return new EventDto(); // return empty if error
-        } finally {
-            lock.unlock(); // Ensure lock is released
         }
     
         return newEvent;
@@ -281,10 +320,12 @@ public class CalendarService {
 
 
     public void deleteEventsByType(String username, String type) throws Exception {
-      List<EventDto> existing = getEvents(username);
+      try (KeyLockManager.Lease lease = keyLocks.lock(calendarKey(username))) {
+        List<EventDto> existing = getEvents(username);
 
-      existing.removeIf(event -> event.getEventType().equals(type));
-      saveEventsToS3(username, existing);
+        existing.removeIf(event -> event.getEventType().equals(type));
+        saveEventsToS3(username, existing);
+      }
     }
   
 }
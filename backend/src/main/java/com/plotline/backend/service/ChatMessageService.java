@@ -5,29 +5,22 @@ import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plotline.backend.dto.ChatFeedPage;
 import com.plotline.backend.dto.ChatMessage;
+import com.plotline.backend.storage.BulkReader;
+import com.plotline.backend.storage.DocumentStore;
+import com.plotline.backend.storage.KeyLockManager;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;                      // <-- correct IOException
-import software.amazon.awssdk.core.ResponseBytes;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.model.S3Object;
 
 import static com.plotline.backend.util.UsernameUtils.normalize;
 
@@ -37,15 +30,22 @@ public class ChatMessageService {
     private static final DateTimeFormatter FORMATTER =
         DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssXXX");
 
-    private final S3Client      s3Client;
-    private final ObjectMapper  objectMapper;
-    private final String        bucketName = "plotline-database-bucket";
+    private final DocumentStore documentStore;
 
-    private final ReentrantLock reactionLock = new ReentrantLock();
+    private final KeyLockManager keyLocks;
 
-    public ChatMessageService(S3Client s3Client) {
-        this.s3Client = s3Client;
-        this.objectMapper = new ObjectMapper();
+    private final ChatTimelineIndex timelineIndex;
+
+    private final BulkReader bulkReader;
+
+    public ChatMessageService(DocumentStore documentStore,
+                              KeyLockManager keyLocks,
+                              ChatTimelineIndex timelineIndex,
+                              BulkReader bulkReader) {
+        this.documentStore = documentStore;
+        this.keyLocks = keyLocks;
+        this.timelineIndex = timelineIndex;
+        this.bulkReader = bulkReader;
     }
 
     public ChatMessage postMessage(String username,
@@ -58,104 +58,70 @@ public class ChatMessageService {
             ZonedDateTime.now(ZoneOffset.UTC).format(FORMATTER)
         );
 
-        // 2) serialize
-        byte[] payload = objectMapper.writeValueAsBytes(message);
-
-        // 3) build & execute upload
+        // 2) serialize & upload
         String key = String.format("chat-messages/%s/%s.json",
                                    normUser, message.getId());
-        PutObjectRequest putReq = PutObjectRequest.builder()
-            .bucket(bucketName)
-            .key(key)
-            .contentType("application/json")
-            .build();
-
-        s3Client.putObject(putReq, RequestBody.fromBytes(payload));
+        documentStore.put(key, message);
+        timelineIndex.add(normUser, message);
         return message;
     }
 
     public List<ChatMessage> getMessagesFor(String userId,
                                             List<String> friendIds) throws IOException {
-        List<ChatMessage> all = new ArrayList<>();
+        // latest 50, same as before the index existed
+        return getFeedPage(userId, friendIds, null, 50).getMessages();
+    }
 
+    public ChatFeedPage getFeedPage(String userId,
+                                    List<String> friendIds,
+                                    String cursor,
+                                    int limit) throws IOException {
         String self = normalize(userId);
         // combine your own + friends
-        List<String> prefixes = Stream.concat(
-            friendIds.stream().map(f -> normalize(f)),
-            Stream.of(self)
-        ).toList();
-
-        for (String uid : prefixes) {
-            String prefix = "chat-messages/" + uid + "/";
-
-            // list objects
-            ListObjectsV2Request listReq = ListObjectsV2Request.builder()
-                .bucket(bucketName)
-                .prefix(prefix)
-                .build();
-            ListObjectsV2Response listRes = s3Client.listObjectsV2(listReq);
-
-            // download & deserialize each
-            for (S3Object obj : listRes.contents()) {
-                GetObjectRequest getReq = GetObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(obj.key())
-                    .build();
-
-                ResponseBytes<GetObjectResponse> resp =
-                    s3Client.getObjectAsBytes(getReq);
-
-                ChatMessage dto = objectMapper
-                    .readValue(resp.asByteArray(), ChatMessage.class);
-                all.add(dto);
-            }
+        Set<String> owners = new LinkedHashSet<>();
+        for (String f : friendIds) owners.add(normalize(f));
+        owners.add(self);
+
+        // merge the per-user indexes, then only download the messages on this page
+        ChatTimelineIndex.Page page = timelineIndex.page(owners, cursor, Math.max(limit, 0));
+        List<String> keys = new ArrayList<>();
+        for (ChatTimelineIndex.Ref ref : page.refs()) {
+            keys.add(messageKey(ref.owner(), ref.entry().id()));
         }
+        // a message that failed to load fails the page; returning the rest would skip it for good once the
+        // client follows nextCursor
+        BulkReader.Results<ChatMessage> results = bulkReader.getAll(keys, ChatMessage.class);
+        return new ChatFeedPage(new ArrayList<>(results.foundOrThrow()), page.nextCursor());
+    }
 
-        // sort by ISO‑8601 timestamp desc and cap at 50
-        return all.stream()
-                  .sorted(Comparator.comparing(ChatMessage::getTimestamp).reversed())
-                  .limit(50)
-                  .collect(Collectors.toList());
+    private static String messageKey(String owner, String messageId) {
+      return String.format("chat-messages/%s/%s.json", owner, messageId);
     }
 
     private ChatMessage fetchRaw(String owner, String messageId) throws IOException {
-      String key = String.format("chat-messages/%s/%s.json", owner, messageId);
-      GetObjectRequest getReq = GetObjectRequest.builder()
-          .bucket(bucketName)
-          .key(key)
-          .build();
-
-      ResponseBytes<GetObjectResponse> resp = s3Client.getObjectAsBytes(getReq);
-      return objectMapper.readValue(resp.asByteArray(), ChatMessage.class);
+      String key = messageKey(owner, messageId);
+      ChatMessage msg = documentStore.get(key, ChatMessage.class);
+      if (msg == null) throw new FileNotFoundException("No such message: " + key);
+      return msg;
   }
 
   // helper to serialize & save
   private ChatMessage saveRaw(String owner, ChatMessage msg) throws JsonProcessingException {
       String key = String.format("chat-messages/%s/%s.json", owner, msg.getId());
-      byte[] json = objectMapper.writeValueAsBytes(msg);
-
-      PutObjectRequest putReq = PutObjectRequest.builder()
-          .bucket(bucketName)
-          .key(key)
-          .contentType("application/json")
-          .build();
-
-      s3Client.putObject(putReq, RequestBody.fromBytes(json));
+      documentStore.put(key, msg);
       return msg;
   }
 
   public ChatMessage addReaction(String owner,
                                 String messageId,
                                 String emoji) throws IOException {
-    reactionLock.lock();
-    try {
+    // reactions on one message are serialized, other messages are unaffected
+    try (KeyLockManager.Lease lease = keyLocks.lock(messageKey(owner, messageId))) {
 
       ChatMessage msg = fetchRaw(owner, messageId);
       msg.addReaction(emoji);
       return saveRaw(owner, msg);
 
-    } finally {
-      reactionLock.unlock();
     }
   }
 
@@ -163,13 +129,10 @@ public class ChatMessageService {
                                     String messageId,
                                     String emoji) throws IOException {
 
-    reactionLock.lock();
-    try {
+    try (KeyLockManager.Lease lease = keyLocks.lock(messageKey(owner, messageId))) {
       ChatMessage msg = fetchRaw(owner, messageId);
       msg.removeReaction(emoji);
       return saveRaw(owner, msg);
-    } finally {
-      reactionLock.unlock();
     }
 
   }
@@ -178,18 +141,22 @@ public class ChatMessageService {
                                 String userId,
                                 String replyId) throws IOException {
 
-    ChatMessage msg = fetchRaw(owner, messageId);
-    msg.removeReply(userId, replyId);
-    return saveRaw(owner, msg);
+    try (KeyLockManager.Lease lease = keyLocks.lock(messageKey(owner, messageId))) {
+      ChatMessage msg = fetchRaw(owner, messageId);
+      msg.removeReply(userId, replyId);
+      return saveRaw(owner, msg);
+    }
   }
 
     public ChatMessage addReply(String owner,
                                 String messageId,
                                 String userId,
                                 String text) throws IOException {
-        ChatMessage msg = fetchRaw(owner, messageId);
-        msg.addReply(userId, text);
-        return saveRaw(owner, msg);
+        try (KeyLockManager.Lease lease = keyLocks.lock(messageKey(owner, messageId))) {
+            ChatMessage msg = fetchRaw(owner, messageId);
+            msg.addReply(userId, text);
+            return saveRaw(owner, msg);
+        }
     }
 
 }
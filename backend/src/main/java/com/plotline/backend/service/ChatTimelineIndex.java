@@ -0,0 +1,202 @@
+package com.plotline.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.plotline.backend.dto.ChatMessage;
+import com.plotline.backend.storage.BulkReader;
+import com.plotline.backend.storage.DocumentStore;
+
+/**
+ * Per-user index of chat messages so the feed doesn't have to list and
+ * download every message a user and their friends ever wrote.
+ *
+ * chat-index/{owner}/{yyyy-MM}.json holds (timestamp, id) pairs for that month
+ * in ascending order, and chat-index/{owner}/head.json lists the months that
+ * have a segment, newest first. A page is a k-way merge over one cursor per
+ * user that walks those segments backwards and stops as soon as it has enough.
+ */
+@Component
+public class ChatTimelineIndex {
+
+  record Entry(String timestamp, String id) {}
+  record Head(List<String> months) {}
+  /** One merged result: whose prefix the message body lives under plus its index entry. */
+  record Ref(String owner, Entry entry) {}
+
+  private static final TypeReference<List<Entry>> SEGMENT_TYPE = new TypeReference<>() {};
+
+  // timestamps are fixed-width ISO-8601 UTC, so string order is time order; id breaks ties
+  private static final Comparator<Entry> ORDER =
+      Comparator.comparing(Entry::timestamp).thenComparing(Entry::id);
+
+  private final DocumentStore documentStore;
+  private final BulkReader bulkReader;
+
+  public ChatTimelineIndex(DocumentStore documentStore, BulkReader bulkReader) {
+    this.documentStore = documentStore;
+    this.bulkReader = bulkReader;
+  }
+
+  public void add(String owner, ChatMessage message) {
+    ensureIndexed(owner);
+    Entry entry = new Entry(message.getTimestamp(), message.getId());
+    appendAll(owner, monthOf(entry), List.of(entry));
+    addMonths(owner, List.of(monthOf(entry)));
+  }
+
+  /**
+   * Up to {@code limit} refs across all owners, newest first, strictly older
+   * than {@code cursor}. Segments past the last one the page needed are never read.
+   */
+  public Page page(Collection<String> owners, String cursor, int limit) {
+    Entry after = decodeCursor(cursor);
+
+    PriorityQueue<OwnerCursor> queue = new PriorityQueue<>(
+        Comparator.comparing((OwnerCursor c) -> c.current(), ORDER).reversed());
+    // head + newest segment of every owner are independent reads, open the cursors concurrently
+    BulkReader.Results<OwnerCursor> opened =
+        bulkReader.fetch(owners, owner -> new OwnerCursor(owner, ensureIndexed(owner).months(), after));
+    // an owner whose index can't be read fails the page instead of missing from it
+    for (OwnerCursor c : opened.foundOrThrow()) {
+      if (c.current() != null) queue.add(c);
+    }
+
+    List<Ref> refs = new ArrayList<>();
+    while (refs.size() < limit && !queue.isEmpty()) {
+      OwnerCursor c = queue.poll();
+      refs.add(new Ref(c.owner, c.current()));
+      c.advance();
+      if (c.current() != null) queue.add(c);
+    }
+    return new Page(refs, !queue.isEmpty());
+  }
+
+  public record Page(List<Ref> refs, boolean hasMore) {
+    public String nextCursor() {
+      if (!hasMore || refs.isEmpty()) return null;
+      Entry last = refs.get(refs.size() - 1).entry();
+      String raw = last.timestamp() + "|" + last.id();
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  // ---------- index maintenance ----------
+
+  // builds the index from the message files the first time an owner is seen
+  private Head ensureIndexed(String owner) {
+    Head head = documentStore.get(headKey(owner), Head.class);
+    if (head != null) return head;
+
+    BulkReader.Results<ChatMessage> existing =
+        bulkReader.getAll(documentStore.list("chat-messages/" + owner + "/"), ChatMessage.class);
+    if (!existing.failures().isEmpty()) {
+      // don't write a head that would hide the messages we couldn't read
+      throw new IllegalStateException("Could not index chat messages for " + owner,
+          existing.failures().values().iterator().next());
+    }
+    List<Entry> entries = new ArrayList<>();
+    for (ChatMessage msg : existing.found()) {
+      if (msg.getTimestamp() != null && msg.getId() != null) {
+        entries.add(new Entry(msg.getTimestamp(), msg.getId()));
+      }
+    }
+
+    TreeSet<String> months = new TreeSet<>();
+    for (Entry e : entries) months.add(monthOf(e));
+    for (String month : months) {
+      appendAll(owner, month, entries.stream().filter(e -> monthOf(e).equals(month)).toList());
+    }
+    Head written = addMonths(owner, months);
+    return written != null ? written : documentStore.get(headKey(owner), Head.class);
+  }
+
+  private void appendAll(String owner, String month, List<Entry> entries) {
+    documentStore.update(segmentKey(owner, month), SEGMENT_TYPE, segment -> {
+      TreeSet<Entry> merged = new TreeSet<>(ORDER);
+      if (segment != null) merged.addAll(segment);
+      if (!merged.addAll(entries) && segment != null) return null; // already indexed
+      return new ArrayList<>(merged);
+    });
+  }
+
+  private Head addMonths(String owner, Collection<String> months) {
+    return documentStore.update(headKey(owner), Head.class, head -> {
+      TreeSet<String> merged = new TreeSet<>(Comparator.reverseOrder());
+      if (head != null) merged.addAll(head.months());
+      if (!merged.addAll(months) && head != null) return null;
+      return new Head(new ArrayList<>(merged));
+    });
+  }
+
+  // ---------- reading ----------
+
+  /** Walks one owner's segments newest to oldest, loading each month only when reached. */
+  private final class OwnerCursor {
+    final String owner;
+    private final List<String> months;
+    private final Entry before;
+    private int monthIdx = -1;
+    private List<Entry> segment = List.of();
+    private int pos = -1;
+
+    OwnerCursor(String owner, List<String> months, Entry before) {
+      this.owner = owner;
+      this.months = months;
+      this.before = before;
+      advance();
+    }
+
+    Entry current() {
+      return pos >= 0 ? segment.get(pos) : null;
+    }
+
+    void advance() {
+      pos--;
+      while (pos < 0 && monthIdx + 1 < months.size()) {
+        String month = months.get(++monthIdx);
+        // months newer than the cursor can't contain anything we want
+        if (before != null && month.compareTo(monthOf(before)) > 0) continue;
+        List<Entry> loaded = documentStore.get(segmentKey(owner, month), SEGMENT_TYPE);
+        segment = loaded != null ? loaded : List.of();
+        pos = segment.size() - 1;
+        if (before != null) {
+          while (pos >= 0 && ORDER.compare(segment.get(pos), before) >= 0) pos--;
+        }
+      }
+    }
+  }
+
+  private static Entry decodeCursor(String cursor) {
+    if (cursor == null || cursor.isBlank()) return null;
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      int sep = raw.indexOf('|');
+      if (sep < 0) throw new IllegalArgumentException("Malformed cursor");
+      return new Entry(raw.substring(0, sep), raw.substring(sep + 1));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+    }
+  }
+
+  private static String monthOf(Entry e) {
+    return e.timestamp().substring(0, 7);
+  }
+
+  private static String headKey(String owner) {
+    return "chat-index/" + owner + "/head.json";
+  }
+
+  private static String segmentKey(String owner, String month) {
+    return "chat-index/" + owner + "/" + month + ".json";
+  }
+}
@@ -1,84 +1,88 @@
 package com.plotline.backend.service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.plotline.backend.dto.FriendList;
 import com.plotline.backend.dto.FriendPost;
+import com.plotline.backend.storage.BulkReader;
+import com.plotline.backend.storage.DocumentStore;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import io.github.cdimascio.dotenv.Dotenv;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.core.ResponseBytes;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
+import static com.plotline.backend.util.UsernameUtils.normalize;
+
+/**
+ * Friends feed stored per author instead of in one global posts.json.
+ *
+ * Every post, like, comment and delete is appended as its own small object
+ * under friends-feed/users/{author}/log/, named by time so a prefix listing
+ * replays in order. Once enough events pile up they are folded into
+ * friends-feed/users/{author}/snapshot.json, which records the last event it
+ * includes. Reading a feed therefore touches the snapshot and the short log
+ * of each friend, never the posts of people the user doesn't follow. The
+ * shards load concurrently, and so do the log events within each shard.
+ */
 @Service
 public class FriendsFeedService {
-  private final S3Client s3Client;
-  private final String bucketName = "plotline-database-bucket";
-
-  public FriendsFeedService() {
-    Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
-    String accessKey = dotenv.get("AWS_ACCESS_KEY_ID");
-    String secretKey = dotenv.get("AWS_SECRET_ACCESS_KEY");
-    String region = dotenv.get("AWS_REGION");
 
-    this.s3Client = S3Client.builder()
-        .region(Region.of(region))
-        .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
-        .build();
+  private static final String LEGACY_POSTS_KEY = "friends-feed/posts.json";
+  private static final TypeReference<List<FriendPost>> POSTS_TYPE = new TypeReference<>() {};
+
+  private static final String POST = "post";
+  private static final String DELETE = "delete";
+  private static final String LIKE = "like";
+  private static final String COMMENT = "comment";
+
+  // events younger than this are left in the log so a writer with a slightly slow clock can't land behind a snapshot
+  private static final long SETTLE_MILLIS = 60_000;
+
+  record FeedEvent(String type, String actor, UUID postId, FriendPost post, String text) {}
+  record FeedSnapshot(List<FriendPost> posts, String through) {}
+  record PostOwner(String author) {}
+
+  private final DocumentStore documentStore;
+  private final BulkReader bulkReader;
+  private final int compactAfter;
+  private final long logRetentionMillis;
+  private final int pageSize;
+
+  public FriendsFeedService(DocumentStore documentStore,
+                            BulkReader bulkReader,
+                            @Value("${feed.compact-after:50}") int compactAfter,
+                            @Value("${feed.log-retention-minutes:15}") long logRetentionMinutes,
+                            @Value("${feed.page-size:100}") int pageSize) {
+    this.documentStore = documentStore;
+    this.bulkReader = bulkReader;
+    this.compactAfter = compactAfter;
+    // longer than the document cache TTL, so a reader holding an older snapshot still finds the events
+    this.logRetentionMillis = logRetentionMinutes * 60_000;
+    this.pageSize = pageSize;
   }
 
   public boolean addPostToFeed(FriendPost post) {
     try {
-      String key = "friends-feed/posts.json";
-
-      List<FriendPost> posts;
-
-      try {
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-            .bucket(bucketName)
-            .key(key)
-            .build();
-
-        ResponseBytes<?> objectBytes = s3Client.getObjectAsBytes(getObjectRequest);
-        String jsonData = new String(objectBytes.asByteArray(), StandardCharsets.UTF_8);
-
-        ObjectMapper objectMapper = new ObjectMapper();
-
-        posts = objectMapper.readValue(jsonData, new TypeReference<>() {
-        });
-      } catch (NoSuchKeyException e) {
-        posts = new ArrayList<>();
+      if (post.getId() == null) {
+        post.setId(UUID.randomUUID());
       }
+      if (post.getCreatedAt() == null) {
+        post.setCreatedAt(System.currentTimeMillis());
+      }
+      String author = normalize(post.getUsername());
 
-      posts.add(post);
-
-      ObjectMapper objectMapper = new ObjectMapper();
-
-      String updatedJson = objectMapper.writeValueAsString(posts);
-
-      PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-          .bucket(bucketName)
-          .key(key)
-          .build();
-
-      s3Client.putObject(putObjectRequest, RequestBody.fromString(updatedJson));
-
+      append(author, new FeedEvent(POST, author, post.getId(), post, null));
+      // likes and comments only carry the post id, remember whose log it lives in
+      documentStore.put(ownerKey(post.getId()), new PostOwner(author));
       return true;
     } catch (Exception e) {
       e.printStackTrace();
@@ -87,56 +91,40 @@ public class FriendsFeedService {
   }
 
   public List<FriendPost> getFriendsFeed(String username) {
+    return getFriendsFeed(username, null, pageSize);
+  }
+
+  // newest `limit` posts older than `before` (epoch millis), returned oldest first like the old feed
+  public List<FriendPost> getFriendsFeed(String username, Long before, Integer limit) {
+    int size = limit != null ? limit : pageSize;
     try {
-      String postsKey = "friends-feed/posts.json";
-      String friendsKey = "users/" + username + "/friends.json";
-
-      ObjectMapper objectMapper = new ObjectMapper();
-
-      // 1. Load all posts
-      GetObjectRequest postsRequest = GetObjectRequest.builder()
-          .bucket(bucketName)
-          .key(postsKey)
-          .build();
-
-      ResponseBytes<?> postsBytes = s3Client.getObjectAsBytes(postsRequest);
-      List<FriendPost> allPosts = objectMapper.readValue(
-          postsBytes.asByteArray(), new TypeReference<List<FriendPost>>() {
-          });
-
-      // 2. Load user's friends
-      List<String> friendsList;
-      try {
-        GetObjectRequest friendsRequest = GetObjectRequest.builder()
-            .bucket(bucketName)
-            .key(friendsKey)
-            .build();
-
-        ResponseBytes<?> friendsBytes = s3Client.getObjectAsBytes(friendsRequest);
-
-        FriendList friendData = objectMapper.readValue(friendsBytes.asByteArray(), FriendList.class);
-        friendsList = friendData.getFriends();
-      } catch (NoSuchKeyException e) {
-        // If user has no friends list file yet, assume empty
-        friendsList = new ArrayList<>();
+      String self = normalize(username);
+
+      // 1. Load user's friends, always including the user themself
+      Set<String> authors = new LinkedHashSet<>();
+      FriendList friendData = documentStore.get("users/" + self + "/friends.json", FriendList.class);
+      if (friendData != null && friendData.getFriends() != null) {
+        for (String friend : friendData.getFriends()) {
+          authors.add(normalize(friend));
+        }
       }
-
-      // Temporary hardcoded friends list
-      // List<String> friendsList = new ArrayList<>();
-      // friendsList.add(username); // Always see your own posts
-
-      // 3. Always include the user themself
-      friendsList.add(username);
-
-      // 4. Filter posts
-      List<FriendPost> filteredPosts = new ArrayList<>();
-      for (FriendPost post : allPosts) {
-        if (friendsList.contains(post.getUsername())) {
-          filteredPosts.add(post);
+      authors.add(self);
+
+      // 2. Read only those shards, all at once; a shard that fails fails the feed rather than hiding a friend
+      List<FriendPost> candidates = new ArrayList<>();
+      for (List<FriendPost> shard : bulkReader.fetch(authors, this::loadShard).foundOrThrow()) {
+        for (FriendPost post : shard) {
+          if (before == null || createdAt(post) < before) {
+            candidates.add(post);
+          }
         }
       }
 
-      return filteredPosts;
+      // 3. Keep the newest page, then hand it back in time order
+      candidates.sort(Comparator.comparingLong(FriendsFeedService::createdAt).reversed());
+      List<FriendPost> page = new ArrayList<>(candidates.subList(0, Math.min(Math.max(size, 0), candidates.size())));
+      Collections.reverse(page);
+      return page;
 
     } catch (Exception e) {
       e.printStackTrace();
@@ -146,31 +134,16 @@ public class FriendsFeedService {
 
   public boolean deletePostById(String username, UUID postId) {
     try {
-      String key = "friends-feed/posts.json";
-
-      GetObjectRequest getRequest = GetObjectRequest.builder()
-          .bucket(bucketName)
-          .key(key)
-          .build();
-
-      ResponseBytes<?> bytes = s3Client.getObjectAsBytes(getRequest);
-      ObjectMapper mapper = new ObjectMapper();
-      List<FriendPost> allPosts = mapper.readValue(bytes.asByteArray(), new TypeReference<>() {
-      });
-
-      // Only allow deleting your own posts
-      List<FriendPost> updatedPosts = allPosts.stream()
-          .filter(post -> !(post.getId().equals(postId) && post.getUsername().equals(username)))
-          .toList();
-
-      // Save updated list
-      String updatedJson = mapper.writeValueAsString(updatedPosts);
-      PutObjectRequest putRequest = PutObjectRequest.builder()
-          .bucket(bucketName)
-          .key(key)
-          .build();
+      String author = authorOf(postId);
+      if (author == null) {
+        return true; // nothing to delete
+      }
 
-      s3Client.putObject(putRequest, RequestBody.fromString(updatedJson));
+      // Only allow deleting your own posts, enforced when the log is replayed
+      append(author, new FeedEvent(DELETE, username, postId, null, null));
+      if (author.equals(normalize(username))) {
+        documentStore.delete(ownerKey(postId));
+      }
       return true;
     } catch (Exception e) {
       e.printStackTrace();
@@ -180,19 +153,10 @@ public class FriendsFeedService {
 
   public boolean toggleLike(String username, UUID postId) {
     try {
-      List<FriendPost> posts = loadPosts(); // write a helper that reads JSON
-      for (FriendPost post : posts) {
-        if (post.getId().equals(postId)) {
-          Set<String> likedBy = post.getLikedBy();
-          if (likedBy.contains(username)) {
-            likedBy.remove(username);
-          } else {
-            likedBy.add(username);
-          }
-          break;
-        }
+      String author = authorOf(postId);
+      if (author != null) {
+        append(author, new FeedEvent(LIKE, username, postId, null, null));
       }
-      savePosts(posts); // write a helper that writes JSON
       return true;
     } catch (Exception e) {
       e.printStackTrace();
@@ -202,14 +166,10 @@ public class FriendsFeedService {
 
   public boolean addComment(String username, UUID postId, String comment) {
     try {
-      List<FriendPost> posts = loadPosts();
-      for (FriendPost post : posts) {
-        if (post.getId().equals(postId)) {
-          post.getComments().add(username + ": " + comment);
-          break;
-        }
+      String author = authorOf(postId);
+      if (author != null) {
+        append(author, new FeedEvent(COMMENT, username, postId, null, comment));
       }
-      savePosts(posts);
       return true;
     } catch (Exception e) {
       e.printStackTrace();
@@ -217,37 +177,183 @@ public class FriendsFeedService {
     }
   }
 
-  private List<FriendPost> loadPosts() throws IOException {
-    String key = "friends-feed/posts.json";
+  // ---------- shard helpers ----------
+
+  private void append(String author, FeedEvent event) {
+    // unique, time-ordered key: appends never overwrite each other so no read or lock is needed
+    String key = String.format("%s%013d-%s.json", logPrefix(author), System.currentTimeMillis(), UUID.randomUUID());
+    documentStore.put(key, event);
+  }
+
+  private List<FriendPost> loadShard(String author) {
+    List<String> logKeys = documentStore.list(logPrefix(author));
+    FeedSnapshot snapshot = documentStore.get(snapshotKey(author), FeedSnapshot.class);
+    if (snapshot == null) {
+      snapshot = seedFromLegacy(author);
+    }
+
+    // fetch every unfolded event concurrently; results keep the log order for replay
+    List<String> unfolded = new ArrayList<>();
+    for (String key : logKeys) {
+      if (!isFolded(key, snapshot.through())) unfolded.add(key);
+    }
+    // replaying around a missing event would show a deleted post or a wrong like count, so a failure fails the shard
+    Map<String, FeedEvent> events = bulkReader.getAll(unfolded, FeedEvent.class).valuesOrThrow();
+
+    Map<UUID, FriendPost> posts = toMap(snapshot.posts());
+    long settledBefore = System.currentTimeMillis() - SETTLE_MILLIS;
+    int foldable = 0;
+    for (String key : unfolded) {
+      FeedEvent event = events.get(key);
+      if (event == null) continue; // removed by a compaction that finished after we listed
+      apply(posts, event);
+      if (timestampOf(author, key) <= settledBefore) foldable++;
+    }
+
+    if (foldable >= compactAfter) {
+      compact(author, logKeys);
+    }
+    return new ArrayList<>(posts.values());
+  }
+
+  // fold settled log events into the snapshot, then drop the ones every reader has had time to see
+  private void compact(String author, List<String> logKeys) {
+    try {
+      long now = System.currentTimeMillis();
+      FeedSnapshot compacted = documentStore.update(snapshotKey(author), FeedSnapshot.class, current -> {
+        FeedSnapshot base = current != null ? current : new FeedSnapshot(legacyPostsFor(author), null);
+        Map<UUID, FriendPost> posts = toMap(base.posts());
+        List<String> settled = new ArrayList<>();
+        for (String key : logKeys) {
+          if (isFolded(key, base.through())) continue;
+          if (timestampOf(author, key) > now - SETTLE_MILLIS) break;
+          settled.add(key);
+        }
+        // fresh copies, apply() mutates the posts it replays onto; a failed read aborts the compaction
+        Map<String, FeedEvent> events = bulkReader.getAll(settled, FeedEvent.class).valuesOrThrow();
+        String through = base.through();
+        for (String key : settled) {
+          FeedEvent event = events.get(key);
+          if (event != null) apply(posts, event);
+          through = key;
+        }
+        return new FeedSnapshot(new ArrayList<>(posts.values()), through);
+      });
+
+      for (String key : logKeys) {
+        if (isFolded(key, compacted.through()) && timestampOf(author, key) < now - logRetentionMillis) {
+          documentStore.delete(key);
+        }
+      }
+    } catch (Exception e) {
+      // compaction is an optimization, the log is still complete without it
+      e.printStackTrace();
+    }
+  }
+
+  private FeedSnapshot seedFromLegacy(String author) {
+    List<FriendPost> legacy = legacyPostsFor(author);
+    FeedSnapshot seeded = documentStore.update(snapshotKey(author), FeedSnapshot.class,
+        current -> current == null ? new FeedSnapshot(legacy, null) : null);
+    return seeded != null ? seeded : documentStore.get(snapshotKey(author), FeedSnapshot.class);
+  }
+
+  private void apply(Map<UUID, FriendPost> posts, FeedEvent event) {
+    switch (event.type()) {
+      case POST -> posts.put(event.post().getId(), event.post());
+      case DELETE -> {
+        FriendPost post = posts.get(event.postId());
+        if (post != null && normalize(post.getUsername()).equals(normalize(event.actor()))) {
+          posts.remove(event.postId());
+        }
+      }
+      case LIKE -> {
+        FriendPost post = posts.get(event.postId());
+        if (post != null) {
+          if (post.getLikedBy() == null) post.setLikedBy(new HashSet<>());
+          Set<String> likedBy = post.getLikedBy();
+          if (likedBy.contains(event.actor())) {
+            likedBy.remove(event.actor());
+          } else {
+            likedBy.add(event.actor());
+          }
+        }
+      }
+      case COMMENT -> {
+        FriendPost post = posts.get(event.postId());
+        if (post != null) {
+          if (post.getComments() == null) post.setComments(new ArrayList<>());
+          post.getComments().add(event.actor() + ": " + event.text());
+        }
+      }
+      default -> { }
+    }
+  }
+
+  private String authorOf(UUID postId) {
+    PostOwner owner = documentStore.get(ownerKey(postId), PostOwner.class);
+    if (owner != null) {
+      return owner.author();
+    }
+    // posts shared before the feed was sharded have no owner record
+    List<FriendPost> legacy = documentStore.get(LEGACY_POSTS_KEY, POSTS_TYPE);
+    if (legacy != null) {
+      for (FriendPost post : legacy) {
+        if (postId.equals(post.getId())) {
+          return normalize(post.getUsername());
+        }
+      }
+    }
+    return null;
+  }
 
-    GetObjectRequest getRequest = GetObjectRequest.builder()
-        .bucket(bucketName)
-        .key(key)
-        .build();
+  private List<FriendPost> legacyPostsFor(String author) {
+    List<FriendPost> legacy = documentStore.get(LEGACY_POSTS_KEY, POSTS_TYPE);
+    List<FriendPost> mine = new ArrayList<>();
+    if (legacy != null) {
+      for (FriendPost post : legacy) {
+        if (author.equals(normalize(post.getUsername()))) {
+          mine.add(post);
+        }
+      }
+    }
+    return mine;
+  }
 
-    ResponseBytes<?> objectBytes = s3Client.getObjectAsBytes(getRequest);
-    ObjectMapper mapper = new ObjectMapper();
-    mapper.registerModule(new JavaTimeModule());
+  private static Map<UUID, FriendPost> toMap(List<FriendPost> posts) {
+    Map<UUID, FriendPost> byId = new LinkedHashMap<>();
+    if (posts != null) {
+      for (FriendPost post : posts) {
+        byId.put(post.getId(), post);
+      }
+    }
+    return byId;
+  }
 
-    return mapper.readValue(objectBytes.asByteArray(), new TypeReference<>() {
-    });
+  private static boolean isFolded(String key, String through) {
+    return through != null && key.compareTo(through) <= 0;
   }
 
-  private void savePosts(List<FriendPost> posts) throws IOException {
-    String key = "friends-feed/posts.json";
+  private static long timestampOf(String author, String key) {
+    String name = key.substring(logPrefix(author).length());
+    return Long.parseLong(name.substring(0, 13));
+  }
 
-    ObjectMapper mapper = new ObjectMapper();
-    mapper.registerModule(new JavaTimeModule());
-    mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+  // posts from before createdAt was tracked sort as the oldest
+  private static long createdAt(FriendPost post) {
+    return post.getCreatedAt() != null ? post.getCreatedAt() : 0L;
+  }
 
-    String updatedJson = mapper.writeValueAsString(posts);
+  private static String logPrefix(String author) {
+    return "friends-feed/users/" + author + "/log/";
+  }
 
-    PutObjectRequest putRequest = PutObjectRequest.builder()
-        .bucket(bucketName)
-        .key(key)
-        .build();
+  private static String snapshotKey(String author) {
+    return "friends-feed/users/" + author + "/snapshot.json";
+  }
 
-    s3Client.putObject(putRequest, RequestBody.fromString(updatedJson));
+  private static String ownerKey(UUID postId) {
+    return "friends-feed/post-owners/" + postId + ".json";
   }
 
 }
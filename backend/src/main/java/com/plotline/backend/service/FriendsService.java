@@ -3,62 +3,58 @@ package com.plotline.backend.service;
 import com.plotline.backend.dto.FriendList;
 import com.plotline.backend.dto.FriendRequest;
 import com.plotline.backend.dto.RequestList;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plotline.backend.storage.DocumentStore;
 import static com.plotline.backend.util.UsernameUtils.normalize;
 
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.core.ResponseBytes;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.core.sync.RequestBody;
 
 @Service
 public class FriendsService {
 
-    private final S3Client s3Client;
-    private final String bucketName = "plotline-database-bucket";
-    private final ObjectMapper objectMapper;
+    private final DocumentStore documentStore;
 
-    public FriendsService(S3Client s3Client) {
-        this.s3Client = s3Client;
-        this.objectMapper = new ObjectMapper();
+    public FriendsService(DocumentStore documentStore) {
+        this.documentStore = documentStore;
     }
 
     // read json from s3
     private <T> T readJson(String key, Class<T> clazz) {
         try {
-            GetObjectRequest getRequest = GetObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(key)
-                    .build();
-
-            ResponseBytes<GetObjectResponse> objectBytes = s3Client.getObjectAsBytes(getRequest);
-            String json = new String(objectBytes.asByteArray(), StandardCharsets.UTF_8);
-
-            return objectMapper.readValue(json, clazz);
+            return documentStore.get(key, clazz);
         } catch (Exception e) {
             return null;
         }
     }
 
-    // write json back to s3
-    private void writeJson(String key, Object object) throws Exception {
-        String jsonData = objectMapper.writeValueAsString(object);
-
-        PutObjectRequest putRequest = PutObjectRequest.builder()
-                .bucket(bucketName)
-                .key(key)
-                .contentType("application/json")
-                .build();
+    // conditional read-modify-write of a user's friend list, creating it if missing
+    private void updateFriendList(String username, Consumer<List<String>> change) {
+        documentStore.update("users/" + username + "/friends.json", FriendList.class, friendList -> {
+            if (friendList == null) {
+                friendList = new FriendList();
+                friendList.setUsername(username);
+                friendList.setFriends(new ArrayList<>());
+            }
+            change.accept(friendList.getFriends());
+            return friendList;
+        });
+    }
 
-        s3Client.putObject(putRequest, RequestBody.fromString(jsonData));
+    // conditional read-modify-write of a user's pending requests, creating them if missing
+    private void updateFriendRequests(String username, Consumer<List<String>> change) {
+        documentStore.update("users/" + username + "/friend_requests.json", RequestList.class, requestList -> {
+            if (requestList == null) {
+                requestList = new RequestList();
+                requestList.setUsername(username);
+                requestList.setPendingRequests(new ArrayList<>());
+            }
+            change.accept(requestList.getPendingRequests());
+            return requestList;
+        });
     }
 
     // add sender username to receivers friends list
@@ -77,7 +73,6 @@ public class FriendsService {
         }
 
         String fKey = "users/" + receiver + "/friends.json"; // friends key
-        String key = "users/" + receiver + "/friend_requests.json"; // requests key
 
         FriendList friendList = readJson(fKey, FriendList.class);
         if (friendList != null && friendList.getFriends().contains(sender)) {
@@ -85,18 +80,12 @@ public class FriendsService {
             return "You are already friends!";
         }
 
-        RequestList requestList = readJson(key, RequestList.class);
-        if (requestList == null) {
-            requestList = new RequestList();
-            requestList.setUsername(receiver);
-            requestList.setPendingRequests(new ArrayList<>());
-        }
-
-        // don't duplicate requests
-        if (!requestList.getPendingRequests().contains(sender)) {
-            requestList.getPendingRequests().add(sender);
-        }
-        writeJson(key, requestList);
+        updateFriendRequests(receiver, pending -> {
+            // don't duplicate requests
+            if (!pending.contains(sender)) {
+                pending.add(sender);
+            }
+        });
         return "Successfully sent request!";
     }
 
@@ -113,6 +102,19 @@ public class FriendsService {
         return friendList;
     }
 
+    public CompletableFuture<FriendList> getFriendListAsync(String username) {
+        String normUser = normalize(username);
+        return documentStore.getAsync("users/" + normUser + "/friends.json", FriendList.class)
+            .thenApply(friendList -> {
+                if (friendList == null) {
+                    friendList = new FriendList();
+                    friendList.setUsername(normUser);
+                    friendList.setFriends(new ArrayList<>());
+                }
+                return friendList;
+            });
+    }
+
     // get the pending friend requests stored for a given user.
     public RequestList getFriendRequests(String username) throws Exception {
         String normUser = normalize(username);
@@ -132,49 +134,29 @@ public class FriendsService {
         String receiver = normalize(request.getReceiverUsername());
 
         // remove sender username from receiver's pending requests
-        String reqKey = "users/" + receiver + "/friend_requests.json";
-        RequestList requestList = getFriendRequests(receiver);
-        List<String> updatedRequests = requestList.getPendingRequests().stream()
-                .filter(s -> !s.equals(sender))
-                .collect(Collectors.toList());
-        requestList.setPendingRequests(updatedRequests);
-        writeJson(reqKey, requestList);
-
-       
-        // update friend list for the receiver
-        String receiverFriendsKey = "users/" + receiver + "/friends.json";
-        FriendList receiverFriendList = getFriendList(receiver);
-        if (!receiverFriendList.getFriends().contains(sender)) {
-            receiverFriendList.getFriends().add(sender);
-        }
-
-        writeJson(receiverFriendsKey, receiverFriendList);
+        updateFriendRequests(receiver, pending -> pending.removeIf(s -> s.equals(sender)));
 
+        // update friend list for the receiver
+        updateFriendList(receiver, friends -> {
+            if (!friends.contains(sender)) {
+                friends.add(sender);
+            }
+        });
 
         // update friend list for the sender
-        String senderFriendsKey = "users/" + sender + "/friends.json";
-        FriendList senderFriendList = getFriendList(sender);
-        if (!senderFriendList.getFriends().contains(receiver)) {
-            senderFriendList.getFriends().add(receiver);
-        }
-
-        writeJson(senderFriendsKey, senderFriendList);
+        updateFriendList(sender, friends -> {
+            if (!friends.contains(receiver)) {
+                friends.add(receiver);
+            }
+        });
     }
 
     // remove sender username from receiver's pending requests
     public void declineFriendRequest(FriendRequest request) throws Exception {
         String sender = normalize(request.getSenderUsername());
         String receiver = normalize(request.getReceiverUsername());
-        String reqKey = "users/" + receiver + "/friend_requests.json";
-
-        RequestList requestList = getFriendRequests(receiver);
 
-        List<String> updatedRequests = requestList.getPendingRequests().stream()
-                .filter(s -> !s.equals(sender))
-                .collect(Collectors.toList());
-
-        requestList.setPendingRequests(updatedRequests);
-        writeJson(reqKey, requestList);
+        updateFriendRequests(receiver, pending -> pending.removeIf(s -> s.equals(sender)));
     }
 
     // remove a friendship (from both users' friend lists)
@@ -182,21 +164,11 @@ public class FriendsService {
         String u1 = normalize(userA);
         String u2 = normalize(userB);
 
-        FriendList listA = getFriendList(u1);
-        listA.getFriends().removeIf(f -> f.equalsIgnoreCase(u2));
-        writeJson("users/" + u1 + "/friends.json", listA);
-
-        FriendList listB = getFriendList(u2);
-        listB.getFriends().removeIf(f -> f.equalsIgnoreCase(u1));
-        writeJson("users/" + u2 + "/friends.json", listB);
+        updateFriendList(u1, friends -> friends.removeIf(f -> f.equalsIgnoreCase(u2)));
+        updateFriendList(u2, friends -> friends.removeIf(f -> f.equalsIgnoreCase(u1)));
 
         // also clean any pending requests between them
-        RequestList reqA = getFriendRequests(u1);
-        reqA.getPendingRequests().removeIf(f -> f.equalsIgnoreCase(u2));
-        writeJson("users/" + u1 + "/friend_requests.json", reqA);
-
-        RequestList reqB = getFriendRequests(u2);
-        reqB.getPendingRequests().removeIf(f -> f.equalsIgnoreCase(u1));
-        writeJson("users/" + u2 + "/friend_requests.json", reqB);
+        updateFriendRequests(u1, pending -> pending.removeIf(f -> f.equalsIgnoreCase(u2)));
+        updateFriendRequests(u2, pending -> pending.removeIf(f -> f.equalsIgnoreCase(u1)));
     }
 }
@@ -4,19 +4,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.plotline.backend.dto.GroceryItem;
 import com.plotline.backend.dto.GroceryList;
-import com.twilio.rest.chat.v1.service.User;
+import com.plotline.backend.storage.BulkReader;
+import com.plotline.backend.storage.DocumentStore;
 
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.model.S3Object;
-import software.amazon.awssdk.core.ResponseBytes;
-import software.amazon.awssdk.core.ResponseInputStream;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
@@ -28,13 +19,17 @@ import java.util.UUID;
 @Service
 public class GroceryListService {
 
-    private final S3Client s3Client;
-    private final String BUCKET_NAME = "plotline-database-bucket";
+    private final DocumentStore documentStore;
+
+    private final BulkReader bulkReader;
 
     private final UserProfileService userProfileService;
 
-    public GroceryListService(S3Client s3Client, UserProfileService userProfileService) {
-        this.s3Client = s3Client;
+    public GroceryListService(DocumentStore documentStore,
+                              BulkReader bulkReader,
+                              UserProfileService userProfileService) {
+        this.documentStore = documentStore;
+        this.bulkReader = bulkReader;
         this.userProfileService = userProfileService;
     }
 
@@ -53,16 +48,8 @@ public class GroceryListService {
         try {
             String s3Path = getS3Path(username, listId);
 
-            // Fetch the grocery list from S3
-            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                    .bucket(BUCKET_NAME)
-                    .key(s3Path)
-                    .build();
-
-            ResponseInputStream<GetObjectResponse> response = s3Client.getObject(getObjectRequest);
-
-            // Parse the grocery list JSON into a GroceryList object
-            return objectMapper.readValue(response, GroceryList.class);
+            // Fetch the grocery list from S3 and parse it into a GroceryList object
+            return documentStore.get(s3Path, GroceryList.class);
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -77,15 +64,9 @@ public class GroceryListService {
         String s3Path = "users/" + normUser + "/grocery/lists/";
 
         // List all objects in the grocery lists folder for the user
-        ListObjectsV2Request listObjectsV2Request = ListObjectsV2Request.builder()
-                .bucket(BUCKET_NAME)
-                .prefix(s3Path)
-                .build();
-        var objectSummaries = s3Client.listObjectsV2(listObjectsV2Request).contents();
-
         // Check if any of the object names match the grocery list name
-        for (var summary : objectSummaries) {
-            if (summary.key().contains(groceryListName)) {
+        for (String key : documentStore.list(s3Path)) {
+            if (key.contains(groceryListName)) {
                 return true;  // If the list name already exists, return true
             }
         }
@@ -108,20 +89,12 @@ public class GroceryListService {
         groceryList.setCreatedAt(currentDate);
         groceryList.setUpdatedAt(currentDate);
 
-        // Serialize the GroceryList object to JSON
-        ObjectMapper objectMapper = new ObjectMapper();
-        String jsonString = objectMapper.writeValueAsString(groceryList);
-
         String normUser = normalize(username);
         // Use the new path structure
         String s3Key = "users/" + normUser + "/grocery/lists/" + groceryListID + ".json";
 
-        // Create a PutObjectRequest with the bucket name, S3 key, and content
-        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                .bucket(BUCKET_NAME)
-                .key(s3Key)
-                .build();
-        s3Client.putObject(putObjectRequest, RequestBody.fromBytes(jsonString.getBytes()));
+        // Serialize the GroceryList object to JSON and upload it
+        documentStore.put(s3Key, groceryList);
 
         // Update the user's trophy progress for creating a grocery list
         userProfileService.incrementTrophy(normUser, "grocery-lists", 1);
@@ -131,37 +104,15 @@ public class GroceryListService {
 
     // Fetch all grocery lists for a specific user from S3
     public List<GroceryList> getGroceryListsForUser(String username) throws IOException {
-        List<GroceryList> groceryLists = new ArrayList<>();
-
         String normUser = normalize(username);
         // Construct the S3 key path to list all grocery lists for the user
         String s3Path = "users/" + normUser + "/grocery/lists/";
 
         // List all objects in the grocery lists folder for the user
-        ListObjectsV2Request listObjectsV2Request = ListObjectsV2Request.builder()
-                .bucket(BUCKET_NAME)
-                .prefix(s3Path)
-                .build();
-
-        var objectSummaries = s3Client.listObjectsV2(listObjectsV2Request).contents();
-
-        // For each grocery list file, read and parse the content
-        for (S3Object object : objectSummaries) {
-            String key = object.key();
-            var s3Object = s3Client.getObject(b -> b.bucket(BUCKET_NAME).key(key));
-            var objectContent = new String(s3Object.readAllBytes());  // Read the content as a String
-
-            // Convert the JSON content to a GroceryList object
-            ObjectMapper objectMapper = new ObjectMapper();
-            GroceryList groceryList = objectMapper.readValue(objectContent, GroceryList.class);
-            groceryLists.add(groceryList);
-        }
-
-        return groceryLists;
+        // and read every grocery list file concurrently
+        return readAll(documentStore.list(s3Path));
     }
 
-    private ObjectMapper objectMapper = new ObjectMapper();
-
     public List<GroceryItem> getItems(String username, String listId) {
     try {
         String normUser = normalize(username);
@@ -169,17 +120,10 @@ public class GroceryListService {
         String s3Path = getS3Path(normUser, listId);
 
         // Get the grocery list from S3
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                .bucket(BUCKET_NAME)
-                .key(s3Path)
-                .build();
-
-        ResponseBytes<GetObjectResponse> objectBytes = s3Client.getObjectAsBytes(getObjectRequest);
-        String jsonContent = objectBytes.asUtf8String();
-
-        // Parse the JSON to get the grocery list
-        ObjectMapper mapper = new ObjectMapper();
-        GroceryList groceryList = mapper.readValue(jsonContent, GroceryList.class);
+        GroceryList groceryList = documentStore.get(s3Path, GroceryList.class);
+        if (groceryList == null) {
+            return new ArrayList<>();
+        }
 
         // Return the items from the grocery list
         return groceryList.getItems();
@@ -193,34 +137,24 @@ public class GroceryListService {
     public boolean addItem(String username, String listId, GroceryItem item) {
         try {
             String normUser = normalize(username);
-            // Get the existing grocery list from S3
-            GroceryList groceryList = getGroceryList(normUser, listId);
-
-            if (groceryList == null) {
-                return false;
-            }
-
-            // Add the new item to the existing items array
-            groceryList.getItems().add(item);
-
-            // Update the updatedAt timestamp to the current date-time
-            String currentDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").format(new Date());
-            groceryList.setUpdatedAt(currentDate);  // Update the 'updatedAt' field
-
-            // Serialize the entire grocery list back to JSON (not just the items array)
-            String updatedListJson = objectMapper.writeValueAsString(groceryList);
-
             // Get the S3 path to store the updated grocery list
             String s3Path = getS3Path(normUser, listId);
 
-            // Upload the updated grocery list back to S3
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(BUCKET_NAME)
-                    .key(s3Path)
-                    .build();
-            s3Client.putObject(putObjectRequest, RequestBody.fromString(updatedListJson));
+            // Read, modify and write back only if nobody changed the list in between
+            GroceryList updated = documentStore.update(s3Path, GroceryList.class, groceryList -> {
+                if (groceryList == null) {
+                    return null;
+                }
+
+                // Add the new item to the existing items array
+                groceryList.getItems().add(item);
+
+                // Update the updatedAt timestamp to the current date-time
+                groceryList.setUpdatedAt(now());
+                return groceryList;
+            });
 
-            return true;
+            return updated != null;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -231,40 +165,25 @@ public class GroceryListService {
     // Delete an item from the grocery list in S3
     public boolean deleteItem(String username, String listId, String itemId) {
         try {
-            // Fetch the existing grocery list from S3
             String normUser = normalize(username);
-            GroceryList groceryList = getGroceryList(normUser, listId);
-
-            if (groceryList == null) {
-                return false;
-            }
-
-            // Remove the item from the list based on its id
-            boolean itemRemoved = groceryList.getItems().removeIf(item -> item.getId().equals(itemId));
-
-            if (itemRemoved) {
-                // Update the updatedAt timestamp to the current date-time
-                String currentDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").format(new Date());
-                groceryList.setUpdatedAt(currentDate);  // Update the 'updatedAt' field
-
-                // Serialize the entire grocery list back to JSON (not just the items array)
-                String updatedListJson = objectMapper.writeValueAsString(groceryList);
+            String s3Path = getS3Path(normUser, listId);
 
-                // Get the S3 path to store the updated grocery list
-                String s3Path = getS3Path(normUser, listId);
+            GroceryList updated = documentStore.update(s3Path, GroceryList.class, groceryList -> {
+                if (groceryList == null) {
+                    return null;
+                }
 
-                // Upload the updated grocery list back to S3
-                PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                        .bucket(BUCKET_NAME)
-                        .key(s3Path)
-                        .build();
-                s3Client.putObject(putObjectRequest, RequestBody.fromString(updatedListJson));
+                // Remove the item from the list based on its id
+                boolean itemRemoved = groceryList.getItems().removeIf(item -> item.getId().equals(itemId));
+                if (!itemRemoved) {
+                    return null;
+                }
 
-                return true;
-            } else {
-                return false;
-            }
+                groceryList.setUpdatedAt(now());
+                return groceryList;
+            });
 
+            return updated != null;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -275,39 +194,29 @@ public class GroceryListService {
     public boolean toggleChecked(String username, String listId, String itemId) {
         try {
             String normUser = normalize(username);
-            // Fetch the grocery list from S3
-            GroceryList groceryList = getGroceryList(normUser, listId);
+            String s3Path = getS3Path(normUser, listId);
 
-            if (groceryList == null) {
-                return false;
-            }
+            // toggling is not idempotent, so it has to apply to the version it read
+            GroceryList updated = documentStore.update(s3Path, GroceryList.class, groceryList -> {
+                if (groceryList == null) {
+                    return null;
+                }
 
-            // Find the item by ID and toggle its 'checked' state
-            java.util.Optional<GroceryItem> itemOpt = groceryList.getItems().stream()
-                    .filter(item -> item.getId().toString().equals(itemId))
-                    .findFirst();
+                // Find the item by ID and toggle its 'checked' state
+                java.util.Optional<GroceryItem> itemOpt = groceryList.getItems().stream()
+                        .filter(item -> item.getId().toString().equals(itemId))
+                        .findFirst();
+                if (itemOpt.isEmpty()) {
+                    return null;
+                }
 
-            if (itemOpt.isPresent()) {
                 GroceryItem item = itemOpt.get();
                 item.setChecked(!item.isChecked());  // Toggle the checked status
-                groceryList.setUpdatedAt(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").format(new Date()));  // Update the timestamp
-
-                // Serialize the updated grocery list back to JSON
-                String s3Path = getS3Path(normUser, listId);
-                String updatedListJson = objectMapper.writeValueAsString(groceryList);
-
-                // Upload the updated list back to S3
-                PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                        .bucket(BUCKET_NAME)
-                        .key(s3Path)
-                        .build();
-                s3Client.putObject(putObjectRequest, RequestBody.fromString(updatedListJson));
-
-                return true;
-            } else {
-                return false;
-            }
+                groceryList.setUpdatedAt(now());  // Update the timestamp
+                return groceryList;
+            });
 
+            return updated != null;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -318,32 +227,20 @@ public class GroceryListService {
     public boolean updateItemOrder(String username, String listId, List<GroceryItem> reorderedItems) throws IOException {
         try {
             String normUser = normalize(username);
-            // Fetch the grocery list from S3
-            GroceryList groceryList = getGroceryList(normUser, listId);
-
-            if (groceryList == null) {
-                return false;
-            }
-
-            // Update the items list with the new order
-            groceryList.setItems(reorderedItems);
-
-            // Update the 'updatedAt' timestamp
-            String currentDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").format(new Date());
-            groceryList.setUpdatedAt(currentDate);
+            String s3Path = getS3Path(normUser, listId);
 
-            // Serialize the updated grocery list back to JSON
-            String updatedListJson = objectMapper.writeValueAsString(groceryList);
+            GroceryList updated = documentStore.update(s3Path, GroceryList.class, groceryList -> {
+                if (groceryList == null) {
+                    return null;
+                }
 
-            // Upload the updated grocery list back to S3
-            String s3Path = getS3Path(normUser, listId);
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(BUCKET_NAME)
-                    .key(s3Path)
-                    .build();
-            s3Client.putObject(putObjectRequest, RequestBody.fromString(updatedListJson));
+                // Update the items list with the new order
+                groceryList.setItems(reorderedItems);
+                groceryList.setUpdatedAt(now());
+                return groceryList;
+            });
 
-            return true;
+            return updated != null;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -354,48 +251,41 @@ public class GroceryListService {
     public boolean updateItemDetails(String username, String listId, GroceryItem updatedItem) {
         try {
             String normUser = normalize(username);
-            // Fetch the grocery list from S3
-            GroceryList groceryList = getGroceryList(normUser, listId);
-
-            if (groceryList == null) {
-                return false;
-            }
+            String s3Path = getS3Path(normUser, listId);
 
-            // Find the item by ID and update its information
-            for (GroceryItem item : groceryList.getItems()) {
-                if (item.getId().equals(updatedItem.getId())) {
-                    item.setName(updatedItem.getName());
-                    item.setQuantity(updatedItem.getQuantity());
-                    item.setChecked(updatedItem.isChecked());
-                    item.setPrice(updatedItem.getPrice());
-                    item.setStore(updatedItem.getStore());
-                    item.setNotes(updatedItem.getNotes());
-                    break;
+            GroceryList updated = documentStore.update(s3Path, GroceryList.class, groceryList -> {
+                if (groceryList == null) {
+                    return null;
                 }
-            }
 
-            // Update the 'updatedAt' timestamp
-            String currentDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").format(new Date());
-            groceryList.setUpdatedAt(currentDate);
-
-            // Serialize the updated grocery list back to JSON
-            String updatedListJson = objectMapper.writeValueAsString(groceryList);
+                // Find the item by ID and update its information
+                for (GroceryItem item : groceryList.getItems()) {
+                    if (item.getId().equals(updatedItem.getId())) {
+                        item.setName(updatedItem.getName());
+                        item.setQuantity(updatedItem.getQuantity());
+                        item.setChecked(updatedItem.isChecked());
+                        item.setPrice(updatedItem.getPrice());
+                        item.setStore(updatedItem.getStore());
+                        item.setNotes(updatedItem.getNotes());
+                        break;
+                    }
+                }
 
-            // Upload the updated grocery list back to S3
-            String s3Path = getS3Path(normUser, listId);
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(BUCKET_NAME)
-                    .key(s3Path)
-                    .build();
-            s3Client.putObject(putObjectRequest, RequestBody.fromString(updatedListJson));
+                groceryList.setUpdatedAt(now());
+                return groceryList;
+            });
 
-            return true;
+            return updated != null;
         } catch (Exception e) {
             e.printStackTrace();
             return false;
         }
     }
 
+    private static String now() {
+        return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").format(new Date());
+    }
+
     // Method to archive a grocery list to S3 in JSON format
     public String archiveGroceryList(GroceryList groceryList, String username) throws IOException {
         // Ensure the list exists before attempting to archive
@@ -405,10 +295,6 @@ public class GroceryListService {
 
         String groceryListID = groceryList.getId();
 
-        // Serialize the GroceryList object to JSON
-        ObjectMapper objectMapper = new ObjectMapper();
-        String jsonString = objectMapper.writeValueAsString(groceryList);
-
         String normUser = normalize(username);
         // Define the source and destination S3 keys
         String sourceKey = "users/" + normUser + "/grocery/lists/" + groceryListID + ".json";
@@ -417,18 +303,10 @@ public class GroceryListService {
         // Copy the grocery list from the original folder to the archived folder
         try {
             // Upload to archived folder
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(BUCKET_NAME)
-                    .key(destinationKey)
-                    .build();
-            s3Client.putObject(putObjectRequest, RequestBody.fromBytes(jsonString.getBytes()));
+            documentStore.put(destinationKey, groceryList);
 
             // Delete the original grocery list from the "grocery/lists" folder
-            DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
-                    .bucket(BUCKET_NAME)
-                    .key(sourceKey)
-                    .build();
-            s3Client.deleteObject(deleteObjectRequest);
+            documentStore.delete(sourceKey);
 
             return destinationKey;  // Return the new S3 path of the archived list
         } catch (Exception e) {
@@ -439,33 +317,18 @@ public class GroceryListService {
 
     // Method to retrieve archived grocery lists from S3
     public List<GroceryList> getArchivedGroceryLists(String username) throws IOException {
-        List<GroceryList> archivedLists = new ArrayList<>();
-
         String normUser = normalize(username);
         // Construct the S3 key path to list all archived grocery lists for the user
         String s3Path = "users/" + normUser + "/grocery/archived/";
 
         // List all objects in the archived grocery lists folder for the user
-        ListObjectsV2Request listObjectsV2Request = ListObjectsV2Request.builder()
-                .bucket(BUCKET_NAME)
-                .prefix(s3Path)
-                .build();
-
-        var objectSummaries = s3Client.listObjectsV2(listObjectsV2Request).contents();
-
-        // For each archived grocery list file, read and parse the content
-        for (S3Object object : objectSummaries) {
-            String key = object.key();
-            var s3Object = s3Client.getObject(b -> b.bucket(BUCKET_NAME).key(key));
-            var objectContent = new String(s3Object.readAllBytes());  // Read the content as a String
-
-            // Convert the JSON content to a GroceryList object
-            ObjectMapper objectMapper = new ObjectMapper();
-            GroceryList groceryList = objectMapper.readValue(objectContent, GroceryList.class);
-            archivedLists.add(groceryList);
-        }
+        // and read every archived grocery list file concurrently
+        return readAll(documentStore.list(s3Path));
+    }
 
-        return archivedLists;
+    private List<GroceryList> readAll(List<String> keys) {
+        // a list that failed to load fails the call rather than silently disappearing
+        return bulkReader.getAll(keys, GroceryList.class).foundOrThrow();
     }
 
     // Method to restore an archived grocery list, unchecking all items
@@ -482,10 +345,6 @@ public class GroceryListService {
 
         String groceryListID = groceryList.getId();
 
-        // Serialize the GroceryList object to JSON
-        ObjectMapper objectMapper = new ObjectMapper();
-        String jsonString = objectMapper.writeValueAsString(groceryList);
-
         String normUser = normalize(username);
         // Define the source and destination S3 keys
         String sourceKey = "users/" + normUser + "/grocery/archived/" + groceryListID + ".json";
@@ -494,18 +353,10 @@ public class GroceryListService {
         // Copy the grocery list from the archived folder to the original folder
         try {
             // Upload to the original folder
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(BUCKET_NAME)
-                    .key(destinationKey)
-                    .build();
-            s3Client.putObject(putObjectRequest, RequestBody.fromBytes(jsonString.getBytes()));
+            documentStore.put(destinationKey, groceryList);
 
             // Delete the original grocery list from the "grocery/archived" folder
-            DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
-                    .bucket(BUCKET_NAME)
-                    .key(sourceKey)
-                    .build();
-            s3Client.deleteObject(deleteObjectRequest);
+            documentStore.delete(sourceKey);
 
             return destinationKey;  // Return the new S3 path of the restored list
         } catch (Exception e) {
@@ -1,18 +1,9 @@
 package com.plotline.backend.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.plotline.backend.dto.HealthEntry;
+import com.plotline.backend.storage.BulkReader;
+import com.plotline.backend.storage.DocumentStore;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.model.S3Object;
-import software.amazon.awssdk.core.ResponseInputStream;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
-import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
@@ -22,14 +13,14 @@ import java.util.stream.Collectors;
 @Service
 public class HealthService {
 
-    private final S3Client s3Client;
-    private final String BUCKET_NAME = "plotline-database-bucket";
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DocumentStore documentStore;
+    private final BulkReader bulkReader;
     private final UserProfileService userProfileService;
 
-    public HealthService(S3Client s3Client, UserProfileService userProfileService) {
+    public HealthService(DocumentStore documentStore, BulkReader bulkReader, UserProfileService userProfileService) {
         this.userProfileService = userProfileService;
-        this.s3Client = s3Client;
+        this.documentStore = documentStore;
+        this.bulkReader = bulkReader;
     }
 
     // Helper function to construct the S3 path for weekly health entries
@@ -47,19 +38,11 @@ public class HealthService {
         try {
             String s3Path = getWeeklyEntriesS3Path(username, sundayDateString);
 
-            // Fetch the health entries from S3
-            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                    .bucket(BUCKET_NAME)
-                    .key(s3Path)
-                    .build();
+            // Fetch the health entries from S3 and parse them into a list
+            HealthEntry[] entries = documentStore.get(s3Path, HealthEntry[].class);
 
-            ResponseInputStream<GetObjectResponse> response = s3Client.getObject(getObjectRequest);
-
-            // Parse the JSON into a list of health entries
-            return Arrays.asList(objectMapper.readValue(response, HealthEntry[].class));
-        } catch (NoSuchKeyException e) {
             // If no entries exist for this week, return an empty list
-            return new ArrayList<>();
+            return entries == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(entries));
         } catch (Exception e) {
             e.printStackTrace();
             throw new IOException("Error retrieving health entries", e);
@@ -71,41 +54,14 @@ public class HealthService {
         try {
             // Set or update timestamps for all entries
             String currentDate = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").format(new Date());
-            
-            for (HealthEntry entry : entries) {
-                // Ensure the username is correct
-                entry.setUsername(username);
-                
-                // Set updated timestamp
-                entry.setUpdatedAt(currentDate);
-                
-                // If no created timestamp, set it
-                if (entry.getCreatedAt() == null) {
-                    entry.setCreatedAt(currentDate);
-                }
-                
-                // If no ID, generate one
-                if (entry.getId() == null) {
-                    entry.setId(UUID.randomUUID().toString());
-                }
-
-                if (entry.getHoursSlept() >= 8) {
-                    userProfileService.incrementTrophy(entry.getUsername(), "sleep-goal", 1);
-                }
-            }
-
-            // Serialize the list of entries to JSON
-            String jsonString = objectMapper.writeValueAsString(entries);
+            stampEntries(username, entries, currentDate);
 
             // Get the S3 path
             String s3Path = getWeeklyEntriesS3Path(username, sundayDateString);
 
-            // Upload to S3
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(BUCKET_NAME)
-                    .key(s3Path)
-                    .build();
-            s3Client.putObject(putObjectRequest, RequestBody.fromString(jsonString));
+            // the client sends the whole week, so this replaces the file rather than merging into it
+            documentStore.put(s3Path, entries);
+            awardSleepGoals(entries);
 
             return true;
         } catch (Exception e) {
@@ -114,6 +70,34 @@ public class HealthService {
         }
     }
 
+    private void stampEntries(String username, List<HealthEntry> entries, String currentDate) {
+        for (HealthEntry entry : entries) {
+            // Ensure the username is correct
+            entry.setUsername(username);
+
+            // Set updated timestamp
+            entry.setUpdatedAt(currentDate);
+
+            // If no created timestamp, set it
+            if (entry.getCreatedAt() == null) {
+                entry.setCreatedAt(currentDate);
+            }
+
+            // If no ID, generate one
+            if (entry.getId() == null) {
+                entry.setId(UUID.randomUUID().toString());
+            }
+        }
+    }
+
+    private void awardSleepGoals(List<HealthEntry> entries) throws IOException {
+        for (HealthEntry entry : entries) {
+            if (entry.getHoursSlept() >= 8) {
+                userProfileService.incrementTrophy(entry.getUsername(), "sleep-goal", 1);
+            }
+        }
+    }
+
     // Method to create a new health entry
     public String createHealthEntry(HealthEntry healthEntry) throws IOException {
         if (healthEntry.getUsername() == null || healthEntry.getUsername().isEmpty()) {
@@ -138,34 +122,40 @@ public class HealthService {
         calendar.set(Calendar.DAY_OF_WEEK, Calendar.SUNDAY);
         String sundayDateString = formatter.format(calendar.getTime());
 
-        // Try to load existing entries for this week
-        List<HealthEntry> weekEntries;
-        try {
-            weekEntries = getHealthEntriesForWeek(healthEntry.getUsername(), sundayDateString);
-        } catch (IOException e) {
-            weekEntries = new ArrayList<>();
-        }
-
         // Set timestamps
         String currentDateTime = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").format(new Date());
         healthEntry.setCreatedAt(currentDateTime);
         healthEntry.setUpdatedAt(currentDateTime);
 
-        // Remove any existing entry for the same date
-        weekEntries.removeIf(entry -> isSameDay(entry.getDate(), healthEntry.getDate()));
-        
-        // Add the new entry
-        weekEntries.add(healthEntry);
+        // replace the week's entry for this date inside a conditional update, so two entries logged
+        // into the same week at once both land
+        String username = healthEntry.getUsername();
+        List<HealthEntry> weekEntries;
+        try {
+            HealthEntry[] saved = documentStore.update(getWeeklyEntriesS3Path(username, sundayDateString), HealthEntry[].class, current -> {
+                List<HealthEntry> entries = current == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(current));
+
+                // Remove any existing entry for the same date
+                entries.removeIf(entry -> isSameDay(entry.getDate(), healthEntry.getDate()));
+
+                // Add the new entry
+                entries.add(healthEntry);
+                stampEntries(username, entries, currentDateTime);
+                return entries.toArray(new HealthEntry[0]);
+            });
+            weekEntries = Arrays.asList(saved);
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw new IOException("Error saving health entries", e);
+        }
 
         //trophy for logging health entry
-        userProfileService.incrementTrophy(healthEntry.getUsername(), "sleep-tracker", 1);
+        userProfileService.incrementTrophy(username, "sleep-tracker", 1);
 
         if (healthEntry.getHoursSlept() >= 8) {
-            userProfileService.incrementTrophy(healthEntry.getUsername(), "sleep-goal", 1);
+            userProfileService.incrementTrophy(username, "sleep-goal", 1);
         }
-
-        // Save the updated list
-        saveHealthEntries(healthEntry.getUsername(), sundayDateString, weekEntries);
+        awardSleepGoals(weekEntries);
 
         return healthEntry.getId();
     }
@@ -184,51 +174,38 @@ public class HealthService {
     public boolean deleteHealthEntry(String username, String entryId) throws IOException {
         // List all health entry files for this user
         String prefix = getUserHealthEntriesPrefix(username);
-        ListObjectsV2Request listObjectsRequest = ListObjectsV2Request.builder()
-                .bucket(BUCKET_NAME)
-                .prefix(prefix)
-                .build();
 
-        var objectSummaries = s3Client.listObjectsV2(listObjectsRequest).contents();
-        
         // Check each weekly entries file for the entry with the specified ID
-        for (S3Object object : objectSummaries) {
-            String key = object.key();
+        for (String key : documentStore.list(prefix)) {
             
             // Skip if this isn't an entries.json file
             if (!key.endsWith("entries.json")) {
                 continue;
             }
             
-            // Get the object from S3
-            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                    .bucket(BUCKET_NAME)
-                    .key(key)
-                    .build();
-                    
             try {
-                ResponseInputStream<GetObjectResponse> response = s3Client.getObject(getObjectRequest);
-                List<HealthEntry> entries = Arrays.asList(objectMapper.readValue(response, HealthEntry[].class));
-                
-                // Check if the entry with the specified ID exists in this file
-                Optional<HealthEntry> entryToDelete = entries.stream()
-                        .filter(entry -> entry.getId().equals(entryId))
-                        .findFirst();
-                        
-                if (entryToDelete.isPresent()) {
+                // null from the mutator (no file, or the entry isn't in it) leaves the file alone
+                HealthEntry[] saved = documentStore.update(key, HealthEntry[].class, stored -> {
+                    if (stored == null) {
+                        return null;
+                    }
+                    List<HealthEntry> entries = Arrays.asList(stored);
+
+                    // Check if the entry with the specified ID exists in this file
+                    Optional<HealthEntry> entryToDelete = entries.stream()
+                            .filter(entry -> entry.getId().equals(entryId))
+                            .findFirst();
+                    if (entryToDelete.isEmpty()) {
+                        return null;
+                    }
+
                     // Remove the entry
-                    List<HealthEntry> updatedEntries = entries.stream()
+                    return entries.stream()
                             .filter(entry -> !entry.getId().equals(entryId))
-                            .collect(Collectors.toList());
-                            
-                    // Save the updated file
-                    String jsonString = objectMapper.writeValueAsString(updatedEntries);
-                    PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                            .bucket(BUCKET_NAME)
-                            .key(key)
-                            .build();
-                    s3Client.putObject(putObjectRequest, RequestBody.fromString(jsonString));
-                    
+                            .toArray(HealthEntry[]::new);
+                });
+
+                if (saved != null) {
                     return true;
                 }
             } catch (Exception e) {
@@ -247,36 +224,17 @@ public class HealthService {
         
         // List all health entry files for this user
         String prefix = getUserHealthEntriesPrefix(username);
-        ListObjectsV2Request listObjectsRequest = ListObjectsV2Request.builder()
-                .bucket(BUCKET_NAME)
-                .prefix(prefix)
-                .build();
 
-        var objectSummaries = s3Client.listObjectsV2(listObjectsRequest).contents();
-        
-        // Collect entries from all files
-        for (S3Object object : objectSummaries) {
-            String key = object.key();
-            
-            // Skip if this isn't an entries.json file
-            if (!key.endsWith("entries.json")) {
-                continue;
-            }
-            
-            try {
-                // Get the object from S3
-                GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                        .bucket(BUCKET_NAME)
-                        .key(key)
-                        .build();
-                        
-                ResponseInputStream<GetObjectResponse> response = s3Client.getObject(getObjectRequest);
-                List<HealthEntry> entries = Arrays.asList(objectMapper.readValue(response, HealthEntry[].class));
-                
-                allEntries.addAll(entries);
-            } catch (Exception e) {
-                System.err.println("Error processing file " + key + ": " + e.getMessage());
-            }
+        // Skip anything that isn't an entries.json file
+        List<String> keys = documentStore.list(prefix).stream()
+                .filter(key -> key.endsWith("entries.json"))
+                .toList();
+
+        // Collect entries from all files, fetched concurrently
+        BulkReader.Results<HealthEntry[]> results = bulkReader.getAll(keys, HealthEntry[].class);
+        // a file that failed to load fails the call rather than silently dropping its entries
+        for (HealthEntry[] entries : results.foundOrThrow()) {
+            allEntries.addAll(Arrays.asList(entries));
         }
         
         // Sort entries by date (newest first)
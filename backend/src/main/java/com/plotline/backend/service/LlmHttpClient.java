@@ -0,0 +1,131 @@
+package com.plotline.backend.service;
+
+import io.github.cdimascio.dotenv.Dotenv;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The one outbound HTTP client for raw model calls. A single HttpClient keeps
+ * its HTTP/2 connections to the API open between calls, so a receipt no
+ * longer pays a TLS handshake, and the API key is resolved once at startup
+ * instead of re-reading .env per request. At most max-concurrent calls are in
+ * flight; callers beyond that wait up to acquire-timeout-ms and then fail.
+ *
+ * llm.base-url points everything, the OpenAI SDK client included, at another
+ * server, such as a local stub in tests.
+ */
+@Component
+public class LlmHttpClient {
+
+  /** Counters since startup; latency covers calls that got a response. */
+  public record Stats(long requests, long failures, long rejected, int inFlight, double meanLatencyMs, long maxLatencyMs) {}
+
+  private final HttpClient http;
+  private final String baseUrl;
+  private final String apiKey;
+  private final Duration requestTimeout;
+  private final Semaphore permits;
+  private final int maxConcurrent;
+  private final long acquireTimeoutMs;
+
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder answered = new LongAdder();
+  private final LongAdder latencyMs = new LongAdder();
+  private final AtomicLong maxLatencyMs = new AtomicLong();
+
+  public LlmHttpClient(@Value("${llm.base-url:https://api.openai.com/v1}") String baseUrl,
+                       @Value("${llm.connect-timeout-ms:5000}") long connectTimeoutMs,
+                       @Value("${llm.request-timeout-seconds:60}") long requestTimeoutSeconds,
+                       @Value("${llm.max-concurrent:8}") int maxConcurrent,
+                       @Value("${llm.acquire-timeout-ms:30000}") long acquireTimeoutMs) {
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    this.apiKey = resolveApiKey();
+    this.requestTimeout = Duration.ofSeconds(requestTimeoutSeconds);
+    this.maxConcurrent = Math.max(1, maxConcurrent);
+    this.permits = new Semaphore(this.maxConcurrent, true);
+    this.acquireTimeoutMs = acquireTimeoutMs;
+    this.http = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+        .build();
+  }
+
+  private static String resolveApiKey() {
+    String env = System.getenv("OPENAI_API_KEY");
+    if (env != null && !env.isBlank()) return env;
+    return Dotenv.configure().ignoreIfMissing().load().get("OPENAI_API_KEY");
+  }
+
+  public boolean isConfigured() {
+    return apiKey != null && !apiKey.isBlank();
+  }
+
+  public String apiKey() {
+    return apiKey;
+  }
+
+  public String baseUrl() {
+    return baseUrl;
+  }
+
+  /**
+   * POSTs a JSON body, given as chunks that are sent back to back, to
+   * base-url + path and returns the response whatever its status.
+   */
+  public HttpResponse<String> postJson(String path, List<byte[]> body) throws IOException, InterruptedException {
+    if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+      rejected.increment();
+      throw new IOException("Too many model calls in flight (" + maxConcurrent + ")");
+    }
+    requests.increment();
+    long started = System.nanoTime();
+    try {
+      HttpRequest request = HttpRequest.newBuilder()
+          .uri(URI.create(baseUrl + path))
+          .timeout(requestTimeout)
+          .header("Content-Type", "application/json")
+          .header("Authorization", "Bearer " + apiKey)
+          .POST(HttpRequest.BodyPublishers.ofByteArrays(body))
+          .build();
+      HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+      record(started);
+      if (response.statusCode() == 429 || response.statusCode() >= 500) failures.increment();
+      return response;
+    } catch (IOException | RuntimeException e) {
+      failures.increment();
+      throw e;
+    } finally {
+      permits.release();
+    }
+  }
+
+  public Stats stats() {
+    long n = answered.sum();
+    return new Stats(requests.sum(), failures.sum(), rejected.sum(),
+        maxConcurrent - permits.availablePermits(),
+        n == 0 ? 0 : (double) latencyMs.sum() / n,
+        maxLatencyMs.get());
+  }
+
+  private void record(long startedNanos) {
+    long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+    answered.increment();
+    latencyMs.add(ms);
+    maxLatencyMs.accumulateAndGet(ms, Math::max);
+  }
+}
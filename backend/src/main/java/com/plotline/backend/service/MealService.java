@@ -1,22 +1,16 @@
 package com.plotline.backend.service;
 
-import software.amazon.awssdk.services.s3.S3Client;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.plotline.backend.dto.GroceryList;
+import com.plotline.backend.storage.BulkReader;
+import com.plotline.backend.storage.DocumentStore;
 
 import io.jsonwebtoken.io.IOException;
 
 import org.springframework.stereotype.Service;
 
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.core.ResponseInputStream;
-import software.amazon.awssdk.core.sync.RequestBody;
-
-import java.nio.charset.StandardCharsets;
+import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -25,17 +19,16 @@ import java.util.UUID;
 @Service
 public class MealService {
 
-    private final S3Client s3Client;
-    private final String BUCKET_NAME = "plotline-database-bucket";  // Replace with your actual bucket name
+    private final DocumentStore documentStore;
+
+    private final BulkReader bulkReader;
 
     // Optionally, add UserProfileService if needed
     // private final UserProfileService userProfileService;
 
-    private final GroceryListService groceryListService;
-
-    public MealService(S3Client s3Client, GroceryListService groceryListService) {
-        this.s3Client = s3Client;
-        this.groceryListService = groceryListService;
+    public MealService(DocumentStore documentStore, BulkReader bulkReader) {
+        this.documentStore = documentStore;
+        this.bulkReader = bulkReader;
         // Initialize UserProfileService if needed
         // this.userProfileService = userProfileService;
     }
@@ -56,26 +49,12 @@ public class MealService {
         // Construct the path to the user's meal folder in S3
         String prefix = "users/" + normUser + "/meals/";
 
-        // List all objects under the user's meals folder
-        ListObjectsV2Request listObjectsRequest = ListObjectsV2Request.builder()
-                .bucket(BUCKET_NAME)
-                .prefix(prefix)
-                .build();
-
-        ListObjectsV2Response listObjectsResponse = s3Client.listObjectsV2(listObjectsRequest);
-
-        List<Map<String, Object>> meals = new ArrayList<>();
+        // Fetch every meal under the user's meals folder concurrently
+        BulkReader.Results<Map<String, Object>> results =
+            bulkReader.getAll(documentStore.list(prefix), new TypeReference<Map<String, Object>>() {});
 
-        // Iterate over each object in the user's meal folder
-        for (var s3Object : listObjectsResponse.contents()) {
-            String mealID = s3Object.key().substring(s3Object.key().lastIndexOf("/") + 1, s3Object.key().lastIndexOf("."));
-
-            // Fetch each meal's JSON data from S3
-            Map<String, Object> meal = getMealFromS3(normUser, mealID);
-            meals.add(meal);
-        }
-
-        return meals;
+        // a meal that failed to load fails the call rather than silently disappearing
+        return new ArrayList<>(results.foundOrThrow());
     }
 
     // Method to fetch meal from S3 using mealID and username
@@ -84,21 +63,12 @@ public class MealService {
         // Construct the S3 path for the meal
         String fileName = "users/" + normUser + "/meals/" + mealID + ".json";
 
-        // Get the object from S3
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                .bucket(BUCKET_NAME)
-                .key(fileName)
-                .build();
-
-        // Fetch the object from S3
-        ResponseInputStream<?> objectData = s3Client.getObject(getObjectRequest);
-
-        // Convert the input stream to a string
-        String mealJson = new String(objectData.readAllBytes(), StandardCharsets.UTF_8);
-
-        // Convert the JSON string to a Map (you can use a DTO instead if desired)
-        ObjectMapper objectMapper = new ObjectMapper();
-        return objectMapper.readValue(mealJson, Map.class);
+        // Fetch the object from S3 and convert the JSON to a Map (you can use a DTO instead if desired)
+        Map<String, Object> meal = documentStore.get(fileName, new TypeReference<Map<String, Object>>() {});
+        if (meal == null) {
+            throw new FileNotFoundException("No such meal: " + fileName);
+        }
+        return meal;
     }
 
     // Method to create and save the meal recipe in S3
@@ -116,37 +86,26 @@ public class MealService {
             meal.put("mealID", mealID);
             meal.put("listID", listID);
 
-            // Convert meal entry to JSON string
-            String mealJson = objectMapper.writeValueAsString(meal);
-
-            // Prepare the S3 put request
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(BUCKET_NAME)
-                    .key(fileName)
-                    .build();
-
             // Save the meal JSON to S3
-            s3Client.putObject(putObjectRequest, RequestBody.fromString(mealJson));
+            documentStore.put(fileName, meal);
 
-            // add the meal ID to the respective grocery list
-            GroceryList groceryList = groceryListService.getGroceryList(normUser, listID);
-
-            // Update the grocery list with meal information
-            groceryList.setMealID(mealID);
-            groceryList.setMealName(meal.get("mealName").toString());
-
-            // Now convert the updated grocery list to JSON
-            String groceryListJson = objectMapper.writeValueAsString(groceryList);
-
-            // save the grocery list to S3
+            // add the meal ID to the respective grocery list, as a conditional update so an item
+            // added or checked off at the same moment isn't overwritten
+            String mealName = meal.get("mealName").toString();
             String groceryListFileName = "users/" + normUser + "/grocery/lists/" + listID + ".json";
-            PutObjectRequest groceryListPutObjectRequest = PutObjectRequest.builder()
-                    .bucket(BUCKET_NAME)
-                    .key(groceryListFileName)
-                    .build();
-
-            // Save the grocery list JSON to S3
-            s3Client.putObject(groceryListPutObjectRequest, RequestBody.fromString(groceryListJson));
+            GroceryList saved = documentStore.update(groceryListFileName, GroceryList.class, groceryList -> {
+                if (groceryList == null) {
+                    return null;
+                }
+
+                // Update the grocery list with meal information
+                groceryList.setMealID(mealID);
+                groceryList.setMealName(mealName);
+                return groceryList;
+            });
+            if (saved == null) {
+                throw new FileNotFoundException("No such grocery list: " + groceryListFileName);
+            }
 
         } catch (Exception e) {
             // Log the error and handle it properly
@@ -1,22 +1,196 @@
 package com.plotline.backend.service;
 
-import net.sourceforge.tess4j.Tesseract;
-import net.sourceforge.tess4j.TesseractException;
+import com.sun.jna.Pointer;
+import net.sourceforge.tess4j.ITessAPI.TessBaseAPI;
+import net.sourceforge.tess4j.TessAPI1;
 
-import java.io.File;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PreDestroy;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local text recognition with Tesseract. Tess4J's Tesseract class loads the
+ * language data again on every doOCR call, so this keeps pool-size engines
+ * initialized once (through the C API) and hands one to each OCR task on a
+ * bounded executor of the same size.
+ *
+ * If the native library or the tessdata directory is missing, the first use
+ * logs why and OCR stays unavailable, callers fall back to something else.
+ */
+@Service
 public class OCRService {
 
-    public static String extractTextFromImage(File imageFile) {
-        Tesseract tesseract = new Tesseract();
-        tesseract.setDatapath("/opt/homebrew/share/tessdata");
+    /** Recognized text and Tesseract's mean word confidence, 0-100. */
+    public record OcrText(String text, int confidence) {}
+
+    private static final int PSM_AUTO = 3;
+
+    private final boolean enabled;
+    private final String tessdataPath;
+    private final String language;
+    private final int poolSize;
+    private final long timeoutMs;
 
+    private final BlockingQueue<TessBaseAPI> engines;
+    private final List<TessBaseAPI> allEngines = new ArrayList<>();
+    private final ThreadPoolExecutor executor;
+    private volatile Boolean available;
 
+    public OCRService(@Value("${ocr.enabled:true}") boolean enabled,
+                      @Value("${ocr.tessdata-path:${TESSDATA_PREFIX:/opt/homebrew/share/tessdata}}") String tessdataPath,
+                      @Value("${ocr.language:eng}") String language,
+                      @Value("${ocr.pool-size:2}") int poolSize,
+                      @Value("${ocr.queue-capacity:20}") int queueCapacity,
+                      @Value("${ocr.timeout-ms:5000}") long timeoutMs) {
+        this.enabled = enabled;
+        this.tessdataPath = tessdataPath;
+        this.language = language;
+        this.poolSize = Math.max(1, poolSize);
+        this.timeoutMs = timeoutMs;
+        this.engines = new ArrayBlockingQueue<>(this.poolSize);
+
+        AtomicInteger n = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.poolSize, this.poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    Thread t = new Thread(r, "ocr-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public boolean isAvailable() {
+        Boolean ready = available;
+        if (ready == null) {
+            synchronized (this) {
+                if (available == null) available = enabled && initEngines();
+                ready = available;
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Recognizes an 8-bit grayscale image. Returns null when OCR is unavailable,
+     * saturated or too slow, so the caller can use another path.
+     */
+    public OcrText recognize(BufferedImage gray) {
+        if (gray.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            throw new IllegalArgumentException("OCR expects a TYPE_BYTE_GRAY image");
+        }
+        if (!isAvailable()) return null;
+
+        Future<OcrText> task;
         try {
-            return tesseract.doOCR(imageFile);
-        } catch (TesseractException e) {
+            task = executor.submit(() -> {
+                TessBaseAPI engine = engines.take();
+                try {
+                    return run(engine, gray);
+                } finally {
+                    // offer, not put: it never blocks here, and put would throw on a shutdown interrupt
+                    engines.offer(engine);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+        try {
+            return task.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // the engine finishes the page and goes back to the pool on its own
+            System.err.println("OCR timed out after " + timeoutMs + " ms");
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
             e.printStackTrace();
-            return "Error extracting text: " + e.getMessage();
+            return null;
+        }
+    }
+
+    private static OcrText run(TessBaseAPI engine, BufferedImage gray) {
+        byte[] pixels = ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(pixels.length);
+        buffer.put(pixels).flip();
+        try {
+            TessAPI1.TessBaseAPISetImage(engine, buffer, gray.getWidth(), gray.getHeight(), 1, gray.getWidth());
+            Pointer utf8 = TessAPI1.TessBaseAPIGetUTF8Text(engine);
+            if (utf8 == null) return new OcrText("", 0);
+            try {
+                return new OcrText(utf8.getString(0, "UTF-8"), TessAPI1.TessBaseAPIMeanTextConf(engine));
+            } finally {
+                TessAPI1.TessDeleteText(utf8);
+            }
+        } finally {
+            TessAPI1.TessBaseAPIClear(engine);
+        }
+    }
+
+    private boolean initEngines() {
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                TessBaseAPI engine = TessAPI1.TessBaseAPICreate();
+                allEngines.add(engine);
+                if (TessAPI1.TessBaseAPIInit3(engine, tessdataPath, language) != 0) {
+                    throw new IllegalStateException("could not load '" + language + "' from " + tessdataPath);
+                }
+                TessAPI1.TessBaseAPISetPageSegMode(engine, PSM_AUTO);
+                engines.add(engine);
+            }
+            return true;
+        } catch (Throwable t) {
+            // UnsatisfiedLinkError when libtesseract isn't installed
+            System.err.println("Local OCR unavailable: " + t);
+            engines.clear();
+            releaseEngines(new ArrayList<>(allEngines));
+            return false;
+        }
+    }
+
+    private void releaseEngines(List<TessBaseAPI> released) {
+        for (TessBaseAPI engine : released) {
+            try {
+                TessAPI1.TessBaseAPIEnd(engine);
+                TessAPI1.TessBaseAPIDelete(engine);
+            } catch (Throwable ignored) {
+                // best effort on the way down
+            }
+        }
+        allEngines.removeAll(released);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // queued pages are dropped, their callers time out and fall back as for a slow page
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            // a page still running keeps its engine, freeing it under the native call would crash the JVM;
+            // only the engines back in the pool go, the rest go with the process
+            List<TessBaseAPI> idle = new ArrayList<>();
+            engines.drainTo(idle);
+            releaseEngines(idle);
         }
     }
-}
\ No newline at end of file
+}
@@ -12,7 +12,6 @@ import com.openai.models.responses.ResponseOutputText;
 import com.plotline.backend.dto.DietaryRestrictions;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import io.github.cdimascio.dotenv.Dotenv;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -29,38 +28,33 @@ import java.util.Map;
 public class OpenAIService {
 
   private final OpenAIClient openAIClient;
+  private final LlmHttpClient llmHttpClient;
   private final ObjectMapper objectMapper = new ObjectMapper();
 
+  private static final String IMAGE_PLACEHOLDER = "__RECEIPT_IMAGE__";
+
   @Autowired
   private DietaryRestrictionsService dietaryRestrictionsService;
 
   @Autowired
   private MealService mealService;
 
-  public OpenAIService() {
-
-    Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
-    String openaiApiKey = resolveEnv(dotenv, "OPENAI_API_KEY");
+  public OpenAIService(LlmHttpClient llmHttpClient) {
+    this.llmHttpClient = llmHttpClient;
 
-    if (openaiApiKey == null || openaiApiKey.isBlank()) {
+    if (!llmHttpClient.isConfigured()) {
       System.err.println("OPENAI_API_KEY not configured; LLM features are disabled.");
       this.openAIClient = null;
     } else {
+      // the SDK keeps its own connection pool; built once so it's reused for every call
       this.openAIClient = OpenAIOkHttpClient.builder()
-                          .apiKey(openaiApiKey)
+                          .apiKey(llmHttpClient.apiKey())
+                          .baseUrl(llmHttpClient.baseUrl())
                           .build();
     }
 
   }
 
-  private static String resolveEnv(Dotenv dotenv, String key) {
-    String env = System.getenv(key);
-    if (env != null && !env.isBlank()) {
-      return env;
-    }
-    return dotenv.get(key);
-  }
-
   // @Arty5654 @ay-chang @ymehtaa this is an example which sends a user prompt and returns the response
   public String generateResponse(String userMessage) {
     if (openAIClient == null) {
@@ -107,12 +101,12 @@ public class OpenAIService {
 
   /**
    * Analyze a receipt image using GPT-4o Vision API via direct HTTP call.
+   * The image is base64-encoded straight into the request body, which is sent
+   * as prefix, image and suffix chunks rather than built as one String.
    */
-  public String analyzeReceiptFromImage(String base64Image) {
+  public String analyzeReceiptFromImage(byte[] jpeg) {
     try {
-      Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
-      String apiKey = resolveEnv(dotenv, "OPENAI_API_KEY");
-      if (apiKey == null || apiKey.isBlank()) {
+      if (!llmHttpClient.isConfigured()) {
         return "{\"error\": \"OpenAI API key not configured\"}";
       }
 
@@ -124,7 +118,7 @@ public class OpenAIService {
           + "Only return the JSON object, no other text.";
 
       // Build JSON properly using ObjectMapper to avoid escaping issues
-      Map<String, Object> imageUrl = Map.of("url", "data:image/jpeg;base64," + base64Image, "detail", "high");
+      Map<String, Object> imageUrl = Map.of("url", "data:image/jpeg;base64," + IMAGE_PLACEHOLDER, "detail", "high");
       Map<String, Object> imageContent = Map.of("type", "image_url", "image_url", imageUrl);
       Map<String, Object> textContent = Map.of("type", "text", "text", "Please analyze this receipt image and extract the items with prices, categorized.");
 
@@ -137,17 +131,15 @@ public class OpenAIService {
           "max_tokens", 1000
       );
 
-      String requestBody = objectMapper.writeValueAsString(requestMap);
-
-      java.net.http.HttpClient client = java.net.http.HttpClient.newHttpClient();
-      java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
-          .uri(java.net.URI.create("https://api.openai.com/v1/chat/completions"))
-          .header("Content-Type", "application/json")
-          .header("Authorization", "Bearer " + apiKey)
-          .POST(java.net.http.HttpRequest.BodyPublishers.ofString(requestBody))
-          .build();
+      // base64 never needs JSON escaping, so the image can be spliced in where the placeholder was serialized
+      String json = objectMapper.writeValueAsString(requestMap);
+      int at = json.indexOf(IMAGE_PLACEHOLDER);
+      List<byte[]> requestBody = List.of(
+          json.substring(0, at).getBytes(java.nio.charset.StandardCharsets.UTF_8),
+          java.util.Base64.getEncoder().encode(jpeg),
+          json.substring(at + IMAGE_PLACEHOLDER.length()).getBytes(java.nio.charset.StandardCharsets.UTF_8));
 
-      java.net.http.HttpResponse<String> response = client.send(request, java.net.http.HttpResponse.BodyHandlers.ofString());
+      java.net.http.HttpResponse<String> response = llmHttpClient.postJson("/chat/completions", requestBody);
       String responseBody = response.body();
 
       // Log response for debugging
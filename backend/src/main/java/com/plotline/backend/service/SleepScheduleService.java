@@ -1,15 +1,8 @@
 package com.plotline.backend.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.plotline.backend.dto.SleepSchedule;
+import com.plotline.backend.storage.DocumentStore;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.core.ResponseInputStream;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
@@ -20,12 +13,10 @@ import java.util.UUID;
 @Service
 public class SleepScheduleService {
 
-    private final S3Client s3Client;
-    private final String BUCKET_NAME = "plotline-database-bucket";
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DocumentStore documentStore;
 
-    public SleepScheduleService(S3Client s3Client) {
-        this.s3Client = s3Client;
+    public SleepScheduleService(DocumentStore documentStore) {
+        this.documentStore = documentStore;
     }
 
     // Helper function to construct the S3 path for the sleep schedule
@@ -35,26 +26,18 @@ public class SleepScheduleService {
 
     // Method to get sleep schedule for a user
     public SleepSchedule getSleepSchedule(String username) throws IOException {
+        SleepSchedule schedule;
         try {
             String s3Path = getSleepScheduleS3Path(username);
 
             // Fetch the sleep schedule from S3
-            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                    .bucket(BUCKET_NAME)
-                    .key(s3Path)
-                    .build();
-
-            ResponseInputStream<GetObjectResponse> response = s3Client.getObject(getObjectRequest);
-
-            // Parse the JSON into a SleepSchedule object
-            return objectMapper.readValue(response, SleepSchedule.class);
-        } catch (NoSuchKeyException e) {
-            // If no schedule exists yet, create and return a default one
-            return createDefaultSleepSchedule(username);
+            schedule = documentStore.get(s3Path, SleepSchedule.class);
         } catch (Exception e) {
             e.printStackTrace();
             throw new IOException("Error retrieving sleep schedule", e);
         }
+        // If no schedule exists yet, create and return a default one
+        return schedule != null ? schedule : createDefaultSleepSchedule(username);
     }
 
     // Method to save sleep schedule for a user
@@ -76,16 +59,9 @@ public class SleepScheduleService {
             }
             sleepSchedule.setUpdatedAt(currentDateTime);
 
-            // Serialize the sleep schedule to JSON
-            String jsonString = objectMapper.writeValueAsString(sleepSchedule);
-
             // Upload to S3
             String s3Path = getSleepScheduleS3Path(sleepSchedule.getUsername());
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(BUCKET_NAME)
-                    .key(s3Path)
-                    .build();
-            s3Client.putObject(putObjectRequest, RequestBody.fromString(jsonString));
+            documentStore.put(s3Path, sleepSchedule);
 
             return true;
         } catch (Exception e) {
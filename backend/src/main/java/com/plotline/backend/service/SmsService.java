@@ -1,12 +1,10 @@
 package com.plotline.backend.service;
 
-import java.nio.charset.StandardCharsets;
-
 import org.springframework.stereotype.Service;
 
 import com.twilio.http.TwilioRestClient;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.plotline.backend.dto.S3UserRecord;
+import com.plotline.backend.storage.DocumentStore;
 import com.twilio.Twilio;
 import com.twilio.type.PhoneNumber;
 import com.twilio.rest.api.v2010.account.Message;
@@ -14,12 +12,6 @@ import com.twilio.rest.verify.v2.service.VerificationCheck;
 import com.twilio.rest.verify.v2.service.Verification;
 
 import io.github.cdimascio.dotenv.Dotenv;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.core.ResponseBytes;
-import software.amazon.awssdk.core.sync.RequestBody;
 
 import static com.plotline.backend.util.UsernameUtils.normalize;
 
@@ -28,9 +20,7 @@ public class SmsService {
   private final TwilioRestClient twilioRestClient;
   private final String sender;
   private final String verifyServiceSid;
-  private final S3Client s3Client;
-  private final String bucketName = "plotline-database-bucket";
-  private final ObjectMapper objectMapper;
+  private final DocumentStore documentStore;
 
   private final boolean twilioConfigured;
 
@@ -42,7 +32,7 @@ public class SmsService {
     return dotenv.get(key);
   }
 
-  public SmsService(S3Client s3Client) {
+  public SmsService(DocumentStore documentStore) {
     Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
     String sid = resolveEnv(dotenv, "TWILIO_ACCOUNT_SID");
     String authToken = resolveEnv(dotenv, "TWILIO_AUTH_TOKEN");
@@ -57,8 +47,7 @@ public class SmsService {
       this.twilioRestClient = null;
       System.err.println("Twilio credentials are not fully configured; SMS features are disabled.");
     }
-    this.s3Client = s3Client;
-    this.objectMapper = new ObjectMapper();
+    this.documentStore = documentStore;
   }
 
   private void ensureTwilioConfigured() {
@@ -109,28 +98,16 @@ public class SmsService {
       try {
         String normUser = normalize(username);
 
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-        .bucket(bucketName)
-        .key("users/" + normUser + "/account.json")
-        .build();
-
-        ResponseBytes<GetObjectResponse> objectBytes = s3Client.getObjectAsBytes(getObjectRequest);
-        String userJson = new String(objectBytes.asByteArray(), StandardCharsets.UTF_8);
-
-        S3UserRecord userRecord = objectMapper.readValue(userJson, S3UserRecord.class);
-        userRecord.setIsVerified(true);
-        userRecord.setPhone(toNumber);
-
-        String updatedUserJson = objectMapper.writeValueAsString(userRecord);
-
-        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-          .bucket(bucketName)
-          .key("users/" + normUser + "/account.json")
-          .contentType("application/json")
-          .build();
-
-        s3Client.putObject(putObjectRequest, RequestBody.fromString(updatedUserJson));
-
+        String key = "users/" + normUser + "/account.json";
+        S3UserRecord saved = documentStore.update(key, S3UserRecord.class, userRecord -> {
+          if (userRecord == null) return null;
+          userRecord.setIsVerified(true);
+          userRecord.setPhone(toNumber);
+          return userRecord;
+        });
+        if (saved == null) {
+          System.out.println("Error updating user record");
+        }
 
       } catch (Exception e) {
         System.out.println("Error updating user record");
@@ -0,0 +1,151 @@
+package com.plotline.backend.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.plotline.backend.dto.Trophy;
+
+/**
+ * Every trophy a user can earn, compiled once into lookup tables: id to slot,
+ * slot to category bit, and thresholds kept sorted for binary search. A user's
+ * stored list is indexed into a slot-addressed array, so applying progress or
+ * checking the all-around trophy never walks lists or compares id prefixes.
+ */
+final class TrophyCatalog {
+
+  record Definition(int slot, String id, String name, String description, int[] thresholds, int categoryBit) {}
+
+  // plotline categories for the all-around trophy
+  static final int GOALS = 1;
+  static final int CALENDAR = 1 << 1;
+  static final int BUDGET = 1 << 2;
+  static final int GROCERIES = 1 << 3;
+  static final int SLEEP = 1 << 4;
+  static final int ALL_CATEGORIES = GOALS | CALENDAR | BUDGET | GROCERIES | SLEEP;
+
+  static final String ALL_AROUND = "all-around";
+
+  private static final List<Definition> DEFINITIONS = new ArrayList<>();
+  private static final Map<String, Definition> BY_ID = new HashMap<>();
+
+  static {
+    //goals
+    define("long-term-goals", "Goal Crusher", "Complete long-term goals!", 1, 5, 10, 30);
+    define("weekly-goals-creator", "Weekly Warrior", "Create weekly goals!", 10, 25, 75, 250);
+
+    //calendar
+    define("calendar-events-created", "Event Planner", "Create events on your calendar!", 5, 15, 50, 100);
+    define("friends-invited", "Group Leader", "Add friends to calendar events!", 5, 20, 50, 100);
+
+    //budget and stocks
+    define("weekly-budget-met", "Weekly Budgetor", "Under weekly budget limit!", 4, 10, 26, 52); // TODO
+    define("monthly-budget-met", "Monthly Budgetor", "Under monthly budget limit!", 1, 3, 6, 12); // TODO
+    define("budget-pacer", "Budget Pacer", "Kept spending at least 5% under budget for the month!", 1, 3, 6, 12);
+    define("investing-simple", "Stock Spender", "Invested into the stock market!", 1, 5, 20, 50);
+    define("investing-streak", "Investor Streak", "Kept investing consistently!", 2, 4, 8, 12);
+    define("monthly-spending-tracker", "Spending Tracker", "Input Spending data!", 10, 20, 50, 100);
+    define("receipt-photo", "Paper Photographer", "Upload Pictures of Receipts!", 10, 20, 50, 100); // TODO
+    define("subcription-spender", "Subscription Maxxer", "Has a lot of subscriptions!", 5, 7, 10, 12);
+    define("healthy-eater", "Healthy Eater", "Shifted spend toward groceries and away from eating out!", 1, 3, 6, 12);
+    define("watchlist-adder", "Watchful Eye", "Added stocks to the Watchlist!", 3, 10, 20, 50);
+
+    //groceries
+    define("grocery-lists", "Grocery Guru", "Created grocery Lists!", 3, 10, 20, 50);
+    define("meal-prepper", "Meal Prepper", "Created Recipes based on the Meal!", 3, 10, 20, 50);
+
+    //sleep
+    define("sleep-tracker", "Someone's Sleepy", "Logged sleep data!", 3, 10, 30, 100);
+    define("sleep-goal", "Well Rested", "Slept for over 8 hours!", 5, 15, 25, 100);
+
+    //special trophies
+    define(ALL_AROUND, "All-Around Achiever", "Achieve at least one trophy from each PlotLine Category!", 0, 0, 0, 1);
+    define("llm-investor", "Portfolio Pro", "Created a stock portfolio with the LLM!", 0, 0, 0, 1);
+    define("first-profile-picture", "Picture Perfect", "Uploaded a profile picture!", 0, 0, 0, 1);
+  }
+
+  private TrophyCatalog() {}
+
+  private static void define(String id, String name, String description, int... thresholds) {
+    Definition definition = new Definition(DEFINITIONS.size(), id, name, description, thresholds, categoryOf(id));
+    DEFINITIONS.add(definition);
+    BY_ID.put(id, definition);
+  }
+
+  // the prefix rules trophies were always grouped by, evaluated once per definition
+  private static int categoryOf(String id) {
+    if (id.startsWith("long-term-goals") || id.startsWith("weekly-goals")) {
+      return GOALS;
+    } else if (id.startsWith("calendar") || id.startsWith("friends")) {
+      return CALENDAR;
+    } else if (id.startsWith("weekly-budget") || id.startsWith("monthly-budget") ||
+               id.startsWith("investing") || id.startsWith("watchlist") ||
+               id.startsWith("subcription")) {
+      return BUDGET;
+    } else if (id.startsWith("grocery") || id.startsWith("meal-prepper")) {
+      return GROCERIES;
+    } else if (id.startsWith("sleep")) {
+      return SLEEP;
+    }
+    return 0;
+  }
+
+  static List<Definition> all() {
+    return Collections.unmodifiableList(DEFINITIONS);
+  }
+
+  static int size() {
+    return DEFINITIONS.size();
+  }
+
+  /** Null for ids that aren't (or are no longer) in the catalog. */
+  static Definition byId(String id) {
+    return id == null ? null : BY_ID.get(id);
+  }
+
+  static Trophy newTrophy(Definition definition, String earnedDate) {
+    return new Trophy(definition.id(), definition.name(), definition.description(),
+        0, 0, definition.thresholds().clone(), earnedDate);
+  }
+
+  /** The user's trophies addressed by catalog slot; entries the catalog doesn't know are left out. */
+  static Trophy[] bySlot(List<Trophy> trophies) {
+    Trophy[] slots = new Trophy[DEFINITIONS.size()];
+    for (Trophy trophy : trophies) {
+      Definition definition = byId(trophy.getId());
+      if (definition != null && slots[definition.slot()] == null) {
+        slots[definition.slot()] = trophy;
+      }
+    }
+    return slots;
+  }
+
+  /** Number of thresholds reached, i.e. the index of the first threshold above progress. */
+  static int levelFor(int[] thresholds, int progress) {
+    int lo = 0;
+    int hi = thresholds.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (thresholds[mid] <= progress) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /** Whether at least one trophy with a level is earned in every category. */
+  static boolean coversAllCategories(Trophy[] slots) {
+    int earned = 0;
+    for (int slot = 0; slot < slots.length; slot++) {
+      Trophy trophy = slots[slot];
+      if (trophy != null && trophy.getLevel() > 0) {
+        earned |= DEFINITIONS.get(slot).categoryBit();
+      }
+    }
+    return (earned & ALL_CATEGORIES) == ALL_CATEGORIES;
+  }
+}
@@ -1,35 +1,44 @@
 package com.plotline.backend.service;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.time.ZonedDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.plotline.backend.dto.S3UserRecord;
 import com.plotline.backend.dto.Trophy;
 import com.plotline.backend.dto.UserProfile;
+import com.plotline.backend.storage.DocumentStore;
+import com.plotline.backend.storage.KeyLockManager;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 import static com.plotline.backend.util.UsernameUtils.normalize;
 
 
-import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
 
 @Service
@@ -37,116 +46,60 @@ public class UserProfileService {
 
   static DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssXXX");
 
-  private static final List<Trophy> DEFAULT_TROPHIES = List.of(
-  //goals
-
-    new Trophy("long-term-goals", "Goal Crusher", "Complete long-term goals!", 
-    0, 0, new int[]{1, 5, 10, 30}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-
-    new Trophy("weekly-goals-creator", "Weekly Warrior", "Create weekly goals!", 
-    0, 0, new int[]{10, 25, 75, 250}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-  //calendar
-
-    new Trophy("calendar-events-created", "Event Planner", "Create events on your calendar!", 
-    0, 0, new int[]{5, 15, 50, 100}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-    new Trophy("friends-invited", "Group Leader", "Add friends to calendar events!", 
-    0, 0, new int[]{5, 20, 50, 100}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-  //budget and stocks
-
-    // TODO
-    new Trophy("weekly-budget-met", "Weekly Budgetor", "Under weekly budget limit!", 
-    0, 0, new int[]{4, 10, 26, 52}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-    // TODO
-    new Trophy("monthly-budget-met", "Monthly Budgetor", "Under monthly budget limit!", 
-    0, 0, new int[]{1, 3, 6, 12}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-    new Trophy("budget-pacer", "Budget Pacer", "Kept spending at least 5% under budget for the month!", 
-    0, 0, new int[]{1, 3, 6, 12}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-    new Trophy("investing-simple", "Stock Spender", "Invested into the stock market!", 
-    0, 0, new int[]{1, 5, 20, 50}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-    new Trophy("investing-streak", "Investor Streak", "Kept investing consistently!", 
-    0, 0, new int[]{2, 4, 8, 12}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-    new Trophy("monthly-spending-tracker", "Spending Tracker", "Input Spending data!", 
-    0, 0, new int[]{10, 20, 50, 100}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-    // TODO
-    new Trophy("receipt-photo", "Paper Photographer", "Upload Pictures of Receipts!", 
-    0, 0, new int[]{10, 20, 50, 100}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
+  private static final TypeReference<List<Trophy>> TROPHIES_TYPE = new TypeReference<>() {};
+  private static final TypeReference<Map<String, TrophyDelta>> TROPHY_CHANGES_TYPE = new TypeReference<>() {};
+  private static final String TROPHY_BUFFER_PREFIX = "trophy-buffer/";
 
-    new Trophy("subcription-spender", "Subscription Maxxer", "Has a lot of subscriptions!", 
-    0, 0, new int[]{5, 7, 10, 12}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-    new Trophy("healthy-eater", "Healthy Eater", "Shifted spend toward groceries and away from eating out!", 
-    0, 0, new int[]{1, 3, 6, 12}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-    new Trophy("watchlist-adder", "Watchful Eye", "Added stocks to the Watchlist!", 
-    0, 0, new int[]{3, 10, 20, 50}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-  //groceries
-    new Trophy("grocery-lists", "Grocery Guru", "Created grocery Lists!", 
-    0, 0, new int[]{3, 10, 20, 50}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-    new Trophy("meal-prepper", "Meal Prepper", "Created Recipes based on the Meal!", 
-    0, 0, new int[]{3, 10, 20, 50}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-  //sleep
-    new Trophy("sleep-tracker", "Someone's Sleepy", "Logged sleep data!", 
-    0, 0, new int[]{3, 10, 30, 100}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-    new Trophy("sleep-goal", "Well Rested", "Slept for over 8 hours!", 
-    0, 0, new int[]{5, 15, 25, 100}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-  //special trophies
-
-    new Trophy("all-around", "All-Around Achiever", "Achieve at least one trophy from each PlotLine Category!", 
-    0, 0, new int[]{0, 0, 0, 1}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)),
-
-    new Trophy("llm-investor", "Portfolio Pro", "Created a stock portfolio with the LLM!", 
-    0, 0, new int[]{0, 0, 0, 1}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter)), 
-
-    new Trophy("first-profile-picture", "Picture Perfect", "Uploaded a profile picture!", 
-    0, 0, new int[]{0, 0, 0, 1}, ZonedDateTime.now(ZoneOffset.UTC).format(formatter))
+  /** Net change to one trophy since the last flush: an optional reset to {@code base}, then {@code delta}. */
+  record TrophyDelta(Integer base, int delta) {
+    TrophyDelta then(TrophyDelta later) {
+      return later.base() != null ? later : new TrophyDelta(base, delta + later.delta());
+    }
+  }
 
-  );
+  // only touched inside pendingTrophies.compute/merge or after being removed from the map
+  private static final class PendingTrophies {
+    final Map<String, TrophyDelta> changes;
+    int ops;
 
+    PendingTrophies(Map<String, TrophyDelta> changes, int ops) {
+      this.changes = changes;
+      this.ops = ops;
+    }
+  }
 
   private final S3Client s3Client;
-  private final ObjectMapper objectMapper;
+  private final DocumentStore documentStore;
   private final ChatMessageService chatService;
   private final String bucketName = "plotline-database-bucket";
 
-  public UserProfileService(S3Client s3Client,
-                            ChatMessageService chatService) {
+  // trophy changes are coalesced per user and written by the scheduled flush or once a user queues this many
+  private final ConcurrentHashMap<String, PendingTrophies> pendingTrophies = new ConcurrentHashMap<>();
+  private final KeyLockManager keyLocks;
+  private final ExecutorService trophyFlusher = Executors.newVirtualThreadPerTaskExecutor();
+  private final int trophyFlushThreshold;
+
+  public UserProfileService(@Lazy S3Client s3Client,
+                            DocumentStore documentStore,
+                            ChatMessageService chatService,
+                            KeyLockManager keyLocks,
+                            @Value("${trophies.flush-threshold:20}") int trophyFlushThreshold) {
       this.s3Client = s3Client;
-      this.objectMapper = new ObjectMapper();
+      this.documentStore = documentStore;
       this.chatService = chatService;
+      this.keyLocks = keyLocks;
+      this.trophyFlushThreshold = Math.max(1, trophyFlushThreshold);
   }
 
   public void saveProfile(UserProfile profile) {
       try {
 
-          String user = objectMapper.writeValueAsString(profile);
-
           String username = normalize(profile.getUsername());
           String key = "users/" + username + "/profile.json";
 
-          PutObjectRequest putRequest = PutObjectRequest.builder().
-            bucket(bucketName).
-            key(key).
-            contentType("application/json").
-            build();
-
-            s3Client.putObject(putRequest, RequestBody.fromString(user));
+          documentStore.put(key, profile);
 
-      } catch (JsonProcessingException e) {
+      } catch (Exception e) {
           e.printStackTrace();
       }
   }
@@ -158,23 +111,20 @@ public class UserProfileService {
         System.out.println(username);
         String key = "users/" + normalize(username) + "/profile.json";
 
-        GetObjectRequest getRequest = GetObjectRequest.builder()
-          .bucket(bucketName)
-          .key(key)
-          .build();
-
-        ResponseBytes<GetObjectResponse> objectBytes = s3Client.getObjectAsBytes(getRequest);
-        String userJson = new String(objectBytes.asByteArray(), StandardCharsets.UTF_8);
-
-
-        UserProfile profile = objectMapper.readValue(userJson, UserProfile.class);
-        return profile;
+        return documentStore.get(key, UserProfile.class);
 
       } catch (Exception e) {
           return null;
       }
   }
 
+  // same lookup as getProfile without holding the caller's thread while S3 answers
+  public CompletableFuture<UserProfile> getProfileAsync(String username) {
+      String key = "users/" + normalize(username) + "/profile.json";
+      return documentStore.getAsync(key, UserProfile.class)
+          .exceptionally(e -> null);
+  }
+
   public String getPhoneNum(String username) {
       
     try {
@@ -182,16 +132,7 @@ public class UserProfileService {
       System.out.println(username);
       String key = "users/" + normalize(username) + "/account.json";
 
-      GetObjectRequest getRequest = GetObjectRequest.builder()
-        .bucket(bucketName)
-        .key(key)
-        .build();
-
-      ResponseBytes<GetObjectResponse> objectBytes = s3Client.getObjectAsBytes(getRequest);
-      String userJson = new String(objectBytes.asByteArray(), StandardCharsets.UTF_8);
-
-
-      S3UserRecord profile = objectMapper.readValue(userJson, S3UserRecord.class);
+      S3UserRecord profile = documentStore.get(key, S3UserRecord.class);
       return profile.getPhone();
 
     } catch (Exception e) {
@@ -224,200 +165,258 @@ public class UserProfileService {
   // TROPHY FUNCTIONS
 
   public List<Trophy> getTrophies(String username) throws IOException {
+    // read your own progress even if the scheduled flush hasn't run yet
+    flushTrophies(username);
     String key = "users/" + normalize(username) + "/trophies.json";
 
-    try {
-      GetObjectRequest getRequest = GetObjectRequest.builder()
-      .bucket(bucketName)
-      .key(key)
-      .build();
-      ResponseBytes<GetObjectResponse> objectBytes = s3Client.getObjectAsBytes(getRequest);
-      String content = new String(objectBytes.asByteArray(), StandardCharsets.UTF_8);
-
-      // parse json into trophy
-      List<Trophy> trophies = objectMapper.readValue(content, new TypeReference<List<Trophy>>() {});
-      System.out.println("Trophies: " + trophies);
-
-      // if new trophies were added since this user created their default trophies, add here
-      if (trophies.size() < DEFAULT_TROPHIES.size()) {
-        Set<String> userTrophyIds = trophies.stream()
-          .map(Trophy::getId)
-          .collect(Collectors.toSet());
-
-        List<Trophy> updated = new ArrayList<>(trophies);
-        for (Trophy defaultTrophy : DEFAULT_TROPHIES) {
-          if (!userTrophyIds.contains(defaultTrophy.getId())) {
-            updated.add(new Trophy(
-              defaultTrophy.getId(),
-              defaultTrophy.getName(),
-              defaultTrophy.getDescription(),
-              0,
-              0,
-              defaultTrophy.getThresholds(),
-              ZonedDateTime.now(ZoneOffset.UTC).format(formatter)             
-            ));
-          }
-        }
-
-        if (updated.size() > trophies.size()) {
-          saveTrophies(username, updated);
-        }
-        trophies = updated;
-      }
-      return trophies;
+    // parse json into trophy
+    List<Trophy> trophies = documentStore.get(key, TROPHIES_TYPE);
+    if (trophies == null) {
+      // If the trophies.json file does not exist, create default trophies
+      System.out.println("No trophies found for user: " + username + ". Creating default trophies.");
+      return createDefaultTrophies(username);
+    }
 
-    } catch (software.amazon.awssdk.services.s3.model.NoSuchKeyException e) {
-      // If the trophies.json file does not exist, create default trophies     
-      if (e.awsErrorDetails().errorCode().equals("NoSuchKey")) {
-          System.out.println("No trophies found for user: " + username + ". Creating default trophies.");
-          return createDefaultTrophies(username);
-      } else {
-          throw e;
+    // if new trophies were added since this user created their default trophies, add here
+    if (trophies.size() < TrophyCatalog.size()) {
+      List<Trophy> updated = withDefaults(trophies);
+      if (updated.size() > trophies.size()) {
+        saveTrophies(username, updated);
       }
+      trophies = updated;
     }
-
-
+    return trophies;
   }
 
   public void saveTrophies(String username, List<Trophy> trophies) throws IOException {
 
     String key = "users/" + normalize(username) + "/trophies.json";
-    PutObjectRequest putRequest = PutObjectRequest.builder()
-        .bucket(bucketName)
-        .key(key)
-        .contentType("application/json")
-        .build();
-    s3Client.putObject(putRequest, RequestBody.fromString(objectMapper.writeValueAsString(trophies)));
-
-    String json = objectMapper.writeValueAsString(trophies);
+    documentStore.put(key, trophies);
   }
 
-  public List<Trophy> incrementTrophy(String username, String trophyId, int amount) throws IOException {
-    List<Trophy> trophies = getTrophies(username);
-    for (Trophy trophy : trophies) {
-        if (trophy.getId().equals(trophyId)) {
-            trophy.setProgress(trophy.getProgress() + amount);
-            int previousLevel = trophy.getLevel();
-
-            // Upgrade logic
-            int newLevel = 0;
-            for (int i = 0; i < trophy.getThresholds().length; i++) {
-                if (trophy.getProgress() >= trophy.getThresholds()[i]) {
-                    newLevel = i + 1;
-                }
-            }
-            trophy.setLevel(newLevel);
-
-            String levelName = "";
-            if (trophy.getLevel() == 1) {
-                levelName = "Bronze";
-            } else if (trophy.getLevel() == 2) {
-                levelName = "Silver";
-            } else if (trophy.getLevel() == 3) {
-                levelName = "Gold";
-            } else if (trophy.getLevel() == 4) {
-                levelName = "Diamond";
-            }
-
-
-            if (newLevel > previousLevel) {
-              trophy.setEarnedDate(ZonedDateTime.now(ZoneOffset.UTC).format(formatter));
-
-              try {
-                  String content = String.format("Earned the %s level of '%s' trophy!", levelName, trophy.getName());
-                  chatService.postMessage(username, new com.plotline.backend.dto.ChatMessage(null, username, null, content));
-              } catch (JsonProcessingException e) {
-                  // log and continue
-                  e.printStackTrace();
-              }
-            }
-
-            break;
-        }
+  /**
+   * Queues the increment; it reaches trophies.json with the user's next flush,
+   * together with everything else they earned in the meantime.
+   */
+  public void incrementTrophy(String username, String trophyId, int amount) throws IOException {
+    queueTrophyChange(username, trophyId, new TrophyDelta(null, amount));
+  }
+
+  /**
+   * Writes every queued change for the user in one conditional update and
+   * posts the level-ups it produced. Returns the stored trophies.
+   */
+  public List<Trophy> flushTrophies(String username) {
+    String user = normalize(username);
+    // one flush per user at a time, so an older batch with a reset can't land after a newer one
+    try (KeyLockManager.Lease lease = keyLocks.lock(trophiesKey(user))) {
+      PendingTrophies batch = pendingTrophies.remove(user);
+      if (batch == null) return null;
+      try {
+        return applyTrophyChanges(user, batch.changes);
+      } catch (RuntimeException e) {
+        // put it back in front of anything queued since, the next flush retries it
+        requeueTrophyChanges(user, batch);
+        throw e;
+      }
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${trophies.flush-interval-ms:2000}")
+  public void flushPendingTrophies() {
+    for (String user : new ArrayList<>(pendingTrophies.keySet())) {
+      try {
+        flushTrophies(user);
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+  }
 
-        // check for special trophy
-        if (trophy.getId().equals("all-around") && trophy.getLevel() == 0) {
-          if (checkAllAroundAchiever(trophies)) {
-            trophy.setLevel(4);
-            trophy.setProgress(1);
-            trophy.setEarnedDate(ZonedDateTime.now(ZoneOffset.UTC).format(formatter));
-
-            try {
-              String content = String.format("Earned the 'All Around Achiever' trophy!", trophy.getName());
-              chatService.postMessage(username, new com.plotline.backend.dto.ChatMessage(null, username, null, content));
-            } catch (JsonProcessingException e) {
-              // log and continue
-              e.printStackTrace();
-            }
-          }
+  // a previous run that couldn't flush on shutdown left its batches under trophy-buffer/
+  @PostConstruct
+  void recoverPendingTrophies() {
+    try {
+      for (String key : documentStore.list(TROPHY_BUFFER_PREFIX)) {
+        String user = key.substring(TROPHY_BUFFER_PREFIX.length(), key.lastIndexOf('/'));
+        Map<String, TrophyDelta> changes = claimParkedTrophies(key);
+        if (changes != null) {
+          requeueTrophyChanges(user, new PendingTrophies(changes, changes.size()));
         }
+        documentStore.delete(key);
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
     }
-    saveTrophies(username, trophies);
-    return trophies;
   }
 
-  public List<Trophy> createDefaultTrophies(String username) throws IOException {
-    saveTrophies(username, DEFAULT_TROPHIES);
-    return DEFAULT_TROPHIES;
+  /**
+   * Empties the parked batch with a conditional update and returns what it
+   * held, or null if it is gone or another instance starting at the same
+   * time already emptied it. Only the instance whose write lands applies it.
+   */
+  private Map<String, TrophyDelta> claimParkedTrophies(String key) {
+    AtomicReference<Map<String, TrophyDelta>> claimed = new AtomicReference<>();
+    Map<String, TrophyDelta> emptied = documentStore.update(key, TROPHY_CHANGES_TYPE, current -> {
+      // runs again after a lost race, so only the last call's view counts
+      claimed.set(current);
+      return current == null || current.isEmpty() ? null : new LinkedHashMap<>();
+    });
+    return emptied != null ? claimed.get() : null;
   }
 
+  @PreDestroy
+  void drainPendingTrophies() {
+    trophyFlusher.shutdown();
+    try {
+      trophyFlusher.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (String user : new ArrayList<>(pendingTrophies.keySet())) {
+      try {
+        flushTrophies(user);
+      } catch (Exception e) {
+        // park it where the next start picks it up instead of losing it
+        PendingTrophies batch = pendingTrophies.remove(user);
+        if (batch == null) continue;
+        try {
+          documentStore.put(TROPHY_BUFFER_PREFIX + user + "/" + UUID.randomUUID() + ".json", batch.changes);
+        } catch (Exception saveError) {
+          System.err.println("Dropping trophy progress for " + user + ": " + batch.changes);
+          saveError.printStackTrace();
+        }
+      }
+    }
+  }
 
-  // for all around achiever (one from each plotline category)
-  private String getCategoryFromTrophyId(String trophyId) {
-    if (trophyId.startsWith("long-term-goals") || trophyId.startsWith("weekly-goals")) {
-        return "goals";
-    } else if (trophyId.startsWith("calendar") || trophyId.startsWith("friends")) {
-        return "calendar";
-    } else if (trophyId.startsWith("weekly-budget") || trophyId.startsWith("monthly-budget") ||
-               trophyId.startsWith("investing") || trophyId.startsWith("watchlist") ||
-               trophyId.startsWith("subcription")) {
-        return "budget";
-    } else if (trophyId.startsWith("grocery") || trophyId.startsWith("meal-prepper")) {
-        return "groceries";
-    } else if (trophyId.startsWith("sleep")) {
-        return "sleep";
+  private void queueTrophyChange(String username, String trophyId, TrophyDelta change) {
+    String user = normalize(username);
+    PendingTrophies batch = pendingTrophies.compute(user, (u, pending) -> {
+      PendingTrophies next = pending != null ? pending : new PendingTrophies(new LinkedHashMap<>(), 0);
+      next.changes.merge(trophyId, change, TrophyDelta::then);
+      next.ops++;
+      return next;
+    });
+    if (batch.ops >= trophyFlushThreshold) {
+      trophyFlusher.execute(() -> {
+        try {
+          flushTrophies(user);
+        } catch (Exception e) {
+          e.printStackTrace();
+        }
+      });
     }
+  }
 
-    return null; // if not part of a known category
+  private void requeueTrophyChanges(String user, PendingTrophies earlier) {
+    pendingTrophies.merge(user, earlier, (later, older) -> {
+      Map<String, TrophyDelta> merged = new LinkedHashMap<>(older.changes);
+      later.changes.forEach((id, change) -> merged.merge(id, change, TrophyDelta::then));
+      return new PendingTrophies(merged, older.ops + later.ops);
+    });
   }
 
-  public boolean checkAllAroundAchiever(List<Trophy> trophies) {
-    Set<String> earnedCategories = new HashSet<>();
-
-    for (Trophy trophy : trophies) {
-        if (trophy.getLevel() > 0) {
-            String category = getCategoryFromTrophyId(trophy.getId());
-            if (category != null) {
-                earnedCategories.add(category);
-            }
-        }
+  private List<Trophy> applyTrophyChanges(String user, Map<String, TrophyDelta> changes) {
+    List<String> announcements = new ArrayList<>();
+    List<Trophy> updatedTrophies = documentStore.update(trophiesKey(user), TROPHIES_TYPE, current -> {
+      // may run more than once on conflicting writes, only post once it lands
+      announcements.clear();
+      List<Trophy> trophies = withDefaults(current);
+      applyChanges(trophies, changes, announcements);
+      return trophies;
+    });
+
+    for (String content : announcements) {
+      try {
+        chatService.postMessage(user, new com.plotline.backend.dto.ChatMessage(null, user, null, content));
+      } catch (JsonProcessingException e) {
+        // log and continue
+        e.printStackTrace();
+      }
     }
-    Set<String> requiredCategories = Set.of(
-        "goals", "calendar", "budget", "groceries", "sleep"
-    );
-    return earnedCategories.containsAll(requiredCategories);
+    return updatedTrophies;
   }
 
-  public void setTrophyProgress(String username, String trophyId, int newProgress) throws IOException {
-    List<Trophy> trophies = getTrophies(username);
-    for (Trophy trophy : trophies) {
-        if (trophy.getId().equals(trophyId)) {
-            trophy.setProgress(newProgress);
-            int newLevel = 0;
-            for (int i = 0; i < trophy.getThresholds().length; i++) {
-                if (newProgress >= trophy.getThresholds()[i]) {
-                    newLevel = i + 1;
-                }
-            }
-            trophy.setLevel(newLevel);
-            if (newLevel > 0 && trophy.getEarnedDate() == null) {
-                trophy.setEarnedDate(ZonedDateTime.now(ZoneOffset.UTC).format(formatter));
-            }
-            break;
+  /**
+   * Applies the changes in place to a list that already has every catalog
+   * trophy, adding a message to announcements for each level earned.
+   */
+  static void applyChanges(List<Trophy> trophies, Map<String, TrophyDelta> changes, List<String> announcements) {
+    Trophy[] slots = TrophyCatalog.bySlot(trophies);
+    for (Map.Entry<String, TrophyDelta> e : changes.entrySet()) {
+      TrophyCatalog.Definition definition = TrophyCatalog.byId(e.getKey());
+      if (definition == null) continue; // not a trophy we track
+      Trophy trophy = slots[definition.slot()];
+      TrophyDelta change = e.getValue();
+
+      int previousLevel = trophy.getLevel();
+      int progress = (change.base() != null ? change.base() : trophy.getProgress()) + change.delta();
+      trophy.setProgress(progress);
+      int newLevel = TrophyCatalog.levelFor(trophy.getThresholds(), progress);
+      trophy.setLevel(newLevel);
+
+      if (newLevel > previousLevel) {
+        trophy.setEarnedDate(ZonedDateTime.now(ZoneOffset.UTC).format(formatter));
+        // a bare reset never announced anything, only progress that was earned does
+        if (change.delta() > 0) {
+          announcements.add(String.format("Earned the %s level of '%s' trophy!", levelName(newLevel), trophy.getName()));
         }
+      }
+    }
+
+    // check for special trophy
+    Trophy allAround = slots[TrophyCatalog.byId(TrophyCatalog.ALL_AROUND).slot()];
+    if (allAround.getLevel() == 0 && TrophyCatalog.coversAllCategories(slots)) {
+      allAround.setLevel(4);
+      allAround.setProgress(1);
+      allAround.setEarnedDate(ZonedDateTime.now(ZoneOffset.UTC).format(formatter));
+      announcements.add("Earned the 'All Around Achiever' trophy!");
     }
+  }
+
+  private static String levelName(int level) {
+    return switch (level) {
+      case 1 -> "Bronze";
+      case 2 -> "Silver";
+      case 3 -> "Gold";
+      case 4 -> "Diamond";
+      default -> "";
+    };
+  }
+
+  public List<Trophy> createDefaultTrophies(String username) throws IOException {
+    // fresh objects every time, callers are free to mutate what they get back
+    List<Trophy> trophies = withDefaults(null);
     saveTrophies(username, trophies);
-}
+    return trophies;
+  }
+
+  // for all around achiever (one from each plotline category)
+  public boolean checkAllAroundAchiever(List<Trophy> trophies) {
+    return TrophyCatalog.coversAllCategories(TrophyCatalog.bySlot(trophies));
+  }
+
+  // queued like increments, so a reset followed by an increment still applies in that order
+  public void setTrophyProgress(String username, String trophyId, int newProgress) throws IOException {
+    queueTrophyChange(username, trophyId, new TrophyDelta(newProgress, 0));
+  }
+
+  private String trophiesKey(String username) {
+    return "users/" + normalize(username) + "/trophies.json";
+  }
 
-  
+  // fresh copies of any default trophies the stored list is missing (all of them if nothing is stored yet)
+  static List<Trophy> withDefaults(List<Trophy> stored) {
+    List<Trophy> trophies = stored == null ? new ArrayList<>() : new ArrayList<>(stored);
+    Trophy[] slots = TrophyCatalog.bySlot(trophies);
+    String now = null;
+    for (TrophyCatalog.Definition definition : TrophyCatalog.all()) {
+      if (slots[definition.slot()] == null) {
+        if (now == null) now = ZonedDateTime.now(ZoneOffset.UTC).format(formatter);
+        trophies.add(TrophyCatalog.newTrophy(definition, now));
+      }
+    }
+    return trophies;
+  }
 }
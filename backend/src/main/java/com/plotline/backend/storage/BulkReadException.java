@@ -0,0 +1,21 @@
+package com.plotline.backend.storage;
+
+import java.util.Map;
+
+/**
+ * Thrown when some keys of a bulk read failed or timed out, so the caller
+ * doesn't hand back the rest as if it were everything.
+ */
+public class BulkReadException extends RuntimeException {
+  private final Map<String, Throwable> failures;
+
+  public BulkReadException(Map<String, Throwable> failures) {
+    super("Could not read " + failures.size() + " of the requested documents: " + failures.keySet(),
+        failures.values().iterator().next());
+    this.failures = failures;
+  }
+
+  public Map<String, Throwable> failures() {
+    return failures;
+  }
+}
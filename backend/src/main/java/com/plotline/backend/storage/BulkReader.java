@@ -0,0 +1,132 @@
+package com.plotline.backend.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs a batch of blocking reads concurrently on virtual threads so a page
+ * that needs N documents waits roughly for the slowest one instead of the sum.
+ * Each call is capped at storage.bulk.max-concurrency in-flight reads and
+ * storage.bulk.timeout-ms overall. A key that fails or times out shows up in
+ * {@link Results#failures()} without affecting the others; callers that must
+ * not return a partial result use {@link Results#foundOrThrow()}.
+ */
+@Component
+public class BulkReader {
+
+  /** Per-key outcome of a bulk call, in the order the keys were given. */
+  public static final class Results<T> {
+    private final Map<String, T> values = new LinkedHashMap<>();
+    private final Map<String, Throwable> failures = new LinkedHashMap<>();
+
+    /** Loaded values by key; a key whose loader returned null maps to null. */
+    public Map<String, T> values() { return Collections.unmodifiableMap(values); }
+    public Map<String, Throwable> failures() { return Collections.unmodifiableMap(failures); }
+
+    /** Non-null values in key order. */
+    public List<T> found() {
+      List<T> found = new ArrayList<>(values.size());
+      for (T value : values.values()) {
+        if (value != null) found.add(value);
+      }
+      return found;
+    }
+
+    /** Same as {@link #values()}, but throws if any key failed instead of leaving it out. */
+    public Map<String, T> valuesOrThrow() {
+      if (!failures.isEmpty()) throw new BulkReadException(failures());
+      return values();
+    }
+
+    /** Same as {@link #found()}, but throws if any key failed instead of leaving it out. */
+    public List<T> foundOrThrow() {
+      if (!failures.isEmpty()) throw new BulkReadException(failures());
+      return found();
+    }
+  }
+
+  private final DocumentStore documentStore;
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final int maxConcurrency;
+  private final long timeoutMs;
+
+  public BulkReader(DocumentStore documentStore,
+                    @Value("${storage.bulk.max-concurrency:32}") int maxConcurrency,
+                    @Value("${storage.bulk.timeout-ms:10000}") long timeoutMs) {
+    this.documentStore = documentStore;
+    this.maxConcurrency = Math.max(1, maxConcurrency);
+    this.timeoutMs = timeoutMs;
+  }
+
+  public <T> Results<T> getAll(Collection<String> keys, Class<T> type) {
+    return fetch(keys, key -> documentStore.get(key, type));
+  }
+
+  public <T> Results<T> getAll(Collection<String> keys, TypeReference<T> type) {
+    return fetch(keys, key -> documentStore.get(key, type));
+  }
+
+  /** Applies the loader to every distinct key concurrently. */
+  public <T> Results<T> fetch(Collection<String> keys, Function<String, T> loader) {
+    // the cap is per call, so a loader that itself fans out can't starve its parent of permits
+    Semaphore permits = new Semaphore(maxConcurrency);
+    Map<String, Future<T>> futures = new LinkedHashMap<>();
+    for (String key : new LinkedHashSet<>(keys)) {
+      futures.put(key, executor.submit(() -> {
+        permits.acquire();
+        try {
+          return loader.apply(key);
+        } finally {
+          permits.release();
+        }
+      }));
+    }
+
+    Results<T> results = new Results<>();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    boolean interrupted = false;
+    for (Map.Entry<String, Future<T>> e : futures.entrySet()) {
+      Future<T> future = e.getValue();
+      try {
+        if (interrupted) throw new InterruptedException();
+        results.values.put(e.getKey(), future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+      } catch (ExecutionException ex) {
+        results.failures.put(e.getKey(), ex.getCause());
+      } catch (TimeoutException ex) {
+        future.cancel(true);
+        results.failures.put(e.getKey(), ex);
+      } catch (InterruptedException ex) {
+        interrupted = true;
+        future.cancel(true);
+        results.failures.put(e.getKey(), ex);
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+    return results;
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+}
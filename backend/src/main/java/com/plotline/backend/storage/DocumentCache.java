@@ -0,0 +1,131 @@
+package com.plotline.backend.storage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU of raw document bytes. Entries expire after the TTL and the
+ * least recently used ones are dropped once either the entry count or the
+ * total byte size goes over its limit. Bytes (not parsed objects) are cached
+ * because callers mutate what they read before writing it back. The ETag the
+ * bytes were read or written with is kept so conditional writes can start
+ * from the cached copy.
+ *
+ * A GET can finish after a write to the same key that started later; its
+ * older bytes must not replace the written ones. Every write or invalidation
+ * bumps a per-key generation (striped, so two keys can share one), and a
+ * read is only cached if its key's generation is still the one it saw when
+ * it started. A shared stripe only costs a skipped cache fill.
+ *
+ * Keys ending in one of the excluded suffixes are never cached, for
+ * documents that must be current across instances (credentials).
+ */
+final class DocumentCache {
+
+  record Entry(byte[] bytes, String eTag, long loadedAt) {}
+
+  private static final int GENERATION_STRIPES = 1024;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+  private final long[] generations = new long[GENERATION_STRIPES];
+  private final int maxEntries;
+  private final long maxBytes;
+  private final long ttlNanos;
+  private final List<String> excludedSuffixes;
+  private long totalBytes;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  DocumentCache(int maxEntries, long maxBytes, long ttlSeconds, List<String> excludedSuffixes) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    this.excludedSuffixes = excludedSuffixes.stream().map(String::trim).filter(s -> !s.isEmpty()).toList();
+  }
+
+  boolean cacheable(String key) {
+    for (String suffix : excludedSuffixes) {
+      if (key.endsWith(suffix)) return false;
+    }
+    return true;
+  }
+
+  /** Taken before a read starts, handed back to {@link #putRead} or {@link #removeRead}. */
+  synchronized long generation(String key) {
+    return generations[stripe(key)];
+  }
+
+  synchronized Entry get(String key) {
+    if (!cacheable(key)) return null;
+    Entry e = entries.get(key);
+    if (e == null) {
+      misses.increment();
+      return null;
+    }
+    if (System.nanoTime() - e.loadedAt() > ttlNanos) {
+      remove(key);
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return e;
+  }
+
+  /** After a write: the written bytes replace whatever is cached. */
+  synchronized void put(String key, byte[] bytes, String eTag) {
+    generations[stripe(key)]++;
+    store(key, bytes, eTag);
+  }
+
+  /** After a read: cached only if nothing wrote the key since generation was taken. */
+  synchronized void putRead(String key, byte[] bytes, String eTag, long generation) {
+    if (generations[stripe(key)] != generation) return;
+    store(key, bytes, eTag);
+  }
+
+  /** After a read found no object: dropped only if nothing wrote the key since generation was taken. */
+  synchronized void removeRead(String key, long generation) {
+    if (generations[stripe(key)] != generation) return;
+    remove(key);
+  }
+
+  synchronized void invalidate(String key) {
+    generations[stripe(key)]++;
+    remove(key);
+  }
+
+  long hitCount() { return hits.sum(); }
+  long missCount() { return misses.sum(); }
+
+  private void store(String key, byte[] bytes, String eTag) {
+    if (maxEntries <= 0 || bytes.length > maxBytes || !cacheable(key)) {
+      remove(key);
+      return;
+    }
+    Entry old = entries.put(key, new Entry(bytes, eTag, System.nanoTime()));
+    if (old != null) totalBytes -= old.bytes().length;
+    totalBytes += bytes.length;
+
+    // evict from the LRU end until we are back under both limits
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while ((entries.size() > maxEntries || totalBytes > maxBytes) && it.hasNext()) {
+      Map.Entry<String, Entry> eldest = it.next();
+      totalBytes -= eldest.getValue().bytes().length;
+      it.remove();
+    }
+  }
+
+  private static int stripe(String key) {
+    return (key.hashCode() & 0x7fffffff) % GENERATION_STRIPES;
+  }
+
+  private void remove(String key) {
+    Entry old = entries.remove(key);
+    if (old != null) totalBytes -= old.bytes().length;
+  }
+}
@@ -0,0 +1,53 @@
+package com.plotline.backend.storage;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.UnaryOperator;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+/**
+ * Typed access to the JSON documents kept under the "users/{u}/..." style keys.
+ * Reads return null when the key does not exist so callers can fall back to
+ * their own defaults, the same way the services did with NoSuchKeyException.
+ *
+ * The *Async variants never block the caller; the plain ones are the same
+ * operations joined on the calling thread.
+ */
+public interface DocumentStore {
+  <T> T get(String key, Class<T> type);
+  <T> T get(String key, TypeReference<T> type);
+  byte[] getBytes(String key);
+
+  <T> CompletableFuture<T> getAsync(String key, Class<T> type);
+  <T> CompletableFuture<T> getAsync(String key, TypeReference<T> type);
+  CompletableFuture<byte[]> getBytesAsync(String key);
+
+  /** Same as get, but never from a cache: for when the cached copy is known to be behind. */
+  default <T> T getFresh(String key, TypeReference<T> type) {
+    return get(key, type);
+  }
+
+  void put(String key, Object value);
+  void putBytes(String key, byte[] bytes, String contentType);
+
+  CompletableFuture<Void> putAsync(String key, Object value);
+  CompletableFuture<Void> putBytesAsync(String key, byte[] bytes, String contentType);
+
+  /**
+   * Read-modify-write that only lands if nobody else wrote the key in between.
+   * The mutator gets the current value (null when missing) and returns what to
+   * store, or null to leave the document alone. It is re-run on a fresh read
+   * after every conflict, so it must not touch anything outside the document.
+   * Returns what was stored, or null if nothing was written.
+   */
+  <T> T update(String key, Class<T> type, UnaryOperator<T> mutator);
+  <T> T update(String key, TypeReference<T> type, UnaryOperator<T> mutator);
+
+  void delete(String key);
+  CompletableFuture<Void> deleteAsync(String key);
+
+  /** All keys under the prefix, following continuation tokens past the first 1,000. */
+  List<String> list(String prefix);
+  CompletableFuture<List<String>> listAsync(String prefix);
+}
@@ -0,0 +1,134 @@
+package com.plotline.backend.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-process locks keyed by document key (e.g. "users/{u}/calendar.json").
+ * Each key gets its own lock only while someone holds or waits on it, so two
+ * different keys never contend. lockAll takes its keys in sorted order, which
+ * keeps multi-key operations (an event plus every invited friend's calendar)
+ * from deadlocking against each other.
+ *
+ * This only orders writers inside one instance; DocumentStore.update is what
+ * protects a document across instances.
+ */
+@Component
+public class KeyLockManager {
+
+  private static final class KeyLock {
+    final ReentrantLock lock;
+    int users; // holders + waiters, only touched inside ConcurrentHashMap.compute
+
+    KeyLock(boolean fair) {
+      this.lock = new ReentrantLock(fair);
+    }
+  }
+
+  /** Releases every key it was created with, in reverse acquisition order. */
+  public final class Lease implements AutoCloseable {
+    private final List<String> keys;
+    private final List<KeyLock> locks;
+    private boolean closed;
+
+    private Lease(List<String> keys, List<KeyLock> locks) {
+      this.keys = keys;
+      this.locks = locks;
+    }
+
+    @Override
+    public void close() {
+      if (closed) return;
+      closed = true;
+      for (int i = locks.size() - 1; i >= 0; i--) {
+        release(keys.get(i), locks.get(i));
+      }
+    }
+  }
+
+  private final ConcurrentHashMap<String, KeyLock> locks;
+  private final boolean fair;
+
+  private final LongAdder acquisitions = new LongAdder();
+  private final LongAdder contended = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+  private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+  public KeyLockManager(@Value("${storage.locks.concurrency:64}") int concurrency,
+                        @Value("${storage.locks.fair:false}") boolean fair) {
+    this.locks = new ConcurrentHashMap<>(256, 0.75f, Math.max(1, concurrency));
+    this.fair = fair;
+  }
+
+  public Lease lock(String key) {
+    return lockAll(List.of(key));
+  }
+
+  public Lease lockAll(Collection<String> keys) {
+    // sorted + de-duplicated so every caller takes overlapping keys in the same order
+    List<String> ordered = new ArrayList<>(new TreeSet<>(keys));
+    List<KeyLock> held = new ArrayList<>(ordered.size());
+    try {
+      for (String key : ordered) {
+        held.add(acquire(key));
+      }
+    } catch (RuntimeException | Error e) {
+      for (int i = held.size() - 1; i >= 0; i--) {
+        release(ordered.get(i), held.get(i));
+      }
+      throw e;
+    }
+    return new Lease(ordered, held);
+  }
+
+  public long acquisitions() { return acquisitions.sum(); }
+  public long contendedAcquisitions() { return contended.sum(); }
+  public long totalWaitMillis() { return waitNanos.sum() / 1_000_000; }
+  public long maxWaitMillis() { return maxWaitNanos.get() / 1_000_000; }
+  public int activeKeys() { return locks.size(); }
+
+  private KeyLock acquire(String key) {
+    KeyLock keyLock = locks.compute(key, (k, existing) -> {
+      KeyLock l = existing != null ? existing : new KeyLock(fair);
+      l.users++;
+      return l;
+    });
+
+    acquisitions.increment();
+    // not tryLock(): that barges past the queue and would break the fair option
+    boolean busy = keyLock.lock.isLocked() && !keyLock.lock.isHeldByCurrentThread();
+    long start = System.nanoTime();
+    try {
+      keyLock.lock.lock();
+    } catch (RuntimeException | Error e) {
+      unref(key);
+      throw e;
+    }
+    if (busy) {
+      long waited = System.nanoTime() - start;
+      contended.increment();
+      waitNanos.add(waited);
+      maxWaitNanos.accumulate(waited);
+    }
+    return keyLock;
+  }
+
+  private void release(String key, KeyLock keyLock) {
+    keyLock.lock.unlock();
+    unref(key);
+  }
+
+  // drop the entry once nobody holds or waits on it so the table stays the size of the working set
+  private void unref(String key) {
+    locks.computeIfPresent(key, (k, l) -> --l.users == 0 ? null : l);
+  }
+}
@@ -0,0 +1,246 @@
+package com.plotline.backend.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * DocumentStore that mirrors the S3 key layout under a directory on local disk,
+ * so "users/alice/profile.json" lives at {root}/users/alice/profile.json.
+ * Enabled with storage.backend=local.
+ *
+ * Every write lands in a temp file next to the target and is renamed over it,
+ * so readers see either the old document or the new one, never half of one.
+ * Updates serialize on a per-key lock instead of ETags since this process is
+ * the only writer. Disk access is fast enough that the async variants simply
+ * run on the calling thread and return completed futures.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalDocumentStore implements DocumentStore {
+
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private final Path root;
+  private final ObjectMapper objectMapper;
+  private final KeyLockManager keyLocks;
+
+  public LocalDocumentStore(@Value("${storage.local.root:./data}") String root,
+                            KeyLockManager keyLocks) throws IOException {
+    this.root = Paths.get(root).toAbsolutePath().normalize();
+    this.keyLocks = keyLocks;
+    // same wire format as the S3 store so a bucket dump can be dropped in as-is
+    this.objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    Files.createDirectories(this.root);
+  }
+
+  // ---------- reads ----------
+
+  @Override
+  public <T> T get(String key, Class<T> type) {
+    return parse(key, getBytes(key), objectMapper.readerFor(type));
+  }
+
+  @Override
+  public <T> T get(String key, TypeReference<T> type) {
+    return parse(key, getBytes(key), objectMapper.readerFor(type));
+  }
+
+  @Override
+  public byte[] getBytes(String key) {
+    try {
+      return Files.readAllBytes(pathOf(key));
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error reading " + key, e);
+    }
+  }
+
+  @Override
+  public <T> CompletableFuture<T> getAsync(String key, Class<T> type) {
+    return completed(() -> get(key, type));
+  }
+
+  @Override
+  public <T> CompletableFuture<T> getAsync(String key, TypeReference<T> type) {
+    return completed(() -> get(key, type));
+  }
+
+  @Override
+  public CompletableFuture<byte[]> getBytesAsync(String key) {
+    return completed(() -> getBytes(key));
+  }
+
+  // ---------- writes ----------
+
+  @Override
+  public void put(String key, Object value) {
+    putBytes(key, serialize(key, value), "application/json");
+  }
+
+  @Override
+  public void putBytes(String key, byte[] bytes, String contentType) {
+    Path target = pathOf(key);
+    try {
+      Files.createDirectories(target.getParent());
+      Path temp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + TEMP_SUFFIX);
+      try {
+        Files.write(temp, bytes);
+        move(temp, target);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error writing " + key, e);
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> putAsync(String key, Object value) {
+    return completed(() -> {
+      put(key, value);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> putBytesAsync(String key, byte[] bytes, String contentType) {
+    return completed(() -> {
+      putBytes(key, bytes, contentType);
+      return null;
+    });
+  }
+
+  @Override
+  public <T> T update(String key, Class<T> type, UnaryOperator<T> mutator) {
+    return update(key, objectMapper.readerFor(type), mutator);
+  }
+
+  @Override
+  public <T> T update(String key, TypeReference<T> type, UnaryOperator<T> mutator) {
+    return update(key, objectMapper.readerFor(type), mutator);
+  }
+
+  private <T> T update(String key, ObjectReader reader, UnaryOperator<T> mutator) {
+    try (KeyLockManager.Lease lease = keyLocks.lock("local-store:" + key)) {
+      T updated = mutator.apply(parse(key, getBytes(key), reader));
+      if (updated != null) {
+        put(key, updated);
+      }
+      return updated;
+    }
+  }
+
+  @Override
+  public void delete(String key) {
+    try {
+      Files.deleteIfExists(pathOf(key));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error deleting " + key, e);
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> deleteAsync(String key) {
+    return completed(() -> {
+      delete(key);
+      return null;
+    });
+  }
+
+  // ---------- listing ----------
+
+  @Override
+  public List<String> list(String prefix) {
+    // walk from the deepest directory the prefix names, then match the rest as a plain string prefix like S3 does
+    int slash = prefix.lastIndexOf('/');
+    Path dir = slash < 0 ? root : pathOf(prefix.substring(0, slash));
+    if (!Files.isDirectory(dir)) return new ArrayList<>();
+
+    try (Stream<Path> files = Files.walk(dir)) {
+      return files
+          .filter(Files::isRegularFile)
+          .map(this::keyOf)
+          .filter(key -> key.startsWith(prefix) && !key.endsWith(TEMP_SUFFIX))
+          .sorted()
+          .toList();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error listing " + prefix, e);
+    }
+  }
+
+  @Override
+  public CompletableFuture<List<String>> listAsync(String prefix) {
+    return completed(() -> list(prefix));
+  }
+
+  // ---------- helpers ----------
+
+  private Path pathOf(String key) {
+    Path path = root.resolve(key).normalize();
+    if (!path.startsWith(root) || path.equals(root)) {
+      throw new IllegalArgumentException("Key escapes the storage root: " + key);
+    }
+    return path;
+  }
+
+  private String keyOf(Path path) {
+    // keys always use '/', whatever the platform separator is
+    return root.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+  }
+
+  private static void move(Path temp, Path target) throws IOException {
+    try {
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private <T> T parse(String key, byte[] bytes, ObjectReader reader) {
+    if (bytes == null) return null;
+    try {
+      return reader.readValue(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error parsing " + key, e);
+    }
+  }
+
+  private byte[] serialize(String key, Object value) {
+    try {
+      return objectMapper.writeValueAsBytes(value);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error serializing " + key, e);
+    }
+  }
+
+  private static <T> CompletableFuture<T> completed(Supplier<T> op) {
+    try {
+      return CompletableFuture.completedFuture(op.get());
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+}
@@ -0,0 +1,317 @@
+package com.plotline.backend.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.UnaryOperator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * DocumentStore backed by the shared S3AsyncClient with a read-through cache in front.
+ * Writes go to S3 first and then replace the cached bytes, deletes invalidate;
+ * a read that raced a write is not cached. Auth documents bypass the cache
+ * (storage.cache.exclude-suffixes), since another instance may have just
+ * changed a password.
+ * Updates are conditional on the ETag (If-Match, or If-None-Match for new keys)
+ * and retried with jittered exponential backoff when another writer got there first.
+ * This is the default backend (storage.backend=s3).
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3", matchIfMissing = true)
+public class S3DocumentStore implements DocumentStore {
+
+  private static final long BACKOFF_CAP_MS = 1000;
+
+  private final S3AsyncClient s3Client;
+  private final String bucketName;
+  private final ObjectMapper objectMapper;
+  private final DocumentCache cache;
+  private final int maxAttempts;
+  private final long backoffBaseMs;
+
+  public S3DocumentStore(S3AsyncClient s3Client,
+                         @Value("${cloud.aws.s3.bucket:plotline-database-bucket}") String bucketName,
+                         @Value("${storage.cache.max-entries:10000}") int maxEntries,
+                         @Value("${storage.cache.max-bytes:67108864}") long maxBytes,
+                         @Value("${storage.cache.ttl-seconds:300}") long ttlSeconds,
+                         @Value("${storage.cache.exclude-suffixes:/account.json,email-index.json,all-users.json}") String excludeSuffixes,
+                         @Value("${storage.update.max-attempts:6}") int maxAttempts,
+                         @Value("${storage.update.backoff-ms:25}") long backoffBaseMs) {
+    this.s3Client = s3Client;
+    this.bucketName = bucketName;
+    this.cache = new DocumentCache(maxEntries, maxBytes, ttlSeconds, Arrays.asList(excludeSuffixes.split(",")));
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.backoffBaseMs = backoffBaseMs;
+    // same wire format the services wrote with their own mappers
+    this.objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+  }
+
+  // ---------- reads ----------
+
+  @Override
+  public <T> T get(String key, Class<T> type) {
+    return join(getAsync(key, type));
+  }
+
+  @Override
+  public <T> T get(String key, TypeReference<T> type) {
+    return join(getAsync(key, type));
+  }
+
+  @Override
+  public byte[] getBytes(String key) {
+    return join(getBytesAsync(key));
+  }
+
+  @Override
+  public <T> CompletableFuture<T> getAsync(String key, Class<T> type) {
+    ObjectReader reader = objectMapper.readerFor(type);
+    return getBytesAsync(key).thenApply(bytes -> parse(key, bytes, reader));
+  }
+
+  @Override
+  public <T> CompletableFuture<T> getAsync(String key, TypeReference<T> type) {
+    ObjectReader reader = objectMapper.readerFor(type);
+    return getBytesAsync(key).thenApply(bytes -> parse(key, bytes, reader));
+  }
+
+  @Override
+  public <T> T getFresh(String key, TypeReference<T> type) {
+    DocumentCache.Entry entry = join(read(key, true));
+    return entry == null ? null : parse(key, entry.bytes(), objectMapper.readerFor(type));
+  }
+
+  @Override
+  public CompletableFuture<byte[]> getBytesAsync(String key) {
+    return read(key, false).thenApply(entry -> entry == null ? null : entry.bytes());
+  }
+
+  // ---------- writes ----------
+
+  @Override
+  public void put(String key, Object value) {
+    join(putAsync(key, value));
+  }
+
+  @Override
+  public void putBytes(String key, byte[] bytes, String contentType) {
+    join(putBytesAsync(key, bytes, contentType));
+  }
+
+  @Override
+  public CompletableFuture<Void> putAsync(String key, Object value) {
+    try {
+      return putBytesAsync(key, serialize(key, value), "application/json");
+    } catch (UncheckedIOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> putBytesAsync(String key, byte[] bytes, String contentType) {
+    PutObjectRequest putRequest = PutObjectRequest.builder()
+        .bucket(bucketName)
+        .key(key)
+        .contentType(contentType)
+        .build();
+    return s3Client.putObject(putRequest, AsyncRequestBody.fromBytes(bytes))
+        .handle((response, err) -> {
+          if (err != null) {
+            // the object may or may not have been written, don't serve a stale copy
+            cache.invalidate(key);
+            throw propagate(err);
+          }
+          cache.put(key, bytes, response.eTag());
+          return null;
+        });
+  }
+
+  @Override
+  public <T> T update(String key, Class<T> type, UnaryOperator<T> mutator) {
+    return update(key, objectMapper.readerFor(type), mutator);
+  }
+
+  @Override
+  public <T> T update(String key, TypeReference<T> type, UnaryOperator<T> mutator) {
+    return update(key, objectMapper.readerFor(type), mutator);
+  }
+
+  private <T> T update(String key, ObjectReader reader, UnaryOperator<T> mutator) {
+    for (int attempt = 1; ; attempt++) {
+      // the first attempt may start from the cache, a conflict means it was stale
+      DocumentCache.Entry current = join(read(key, attempt > 1));
+      T updated = mutator.apply(current == null ? null : parse(key, current.bytes(), reader));
+      if (updated == null) return null;
+
+      byte[] bytes = serialize(key, updated);
+      PutObjectRequest.Builder putRequest = PutObjectRequest.builder()
+          .bucket(bucketName)
+          .key(key)
+          .contentType("application/json");
+      if (current == null || current.eTag() == null) {
+        putRequest.ifNoneMatch("*");
+      } else {
+        putRequest.ifMatch(current.eTag());
+      }
+
+      try {
+        String eTag = join(s3Client.putObject(putRequest.build(), AsyncRequestBody.fromBytes(bytes))).eTag();
+        cache.put(key, bytes, eTag);
+        return updated;
+      } catch (S3Exception e) {
+        cache.invalidate(key);
+        if (!isConflict(e)) throw e;
+        if (attempt >= maxAttempts) throw new WriteConflictException(key, attempt, e);
+        backoff(attempt);
+      } catch (RuntimeException e) {
+        cache.invalidate(key);
+        throw e;
+      }
+    }
+  }
+
+  @Override
+  public void delete(String key) {
+    join(deleteAsync(key));
+  }
+
+  @Override
+  public CompletableFuture<Void> deleteAsync(String key) {
+    DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder()
+        .bucket(bucketName)
+        .key(key)
+        .build();
+    return s3Client.deleteObject(deleteRequest)
+        .whenComplete((response, err) -> cache.invalidate(key))
+        .thenApply(response -> null);
+  }
+
+  // ---------- listing ----------
+
+  @Override
+  public List<String> list(String prefix) {
+    return join(listAsync(prefix));
+  }
+
+  @Override
+  public CompletableFuture<List<String>> listAsync(String prefix) {
+    ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
+        .bucket(bucketName)
+        .prefix(prefix)
+        .build();
+    // the paginator follows continuation tokens and delivers objects one at a time, in order
+    List<String> keys = new ArrayList<>();
+    return s3Client.listObjectsV2Paginator(listRequest)
+        .contents()
+        .subscribe(obj -> keys.add(obj.key()))
+        .thenApply(done -> keys);
+  }
+
+  // ---------- helpers ----------
+
+  private CompletableFuture<DocumentCache.Entry> read(String key, boolean skipCache) {
+    if (!skipCache) {
+      DocumentCache.Entry cached = cache.get(key);
+      if (cached != null) return CompletableFuture.completedFuture(cached);
+    }
+
+    // a write that lands while this GET is in flight bumps the generation, and then the
+    // (possibly older) bytes read here are returned but not cached
+    long generation = cache.generation(key);
+    GetObjectRequest getRequest = GetObjectRequest.builder()
+        .bucket(bucketName)
+        .key(key)
+        .build();
+    return s3Client.getObject(getRequest, AsyncResponseTransformer.toBytes())
+        .handle((object, err) -> {
+          if (err != null) {
+            if (unwrap(err) instanceof NoSuchKeyException) {
+              cache.removeRead(key, generation);
+              return null;
+            }
+            throw propagate(err);
+          }
+          DocumentCache.Entry entry = new DocumentCache.Entry(object.asByteArray(), object.response().eTag(), System.nanoTime());
+          cache.putRead(key, entry.bytes(), entry.eTag(), generation);
+          return entry;
+        });
+  }
+
+  private <T> T parse(String key, byte[] bytes, ObjectReader reader) {
+    if (bytes == null) return null;
+    try {
+      return reader.readValue(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error parsing " + key, e);
+    }
+  }
+
+  private byte[] serialize(String key, Object value) {
+    try {
+      return objectMapper.writeValueAsBytes(value);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error serializing " + key, e);
+    }
+  }
+
+  // blocking callers get the same exceptions the sync client used to throw
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwable cause = unwrap(e);
+      if (cause instanceof RuntimeException re) throw re;
+      if (cause instanceof Error err) throw err;
+      throw e;
+    }
+  }
+
+  private static Throwable unwrap(Throwable t) {
+    while (t instanceof CompletionException && t.getCause() != null) {
+      t = t.getCause();
+    }
+    return t;
+  }
+
+  private static CompletionException propagate(Throwable t) {
+    return t instanceof CompletionException ce ? ce : new CompletionException(t);
+  }
+
+  // 412 is a stale If-Match / existing key for If-None-Match, 409 is a concurrent conditional write
+  private static boolean isConflict(S3Exception e) {
+    return e.statusCode() == 412 || e.statusCode() == 409;
+  }
+
+  private void backoff(int attempt) {
+    long ceiling = Math.min(BACKOFF_CAP_MS, backoffBaseMs << Math.min(attempt - 1, 10));
+    try {
+      Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while retrying a conditional write", e);
+    }
+  }
+}
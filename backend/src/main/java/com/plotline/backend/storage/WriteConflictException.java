@@ -0,0 +1,11 @@
+package com.plotline.backend.storage;
+
+/**
+ * Thrown when a conditional update still loses the race after the configured
+ * number of attempts.
+ */
+public class WriteConflictException extends RuntimeException {
+  public WriteConflictException(String key, int attempts, Throwable cause) {
+    super("Gave up updating " + key + " after " + attempts + " conflicting writes", cause);
+  }
+}
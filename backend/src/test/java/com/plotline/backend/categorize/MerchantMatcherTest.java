@@ -0,0 +1,87 @@
+package com.plotline.backend.categorize;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MerchantMatcherTest {
+
+  @Test
+  void longestRuleWins() {
+    MerchantMatcher matcher = new MerchantMatcher(Map.of("UBER", "Transportation", "UBER EATS", "Eating Out"));
+
+    assertEquals("Eating Out", matcher.match("UBER EATS 8005928996"));
+    assertEquals("Transportation", matcher.match("UBER TRIP"));
+  }
+
+  @Test
+  void leftmostWinsBetweenRulesOfTheSameLength() {
+    MerchantMatcher matcher = new MerchantMatcher(Map.of("LYFT", "Transportation", "HULU", "Subscriptions"));
+
+    assertEquals("Subscriptions", matcher.match("HULU VIA LYFT"));
+    assertEquals("Transportation", matcher.match("LYFT PINK HULU"));
+  }
+
+  @Test
+  void blankRulesAndUnknownCharactersMatchNothing() {
+    MerchantMatcher matcher = new MerchantMatcher(Map.of("", "Other", " ", "Other", "SAFEWAY", "Groceries"));
+
+    assertNull(matcher.match(""));
+    assertNull(matcher.match("SAFE#WAY"));
+    assertEquals("Groceries", matcher.match("#SAFEWAY #1234"));
+  }
+
+  // the automaton against a plain indexOf over every rule, on small alphabets so rules overlap a lot
+  @Test
+  void agreesWithANaiveScan() {
+    Random random = new Random(25);
+    String alphabet = "ABC '";
+    int cases = 0;
+    for (int set = 0; set < 600; set++) {
+      Map<String, String> rules = new HashMap<>();
+      int ruleCount = 1 + random.nextInt(12);
+      for (int r = 0; r < ruleCount; r++) {
+        String pattern = randomString(random, alphabet, 1 + random.nextInt(5));
+        rules.put(pattern, "bucket-" + pattern);
+      }
+      MerchantMatcher matcher = new MerchantMatcher(rules);
+
+      for (int n = 0; n < 100; n++) {
+        // every so often a character no rule uses, which sends the automaton back to the root
+        String merchant = randomString(random, alphabet + "#", random.nextInt(24));
+        assertEquals(naiveMatch(rules, merchant), matcher.match(merchant), () -> rules + " on \"" + merchant + "\"");
+        cases++;
+      }
+    }
+    assertEquals(60_000, cases);
+  }
+
+  private static String naiveMatch(Map<String, String> rules, String merchant) {
+    String best = null;
+    int bestLength = 0;
+    int bestStart = Integer.MAX_VALUE;
+    for (var rule : rules.entrySet()) {
+      String pattern = rule.getKey();
+      if (pattern.isBlank()) continue;
+      int start = merchant.indexOf(pattern);
+      if (start < 0) continue;
+      if (pattern.length() > bestLength || (pattern.length() == bestLength && start < bestStart)) {
+        best = rule.getValue();
+        bestLength = pattern.length();
+        bestStart = start;
+      }
+    }
+    return best;
+  }
+
+  private static String randomString(Random random, String alphabet, int length) {
+    StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+    return sb.toString();
+  }
+}
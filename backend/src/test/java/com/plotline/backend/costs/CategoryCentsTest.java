@@ -0,0 +1,35 @@
+package com.plotline.backend.costs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CategoryCentsTest {
+
+  @Test
+  void keepsSummingPastTheInitialCapacity() {
+    CategoryCents totals = new CategoryCents();
+    List<String> categories = new ArrayList<>();
+    for (int i = 0; i < 20; i++) categories.add("cat-" + i);
+
+    for (int round = 0; round < 3; round++) {
+      for (String category : categories) totals.add(category, 125);
+    }
+
+    for (String category : categories) assertEquals(375L, totals.get(category));
+    assertEquals(20 * 375L, totals.total());
+    assertEquals(categories, new ArrayList<>(totals.toMap().keySet()));
+  }
+
+  @Test
+  void sumsInCentsWithoutDrift() {
+    CategoryCents totals = new CategoryCents();
+    for (int i = 0; i < 1_000; i++) totals.add("Groceries", Money.toCents(0.1));
+
+    assertEquals(Map.of("Groceries", 100.0), totals.toDollars());
+  }
+}
@@ -0,0 +1,96 @@
+package com.plotline.backend.costs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.plotline.backend.service.UserProfileService;
+import com.plotline.backend.storage.BulkReader;
+import com.plotline.backend.storage.KeyLockManager;
+import com.plotline.backend.storage.LocalDocumentStore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MonthlyFeedbackServiceTest {
+
+  private static final String AWARDS = "users/alice/ledger/feedback-awards.json";
+
+  @TempDir
+  Path root;
+
+  private final KeyLockManager locks = new KeyLockManager(16, false);
+  private final List<String> trophies = new ArrayList<>();
+  private LocalDocumentStore store;
+  private SpendingLedger ledger;
+  private MonthlyFeedbackService feedback;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    store = new LocalDocumentStore(root.toString(), locks);
+    ledger = new SpendingLedger(store, new BulkReader(store, 8, 10_000), locks, 64, 15, 100, 60);
+    UserProfileService profiles = new UserProfileService(null, store, null, locks, 1_000) {
+      @Override
+      public void incrementTrophy(String username, String trophyId, int amount) {
+        trophies.add(trophyId);
+      }
+    };
+    feedback = new MonthlyFeedbackService(ledger, store, profiles, 100);
+  }
+
+  @Test
+  void aFutureMonthOnlySettlesTheLastClosedMonth() {
+    YearMonth last = YearMonth.now().minusMonths(1);
+    spend(last.minusMonths(1), 10_000);
+    spend(last, 8_000);
+
+    feedback.feedback("alice", YearMonth.now().plusMonths(2));
+
+    // the month before the one asked for hasn't happened yet and must not be awarded
+    assertEquals(Set.of(last.toString()), awardedMonths());
+    assertEquals(List.of("monthly-budget-met", "budget-pacer"), trophies);
+  }
+
+  @Test
+  void theCurrentMonthSettlesTheOneBeforeIt() {
+    YearMonth last = YearMonth.now().minusMonths(1);
+    spend(last.minusMonths(1), 10_000);
+    spend(last, 9_800);
+
+    feedback.feedback("alice", YearMonth.now());
+    feedback.feedback("alice", YearMonth.now());
+
+    assertEquals(Set.of(last.toString()), awardedMonths());
+    // under budget but not 5% under, and awarded once however often it's viewed
+    assertEquals(List.of("monthly-budget-met"), trophies);
+  }
+
+  @Test
+  void aPastMonthSettlesItself() {
+    YearMonth past = YearMonth.now().minusMonths(4);
+    spend(past.minusMonths(1), 10_000);
+    spend(past, 12_000);
+
+    feedback.feedback("alice", past);
+
+    assertEquals(Set.of(past.toString()), awardedMonths());
+    assertEquals(List.of(), trophies);
+  }
+
+  private void spend(YearMonth month, long cents) {
+    ledger.add("alice", month.atDay(10), Map.of("Groceries", cents), SpendingLedger.ALL_VIEWS);
+  }
+
+  private Set<String> awardedMonths() {
+    Set<String> months = store.get(AWARDS, new TypeReference<Set<String>>() {});
+    return months != null ? months : Set.of();
+  }
+}
@@ -0,0 +1,99 @@
+package com.plotline.backend.costs;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import com.plotline.backend.categorize.Categorizer;
+import com.plotline.backend.categorize.InMemoryUserCategoryStore;
+import com.plotline.backend.service.OCRService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ReceiptParserTest {
+
+  private final InMemoryUserCategoryStore overrides = new InMemoryUserCategoryStore();
+  private ReceiptParser parser;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    String rules = "{\"TARGET\": \"Shopping\", \"STARBUCKS\": \"Eating Out\", \"BANANA\": \"Groceries\"}";
+    Categorizer categorizer = new Categorizer(overrides,
+        new ByteArrayResource(rules.getBytes(StandardCharsets.UTF_8)), 100);
+    parser = new ReceiptParser(categorizer, 70);
+  }
+
+  @Test
+  void itemsGoToTheirOwnBucketAndTaxIsSpreadByShare() {
+    String receipt = """
+        TARGET
+        STORE 1234 MINNEAPOLIS
+        BANANAS 3.00
+        TOWELS 9.00
+        STARBUCKS COLD BREW 8.00
+        SUBTOTAL 20.00
+        TAX 1.60
+        TOTAL 21.60
+        VISA 21.60
+        """;
+
+    Map<String, Object> result = parser.parse("alice", new OCRService.OcrText(receipt, 90));
+
+    // 1.60 of tax over 3/20, 9/20 and 8/20 of the items
+    assertEquals(3.24, result.get("Groceries"));
+    assertEquals(9.72, result.get("Shopping"));
+    assertEquals(8.64, result.get("Eating Out"));
+    assertEquals("ocr", result.get("_source"));
+  }
+
+  @Test
+  void spreadTaxAndTipAddUpToTheTotalToTheCent() {
+    overrides.saveOverride("alice", "MUFFIN", "Eating Out");
+    String receipt = """
+        CORNER BAKERY TARGET
+        BREAD 3.33
+        MUFFIN 3.33
+        JAM 3.34
+        TAX 0.71
+        TIP 1.00
+        TOTAL 11.71
+        """;
+
+    Map<String, Object> result = parser.parse("alice", new OCRService.OcrText(receipt, 90));
+
+    long shopping = Money.toCents((Number) result.get("Shopping"));
+    long eatingOut = Money.toCents((Number) result.get("Eating Out"));
+    assertEquals(1_171, shopping + eatingOut);
+    // 3.33 of 10.00 gets 0.57 of the 1.71; the other 6.67 gets 1.14
+    assertEquals(390, eatingOut);
+    assertEquals(781, shopping);
+  }
+
+  @Test
+  void unknownMerchantIsLeftToTheModel() {
+    String receipt = """
+        SOMEWHERE ELSE
+        BANANAS 3.00
+        TOTAL 3.00
+        """;
+
+    assertNull(parser.parse("alice", new OCRService.OcrText(receipt, 90)));
+  }
+
+  @Test
+  void itemsThatDontAddUpAreLeftToTheModel() {
+    String receipt = """
+        TARGET
+        TOWELS 9.00
+        SUBTOTAL 12.00
+        TOTAL 12.00
+        """;
+
+    assertNull(parser.parse("alice", new OCRService.OcrText(receipt, 90)));
+  }
+}
@@ -0,0 +1,277 @@
+package com.plotline.backend.costs;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.plotline.backend.storage.BulkReader;
+import com.plotline.backend.storage.KeyLockManager;
+import com.plotline.backend.storage.LocalDocumentStore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SpendingLedgerTest {
+
+  private static final LocalDate DAY = LocalDate.of(2026, 3, 5);
+  private static final String LOG = "users/alice/ledger/log/";
+
+  @TempDir
+  Path root;
+
+  private final KeyLockManager locks = new KeyLockManager(16, false);
+  private LocalDocumentStore store;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    store = new LocalDocumentStore(root.toString(), locks);
+  }
+
+  @Test
+  void setAndSubtractApplyToWhatTheDayHeldAtThatPointOfTheLog() {
+    SpendingLedger ledger = ledger(store, 64);
+    ledger.add("alice", DAY, Map.of("Groceries", 1_000L), SpendingLedger.ALL_VIEWS);
+    ledger.set("alice", DAY, Map.of("Groceries", 500L), SpendingLedger.ALL_VIEWS);
+    ledger.add("alice", DAY, Map.of("Groceries", 200L), SpendingLedger.ALL_VIEWS);
+    ledger.subtract("alice", DAY, Map.of("Groceries", 300L), SpendingLedger.ALL_VIEWS);
+    // only the weekly tracker is edited; the monthly one keeps its 400
+    ledger.set("alice", DAY, Map.of("Groceries", 50L), SpendingLedger.WEEKLY);
+
+    assertEquals(Map.of("Groceries", 50L), day(ledger, SpendingLedger.WEEKLY));
+    assertEquals(Map.of("Groceries", 400L), day(ledger, SpendingLedger.MONTHLY));
+  }
+
+  @Test
+  void subtractStopsAtZero() {
+    SpendingLedger ledger = ledger(store, 64);
+    ledger.add("alice", DAY, Map.of("Groceries", 500L, "Eating Out", 300L), SpendingLedger.ALL_VIEWS);
+    ledger.subtract("alice", DAY, Map.of("Groceries", 800L), SpendingLedger.ALL_VIEWS);
+    ledger.add("alice", DAY, Map.of("Groceries", 200L), SpendingLedger.ALL_VIEWS);
+
+    // the extra 300 taken off did not leave the day owing anything
+    assertEquals(Map.of("Groceries", 200L, "Eating Out", 300L), day(ledger, SpendingLedger.MONTHLY));
+  }
+
+  @Test
+  void adjustDaysTakesBackBeforeAddingInOneSegment() {
+    SpendingLedger ledger = ledger(store, 64);
+    YearMonth march = YearMonth.from(DAY);
+    ledger.add("alice", DAY, Map.of("Groceries", 1_000L), SpendingLedger.ALL_VIEWS);
+    ledger.add("alice", DAY.plusDays(1), Map.of("Travel", 300L), SpendingLedger.ALL_VIEWS);
+    assertEquals(Map.of("Groceries", 1_000L, "Travel", 300L), ledger.monthTotals("alice", march).cents());
+
+    // a 400 grocery charge moves to the next day as 450, and the 300 trip is removed
+    ledger.adjustDays("alice",
+        Map.of(DAY, Map.of("Groceries", 400L), DAY.plusDays(1), Map.of("Travel", 300L)),
+        Map.of(DAY.plusDays(1), Map.of("Groceries", 450L)),
+        SpendingLedger.ALL_VIEWS);
+
+    assertEquals(3, store.list(LOG).size());
+    assertEquals(Map.of("Groceries", 600L), day(ledger, SpendingLedger.MONTHLY));
+    assertEquals(Map.of("Groceries", 450L),
+        ledger.days("alice", DAY.plusDays(1), DAY.plusDays(1), SpendingLedger.WEEKLY).get(DAY.plusDays(1)));
+    assertEquals(Map.of("Groceries", 1_050L), ledger.monthTotals("alice", march).cents());
+
+    // taken back from a day that is empty for that category, then added: the add is not eaten by the clamp
+    ledger.adjustDays("alice", Map.of(DAY, Map.of("Travel", 80L)), Map.of(DAY, Map.of("Travel", 90L)),
+        SpendingLedger.ALL_VIEWS);
+    assertEquals(Map.of("Groceries", 600L, "Travel", 90L), day(ledger, SpendingLedger.MONTHLY));
+  }
+
+  @Test
+  void compactionFoldsSettledSegmentsAndDeletesOnlyThoseOutOfRetention() {
+    store.put("users/alice/ledger/categories.json", List.of("Groceries"));
+    long now = System.currentTimeMillis();
+    writeSegment(now - 3 * 3_600_000L, 1_000, SpendingLedger.ALL_VIEWS);
+    writeSegment(now - 2 * 3_600_000L, 300, SpendingLedger.WEEKLY | 4);                  // set
+    String recent = writeSegment(now - 30 * 60_000L, 100, SpendingLedger.ALL_VIEWS | 8); // subtract
+
+    // retention is an hour, and three settled segments are enough to compact
+    SpendingLedger ledger = ledger(store, 3);
+    ledger.add("alice", DAY, Map.of("Groceries", 50L), SpendingLedger.ALL_VIEWS);
+    String fresh = store.list(LOG).get(3);
+
+    // this read compacts after loading, so it and the next one must agree
+    assertEquals(Map.of("Groceries", 250L), day(ledger, SpendingLedger.WEEKLY));
+    assertEquals(Map.of("Groceries", 950L), day(ledger, SpendingLedger.MONTHLY));
+
+    SpendingLedger.Segment base = store.get("users/alice/ledger/base.json", SpendingLedger.Segment.class);
+    // the fresh segment is inside the settle window and stays in the log
+    assertEquals(recent, base.through());
+    assertEquals(2, base.epochDay().length);
+    // folded segments past retention are gone; the recent one stays for readers holding an older base
+    assertEquals(List.of(recent, fresh), store.list(LOG));
+
+    // folded but still listed, so it must not be replayed on top of the base
+    assertEquals(Map.of("Groceries", 250L), day(ledger, SpendingLedger.WEEKLY));
+    assertEquals(Map.of("Groceries", 950L), day(ledger, SpendingLedger.MONTHLY));
+  }
+
+  @Test
+  void opsReplayOnTopOfACompactedBase() {
+    store.put("users/alice/ledger/categories.json", List.of("Groceries"));
+    long now = System.currentTimeMillis();
+    writeSegment(now - 2 * 3_600_000L, 1_000, SpendingLedger.ALL_VIEWS);
+    writeSegment(now - 90 * 60_000L, 400, SpendingLedger.MONTHLY | 4);
+
+    SpendingLedger ledger = ledger(store, 2);
+    day(ledger, SpendingLedger.MONTHLY); // compacts
+    assertEquals(List.of(), store.list(LOG));
+
+    ledger.subtract("alice", DAY, Map.of("Groceries", 1_500L), SpendingLedger.WEEKLY);
+    ledger.add("alice", DAY, Map.of("Groceries", 20L), SpendingLedger.ALL_VIEWS);
+    ledger.set("alice", DAY.plusDays(1), Map.of("Groceries", 70L), SpendingLedger.ALL_VIEWS);
+
+    assertEquals(Map.of("Groceries", 20L), day(ledger, SpendingLedger.WEEKLY));
+    assertEquals(Map.of("Groceries", 420L), day(ledger, SpendingLedger.MONTHLY));
+    assertEquals(Map.of("Groceries", 490L),
+        ledger.totals("alice", DAY, DAY.plusDays(1), SpendingLedger.MONTHLY));
+  }
+
+  @Test
+  void staleCategoryDictionaryIsReadAgainFresh() throws IOException {
+    StaleCategories stale = new StaleCategories(root.toString(), locks);
+    SpendingLedger reader = ledger(stale, 64);
+    SpendingLedger otherInstance = ledger(store, 64);
+
+    reader.add("alice", DAY, Map.of("Groceries", 100L), SpendingLedger.ALL_VIEWS);
+    stale.freeze("users/alice/ledger/categories.json");
+    // appends a category the reader's copy of the dictionary doesn't have
+    otherInstance.add("alice", DAY, Map.of("Travel", 900L), SpendingLedger.ALL_VIEWS);
+
+    assertEquals(Map.of("Groceries", 100L, "Travel", 900L), day(reader, SpendingLedger.MONTHLY));
+  }
+
+  @Test
+  void categoryMissingEvenFromAFreshDictionaryFailsTheRead() {
+    store.put("users/alice/ledger/categories.json", List.of("Groceries"));
+    store.put(LOG + "%013d-%s.json".formatted(System.currentTimeMillis(), UUID.randomUUID()),
+        new SpendingLedger.Segment(new int[] {(int) DAY.toEpochDay()}, new int[] {5}, new long[] {100},
+            new int[] {SpendingLedger.ALL_VIEWS}, null));
+
+    SpendingLedger ledger = ledger(store, 64);
+    assertThrows(IllegalStateException.class, () -> day(ledger, SpendingLedger.MONTHLY));
+  }
+
+  @Test
+  void monthTotalsFollowAddsAndAreRebuiltAfterSetsAndSubtracts() {
+    SpendingLedger ledger = ledger(store, 64);
+    YearMonth march = YearMonth.from(DAY);
+    ledger.add("alice", DAY, Map.of("Groceries", 1_000L), SpendingLedger.ALL_VIEWS);
+
+    SpendingLedger.MonthTotals first = ledger.monthTotals("alice", march);
+    assertEquals(Map.of("Groceries", 1_000L), first.cents());
+
+    ledger.add("alice", DAY, Map.of("Groceries", 500L), SpendingLedger.ALL_VIEWS);
+    SpendingLedger.MonthTotals added = ledger.monthTotals("alice", march);
+    assertEquals(Map.of("Groceries", 1_500L), added.cents());
+    assertNotEquals(first.version(), added.version());
+
+    // weekly-only rows don't change the monthly totals or their version
+    ledger.add("alice", DAY, Map.of("Groceries", 700L), SpendingLedger.WEEKLY);
+    assertEquals(added.version(), ledger.monthTotals("alice", march).version());
+
+    ledger.set("alice", DAY, Map.of("Groceries", 200L), SpendingLedger.ALL_VIEWS);
+    SpendingLedger.MonthTotals set = ledger.monthTotals("alice", march);
+    assertEquals(Map.of("Groceries", 200L), set.cents());
+    assertNotEquals(added.version(), set.version());
+
+    ledger.subtract("alice", DAY, Map.of("Groceries", 50L), SpendingLedger.MONTHLY);
+    assertEquals(Map.of("Groceries", 150L), ledger.monthTotals("alice", march).cents());
+  }
+
+  @Test
+  void concurrentAppendsFromTwoInstancesAreAllCounted() throws Exception {
+    SpendingLedger[] instances = {ledger(store, 64), ledger(store, 64)};
+    int threads = 8;
+    int appends = 50;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> runs = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        // each thread introduces its own category, so the dictionary is extended concurrently too
+        String category = "cat-" + t;
+        SpendingLedger ledger = instances[t % 2];
+        runs.add(pool.submit(() -> {
+          start.await();
+          for (int i = 0; i < appends; i++) {
+            ledger.add("alice", DAY.plusDays(i % 3), Map.of(category, 1L, "Shared", 2L), SpendingLedger.ALL_VIEWS);
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> run : runs) run.get();
+    } finally {
+      pool.shutdownNow();
+    }
+
+    Map<String, Long> totals = instances[0].totals("alice", DAY, DAY.plusDays(2), SpendingLedger.MONTHLY);
+    assertEquals(Long.valueOf(threads * appends * 2), totals.get("Shared"));
+    for (int t = 0; t < threads; t++) {
+      assertEquals(Long.valueOf(appends), totals.get("cat-" + t));
+    }
+    List<String> categories = store.get("users/alice/ledger/categories.json", new TypeReference<List<String>>() {});
+    assertEquals(threads + 1, categories.size());
+    assertEquals(threads * appends, store.list(LOG).size());
+  }
+
+  private SpendingLedger ledger(LocalDocumentStore documentStore, int compactAfter) {
+    return new SpendingLedger(documentStore, new BulkReader(documentStore, 8, 10_000), locks,
+        compactAfter, 60, 100, 3_600);
+  }
+
+  private static Map<String, Long> day(SpendingLedger ledger, int view) {
+    return ledger.days("alice", DAY, DAY, view).getOrDefault(DAY, Map.of());
+  }
+
+  // a log segment for Groceries (id 0) on DAY, written as if appended at the given time
+  private String writeSegment(long millis, long cents, int flags) {
+    String key = LOG + "%013d-%s.json".formatted(millis, UUID.randomUUID());
+    store.put(key, new SpendingLedger.Segment(new int[] {(int) DAY.toEpochDay()}, new int[] {0},
+        new long[] {cents}, new int[] {flags}, null));
+    return key;
+  }
+
+  /** Serves a frozen copy of one document to plain reads, the way a cached copy would; getFresh goes to disk. */
+  private static final class StaleCategories extends LocalDocumentStore {
+    private String frozenKey;
+    private Object frozen;
+
+    StaleCategories(String root, KeyLockManager locks) throws IOException {
+      super(root, locks);
+    }
+
+    void freeze(String key) {
+      frozen = super.get(key, new TypeReference<List<String>>() {});
+      frozenKey = key;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, TypeReference<T> type) {
+      return key.equals(frozenKey) ? (T) frozen : super.get(key, type);
+    }
+
+    @Override
+    public <T> T getFresh(String key, TypeReference<T> type) {
+      return super.get(key, type);
+    }
+  }
+}
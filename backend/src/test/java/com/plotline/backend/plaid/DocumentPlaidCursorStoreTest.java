@@ -0,0 +1,240 @@
+package com.plotline.backend.plaid;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.plotline.backend.plaid.PlaidCursorStore.Applied;
+import com.plotline.backend.storage.KeyLockManager;
+import com.plotline.backend.storage.LocalDocumentStore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DocumentPlaidCursorStoreTest {
+
+  private static final String ITEM = "users/alice/plaid/items/item-1/";
+  private static final Applied COFFEE = new Applied("2026-03-05", "Eating Out", 450);
+  private static final Applied BREAD = new Applied("2026-03-06", "Groceries", 320);
+
+  @TempDir
+  Path root;
+
+  private FlakyStore store;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    store = new FlakyStore(root.toString(), new KeyLockManager(16, false));
+  }
+
+  @Test
+  void cursorAndMarksSurviveARestart() {
+    DocumentPlaidCursorStore cursors = cursors(64);
+    cursors.markApplied("alice", "item-1", Map.of("t1", COFFEE, "t2", BREAD));
+    cursors.saveCursor("alice", "item-1", "c1");
+
+    DocumentPlaidCursorStore restarted = cursors(64);
+    assertEquals("c1", restarted.getCursor("alice", "item-1"));
+    assertEquals(COFFEE, restarted.getApplied("alice", "item-1", "t1"));
+    assertEquals(BREAD, restarted.getApplied("alice", "item-1", "t2"));
+    assertNull(restarted.getApplied("alice", "item-1", "t3"));
+    assertNull(restarted.getCursor("alice", "item-2"));
+  }
+
+  @Test
+  void marksCountBeforeTheCursorLands() {
+    DocumentPlaidCursorStore cursors = cursors(64);
+    cursors.markApplied("alice", "item-1", Map.of("t1", COFFEE));
+    cursors.saveCursor("alice", "item-1", "c1");
+
+    // the page after c1 is marked, then the process dies before its cursor is saved
+    cursors.markApplied("alice", "item-1", Map.of("t2", BREAD));
+    assertEquals(List.of(ITEM + "applied/0-0.bin", ITEM + "applied/0-1.bin"), store.list(ITEM + "applied/"));
+
+    DocumentPlaidCursorStore restarted = cursors(64);
+    // the page is replayed from c1, and t2 already counts as applied
+    assertEquals("c1", restarted.getCursor("alice", "item-1"));
+    assertEquals(BREAD, restarted.getApplied("alice", "item-1", "t2"));
+
+    // a changed amount replaces the old one, and null takes it out
+    restarted.markApplied("alice", "item-1", Map.of("t1", BREAD));
+    restarted.markApplied("alice", "item-1", nulls("t2"));
+    DocumentPlaidCursorStore again = cursors(64);
+    assertEquals(BREAD, again.getApplied("alice", "item-1", "t1"));
+    assertNull(again.getApplied("alice", "item-1", "t2"));
+  }
+
+  @Test
+  void aFailedMarkHoldsAndGoesOutWithTheNextWrite() {
+    DocumentPlaidCursorStore cursors = cursors(64);
+    store.failing = ITEM + "applied/0-0.bin";
+    assertThrows(UncheckedIOException.class, () -> cursors.markApplied("alice", "item-1", Map.of("t1", COFFEE)));
+    store.failing = null;
+    assertEquals(COFFEE, cursors.getApplied("alice", "item-1", "t1"));
+
+    cursors.markApplied("alice", "item-1", Map.of("t2", BREAD));
+
+    assertEquals(List.of(ITEM + "applied/0-0.bin"), store.list(ITEM + "applied/"));
+    DocumentPlaidCursorStore restarted = cursors(64);
+    assertEquals(COFFEE, restarted.getApplied("alice", "item-1", "t1"));
+    assertEquals(BREAD, restarted.getApplied("alice", "item-1", "t2"));
+  }
+
+  @Test
+  void saveCursorWritesLeftoverMarksBeforeTheState() {
+    DocumentPlaidCursorStore cursors = cursors(64);
+    store.failing = ITEM + "applied/0-0.bin";
+    assertThrows(UncheckedIOException.class, () -> cursors.markApplied("alice", "item-1", Map.of("t1", COFFEE)));
+    // still down: the cursor must not get ahead of the marks
+    assertThrows(UncheckedIOException.class, () -> cursors.saveCursor("alice", "item-1", "c1"));
+    assertNull(store.get(ITEM + "sync.json", DocumentPlaidCursorStore.SyncState.class));
+
+    store.failing = ITEM + "sync.json";
+    assertThrows(UncheckedIOException.class, () -> cursors.saveCursor("alice", "item-1", "c1"));
+    store.failing = null;
+    cursors.saveCursor("alice", "item-1", "c1");
+
+    assertEquals(List.of(ITEM + "applied/0-0.bin"), store.list(ITEM + "applied/"));
+    DocumentPlaidCursorStore.SyncState state = store.get(ITEM + "sync.json", DocumentPlaidCursorStore.SyncState.class);
+    assertEquals(1, state.chunks());
+    assertEquals(COFFEE, cursors(64).getApplied("alice", "item-1", "t1"));
+  }
+
+  @Test
+  void chunksRollIntoASnapshotAndOldGenerationsGoOnceTheCursorMovesOn() {
+    DocumentPlaidCursorStore cursors = cursors(2);
+    for (int page = 0; page < 3; page++) {
+      cursors.markApplied("alice", "item-1", Map.of("t" + page, COFFEE));
+      if (page < 2) cursors.saveCursor("alice", "item-1", "c" + page);
+    }
+
+    // two chunks, then the third page writes generation 1 instead; sync.json still names 0
+    assertEquals(List.of(ITEM + "applied/0-0.bin", ITEM + "applied/0-1.bin", ITEM + "applied/1.bin"),
+        store.list(ITEM + "applied/"));
+    cursors.saveCursor("alice", "item-1", "c2");
+    assertEquals(List.of(ITEM + "applied/1.bin"), store.list(ITEM + "applied/"));
+
+    DocumentPlaidCursorStore restarted = cursors(2);
+    for (int page = 0; page < 3; page++) {
+      assertEquals(COFFEE, restarted.getApplied("alice", "item-1", "t" + page));
+    }
+  }
+
+  @Test
+  void snapshotsWrittenPastTheSavedGenerationAreFound() {
+    DocumentPlaidCursorStore cursors = cursors(1);
+    // chunk, snapshot 1, chunk, snapshot 2, and no sync.json at all
+    for (int page = 0; page < 4; page++) {
+      cursors.markApplied("alice", "item-1", Map.of("t" + page, BREAD));
+    }
+
+    DocumentPlaidCursorStore restarted = cursors(1);
+    for (int page = 0; page < 4; page++) {
+      assertEquals(BREAD, restarted.getApplied("alice", "item-1", "t" + page));
+    }
+    assertNull(restarted.getCursor("alice", "item-1"));
+
+    restarted.saveCursor("alice", "item-1", "c0");
+    assertEquals(2, store.get(ITEM + "sync.json", DocumentPlaidCursorStore.SyncState.class).generation());
+    assertEquals(List.of(ITEM + "applied/2.bin"), store.list(ITEM + "applied/"));
+  }
+
+  @Test
+  void inlineHashesMoveToASnapshotOnTheFirstSave() {
+    store.put(ITEM + "sync.json", Map.of("cursor", "c0", "generation", 0, "chunks", 0,
+        "seen", hashes("old-1", "old-2")));
+
+    DocumentPlaidCursorStore cursors = cursors(64);
+    assertEquals("c0", cursors.getCursor("alice", "item-1"));
+    assertFalse(cursors.getApplied("alice", "item-1", "old-1").known());
+
+    // even a save with nothing new moves the set out of sync.json
+    cursors.saveCursor("alice", "item-1", "c1");
+    DocumentPlaidCursorStore.SyncState state = store.get(ITEM + "sync.json", DocumentPlaidCursorStore.SyncState.class);
+    assertNull(state.seen());
+    assertEquals(1, state.generation());
+    assertEquals(DocumentPlaidCursorStore.FORMAT, state.format());
+    assertEquals(List.of(ITEM + "applied/1.bin"), store.list(ITEM + "applied/"));
+
+    DocumentPlaidCursorStore restarted = cursors(64);
+    assertFalse(restarted.getApplied("alice", "item-1", "old-1").known());
+    assertFalse(restarted.getApplied("alice", "item-1", "old-2").known());
+  }
+
+  @Test
+  void seenFilesMoveToASnapshotAndAreDropped() {
+    store.put(ITEM + "sync.json", Map.of("cursor", "c0", "generation", 3, "chunks", 1));
+    store.putBytes(ITEM + "seen/3.bin", hashes("old-1"), "application/octet-stream");
+    store.putBytes(ITEM + "seen/3-0.bin", hashes("old-2"), "application/octet-stream");
+    // past the saved count, from a save whose sync.json didn't land
+    store.putBytes(ITEM + "seen/3-1.bin", hashes("old-3"), "application/octet-stream");
+
+    DocumentPlaidCursorStore cursors = cursors(64);
+    for (String id : List.of("old-1", "old-2", "old-3")) {
+      assertFalse(cursors.getApplied("alice", "item-1", id).known());
+    }
+
+    cursors.markApplied("alice", "item-1", Map.of("t1", COFFEE));
+    cursors.saveCursor("alice", "item-1", "c1");
+
+    assertEquals(List.of(), store.list(ITEM + "seen/"));
+    assertEquals(List.of(ITEM + "applied/4.bin"), store.list(ITEM + "applied/"));
+    DocumentPlaidCursorStore restarted = cursors(64);
+    assertFalse(restarted.getApplied("alice", "item-1", "old-3").known());
+    assertEquals(COFFEE, restarted.getApplied("alice", "item-1", "t1"));
+  }
+
+  private DocumentPlaidCursorStore cursors(int snapshotEvery) {
+    return new DocumentPlaidCursorStore(store, 100, snapshotEvery);
+  }
+
+  private static Map<String, Applied> nulls(String... ids) {
+    Map<String, Applied> marks = new HashMap<>();
+    for (String id : ids) marks.put(id, null);
+    return marks;
+  }
+
+  // the format before amounts were kept: big-endian hashes, sorted
+  private static byte[] hashes(String... ids) {
+    long[] hashes = Arrays.stream(ids).mapToLong(SeenTransactions::hash).sorted().toArray();
+    ByteBuffer out = ByteBuffer.allocate(hashes.length * Long.BYTES);
+    out.asLongBuffer().put(hashes);
+    return out.array();
+  }
+
+  /** Fails writes to one key, the way an unreachable store would. */
+  private static final class FlakyStore extends LocalDocumentStore {
+    volatile String failing;
+
+    FlakyStore(String root, KeyLockManager locks) throws IOException {
+      super(root, locks);
+    }
+
+    @Override
+    public void put(String key, Object value) {
+      fail(key);
+      super.put(key, value);
+    }
+
+    @Override
+    public void putBytes(String key, byte[] bytes, String contentType) {
+      fail(key);
+      super.putBytes(key, bytes, contentType);
+    }
+
+    private void fail(String key) {
+      if (key.equals(failing)) throw new UncheckedIOException(new IOException("store unavailable"));
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package com.plotline.backend.plaid;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+
+import com.plaid.client.model.RemovedTransaction;
+import com.plaid.client.model.Transaction;
+import com.plaid.client.model.TransactionsSyncRequest;
+import com.plaid.client.model.TransactionsSyncResponse;
+import com.plaid.client.request.PlaidApi;
+import com.plotline.backend.categorize.Categorizer;
+import com.plotline.backend.categorize.InMemoryUserCategoryStore;
+import com.plotline.backend.costs.CostsWriter;
+import com.plotline.backend.costs.SpendingLedger;
+import com.plotline.backend.storage.BulkReader;
+import com.plotline.backend.storage.KeyLockManager;
+import com.plotline.backend.storage.LocalDocumentStore;
+
+import retrofit2.Call;
+import retrofit2.Response;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlaidSyncServiceTest {
+
+  private static final LocalDate DAY = LocalDate.of(2026, 3, 5);
+
+  @TempDir
+  Path root;
+
+  private final KeyLockManager locks = new KeyLockManager(16, false);
+  // page served for each cursor, "" for the first
+  private final Map<String, TransactionsSyncResponse> pages = new HashMap<>();
+  private final List<String> requested = new CopyOnWriteArrayList<>();
+  private FlakyStore store;
+  private SpendingLedger ledger;
+  private PlaidSyncService sync;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    store = new FlakyStore(root.toString(), locks);
+    InMemoryTokenStore tokens = new InMemoryTokenStore();
+    tokens.saveAccessToken("alice", "item-1", "token-1");
+    restart(tokens, 20);
+  }
+
+  @AfterEach
+  void tearDown() {
+    sync.shutdown();
+  }
+
+  @Test
+  void modifiedAndRemovedTransactionsTakeBackWhatTheyAdded() {
+    page("", "c1", List.of(txn("t1", "STARBUCKS", 4.50, DAY), txn("t2", "TARGET", 20.00, DAY)), List.of(), List.of());
+    assertEquals("ok", syncOnce().status());
+    assertEquals(Map.of(DAY, Map.of("Eating Out", 450L, "Shopping", 2_000L)), days());
+
+    // the coffee was 5.25 and posted a day later; the Target charge was voided
+    page("c1", "c2", List.of(), List.of(txn("t1", "STARBUCKS", 5.25, DAY.plusDays(1))), List.of("t2"));
+    PlaidSyncService.ItemResult result = syncOnce();
+
+    assertEquals(1, result.modified());
+    assertEquals(1, result.removed());
+    assertEquals(2, result.daysUpdated());
+    assertEquals(Map.of(DAY.plusDays(1), Map.of("Eating Out", 525L)), days());
+  }
+
+  @Test
+  void aTransactionAddedAndChangedInOnePageCountsOnce() {
+    page("", "c1", List.of(txn("t1", "STARBUCKS", 4.50, DAY)), List.of(txn("t1", "STARBUCKS", 5.00, DAY)),
+        List.of());
+    syncOnce();
+
+    assertEquals(Map.of(DAY, Map.of("Eating Out", 500L)), days());
+  }
+
+  @Test
+  void aPageReplayedAfterItsLedgerWriteIsNotAppliedTwice() throws IOException {
+    page("", "c1", List.of(txn("t1", "STARBUCKS", 4.50, DAY)), List.of(), List.of());
+    syncOnce();
+
+    page("c1", "c2", List.of(txn("t2", "TARGET", 20.00, DAY)), List.of(txn("t1", "STARBUCKS", 6.00, DAY)), List.of());
+    // the page's marks and ledger append land, its cursor doesn't, and the process goes away
+    store.failing = "users/alice/plaid/items/item-1/sync.json";
+    assertEquals("error", syncOnce().status());
+    store.failing = null;
+    InMemoryTokenStore tokens = new InMemoryTokenStore();
+    tokens.saveAccessToken("alice", "item-1", "token-1");
+    sync.shutdown();
+    restart(tokens, 20);
+
+    // replayed from c1
+    assertEquals("ok", syncOnce().status());
+    assertEquals(Map.of(DAY, Map.of("Eating Out", 600L, "Shopping", 2_000L)), days());
+  }
+
+  @Test
+  void aTimeoutDuringAPageLetsThePageFinishAndStopsAfterIt() throws Exception {
+    InMemoryTokenStore tokens = new InMemoryTokenStore();
+    tokens.saveAccessToken("alice", "item-1", "token-1");
+    sync.shutdown();
+    restart(tokens, 1);
+    page("", "c1", List.of(txn("t1", "STARBUCKS", 4.50, DAY)), List.of(), List.of());
+    pages.get("").hasMore(true);
+    page("c1", "c2", List.of(txn("t2", "TARGET", 20.00, DAY)), List.of(), List.of());
+
+    // the first page's ledger write is still going when the item times out
+    store.blocking = new CountDownLatch(1);
+    assertEquals("timeout", syncOnce().status());
+    store.blocking.countDown();
+
+    // the next sync waits for the item's lock, then starts from the cursor the finished page saved
+    assertEquals("ok", syncOnce().status());
+    assertEquals(List.of("", "c1"), requested);
+    assertEquals(Map.of(DAY, Map.of("Eating Out", 450L, "Shopping", 2_000L)), days());
+  }
+
+  @Test
+  void aFailedLedgerWritePutsTheMarksBackForTheRetry() {
+    page("", "c1", List.of(txn("t1", "STARBUCKS", 4.50, DAY)), List.of(), List.of());
+    store.failingPrefix = "users/alice/ledger/log/";
+    assertEquals("error", syncOnce().status());
+    store.failingPrefix = null;
+
+    assertEquals("ok", syncOnce().status());
+    assertEquals(Map.of(DAY, Map.of("Eating Out", 450L)), days());
+  }
+
+  private void restart(TokenStore tokens, long itemTimeoutSeconds) throws IOException {
+    String rules = "{\"TARGET\": \"Shopping\", \"STARBUCKS\": \"Eating Out\"}";
+    Categorizer categorizer = new Categorizer(new InMemoryUserCategoryStore(),
+        new ByteArrayResource(rules.getBytes(StandardCharsets.UTF_8)), 100);
+    ledger = new SpendingLedger(store, new BulkReader(store, 8, 10_000), locks, 64, 15, 100, 60);
+    sync = new PlaidSyncService(plaid(), tokens, new DocumentPlaidCursorStore(store, 100, 64), categorizer,
+        new CostsWriter(ledger), new PlaidRateLimiter(1_000), locks, store, itemTimeoutSeconds, 500);
+  }
+
+  private PlaidSyncService.ItemResult syncOnce() {
+    return sync.sync("alice", null, 0).items().get(0);
+  }
+
+  private Map<LocalDate, Map<String, Long>> days() {
+    return ledger.days("alice", DAY.minusDays(7), DAY.plusDays(7), SpendingLedger.MONTHLY);
+  }
+
+  private void page(String cursor, String next, List<Transaction> added, List<Transaction> modified,
+                    List<String> removed) {
+    pages.put(cursor, new TransactionsSyncResponse()
+        .added(added)
+        .modified(modified)
+        .removed(removed.stream().map(id -> new RemovedTransaction().transactionId(id).accountId("acct-1")).toList())
+        .nextCursor(next)
+        .hasMore(false));
+  }
+
+  private static Transaction txn(String id, String merchant, double amount, LocalDate date) {
+    return new Transaction().transactionId(id).accountId("acct-1").merchantName(merchant).name(merchant)
+        .amount(amount).pending(false).date(date);
+  }
+
+  // only transactionsSync is called; each cursor gets its page
+  @SuppressWarnings("unchecked")
+  private PlaidApi plaid() {
+    return (PlaidApi) Proxy.newProxyInstance(PlaidApi.class.getClassLoader(), new Class<?>[] {PlaidApi.class},
+        (proxy, method, args) -> {
+          if (!method.getName().equals("transactionsSync")) throw new UnsupportedOperationException(method.getName());
+          String cursor = ((TransactionsSyncRequest) args[0]).getCursor();
+          requested.add(cursor == null ? "" : cursor);
+          TransactionsSyncResponse page = pages.get(cursor == null ? "" : cursor);
+          return (Call<TransactionsSyncResponse>) Proxy.newProxyInstance(Call.class.getClassLoader(),
+              new Class<?>[] {Call.class}, (call, m, a) -> {
+                if (!m.getName().equals("execute")) throw new UnsupportedOperationException(m.getName());
+                return Response.success(page);
+              });
+        });
+  }
+
+  /**
+   * Fails writes to one key, or under one prefix, the way an unreachable store
+   * would; holds ledger appends while blocking is set.
+   */
+  private static final class FlakyStore extends LocalDocumentStore {
+    volatile String failing;
+    volatile String failingPrefix;
+    volatile CountDownLatch blocking;
+
+    FlakyStore(String root, KeyLockManager locks) throws IOException {
+      super(root, locks);
+    }
+
+    @Override
+    public void put(String key, Object value) {
+      fail(key);
+      super.put(key, value);
+    }
+
+    @Override
+    public void putBytes(String key, byte[] bytes, String contentType) {
+      fail(key);
+      super.putBytes(key, bytes, contentType);
+    }
+
+    private void fail(String key) {
+      if (key.equals(failing) || (failingPrefix != null && key.startsWith(failingPrefix))) {
+        throw new UncheckedIOException(new IOException("store unavailable"));
+      }
+      CountDownLatch latch = blocking;
+      if (latch != null && key.startsWith("users/alice/ledger/log/")) {
+        try {
+          assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new UncheckedIOException(new InterruptedIOException("interrupted mid-write"));
+        }
+      }
+    }
+  }
+}
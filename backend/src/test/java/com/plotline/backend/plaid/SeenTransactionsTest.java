@@ -0,0 +1,122 @@
+package com.plotline.backend.plaid;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.plotline.backend.plaid.PlaidCursorStore.Applied;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SeenTransactionsTest {
+
+  @Test
+  void keepsEveryRowAcrossMerges() {
+    SeenTransactions seen = SeenTransactions.empty();
+    // three merges of the tail plus a partial one
+    List<String> ids = ids("txn-", 3 * 1024 + 7);
+    for (int i = 0; i < ids.size(); i++) seen.put(ids.get(i), applied(i));
+
+    assertEquals(ids.size(), seen.size());
+    for (int i = 0; i < ids.size(); i++) assertEquals(applied(i), seen.get(ids.get(i)));
+    assertNull(seen.get("txn-" + ids.size()));
+
+    // overwritten in place, whether merged or still in the tail
+    seen.put(ids.get(0), new Applied("2026-04-01", "Travel", 99));
+    seen.put(ids.get(ids.size() - 1), null);
+    assertEquals(new Applied("2026-04-01", "Travel", 99), seen.get(ids.get(0)));
+    assertNull(seen.get(ids.get(ids.size() - 1)));
+    assertEquals(ids.size(), seen.size());
+  }
+
+  @Test
+  void bytesRoundTripSortedAndUnique() {
+    SeenTransactions seen = SeenTransactions.empty();
+    List<String> ids = ids("round-", 1_500);
+    for (int i = 0; i < ids.size(); i++) seen.put(ids.get(i), applied(i));
+    seen.put("gone", null);
+
+    byte[] bytes = seen.toBytes();
+    SeenTransactions read = SeenTransactions.fromBytes(bytes);
+    for (int i = 0; i < ids.size(); i++) assertEquals(applied(i), read.get(ids.get(i)));
+    assertNull(read.get("gone"));
+    // already sorted and unique, so it reads back to the same bytes
+    assertArrayEquals(bytes, read.toBytes());
+
+    // the set keeps working after a toBytes emptied its tail
+    seen.put("after", applied(7));
+    assertEquals(applied(7), seen.get("after"));
+    assertEquals(ids.size() + 2, seen.size());
+  }
+
+  @Test
+  void addAllAppliesRowsOverWhatIsThere() {
+    SeenTransactions first = SeenTransactions.empty();
+    for (String id : ids("a-", 10)) first.put(id, new Applied("2026-03-01", "Groceries", 100));
+    // its own category table, in another order
+    SeenTransactions second = SeenTransactions.empty();
+    for (String id : ids("b-", 5)) second.put(id, new Applied("2026-03-02", "Travel", 200));
+    for (String id : ids("a-", 5)) second.put(id, new Applied("2026-03-03", "Groceries", 150));
+    second.put("a-9", null);
+
+    first.addAll(second.toBytes());
+
+    assertEquals(15, first.size());
+    assertEquals(new Applied("2026-03-03", "Groceries", 150), first.get("a-0"));
+    assertEquals(new Applied("2026-03-01", "Groceries", 100), first.get("a-5"));
+    assertEquals(new Applied("2026-03-02", "Travel", 200), first.get("b-4"));
+    assertNull(first.get("a-9"));
+    first.addAll(null);
+    assertEquals(new Applied("2026-03-02", "Travel", 200), SeenTransactions.fromBytes(first.toBytes()).get("b-0"));
+  }
+
+  @Test
+  void hashesFromBeforeAmountsReadAsAppliedWithNothingToTakeBack() {
+    SeenTransactions seen = SeenTransactions.fromHashes(hashes("old-1", "old-2"));
+    Applied old = seen.get("old-1");
+    assertFalse(old.known());
+    assertNull(seen.get("new-1"));
+
+    // a legacy chunk only fills in what isn't there
+    seen.put("new-1", applied(3));
+    seen.addAllHashes(hashes("new-1", "old-3"));
+    assertEquals(applied(3), seen.get("new-1"));
+    assertFalse(seen.get("old-3").known());
+
+    // and unknown rows survive a round trip as unknown
+    assertFalse(SeenTransactions.fromBytes(seen.toBytes()).get("old-2").known());
+  }
+
+  @Test
+  void emptyOrMissingBytesReadAsEmpty() {
+    assertEquals(0, SeenTransactions.fromBytes(null).size());
+    assertEquals(0, SeenTransactions.fromBytes(new byte[0]).size());
+    assertEquals(0, SeenTransactions.fromHashes(null).size());
+    assertEquals(0, SeenTransactions.fromBytes(SeenTransactions.empty().toBytes()).size());
+  }
+
+  private static Applied applied(int i) {
+    String[] categories = {"Groceries", "Eating Out", "Travel"};
+    return new Applied("2026-03-" + String.format("%02d", 1 + i % 28), categories[i % 3], 100L + i);
+  }
+
+  // the old format: big-endian hashes, sorted
+  private static byte[] hashes(String... ids) {
+    long[] hashes = Arrays.stream(ids).mapToLong(SeenTransactions::hash).sorted().toArray();
+    ByteBuffer out = ByteBuffer.allocate(hashes.length * Long.BYTES);
+    out.asLongBuffer().put(hashes);
+    return out.array();
+  }
+
+  private static List<String> ids(String prefix, int count) {
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < count; i++) ids.add(prefix + i);
+    return ids;
+  }
+}
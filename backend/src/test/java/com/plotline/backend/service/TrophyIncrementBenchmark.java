@@ -0,0 +1,181 @@
+package com.plotline.backend.service;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.plotline.backend.dto.Trophy;
+import com.plotline.backend.service.UserProfileService.TrophyDelta;
+
+/**
+ * CPU and allocation of one trophy increment once the user's list is in
+ * memory, i.e. what the trophies.json mutator does per flushed change:
+ *
+ *   listScan: the code before TrophyCatalog. It rebuilds the id set against
+ *     the default list, walks the list for the change, scans every
+ *     threshold, and builds category string sets for the all-around check.
+ *   catalog: UserProfileService.withDefaults and applyChanges as shipped,
+ *     with slot lookups, binary-searched thresholds and category bits.
+ *
+ * The user sits partway through most trophies without the all-around one,
+ * so the all-around check runs every time, as it does for most users. The
+ * increments rotate over the whole catalog. Progress keeps growing past the
+ * top thresholds, so level-ups (and their timestamps) are rare in both.
+ *
+ * Allocation comes from the gc profiler (gc.alloc.rate.norm is bytes per increment):
+ *   mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *       "-Dexec.args=-cp %classpath org.openjdk.jmh.Main TrophyIncrementBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TrophyIncrementBenchmark {
+
+  private List<Trophy> legacyDefaults;
+  private List<Trophy> stored;
+  private List<Map<String, TrophyDelta>> increments;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    legacyDefaults = new ArrayList<>();
+    for (TrophyCatalog.Definition definition : TrophyCatalog.all()) {
+      legacyDefaults.add(TrophyCatalog.newTrophy(definition, "2026-01-01T00:00:00Z"));
+    }
+
+    // levels everywhere except sleep, so the all-around trophy stays one category short
+    stored = UserProfileService.withDefaults(null);
+    for (Trophy trophy : stored) {
+      if (trophy.getId().startsWith("sleep") || trophy.getId().equals(TrophyCatalog.ALL_AROUND)) continue;
+      trophy.setProgress(trophy.getThresholds()[1]);
+      trophy.setLevel(TrophyCatalog.levelFor(trophy.getThresholds(), trophy.getProgress()));
+    }
+
+    increments = new ArrayList<>();
+    for (TrophyCatalog.Definition definition : TrophyCatalog.all()) {
+      if (definition.id().startsWith("sleep") || definition.id().equals(TrophyCatalog.ALL_AROUND)) continue;
+      increments.add(Map.of(definition.id(), new TrophyDelta(null, 1)));
+    }
+  }
+
+  @Benchmark
+  public List<String> catalog() {
+    List<String> announcements = new ArrayList<>();
+    List<Trophy> trophies = UserProfileService.withDefaults(stored);
+    UserProfileService.applyChanges(trophies, nextIncrement(), announcements);
+    return announcements;
+  }
+
+  @Benchmark
+  public List<String> listScan() {
+    List<String> announcements = new ArrayList<>();
+    List<Trophy> trophies = legacyWithDefaults(stored);
+    Map<String, TrophyDelta> changes = nextIncrement();
+    for (Trophy trophy : trophies) {
+      TrophyDelta change = changes.get(trophy.getId());
+      if (change == null) continue;
+
+      int previousLevel = trophy.getLevel();
+      int progress = (change.base() != null ? change.base() : trophy.getProgress()) + change.delta();
+      trophy.setProgress(progress);
+      int newLevel = legacyLevelFor(trophy.getThresholds(), progress);
+      trophy.setLevel(newLevel);
+
+      if (newLevel > previousLevel) {
+        trophy.setEarnedDate(ZonedDateTime.now(ZoneOffset.UTC).format(UserProfileService.formatter));
+        if (change.delta() > 0) {
+          announcements.add(String.format("Earned level %d of '%s' trophy!", newLevel, trophy.getName()));
+        }
+      }
+    }
+    for (Trophy trophy : trophies) {
+      if (trophy.getId().equals(TrophyCatalog.ALL_AROUND) && trophy.getLevel() == 0 && legacyAllAround(trophies)) {
+        trophy.setLevel(4);
+        announcements.add("Earned the 'All Around Achiever' trophy!");
+      }
+    }
+    return announcements;
+  }
+
+  private Map<String, TrophyDelta> nextIncrement() {
+    Map<String, TrophyDelta> changes = increments.get(next);
+    next = next + 1 == increments.size() ? 0 : next + 1;
+    return changes;
+  }
+
+  // what follows is UserProfileService before the catalog, minus storage
+
+  private List<Trophy> legacyWithDefaults(List<Trophy> stored) {
+    List<Trophy> trophies = new ArrayList<>(stored);
+    Set<String> userTrophyIds = trophies.stream()
+      .map(Trophy::getId)
+      .collect(Collectors.toSet());
+    for (Trophy defaultTrophy : legacyDefaults) {
+      if (!userTrophyIds.contains(defaultTrophy.getId())) {
+        trophies.add(new Trophy(defaultTrophy.getId(), defaultTrophy.getName(), defaultTrophy.getDescription(),
+            0, 0, defaultTrophy.getThresholds(), ZonedDateTime.now(ZoneOffset.UTC).format(UserProfileService.formatter)));
+      }
+    }
+    return trophies;
+  }
+
+  private static int legacyLevelFor(int[] thresholds, int progress) {
+    int level = 0;
+    for (int i = 0; i < thresholds.length; i++) {
+      if (progress >= thresholds[i]) {
+        level = i + 1;
+      }
+    }
+    return level;
+  }
+
+  private static String legacyCategory(String trophyId) {
+    if (trophyId.startsWith("long-term-goals") || trophyId.startsWith("weekly-goals")) {
+      return "goals";
+    } else if (trophyId.startsWith("calendar") || trophyId.startsWith("friends")) {
+      return "calendar";
+    } else if (trophyId.startsWith("weekly-budget") || trophyId.startsWith("monthly-budget") ||
+               trophyId.startsWith("investing") || trophyId.startsWith("watchlist") ||
+               trophyId.startsWith("subcription")) {
+      return "budget";
+    } else if (trophyId.startsWith("grocery") || trophyId.startsWith("meal-prepper")) {
+      return "groceries";
+    } else if (trophyId.startsWith("sleep")) {
+      return "sleep";
+    }
+    return null;
+  }
+
+  private static boolean legacyAllAround(List<Trophy> trophies) {
+    Set<String> earnedCategories = new HashSet<>();
+    for (Trophy trophy : trophies) {
+      if (trophy.getLevel() > 0) {
+        String category = legacyCategory(trophy.getId());
+        if (category != null) {
+          earnedCategories.add(category);
+        }
+      }
+    }
+    return earnedCategories.containsAll(Set.of("goals", "calendar", "budget", "groceries", "sleep"));
+  }
+}
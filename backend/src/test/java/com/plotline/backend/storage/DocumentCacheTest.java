@@ -0,0 +1,112 @@
+package com.plotline.backend.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DocumentCacheTest {
+
+  private final DocumentCache cache = new DocumentCache(100, 1 << 20, 3600, List.of("/account.json"));
+
+  @Test
+  void readThatStartedBeforeAWriteDoesNotReplaceIt() {
+    long generation = cache.generation("users/a/profile.json");
+    cache.put("users/a/profile.json", bytes("new"), "e2");
+    cache.putRead("users/a/profile.json", bytes("old"), "e1", generation);
+
+    DocumentCache.Entry entry = cache.get("users/a/profile.json");
+    assertArrayEquals(bytes("new"), entry.bytes());
+    assertEquals("e2", entry.eTag());
+  }
+
+  @Test
+  void readThatStartedAfterAWriteIsCached() {
+    cache.put("users/a/profile.json", bytes("v1"), "e1");
+    long generation = cache.generation("users/a/profile.json");
+    cache.putRead("users/a/profile.json", bytes("v2"), "e2", generation);
+
+    assertEquals("e2", cache.get("users/a/profile.json").eTag());
+  }
+
+  @Test
+  void readThatMissedDoesNotDropANewerWrite() {
+    long generation = cache.generation("users/a/profile.json");
+    cache.put("users/a/profile.json", bytes("v1"), "e1");
+    cache.removeRead("users/a/profile.json", generation);
+
+    assertNotNull(cache.get("users/a/profile.json"));
+  }
+
+  @Test
+  void invalidateStopsAnInFlightReadFromFillingTheCache() {
+    long generation = cache.generation("users/a/profile.json");
+    cache.invalidate("users/a/profile.json");
+    cache.putRead("users/a/profile.json", bytes("stale"), "e1", generation);
+
+    assertNull(cache.get("users/a/profile.json"));
+  }
+
+  @Test
+  void keysSharingAStripeOnlySkipAFill() {
+    String[] pair = sameStripe();
+    cache.put(pair[0], bytes("a"), "ea");
+    long generation = cache.generation(pair[1]);
+    cache.put(pair[0], bytes("a2"), "ea2");
+    cache.putRead(pair[1], bytes("b"), "eb", generation);
+
+    // the neighbour's write costs pair[1] its fill, and nothing else
+    assertNull(cache.get(pair[1]));
+    assertEquals("ea2", cache.get(pair[0]).eTag());
+
+    long next = cache.generation(pair[1]);
+    cache.putRead(pair[1], bytes("b"), "eb", next);
+    assertEquals("eb", cache.get(pair[1]).eTag());
+  }
+
+  @Test
+  void excludedSuffixesAreNeverCached() {
+    assertFalse(cache.cacheable("users/a/account.json"));
+    cache.put("users/a/account.json", bytes("secret"), "e1");
+    cache.putRead("users/a/account.json", bytes("secret"), "e1", cache.generation("users/a/account.json"));
+
+    assertNull(cache.get("users/a/account.json"));
+  }
+
+  @Test
+  void evictsLeastRecentlyUsedPastTheByteLimit() {
+    DocumentCache small = new DocumentCache(100, 10, 3600, List.of());
+    small.put("a", new byte[4], "ea");
+    small.put("b", new byte[4], "eb");
+    small.get("a");
+    small.put("c", new byte[4], "ec");
+
+    assertNull(small.get("b"));
+    assertNotNull(small.get("a"));
+    assertNotNull(small.get("c"));
+  }
+
+  // two distinct keys whose generations share a slot
+  private static String[] sameStripe() {
+    String first = "users/k0/doc.json";
+    int stripe = (first.hashCode() & 0x7fffffff) % 1024;
+    for (int i = 1; ; i++) {
+      String candidate = "users/k" + i + "/doc.json";
+      if ((candidate.hashCode() & 0x7fffffff) % 1024 == stripe) {
+        assertNotEquals(first, candidate);
+        return new String[] {first, candidate};
+      }
+    }
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+}
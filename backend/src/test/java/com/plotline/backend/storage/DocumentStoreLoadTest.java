@@ -0,0 +1,184 @@
+package com.plotline.backend.storage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.plotline.backend.config.AWSConfig;
+
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Request throughput of the document read path at loadtest.users concurrent
+ * users (500 by default), before and after the move to one shared
+ * S3AsyncClient. A request is what the home screen does: read a user's
+ * calendar and profile.
+ *
+ * Before: the blocking S3Client on a 200-thread pool, Tomcat's default
+ * max-threads, each request holding its thread through both reads.
+ * After: S3DocumentStore on the shared async client, both reads composed as
+ * futures the way the controllers return them, so no thread waits on S3.
+ * The document cache is off so both sides go to S3 every time.
+ *
+ * Needs a real bucket, so it only runs when one is given:
+ *   mvn test -Dtest=DocumentStoreLoadTest -Dloadtest.bucket=my-test-bucket
+ *       [-Dloadtest.users=500] [-Dloadtest.seconds=30]
+ * with AWS credentials and region in the environment or .env, as for the app.
+ * Documents are written under loadtest/ and removed afterwards.
+ */
+@EnabledIfSystemProperty(named = "loadtest.bucket", matches = ".+")
+class DocumentStoreLoadTest {
+
+  private static final int REQUEST_THREADS = 200;
+
+  private final String bucket = System.getProperty("loadtest.bucket");
+  private final int users = Integer.getInteger("loadtest.users", 500);
+  private final Duration runFor = Duration.ofSeconds(Integer.getInteger("loadtest.seconds", 30));
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private S3Client syncClient;
+  private S3AsyncClient asyncClient;
+  private S3DocumentStore store;
+
+  private record Result(long requests, long failures, double perSecond, long p50Micros, long p99Micros) {}
+
+  @BeforeEach
+  void seed() {
+    AWSConfig aws = new AWSConfig();
+    syncClient = aws.s3Client();
+    asyncClient = aws.s3AsyncClient(200, 10_000, 10_000, 60);
+    store = new S3DocumentStore(asyncClient, bucket, 0, 0, 0, "", 1, 0);
+
+    List<CompletableFuture<Void>> writes = new ArrayList<>();
+    for (int u = 0; u < users; u++) {
+      writes.add(store.putAsync(calendarKey(u), List.of(Map.of("id", "e" + u, "title", "Standup", "eventType", "user"))));
+      writes.add(store.putAsync(profileKey(u), Map.of("username", "u" + u, "bio", "load test user " + u)));
+    }
+    CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).join();
+  }
+
+  @AfterEach
+  void cleanUp() {
+    List<CompletableFuture<Void>> deletes = new ArrayList<>();
+    for (int u = 0; u < users; u++) {
+      deletes.add(store.deleteAsync(calendarKey(u)));
+      deletes.add(store.deleteAsync(profileKey(u)));
+    }
+    CompletableFuture.allOf(deletes.toArray(CompletableFuture[]::new)).join();
+    syncClient.close();
+    asyncClient.close();
+  }
+
+  @Test
+  void asyncStoreAgainstBlockingClient() throws Exception {
+    ExecutorService requestThreads = Executors.newFixedThreadPool(REQUEST_THREADS);
+    Result before;
+    try {
+      before = run(u -> CompletableFuture.supplyAsync(() -> {
+        blockingGet(calendarKey(u), new TypeReference<List<Map<String, Object>>>() {});
+        blockingGet(profileKey(u), new TypeReference<Map<String, Object>>() {});
+        return null;
+      }, requestThreads));
+    } finally {
+      requestThreads.shutdownNow();
+    }
+
+    Result after = run(u -> store.getAsync(calendarKey(u), new TypeReference<List<Map<String, Object>>>() {})
+        .thenCombine(store.getAsync(profileKey(u), new TypeReference<Map<String, Object>>() {}), (calendar, profile) -> null));
+
+    System.out.printf("%d users, %ds each%n", users, runFor.toSeconds());
+    System.out.printf("before (blocking, %d threads): %s%n", REQUEST_THREADS, before);
+    System.out.printf("after  (shared async client):  %s%n", after);
+
+    assertEquals(0, before.failures());
+    assertEquals(0, after.failures());
+    assertTrue(after.requests() > 0);
+  }
+
+  private interface Request {
+    CompletableFuture<?> send(int user);
+  }
+
+  // every simulated user sends its next request as soon as the last one answers
+  private Result run(Request request) {
+    LongAdder completed = new LongAdder();
+    LongAdder failures = new LongAdder();
+    // per user: [0] is how many samples follow
+    List<long[]> latencies = new ArrayList<>();
+    long deadline = System.nanoTime() + runFor.toNanos();
+    long started = System.nanoTime();
+
+    try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int c = 0; c < users; c++) {
+        long[] samples = new long[1 << 16];
+        latencies.add(samples);
+        clients.submit(() -> {
+          int n = 0;
+          while (System.nanoTime() < deadline) {
+            long t0 = System.nanoTime();
+            try {
+              request.send(ThreadLocalRandom.current().nextInt(users)).join();
+              completed.increment();
+              if (n < samples.length - 1) samples[++n] = (System.nanoTime() - t0) / 1_000;
+            } catch (RuntimeException e) {
+              failures.increment();
+            }
+          }
+          samples[0] = n;
+        });
+      }
+    }
+    double seconds = (System.nanoTime() - started) / 1e9;
+
+    long sampled = 0;
+    for (long[] samples : latencies) sampled += samples[0];
+    long[] all = new long[(int) sampled];
+    int at = 0;
+    for (long[] samples : latencies) {
+      System.arraycopy(samples, 1, all, at, (int) samples[0]);
+      at += (int) samples[0];
+    }
+    Arrays.sort(all);
+    return new Result(completed.sum(), failures.sum(), completed.sum() / seconds, percentile(all, 0.50), percentile(all, 0.99));
+  }
+
+  private <T> T blockingGet(String key, TypeReference<T> type) {
+    try {
+      byte[] bytes = syncClient.getObjectAsBytes(GetObjectRequest.builder().bucket(bucket).key(key).build()).asByteArray();
+      return objectMapper.readValue(bytes, type);
+    } catch (java.io.IOException e) {
+      throw new java.io.UncheckedIOException(e);
+    }
+  }
+
+  private static long percentile(long[] sorted, double p) {
+    return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+  }
+
+  private static String calendarKey(int user) {
+    return "loadtest/users/u" + user + "/calendar.json";
+  }
+
+  private static String profileKey(int user) {
+    return "loadtest/users/u" + user + "/profile.json";
+  }
+}
@@ -0,0 +1,136 @@
+package com.plotline.backend.storage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyLockManagerTest {
+
+  private final KeyLockManager locks = new KeyLockManager(16, false);
+
+  @Test
+  void overlappingKeySetsInOppositeOrderDoNotDeadlock() {
+    assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+      List<String> forward = List.of("a", "b", "c");
+      List<String> backward = List.of("c", "b", "a");
+      AtomicInteger inside = new AtomicInteger();
+      AtomicInteger overlaps = new AtomicInteger();
+
+      ExecutorService pool = Executors.newFixedThreadPool(4);
+      try {
+        List<Future<?>> runs = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+          List<String> keys = t % 2 == 0 ? forward : backward;
+          runs.add(pool.submit(() -> {
+            for (int i = 0; i < 2_000; i++) {
+              try (KeyLockManager.Lease lease = locks.lockAll(keys)) {
+                if (inside.incrementAndGet() > 1) overlaps.incrementAndGet();
+                inside.decrementAndGet();
+              }
+            }
+          }));
+        }
+        for (Future<?> run : runs) run.get();
+      } finally {
+        pool.shutdownNow();
+      }
+      assertEquals(0, overlaps.get());
+    });
+    assertEquals(0, locks.activeKeys());
+  }
+
+  @Test
+  void takesKeysInSortedOrderWhateverTheCallerPassed() throws Exception {
+    // "b" is held elsewhere; lockAll(b, a) must take "a" first and then wait on "b",
+    // so a third thread finds "a" taken while "b" is still blocked
+    CountDownLatch bHeld = new CountDownLatch(1);
+    CountDownLatch releaseB = new CountDownLatch(1);
+    ExecutorService pool = Executors.newCachedThreadPool();
+    try {
+      pool.submit(() -> {
+        try (KeyLockManager.Lease lease = locks.lock("b")) {
+          bHeld.countDown();
+          releaseB.await();
+        }
+        return null;
+      });
+      bHeld.await();
+
+      CountDownLatch bothHeld = new CountDownLatch(1);
+      CountDownLatch releaseBoth = new CountDownLatch(1);
+      long start = locks.acquisitions();
+      Future<?> both = pool.submit(() -> {
+        try (KeyLockManager.Lease lease = locks.lockAll(List.of("b", "a"))) {
+          bothHeld.countDown();
+          releaseBoth.await();
+        }
+        return null;
+      });
+
+      // "a" taken and "b" being waited on
+      awaitAcquisitions(start + 2);
+
+      Future<?> aOnly = pool.submit(() -> {
+        try (KeyLockManager.Lease lease = locks.lock("a")) {
+          return null;
+        }
+      });
+      awaitAcquisitions(start + 3);
+      Thread.sleep(50);
+      assertFalse(aOnly.isDone());
+
+      releaseB.countDown();
+      assertTrue(bothHeld.await(5, TimeUnit.SECONDS));
+      releaseBoth.countDown();
+      both.get(5, TimeUnit.SECONDS);
+      aOnly.get(5, TimeUnit.SECONDS);
+    } finally {
+      releaseB.countDown();
+      pool.shutdownNow();
+    }
+    assertEquals(0, locks.activeKeys());
+  }
+
+  @Test
+  void duplicateKeysAreTakenOnce() {
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+      try (KeyLockManager.Lease lease = locks.lockAll(List.of("a", "a", "b"))) {
+        assertEquals(2, locks.activeKeys());
+      }
+    });
+    assertEquals(0, locks.activeKeys());
+  }
+
+  @Test
+  void closingTwiceReleasesOnce() {
+    KeyLockManager.Lease lease = locks.lockAll(List.of("a", "b"));
+    lease.close();
+    lease.close();
+    assertEquals(0, locks.activeKeys());
+
+    try (KeyLockManager.Lease again = locks.lock("a")) {
+      assertEquals(1, locks.activeKeys());
+    }
+  }
+
+  // acquisitions is counted just before a thread blocks on the key
+  private void awaitAcquisitions(long count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (locks.acquisitions() < count && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+  }
+}